@@ -37,6 +37,19 @@ public class SimpleScannerActivity extends AppCompatActivity implements ZBarScan
         //ViewFinderView是根据需求自定义的视图，会被覆盖在相机预览画面之上，通常包含扫码框、扫描线、扫码框周围的阴影遮罩等
         zBarScannerView = new ZBarScannerView(this, new ViewFinderView(this), this);
         //zBarScannerView.setShouldAdjustFocusArea(true);//自动调整对焦区域
+        //zBarScannerView.setContinuousFocusEnabled(false);//不使用连续对焦，改为开始预览时触发一次自动对焦
+        //zBarScannerView.setFocusController(new FocusController(10, 800, 3000));//连续10帧没有识别到码时重新对焦
+        //zBarScannerView.setCamera2Enabled(true);//Android 5.0及以上使用Camera2
+        //zBarScannerView.setContinuousScanEnabled(true);//连续扫码，不需要调用getOneMoreFrame
+        //zBarScannerView.setDuplicateFilter(new DuplicateFilter());//连续扫码时过滤重复结果
+        //zBarScannerView.setResultRecyclingEnabled(true);//回调返回后回收Result，不能在回调之外持有Result
+        //zBarScannerView.setScanMetricsListener(listener);//统计每一帧各阶段的耗时、识别成功率等（见ScanMetrics）
+        //zBarScannerView.setResultExecutor(BarcodeScannerView.DECODE_THREAD_EXECUTOR);//在解码线程中回调结果，省去切换到主线程（回调中不能操作UI）
+        //zBarScannerView.setResultBatching(300);//连续扫码时把300ms内的结果合并为一次回调（可配合setMultiResultHandler）
+        //zBarScannerView.setCameraSession(CameraSession.getInstance(this));//onPause时相机保持打开3秒，页面切换后直接使用，不需要重新打开
+        //zBarScannerView.setCapabilityCache(CameraCapabilityCache.getInstance(this));//保存相机能力，之后冷启动不再遍历相机、提前选好预览尺寸
+        //ScanTrace.setEnabled(true);//在systrace/Perfetto中输出打开相机、自动对焦、每一帧识别等片段（需在startCamera之前调用）
+        //zBarScannerView.startFrameCapture(new File(getExternalFilesDir(null), "capture.bin"));//录制预览帧，可在JVM中回放（见ReplayRunner）
 
         container.addView(zBarScannerView);
     }
@@ -47,6 +60,8 @@ public class SimpleScannerActivity extends AppCompatActivity implements ZBarScan
 
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED) {
             zBarScannerView.startCamera();//打开系统相机，并进行基本的初始化
+            //相机打开后修改参数：多项修改合并为一次setParameters，没有变化时不提交
+            //zBarScannerView.applyCameraParameters(new ParameterTransaction().setZoom(10).setExposureCompensation(1));
         } else {//没有相机权限
             ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, REQUEST_CAMERA_PERMISSION);
         }
@@ -57,7 +72,7 @@ public class SimpleScannerActivity extends AppCompatActivity implements ZBarScan
         super.onPause();
 
         handler.removeCallbacksAndMessages(null);
-        zBarScannerView.stopCamera();//释放相机资源等各种资源
+        zBarScannerView.stopCamera();//释放相机资源等各种资源（在相机线程中释放，立即返回；需要得知释放完成时使用stopCamera(callback)）
     }
 
     @Override
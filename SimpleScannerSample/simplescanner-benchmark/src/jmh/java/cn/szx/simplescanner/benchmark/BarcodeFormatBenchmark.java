@@ -0,0 +1,38 @@
+package cn.szx.simplescanner.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cn.szx.simplescanner.zbar.BarcodeFormat;
+
+/**
+ * BarcodeFormat.getFormatById：每个识别结果调用一次
+ * <p>
+ * 分别测试ALL_FORMATS中靠前的格式、靠后的格式和不存在的格式
+ */
+@State(Scope.Thread)
+public class BarcodeFormatBenchmark {
+    @Param({"EAN13", "CODE128", "UNKNOWN"})
+    public String format;
+
+    private int id;
+
+    @Setup
+    public void setup() {
+        if ("EAN13".equals(format)) {
+            id = BarcodeFormat.EAN13.getId();
+        } else if ("CODE128".equals(format)) {
+            id = BarcodeFormat.CODE128.getId();
+        } else {
+            id = -1;
+        }
+    }
+
+    @Benchmark
+    public BarcodeFormat getFormatById() {
+        return BarcodeFormat.getFormatById(id);
+    }
+}
@@ -0,0 +1,35 @@
+package cn.szx.simplescanner.benchmark;
+
+/**
+ * 常见的预览尺寸，格式为"宽x高"
+ */
+class FrameSize {
+    static final String VGA = "640x480";
+    static final String HD = "1280x720";
+    static final String FULL_HD = "1920x1080";
+
+    final int width;
+    final int height;
+
+    FrameSize(String size) {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+    }
+
+    /**
+     * 生成一帧NV21数据（亮度为渐变，色度为128）
+     */
+    byte[] newNv21Frame() {
+        byte[] data = new byte[width * height * 3 / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (byte) ((x + y) & 0xff);
+            }
+        }
+        for (int i = width * height; i < data.length; i++) {
+            data[i] = (byte) 128;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,40 @@
+package cn.szx.simplescanner.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 识别结果的UTF-8解码（Result.fromSymbol中对getDataBytes的处理）
+ * <p>
+ * 分别测试一维码（纯数字）、二维码中的网址和中文内容
+ */
+@State(Scope.Thread)
+public class ResultDecodingBenchmark {
+    @Param({"EAN13", "URL", "CJK"})
+    public String payload;
+
+    private byte[] dataBytes;
+
+    @Setup
+    public void setup() {
+        String contents;
+        if ("EAN13".equals(payload)) {
+            contents = "6901234567892";
+        } else if ("URL".equals(payload)) {
+            contents = "https://github.com/al4fun/SimpleScanner?from=qrcode&id=0123456789abcdef";
+        } else {
+            contents = "扫码测试：商品名称、规格、批号、生产日期、有效期至";
+        }
+        dataBytes = contents.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decodeUtf8() {
+        return new String(dataBytes, StandardCharsets.UTF_8);
+    }
+}
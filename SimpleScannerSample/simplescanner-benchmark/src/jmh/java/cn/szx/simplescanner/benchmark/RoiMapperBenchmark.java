@@ -0,0 +1,59 @@
+package cn.szx.simplescanner.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.core.RoiMapper;
+
+/**
+ * 扫码区域的坐标换算
+ * <p>
+ * viewToFrame：getScaledRect + getRotatedRect + 截取区域限制在图像范围内（不使用缓存时每帧的开销）<br/>
+ * frameToView：mapPreviewRectToView，把码的位置映射回View（每个识别结果一次）
+ */
+@State(Scope.Thread)
+public class RoiMapperBenchmark {
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Param({FrameSize.VGA, FrameSize.HD, FrameSize.FULL_HD})
+    public String size;
+
+    @Param({"0", "1", "2", "3"})
+    public int rotationCount;
+
+    private int width, height;//相机图像（未旋转）的宽高
+    private int rotatedWidth, rotatedHeight;//旋转为与屏幕方向一致后的宽高
+    private Roi framingRect;
+    private Roi symbolRect;
+
+    @Setup
+    public void setup() {
+        FrameSize frameSize = new FrameSize(size);
+        width = frameSize.width;
+        height = frameSize.height;
+        boolean swap = rotationCount % 2 == 1;
+        rotatedWidth = swap ? height : width;
+        rotatedHeight = swap ? width : height;
+
+        framingRect = new Roi(VIEW_WIDTH / 5, VIEW_HEIGHT / 3, VIEW_WIDTH * 4 / 5, VIEW_HEIGHT * 2 / 3);
+        symbolRect = new Roi(width / 3, height / 3, width / 2, height / 2);
+    }
+
+    @Benchmark
+    public Roi viewToFrame() {
+        Roi scaled = RoiMapper.scaleToFrame(framingRect, VIEW_WIDTH, VIEW_HEIGHT, rotatedWidth, rotatedHeight);
+        Roi rotated = RoiMapper.unrotate(scaled, width, height, rotationCount);
+        return RoiMapper.clamp(rotated, width, height);
+    }
+
+    @Benchmark
+    public Roi frameToView() {
+        Roi rotated = RoiMapper.rotate(symbolRect, width, height, rotationCount);
+        return RoiMapper.scaleToView(rotated, rotatedWidth, rotatedHeight, VIEW_WIDTH, VIEW_HEIGHT);
+    }
+}
@@ -0,0 +1,53 @@
+package cn.szx.simplescanner.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cn.szx.simplescanner.core.LuminanceUtils;
+
+/**
+ * 图像数据的旋转
+ * <p>
+ * rotateData：BarcodeScannerView.rotateData的实现，整帧旋转，每次分配新的数组<br/>
+ * cropAndRotate：ZBarScannerView方案一的实现，只截取并旋转扫码区域（画面中央60%*60%），结果数组复用
+ */
+@State(Scope.Thread)
+public class RotateDataBenchmark {
+    @Param({FrameSize.VGA, FrameSize.HD, FrameSize.FULL_HD})
+    public String size;
+
+    @Param({"0", "1", "2", "3"})
+    public int rotationCount;
+
+    private int width, height;
+    private int left, top, cropWidth, cropHeight;
+    private byte[] data;
+    private byte[] out;
+
+    @Setup
+    public void setup() {
+        FrameSize frameSize = new FrameSize(size);
+        width = frameSize.width;
+        height = frameSize.height;
+        data = frameSize.newNv21Frame();
+
+        cropWidth = width * 6 / 10;
+        cropHeight = height * 6 / 10;
+        left = (width - cropWidth) / 2;
+        top = (height - cropHeight) / 2;
+        out = new byte[cropWidth * cropHeight];
+    }
+
+    @Benchmark
+    public byte[] rotateData() {
+        return LuminanceUtils.rotate(data, width, height, rotationCount);
+    }
+
+    @Benchmark
+    public byte[] cropAndRotate() {
+        return LuminanceUtils.cropAndRotate(data, width, height, left, top, cropWidth, cropHeight, rotationCount, out);
+    }
+}
@@ -0,0 +1,187 @@
+package cn.szx.simplescanner.corpus;
+
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.Symbol;
+import net.sourceforge.zbar.SymbolSet;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.core.RoiMapper;
+import cn.szx.simplescanner.zbar.BarcodeFormat;
+import cn.szx.simplescanner.zbar.ZBarFrameScanner;
+
+/**
+ * 用合成的帧测试识别的速度和成功率，不需要相机，可以在Linux上运行（需要zbar的libzbarjni）
+ * <p>
+ * 模拟竖屏使用后置摄像头：相机图像为横屏，需要顺时针旋转90度，扫码框为画面中央的正方形（宽度的60%）。<br/>
+ * 每一帧与预览帧一样，先旋转扫码框得到截取区域，再通过ZBarFrameScanner截取并识别；
+ * 识别到与合成内容一致的结果即为成功。计时只包含截取和识别，不包含渲染。
+ * <p>
+ * 参数：--size 1280x720 --frames 100 --seed 1 --density 3 --formats EAN13,QRCODE --rotate-data --inverted
+ */
+public class CorpusRunner {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int ROTATION_COUNT = 1;//相机图像需要顺时针旋转几次（每次90度）
+    private static final int WARMUP_FRAMES = 20;
+    private static final List<BarcodeFormat> DEFAULT_FORMATS = Arrays.asList(BarcodeFormat.EAN13,
+            BarcodeFormat.EAN8, BarcodeFormat.UPCA, BarcodeFormat.CODE128, BarcodeFormat.CODE39, BarcodeFormat.QRCODE);
+
+    private final int width;
+    private final int height;
+    private final int density;
+    private final boolean rotateData;
+    private final Roi cropRect;//扫码区域在相机图像（未旋转）中的位置
+    private final FrameRenderer renderer;
+    private final ZBarFrameScanner scanner;
+    private final byte[] frame;
+
+    /**
+     * 一组帧（同一码格式、同一退化级别）的统计
+     */
+    private static class Stats {
+        int frames;
+        int decoded;
+        long scanNanos;
+
+        void add(Stats other) {
+            frames += other.frames;
+            decoded += other.decoded;
+            scanNanos += other.scanNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = scanNanos / 1e9;
+            return String.format("%6d %8.1f%% %10.2f %10.0f %10.0f", frames, 100.0 * decoded / frames,
+                    scanNanos / 1e6 / frames, frames / seconds, decoded / seconds);
+        }
+    }
+
+    public CorpusRunner(int width, int height, int density, boolean rotateData) {
+        this.width = width;
+        this.height = height;
+        this.density = density;
+        this.rotateData = rotateData;
+
+        //扫码框在已旋转（竖屏）的图像中的位置，再旋转为相机图像中的截取区域（与BarcodeScannerView.getRotatedRect相同）
+        int rotatedWidth = height, rotatedHeight = width;
+        int side = rotatedWidth * 6 / 10;
+        int left = (rotatedWidth - side) / 2, top = (rotatedHeight - side) / 2;
+        Roi framingRect = new Roi(left, top, left + side, top + side);
+        cropRect = RoiMapper.clamp(RoiMapper.unrotate(framingRect, width, height, ROTATION_COUNT), width, height);
+
+        renderer = new FrameRenderer(width, height);
+        scanner = new ZBarFrameScanner(BarcodeFormat.ALL_FORMATS);
+        scanner.setDensity(density);
+        frame = renderer.newFrame();
+    }
+
+    /**
+     * 合成并识别frames帧
+     */
+    private Stats run(BarcodeFormat format, Degradation degradation, int frames, Random random) {
+        Stats stats = new Stats();
+        for (int i = 0; i < frames; i++) {
+            SyntheticSymbol symbol = SyntheticSymbol.random(format, random);
+            //码在屏幕上是正的，因此在相机图像中逆时针旋转了ROTATION_COUNT*90度
+            renderer.render(symbol, degradation, cropRect, -90 * ROTATION_COUNT, random, frame);
+
+            long start = System.nanoTime();
+            Image barcode = scanner.crop(frame, width, height, cropRect.left, cropRect.top,
+                    cropRect.width(), cropRect.height(), ROTATION_COUNT, rotateData);
+            SymbolSet syms = scanner.scan(barcode, false);
+            boolean decoded = syms != null && contains(syms, symbol.contents);
+            stats.scanNanos += System.nanoTime() - start;
+
+            stats.frames++;
+            if (decoded) stats.decoded++;
+        }
+        return stats;
+    }
+
+    private static boolean contains(SymbolSet syms, String contents) {
+        for (Symbol sym : syms) {
+            if (sym.getType() == Symbol.PARTIAL) continue;
+            if (contents.equals(new String(sym.getDataBytes(), UTF_8))) return true;
+        }
+        return false;
+    }
+
+    public void release() {
+        scanner.release();
+    }
+
+    public static void main(String[] args) {
+        int width = 1280, height = 720;
+        int frames = 100;
+        long seed = 1;
+        int density = ZBarFrameScanner.DEFAULT_DENSITY;
+        List<BarcodeFormat> formats = DEFAULT_FORMATS;
+        boolean rotateData = false;
+        boolean inverted = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--size")) {
+                String[] parts = args[++i].split("x");
+                width = Integer.parseInt(parts[0]);
+                height = Integer.parseInt(parts[1]);
+            } else if (arg.equals("--frames")) {
+                frames = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if (arg.equals("--density")) {
+                density = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--formats")) {
+                formats = new ArrayList<>();
+                for (String name : args[++i].split(",")) {
+                    formats.add(formatByName(name.trim()));
+                }
+            } else if (arg.equals("--rotate-data")) {
+                rotateData = true;
+            } else if (arg.equals("--inverted")) {
+                inverted = true;
+            } else {
+                throw new IllegalArgumentException("未知的参数：" + arg);
+            }
+        }
+        if (frames <= 0 || density <= 0) {
+            throw new IllegalArgumentException("frames和density必须大于0");
+        }
+
+        CorpusRunner runner = new CorpusRunner(width, height, density, rotateData);
+        try {
+            System.out.printf("frame=%dx%d crop=%s density=%d rotateData=%b seed=%d%n",
+                    width, height, runner.cropRect, density, rotateData, seed);
+            Random random = new Random(seed);
+            runner.run(formats.get(0), Degradation.level(0), WARMUP_FRAMES, random);//预热，不统计
+
+            for (int level = 0; level < Degradation.LEVEL_COUNT; level++) {
+                Degradation degradation = Degradation.level(level).withInverted(inverted);
+                System.out.printf("%nlevel %d: %s%n", level, degradation);
+                System.out.printf("%-8s %6s %9s %10s %10s %10s%n",
+                        "format", "frames", "success", "ms/frame", "frames/s", "decodes/s");
+                Stats total = new Stats();
+                for (BarcodeFormat format : formats) {
+                    Stats stats = runner.run(format, degradation, frames, random);
+                    System.out.printf("%-8s %s%n", format.getName(), stats);
+                    total.add(stats);
+                }
+                System.out.printf("%-8s %s%n", "all", total);
+            }
+        } finally {
+            runner.release();
+        }
+    }
+
+    private static BarcodeFormat formatByName(String name) {
+        for (BarcodeFormat format : DEFAULT_FORMATS) {
+            if (format.getName().equalsIgnoreCase(name)) return format;
+        }
+        throw new IllegalArgumentException("不支持的码格式：" + name);
+    }
+}
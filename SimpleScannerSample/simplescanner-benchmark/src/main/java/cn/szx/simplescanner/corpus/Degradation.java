@@ -0,0 +1,64 @@
+package cn.szx.simplescanner.corpus;
+
+/**
+ * 合成帧的画质退化参数
+ * <p>
+ * level(0)为清晰、正对、高对比度的码，级别越高各项退化越严重；反色（浅色码、深色背景）与级别无关，单独设置。<br/>
+ * 旋转和透视为最大值，每帧在范围内随机取值
+ */
+public class Degradation {
+    public static final int LEVEL_COUNT = 5;
+
+    private static final double[] BLUR_SIGMA = {0, 0.6, 1.2, 1.8, 2.5};
+    private static final double[] NOISE_SIGMA = {0, 4, 8, 14, 20};
+    private static final double[] MAX_ROTATION = {0, 10, 30, 60, 90};
+    private static final double[] MAX_PERSPECTIVE = {0, 0.05, 0.10, 0.18, 0.25};
+    private static final double[] CONTRAST = {1.0, 0.8, 0.6, 0.45, 0.3};
+
+    public final double blurSigma;//高斯模糊的标准差（像素）
+    public final double noiseSigma;//高斯噪声的标准差（亮度值）
+    public final double maxRotation;//最大旋转角度（度），在±maxRotation内随机
+    public final double maxPerspective;//最大透视程度，码的一边相对于对边缩短的比例
+    public final double contrast;//深色与浅色的亮度差相对于完全对比度的比例，范围(0, 1]
+    public final boolean inverted;//是否反色
+
+    public Degradation(double blurSigma, double noiseSigma, double maxRotation, double maxPerspective,
+                       double contrast, boolean inverted) {
+        if (blurSigma < 0 || noiseSigma < 0 || maxRotation < 0 || maxPerspective < 0 || maxPerspective >= 1) {
+            throw new IllegalArgumentException("blurSigma、noiseSigma、maxRotation不能小于0，maxPerspective必须在[0, 1)之间");
+        }
+        if (contrast <= 0 || contrast > 1) {
+            throw new IllegalArgumentException("contrast必须在(0, 1]之间");
+        }
+        this.blurSigma = blurSigma;
+        this.noiseSigma = noiseSigma;
+        this.maxRotation = maxRotation;
+        this.maxPerspective = maxPerspective;
+        this.contrast = contrast;
+        this.inverted = inverted;
+    }
+
+    /**
+     * 预设的退化级别，0~LEVEL_COUNT-1
+     */
+    public static Degradation level(int level) {
+        if (level < 0 || level >= LEVEL_COUNT) {
+            throw new IllegalArgumentException("level必须在0~" + (LEVEL_COUNT - 1) + "之间");
+        }
+        return new Degradation(BLUR_SIGMA[level], NOISE_SIGMA[level], MAX_ROTATION[level],
+                MAX_PERSPECTIVE[level], CONTRAST[level], false);
+    }
+
+    /**
+     * 其他参数不变，设置是否反色
+     */
+    public Degradation withInverted(boolean inverted) {
+        return new Degradation(blurSigma, noiseSigma, maxRotation, maxPerspective, contrast, inverted);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("blur=%.1f noise=%.0f rotation=+-%.0f perspective=%.2f contrast=%.2f%s",
+                blurSigma, noiseSigma, maxRotation, maxPerspective, contrast, inverted ? " inverted" : "");
+    }
+}
@@ -0,0 +1,254 @@
+package cn.szx.simplescanner.corpus;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import cn.szx.simplescanner.core.Roi;
+
+/**
+ * 把合成的码渲染为一帧预览数据（NV21，色度为128），并按Degradation加入旋转、透视、低对比度、反色、模糊和噪声
+ * <p>
+ * 码只渲染在target区域内（即扫码区域，识别时只读取这一部分），区域外为均匀的背景。<br/>
+ * 每个像素按3*3个子采样点取平均，模拟模块边缘落在像素中间时的灰度过渡。
+ * 同一个实例复用内部缓冲区，只能在一个线程中使用
+ */
+public class FrameRenderer {
+    private static final int SUBSAMPLES = 3;//每个像素每个方向的子采样点数
+    private static final double FULL_CONTRAST = 107.5;//完全对比度时深色、浅色与中间亮度的差，即亮度20和235
+    private static final double MID_LUMINANCE = 127.5;
+    private static final double BAR_HEIGHT_RATIO = 0.4;//一维码条的高度与宽度之比
+
+    public final int width;
+    public final int height;
+    private float[] region = new float[0];//target区域的亮度，不够大时重新分配
+    private float[] blurred = new float[0];
+
+    public FrameRenderer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width和height必须大于0");
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 新分配一帧的数据
+     */
+    public byte[] newFrame() {
+        return new byte[width * height * 3 / 2];
+    }
+
+    /**
+     * 渲染一帧
+     *
+     * @param target       码所在的区域，码（含空白区）缩放到在任意旋转角度下都能放入该区域
+     * @param baseRotation 在随机旋转之外额外旋转的角度（度，顺时针），用于模拟相机图像相对于屏幕的旋转
+     * @param out          结果，长度不能小于width*height*3/2
+     */
+    public void render(SyntheticSymbol symbol, Degradation degradation, Roi target, double baseRotation,
+                       Random random, byte[] out) {
+        Roi area = new Roi(Math.max(target.left, 0), Math.max(target.top, 0),
+                Math.min(target.right, width), Math.min(target.bottom, height));
+        if (area.isEmpty()) {
+            throw new IllegalArgumentException("target超出了帧的范围");
+        }
+        if (out.length < width * height * 3 / 2) {
+            throw new IllegalArgumentException("out的长度不足");
+        }
+
+        double contrast = FULL_CONTRAST * degradation.contrast;
+        float dark = (float) (MID_LUMINANCE - contrast);
+        float light = (float) (MID_LUMINANCE + contrast);
+        if (degradation.inverted) {//浅色的码印在深色的背景上
+            float swap = dark;
+            dark = light;
+            light = swap;
+        }
+
+        //1.背景和色度
+        Arrays.fill(out, 0, width * height, (byte) Math.round(light));
+        Arrays.fill(out, width * height, width * height * 3 / 2, (byte) 128);
+
+        //2.在target区域内按透视变换采样码的模块
+        int areaWidth = area.width();
+        int areaHeight = area.height();
+        int count = areaWidth * areaHeight;
+        if (region.length < count) {
+            region = new float[count];
+            blurred = new float[count];
+        }
+        double[] inverse = inverseHomography(symbol, degradation, target, baseRotation, random);
+        for (int y = 0; y < areaHeight; y++) {
+            for (int x = 0; x < areaWidth; x++) {
+                int darkSamples = 0;
+                for (int sy = 0; sy < SUBSAMPLES; sy++) {
+                    for (int sx = 0; sx < SUBSAMPLES; sx++) {
+                        double px = area.left + x + (sx + 0.5) / SUBSAMPLES;
+                        double py = area.top + y + (sy + 0.5) / SUBSAMPLES;
+                        if (isDark(symbol, inverse, px, py)) darkSamples++;
+                    }
+                }
+                float ratio = (float) darkSamples / (SUBSAMPLES * SUBSAMPLES);
+                region[y * areaWidth + x] = light + (dark - light) * ratio;
+            }
+        }
+
+        //3.模糊、噪声
+        if (degradation.blurSigma > 0) {
+            gaussianBlur(areaWidth, areaHeight, degradation.blurSigma);
+        }
+        for (int y = 0; y < areaHeight; y++) {
+            int dst = (area.top + y) * width + area.left;
+            for (int x = 0; x < areaWidth; x++) {
+                double value = region[y * areaWidth + x];
+                if (degradation.noiseSigma > 0) {
+                    value += random.nextGaussian() * degradation.noiseSigma;
+                }
+                out[dst + x] = (byte) Math.max(0, Math.min(255, (int) Math.round(value)));
+            }
+        }
+    }
+
+    /**
+     * 帧中的点(px, py)是否落在码的深色模块上
+     */
+    private static boolean isDark(SyntheticSymbol symbol, double[] inverse, double px, double py) {
+        double w = inverse[6] * px + inverse[7] * py + inverse[8];
+        double u = (inverse[0] * px + inverse[1] * py + inverse[2]) / w;//码（含空白区）中的相对位置，[0, 1)
+        double v = (inverse[3] * px + inverse[4] * py + inverse[5]) / w;
+        if (u < 0 || u >= 1 || v < 0 || v >= 1) return false;
+
+        boolean[][] modules = symbol.modules;
+        int columns = modules[0].length;
+        int column = (int) (u * symbolWidth(symbol)) - symbol.quietZone;
+        int row = (int) (v * symbolHeight(symbol)) - symbol.quietZone;
+        if (column < 0 || column >= columns || row < 0) return false;
+        if (symbol.is2D()) {
+            return row < modules.length && modules[row][column];
+        }
+        return row < barHeight(symbol) && modules[0][column];
+    }
+
+    /**
+     * 码（含空白区）的宽，单位为模块
+     */
+    private static int symbolWidth(SyntheticSymbol symbol) {
+        return symbol.modules[0].length + 2 * symbol.quietZone;
+    }
+
+    /**
+     * 码（含空白区）的高，单位为模块
+     */
+    private static int symbolHeight(SyntheticSymbol symbol) {
+        int rows = symbol.is2D() ? symbol.modules.length : barHeight(symbol);
+        return rows + 2 * symbol.quietZone;
+    }
+
+    private static int barHeight(SyntheticSymbol symbol) {
+        return (int) Math.round(symbol.modules[0].length * BAR_HEIGHT_RATIO);
+    }
+
+    /**
+     * 计算从帧中的坐标到码中相对位置（[0, 1)*[0, 1)）的透视变换矩阵（3*3，按行排列）
+     * <p>
+     * 码的中心与target的中心重合；透视使码随机的一边缩短，再随机旋转
+     */
+    private static double[] inverseHomography(SyntheticSymbol symbol, Degradation degradation, Roi target,
+                                              double baseRotation, Random random) {
+        double symbolWidth = symbolWidth(symbol);
+        double symbolHeight = symbolHeight(symbol);
+        double scale = 0.95 * Math.min(target.width(), target.height()) / Math.hypot(symbolWidth, symbolHeight);
+        double halfWidth = symbolWidth * scale / 2;
+        double halfHeight = symbolHeight * scale / 2;
+
+        //四个角：左上、右上、右下、左下（以码的中心为原点）
+        double[] xs = {-halfWidth, halfWidth, halfWidth, -halfWidth};
+        double[] ys = {-halfHeight, -halfHeight, halfHeight, halfHeight};
+
+        //透视：随机一边以其中点为中心缩短
+        double perspective = degradation.maxPerspective * random.nextDouble();
+        int edge = random.nextInt(4);
+        int a = edge, b = (edge + 1) % 4;
+        double midX = (xs[a] + xs[b]) / 2, midY = (ys[a] + ys[b]) / 2;
+        xs[a] = midX + (xs[a] - midX) * (1 - perspective);
+        ys[a] = midY + (ys[a] - midY) * (1 - perspective);
+        xs[b] = midX + (xs[b] - midX) * (1 - perspective);
+        ys[b] = midY + (ys[b] - midY) * (1 - perspective);
+
+        //旋转并平移到target的中心
+        double angle = Math.toRadians(baseRotation + degradation.maxRotation * (2 * random.nextDouble() - 1));
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        double centerX = (target.left + target.right) / 2.0, centerY = (target.top + target.bottom) / 2.0;
+        for (int i = 0; i < 4; i++) {
+            double x = xs[i], y = ys[i];
+            xs[i] = centerX + x * cos - y * sin;
+            ys[i] = centerY + x * sin + y * cos;
+        }
+
+        return invert(squareToQuad(xs, ys));
+    }
+
+    /**
+     * 把单位正方形的四个角(0,0)、(1,0)、(1,1)、(0,1)依次映射到四边形的四个角的透视变换
+     */
+    private static double[] squareToQuad(double[] xs, double[] ys) {
+        double dx1 = xs[1] - xs[2], dx2 = xs[3] - xs[2], dx3 = xs[0] - xs[1] + xs[2] - xs[3];
+        double dy1 = ys[1] - ys[2], dy2 = ys[3] - ys[2], dy3 = ys[0] - ys[1] + ys[2] - ys[3];
+        double denominator = dx1 * dy2 - dx2 * dy1;
+        double g = (dx3 * dy2 - dx2 * dy3) / denominator;
+        double h = (dx1 * dy3 - dx3 * dy1) / denominator;
+        return new double[]{
+                xs[1] - xs[0] + g * xs[1], xs[3] - xs[0] + h * xs[3], xs[0],
+                ys[1] - ys[0] + g * ys[1], ys[3] - ys[0] + h * ys[3], ys[0],
+                g, h, 1
+        };
+    }
+
+    /**
+     * 3*3矩阵的伴随矩阵（与逆矩阵只差一个比例，对透视变换而言等价）
+     */
+    private static double[] invert(double[] m) {
+        return new double[]{
+                m[4] * m[8] - m[5] * m[7], m[2] * m[7] - m[1] * m[8], m[1] * m[5] - m[2] * m[4],
+                m[5] * m[6] - m[3] * m[8], m[0] * m[8] - m[2] * m[6], m[2] * m[3] - m[0] * m[5],
+                m[3] * m[7] - m[4] * m[6], m[1] * m[6] - m[0] * m[7], m[0] * m[4] - m[1] * m[3]
+        };
+    }
+
+    /**
+     * 可分离的高斯模糊（先横向后纵向），边缘处重复边缘像素
+     */
+    private void gaussianBlur(int w, int h, double sigma) {
+        int radius = (int) Math.ceil(sigma * 3);
+        float[] kernel = new float[2 * radius + 1];
+        float sum = 0;
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = (float) Math.exp(-i * i / (2 * sigma * sigma));
+            sum += kernel[i + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                float value = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    int sx = Math.max(0, Math.min(w - 1, x + k));
+                    value += kernel[k + radius] * region[y * w + sx];
+                }
+                blurred[y * w + x] = value;
+            }
+        }
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                float value = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    int sy = Math.max(0, Math.min(h - 1, y + k));
+                    value += kernel[k + radius] * blurred[sy * w + x];
+                }
+                region[y * w + x] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package cn.szx.simplescanner.corpus;
+
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.Symbol;
+import net.sourceforge.zbar.SymbolSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import cn.szx.simplescanner.core.CapturedFrame;
+import cn.szx.simplescanner.core.FrameCaptureReader;
+import cn.szx.simplescanner.core.FrameDecoder;
+import cn.szx.simplescanner.core.FramePipeline;
+import cn.szx.simplescanner.core.PreviewFrame;
+import cn.szx.simplescanner.core.ReplayFrameSource;
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.zbar.BarcodeFormat;
+import cn.szx.simplescanner.zbar.ZBarFrameScanner;
+
+/**
+ * 回放现场录制的预览帧（BarcodeScannerView.startFrameCapture），不需要相机，可以在Linux上运行（需要zbar的libzbarjni）
+ * <p>
+ * 帧通过ReplayFrameSource放入FramePipeline，每个解码线程按录制时的旋转次数和扫码区域截取并识别，
+ * 与预览帧的识别过程相同。输出识别到的内容、识别成功的帧数和每帧截取+识别的耗时。<br/>
+ * 多个解码线程时，与相机一样可能有帧因解码队列已满而被丢弃（dropped）；需要逐帧识别时使用一个线程。
+ * <p>
+ * 参数：录制文件 --speed recorded|max --threads 1 --density 3 --rotate-data --verbose
+ */
+public class ReplayRunner {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ReplayFrameSource frameSource;
+    private final int density;
+    private final boolean rotateData;
+    private final boolean verbose;
+
+    //以下统计在各解码线程中写入，访问时需同步
+    private final long[] scanNanos;//每一帧截取+识别的耗时，未识别的帧为-1
+    private final Map<String, int[]> contents = new LinkedHashMap<>();//识别到的内容 -> {帧数, 第一次识别到的帧序号}
+    private int framesScanned = 0;
+    private int framesDecoded = 0;
+
+    public ReplayRunner(FrameCaptureReader reader, boolean realTime, int density, boolean rotateData, boolean verbose) {
+        this.frameSource = new ReplayFrameSource(reader, realTime);
+        this.density = density;
+        this.rotateData = rotateData;
+        this.verbose = verbose;
+        scanNanos = new long[reader.getFrameCount()];
+        Arrays.fill(scanNanos, -1);
+    }
+
+    /**
+     * 使用录制时的旋转次数和扫码区域识别一帧
+     */
+    private class ReplayDecoder implements FrameDecoder {
+        private final ZBarFrameScanner scanner;
+
+        ReplayDecoder() {
+            scanner = new ZBarFrameScanner(BarcodeFormat.ALL_FORMATS);
+            scanner.setDensity(density);
+        }
+
+        @Override
+        public Runnable decode(PreviewFrame frame) {
+            CapturedFrame captured = frameSource.getFrame(frame.data);
+            Roi cropRect = captured.cropRect;
+            if (cropRect.isEmpty()) return null;
+
+            long start = System.nanoTime();
+            Image barcode = scanner.crop(frame.data, frame.width, frame.height, cropRect.left, cropRect.top,
+                    cropRect.width(), cropRect.height(), captured.rotationCount, rotateData);
+            SymbolSet syms = scanner.scan(barcode, false);
+            long nanos = System.nanoTime() - start;
+
+            List<String> results = new ArrayList<>();
+            if (syms != null) {
+                for (Symbol sym : syms) {
+                    if (sym.getType() == Symbol.PARTIAL) continue;
+                    BarcodeFormat format = BarcodeFormat.getFormatById(sym.getType());
+                    results.add(format.getName() + ": " + new String(sym.getDataBytes(), UTF_8));
+                }
+            }
+            record(captured, nanos, results);
+            return null;//结果已记录，不需要回调（也不会使FramePipeline暂停）
+        }
+
+        @Override
+        public void release() {
+            scanner.release();
+        }
+    }
+
+    private synchronized void record(CapturedFrame captured, long nanos, List<String> results) {
+        scanNanos[captured.index] = nanos;
+        framesScanned++;
+        if (!results.isEmpty()) framesDecoded++;
+        for (String result : results) {
+            int[] entry = contents.get(result);
+            if (entry == null) {
+                contents.put(result, new int[]{1, captured.index});
+            } else {
+                entry[0]++;
+            }
+        }
+        if (verbose) {
+            System.out.printf("#%-5d %dx%d rotation=%d crop=%s %.2fms %s%n", captured.index, captured.width,
+                    captured.height, captured.rotationCount, captured.cropRect, nanos / 1e6, results);
+        }
+    }
+
+    /**
+     * 回放所有帧，等待识别完毕后返回耗时（纳秒）
+     */
+    public long run(int threads) throws InterruptedException {
+        FrameDecoder[] frameDecoders = new FrameDecoder[threads];
+        for (int i = 0; i < threads; i++) {
+            frameDecoders[i] = new ReplayDecoder();
+        }
+        FramePipeline framePipeline = new FramePipeline(frameSource, frameDecoders, 1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        long start = System.nanoTime();
+        frameSource.start(framePipeline);
+        try {
+            frameSource.awaitFinished();
+        } finally {
+            frameSource.stop();
+            framePipeline.quit();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private synchronized void printSummary(int frameCount, long wallNanos) {
+        int dispatched = frameSource.getFramesDispatched();
+        System.out.printf("frames=%d dispatched=%d skipped=%d dropped=%d scanned=%d decoded=%d (%.1f%%) wall=%.0fms%n",
+                frameCount, dispatched, frameSource.getFramesSkipped(), dispatched - framesScanned, framesScanned,
+                framesDecoded, framesScanned == 0 ? 0 : 100.0 * framesDecoded / framesScanned, wallNanos / 1e6);
+
+        long[] sorted = new long[framesScanned];
+        int n = 0;
+        for (long nanos : scanNanos) {
+            if (nanos >= 0) sorted[n++] = nanos;
+        }
+        Arrays.sort(sorted);
+        if (n > 0) {
+            System.out.printf("crop+scan ms/frame: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n", percentile(sorted, 50),
+                    percentile(sorted, 90), percentile(sorted, 99), sorted[n - 1] / 1e6);
+        }
+
+        System.out.printf("%n%-8s %-8s %s%n", "frames", "first", "contents");
+        for (Map.Entry<String, int[]> entry : contents.entrySet()) {
+            System.out.printf("%-8d #%-7d %s%n", entry.getValue()[0], entry.getValue()[1], entry.getKey());
+        }
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File file = null;
+        boolean realTime = false;
+        int threads = 1;
+        int density = ZBarFrameScanner.DEFAULT_DENSITY;
+        boolean rotateData = false;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--speed")) {
+                String speed = args[++i];
+                if (speed.equals("recorded")) {
+                    realTime = true;
+                } else if (!speed.equals("max")) {
+                    throw new IllegalArgumentException("--speed只能为recorded或max");
+                }
+            } else if (arg.equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--density")) {
+                density = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--rotate-data")) {
+                rotateData = true;
+            } else if (arg.equals("--verbose")) {
+                verbose = true;
+            } else if (!arg.startsWith("--") && file == null) {
+                file = new File(arg);
+            } else {
+                throw new IllegalArgumentException("未知的参数：" + arg);
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("需要指定录制文件");
+        }
+        if (threads <= 0 || density <= 0) {
+            throw new IllegalArgumentException("threads和density必须大于0");
+        }
+
+        FrameCaptureReader reader = new FrameCaptureReader(file);
+        try {
+            System.out.printf("file=%s frames=%d speed=%s threads=%d density=%d rotateData=%b%n", file,
+                    reader.getFrameCount(), realTime ? "recorded" : "max", threads, density, rotateData);
+            ReplayRunner runner = new ReplayRunner(reader, realTime, density, rotateData, verbose);
+            long wallNanos = runner.run(threads);
+            runner.printSummary(reader.getFrameCount(), wallNanos);
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,605 @@
+package cn.szx.simplescanner.corpus;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import cn.szx.simplescanner.zbar.BarcodeFormat;
+
+/**
+ * 合成的码：码格式、识别后应得到的内容，以及编码得到的模块矩阵
+ * <p>
+ * 一维码的矩阵只有一行（每个元素为一个模块，true为条），渲染时纵向拉伸；二维码为正方形矩阵（true为深色模块）。<br/>
+ * 支持EAN13、EAN8、UPCA、CODE128、CODE39、QRCODE
+ */
+public class SyntheticSymbol {
+    public final BarcodeFormat format;
+    public final String contents;//识别后应得到的内容（含校验位）
+    public final boolean[][] modules;//[行][列]
+    public final int quietZone;//四周空白区的宽度（模块数）
+
+    private SyntheticSymbol(BarcodeFormat format, String contents, boolean[][] modules, int quietZone) {
+        this.format = format;
+        this.contents = contents;
+        this.modules = modules;
+        this.quietZone = quietZone;
+    }
+
+    public boolean is2D() {
+        return modules.length > 1;
+    }
+
+    /**
+     * 编码
+     *
+     * @param payload EAN13、EAN8、UPCA为不含校验位的数字（分别为12、7、11位）；
+     *                CODE128为ASCII可打印字符；CODE39为大写字母、数字及"-. $/+%"；QRCODE为ASCII字符，不超过106个
+     */
+    public static SyntheticSymbol encode(BarcodeFormat format, String payload) {
+        if (format == BarcodeFormat.EAN13) {
+            String digits = withCheckDigit(payload, 12);
+            return new SyntheticSymbol(format, digits, new boolean[][]{Upc.ean13(digits)}, 10);
+        } else if (format == BarcodeFormat.EAN8) {
+            String digits = withCheckDigit(payload, 7);
+            return new SyntheticSymbol(format, digits, new boolean[][]{Upc.ean8(digits)}, 10);
+        } else if (format == BarcodeFormat.UPCA) {//UPCA即首位为0的EAN13，zbar返回12位
+            String digits = withCheckDigit(payload, 11);
+            return new SyntheticSymbol(format, digits, new boolean[][]{Upc.ean13("0" + digits)}, 10);
+        } else if (format == BarcodeFormat.CODE128) {
+            return new SyntheticSymbol(format, payload, new boolean[][]{Code128.encode(payload)}, 10);
+        } else if (format == BarcodeFormat.CODE39) {
+            return new SyntheticSymbol(format, payload, new boolean[][]{Code39.encode(payload)}, 10);
+        } else if (format == BarcodeFormat.QRCODE) {
+            return new SyntheticSymbol(format, payload, QrCode.encode(payload), 4);
+        }
+        throw new IllegalArgumentException("不支持的码格式：" + format.getName());
+    }
+
+    /**
+     * 生成随机内容的码
+     */
+    public static SyntheticSymbol random(BarcodeFormat format, Random random) {
+        String payload;
+        if (format == BarcodeFormat.EAN13) {
+            //首位不为0（否则被识别为UPCA），也不会以978、979开头（否则被识别为ISBN13）
+            payload = (1 + random.nextInt(8)) + randomString(random, "0123456789", 11);
+        } else if (format == BarcodeFormat.EAN8) {
+            payload = randomString(random, "0123456789", 7);
+        } else if (format == BarcodeFormat.UPCA) {
+            payload = randomString(random, "0123456789", 11);
+        } else if (format == BarcodeFormat.CODE128) {
+            payload = randomString(random, "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-", 10);
+        } else if (format == BarcodeFormat.CODE39) {
+            payload = randomString(random, "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ", 8);
+        } else {
+            payload = "https://example.com/item/" + randomString(random, "0123456789abcdefghijklmnopqrstuvwxyz", 12);
+        }
+        return encode(format, payload);
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 在payload后加上EAN/UPC的校验位
+     */
+    private static String withCheckDigit(String payload, int length) {
+        if (payload.length() != length || !payload.matches("[0-9]+")) {
+            throw new IllegalArgumentException("payload必须是" + length + "位数字");
+        }
+        int sum = 0;
+        for (int i = 0; i < length; i++) {//从右往左，奇数位权重为3
+            int digit = payload.charAt(length - 1 - i) - '0';
+            sum += i % 2 == 0 ? digit * 3 : digit;
+        }
+        return payload + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * 把宽度序列（条、空交替，从条开始）展开为模块
+     */
+    private static int appendWidths(boolean[] out, int pos, String widths, boolean startWithBar) {
+        boolean bar = startWithBar;
+        for (int i = 0; i < widths.length(); i++) {
+            int width = widths.charAt(i) - '0';
+            for (int j = 0; j < width; j++) {
+                out[pos++] = bar;
+            }
+            bar = !bar;
+        }
+        return pos;
+    }
+
+//--------------------------------------------------------------------------------------------------
+
+    /**
+     * EAN13、EAN8（UPCA按EAN13编码）
+     */
+    private static class Upc {
+        //L码（奇校验）的宽度序列，从空开始；G码为L码的宽度序列倒序，R码与L码宽度相同但从条开始
+        private static final String[] L_WIDTHS = {
+                "3211", "2221", "2122", "1411", "1132", "1231", "1114", "1312", "1213", "3112"
+        };
+        //EAN13首位决定左侧6位各用L码还是G码（1为G码）
+        private static final int[] FIRST_DIGIT_PARITY = {
+                0x00, 0x0B, 0x0D, 0x0E, 0x13, 0x19, 0x1C, 0x15, 0x16, 0x1A
+        };
+
+        static boolean[] ean13(String digits) {
+            boolean[] out = new boolean[95];
+            int pos = appendWidths(out, 0, "111", true);//起始符
+            int parity = FIRST_DIGIT_PARITY[digits.charAt(0) - '0'];
+            for (int i = 1; i <= 6; i++) {
+                String widths = L_WIDTHS[digits.charAt(i) - '0'];
+                if ((parity >> (6 - i) & 1) == 1) {
+                    widths = new StringBuilder(widths).reverse().toString();
+                }
+                pos = appendWidths(out, pos, widths, false);
+            }
+            pos = appendWidths(out, pos, "11111", false);//中间分隔符
+            for (int i = 7; i <= 12; i++) {
+                pos = appendWidths(out, pos, L_WIDTHS[digits.charAt(i) - '0'], true);
+            }
+            appendWidths(out, pos, "111", true);//终止符
+            return out;
+        }
+
+        static boolean[] ean8(String digits) {
+            boolean[] out = new boolean[67];
+            int pos = appendWidths(out, 0, "111", true);
+            for (int i = 0; i < 4; i++) {
+                pos = appendWidths(out, pos, L_WIDTHS[digits.charAt(i) - '0'], false);
+            }
+            pos = appendWidths(out, pos, "11111", false);
+            for (int i = 4; i < 8; i++) {
+                pos = appendWidths(out, pos, L_WIDTHS[digits.charAt(i) - '0'], true);
+            }
+            appendWidths(out, pos, "111", true);
+            return out;
+        }
+    }
+
+    /**
+     * CODE128，只使用字符集B（ASCII 32~127）
+     */
+    private static class Code128 {
+        //码值0~105的宽度序列（条、空交替，共11个模块）
+        private static final String[] PATTERNS = {
+                "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+                "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132",
+                "221231", "213212", "223112", "312131", "311222", "321122", "321221", "312212", "322112", "322211",
+                "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+                "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331",
+                "231131", "213113", "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111",
+                "314111", "221411", "431111", "111224", "111422", "121124", "121421", "141122", "141221", "112214",
+                "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+                "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141",
+                "214121", "412121", "111143", "111341", "131141", "114113", "114311", "411113", "411311", "113141",
+                "114131", "311141", "411131", "211412", "211214", "211232"
+        };
+        private static final int START_B = 104;
+        private static final String STOP = "2331112";//终止符，13个模块
+
+        static boolean[] encode(String payload) {
+            int[] codes = new int[payload.length() + 2];
+            codes[0] = START_B;
+            int checksum = START_B;
+            for (int i = 0; i < payload.length(); i++) {
+                char c = payload.charAt(i);
+                if (c < 32 || c > 127) {
+                    throw new IllegalArgumentException("CODE128（字符集B）不支持的字符：" + c);
+                }
+                codes[i + 1] = c - 32;
+                checksum += (c - 32) * (i + 1);
+            }
+            codes[codes.length - 1] = checksum % 103;
+
+            boolean[] out = new boolean[codes.length * 11 + 13];
+            int pos = 0;
+            for (int code : codes) {
+                pos = appendWidths(out, pos, PATTERNS[code], true);
+            }
+            appendWidths(out, pos, STOP, true);
+            return out;
+        }
+    }
+
+    /**
+     * CODE39（不含校验字符），窄单元1个模块，宽单元3个模块
+     */
+    private static class Code39 {
+        private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%*";
+        //9个单元（条、空交替）中哪3个为宽单元，最高位为第一个单元
+        private static final int[] ENCODINGS = {
+                0x034, 0x121, 0x061, 0x160, 0x031, 0x130, 0x070, 0x025, 0x124, 0x064,
+                0x109, 0x049, 0x148, 0x019, 0x118, 0x058, 0x00D, 0x10C, 0x04C, 0x01C,
+                0x103, 0x043, 0x142, 0x013, 0x112, 0x052, 0x007, 0x106, 0x046, 0x016,
+                0x181, 0x0C1, 0x1C0, 0x091, 0x190, 0x0D0, 0x085, 0x184, 0x0C4, 0x0A8,
+                0x0A2, 0x08A, 0x02A, 0x094
+        };
+        private static final int WIDE = 3;
+
+        static boolean[] encode(String payload) {
+            String text = "*" + payload + "*";//起始符和终止符
+            boolean[] out = new boolean[text.length() * (6 + 3 * WIDE + 1) - 1];//字符之间有一个窄空
+            int pos = 0;
+            for (int i = 0; i < text.length(); i++) {
+                int index = ALPHABET.indexOf(text.charAt(i));
+                if (index < 0 || (text.charAt(i) == '*' && i != 0 && i != text.length() - 1)) {
+                    throw new IllegalArgumentException("CODE39不支持的字符：" + text.charAt(i));
+                }
+                int encoding = ENCODINGS[index];
+                for (int element = 0; element < 9; element++) {
+                    int width = (encoding >> (8 - element) & 1) == 1 ? WIDE : 1;
+                    for (int j = 0; j < width; j++) {
+                        out[pos++] = element % 2 == 0;
+                    }
+                }
+                if (i < text.length() - 1) {
+                    out[pos++] = false;
+                }
+            }
+            return out;
+        }
+    }
+
+    /**
+     * QR码：字节模式，纠错等级M，版本1~6（根据内容长度选择最小的版本）
+     * <p>
+     * 版本1~6各只有一个校正图形，且没有版本信息，各版本的所有块长度相同
+     */
+    private static class QrCode {
+        //版本1~6在纠错等级M下的：总码字数、每块纠错码字数、块数
+        private static final int[] TOTAL_CODEWORDS = {26, 44, 70, 100, 134, 172};
+        private static final int[] EC_CODEWORDS_PER_BLOCK = {10, 16, 26, 18, 24, 16};
+        private static final int[] BLOCK_COUNT = {1, 1, 1, 2, 2, 4};
+        private static final int EC_LEVEL_M = 0;//纠错等级M在格式信息中的编码为00
+
+        private static final int[] EXP = new int[512];//GF(256)，本原多项式0x11d
+        private static final int[] LOG = new int[256];
+
+        static {
+            int x = 1;
+            for (int i = 0; i < 255; i++) {
+                EXP[i] = x;
+                LOG[x] = i;
+                x <<= 1;
+                if (x >= 256) x ^= 0x11d;
+            }
+            for (int i = 255; i < 512; i++) {
+                EXP[i] = EXP[i - 255];
+            }
+        }
+
+        static boolean[][] encode(String payload) {
+            byte[] bytes = new byte[payload.length()];
+            for (int i = 0; i < bytes.length; i++) {
+                char c = payload.charAt(i);
+                if (c > 127) {
+                    throw new IllegalArgumentException("只支持ASCII字符：" + c);
+                }
+                bytes[i] = (byte) c;
+            }
+
+            //1.选择能容纳内容的最小版本（模式指示符4位、字符计数8位）
+            int version = 0;
+            while (version < 6 && dataCodewords(version + 1) < bytes.length + 2) {
+                version++;
+            }
+            version++;
+            if (version > 6 || dataCodewords(version) < bytes.length + 2) {
+                throw new IllegalArgumentException("内容过长");
+            }
+
+            //2.数据码字、纠错码字，交错排列
+            byte[] data = dataCodewords(bytes, dataCodewords(version));
+            byte[] codewords = interleave(data, version);
+
+            //3.放置功能图形和数据，选择惩罚分最低的掩码
+            int size = 17 + 4 * version;
+            boolean[][] best = null;
+            int bestPenalty = Integer.MAX_VALUE;
+            for (int mask = 0; mask < 8; mask++) {
+                int[][] matrix = new int[size][size];
+                for (int[] row : matrix) {
+                    Arrays.fill(row, -1);//-1表示尚未放置
+                }
+                placeFunctionPatterns(matrix, version);
+                placeFormatInfo(matrix, mask);
+                placeData(matrix, codewords, mask);
+
+                boolean[][] modules = new boolean[size][size];
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        modules[y][x] = matrix[y][x] == 1;
+                    }
+                }
+                int penalty = penalty(modules);
+                if (penalty < bestPenalty) {
+                    bestPenalty = penalty;
+                    best = modules;
+                }
+            }
+            return best;
+        }
+
+        private static int dataCodewords(int version) {
+            return TOTAL_CODEWORDS[version - 1] - EC_CODEWORDS_PER_BLOCK[version - 1] * BLOCK_COUNT[version - 1];
+        }
+
+        /**
+         * 模式指示符、字符计数、数据、终止符，再用0xEC、0x11填充到capacity个码字
+         */
+        private static byte[] dataCodewords(byte[] bytes, int capacity) {
+            byte[] out = new byte[capacity];
+            out[0] = (byte) (0x40 | (bytes.length >> 4));//0100为字节模式
+            out[1] = (byte) ((bytes.length & 0x0f) << 4);
+            for (int i = 0; i < bytes.length; i++) {
+                out[i + 1] |= (byte) ((bytes[i] & 0xff) >> 4);
+                out[i + 2] = (byte) ((bytes[i] & 0x0f) << 4);
+            }
+            //最后半个字节为4位终止符（0000），之后用填充码字补足
+            for (int i = bytes.length + 2, j = 0; i < capacity; i++, j++) {
+                out[i] = (byte) (j % 2 == 0 ? 0xEC : 0x11);
+            }
+            return out;
+        }
+
+        /**
+         * 分块计算纠错码字，并交错排列数据码字和纠错码字
+         */
+        private static byte[] interleave(byte[] data, int version) {
+            int blockCount = BLOCK_COUNT[version - 1];
+            int ecLength = EC_CODEWORDS_PER_BLOCK[version - 1];
+            int dataLength = data.length / blockCount;
+
+            int[] generator = generatorPolynomial(ecLength);
+            byte[][] ec = new byte[blockCount][];
+            for (int b = 0; b < blockCount; b++) {
+                ec[b] = reedSolomon(data, b * dataLength, dataLength, generator);
+            }
+
+            byte[] out = new byte[TOTAL_CODEWORDS[version - 1]];
+            int pos = 0;
+            for (int i = 0; i < dataLength; i++) {
+                for (int b = 0; b < blockCount; b++) {
+                    out[pos++] = data[b * dataLength + i];
+                }
+            }
+            for (int i = 0; i < ecLength; i++) {
+                for (int b = 0; b < blockCount; b++) {
+                    out[pos++] = ec[b][i];
+                }
+            }
+            return out;
+        }
+
+        /**
+         * 生成多项式(x - a^0)(x - a^1)...(x - a^(degree-1))，系数从最高次开始
+         */
+        private static int[] generatorPolynomial(int degree) {
+            int[] poly = {1};
+            for (int i = 0; i < degree; i++) {
+                int[] next = new int[poly.length + 1];
+                for (int j = 0; j < poly.length; j++) {
+                    next[j] ^= poly[j];
+                    next[j + 1] ^= multiply(poly[j], EXP[i]);
+                }
+                poly = next;
+            }
+            return poly;
+        }
+
+        /**
+         * 数据多项式乘以x^degree后除以生成多项式，余数即为纠错码字
+         */
+        private static byte[] reedSolomon(byte[] data, int offset, int length, int[] generator) {
+            int degree = generator.length - 1;
+            int[] remainder = new int[degree];
+            for (int i = 0; i < length; i++) {
+                int factor = (data[offset + i] & 0xff) ^ remainder[0];
+                System.arraycopy(remainder, 1, remainder, 0, degree - 1);
+                remainder[degree - 1] = 0;
+                for (int j = 0; j < degree; j++) {
+                    remainder[j] ^= multiply(generator[j + 1], factor);
+                }
+            }
+            byte[] out = new byte[degree];
+            for (int i = 0; i < degree; i++) {
+                out[i] = (byte) remainder[i];
+            }
+            return out;
+        }
+
+        private static int multiply(int a, int b) {
+            if (a == 0 || b == 0) return 0;
+            return EXP[LOG[a] + LOG[b]];
+        }
+
+        /**
+         * 定位图形（含分隔符）、定位图形旁的格式信息区域、时序图形、校正图形、暗模块
+         */
+        private static void placeFunctionPatterns(int[][] matrix, int version) {
+            int size = matrix.length;
+            placeFinder(matrix, 0, 0);
+            placeFinder(matrix, size - 7, 0);
+            placeFinder(matrix, 0, size - 7);
+
+            for (int i = 8; i < size - 8; i++) {//时序图形
+                matrix[6][i] = (i + 1) % 2;
+                matrix[i][6] = (i + 1) % 2;
+            }
+
+            if (version >= 2) {//校正图形，中心为(size-7, size-7)
+                int center = size - 7;
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        int ring = Math.max(Math.abs(dx), Math.abs(dy));
+                        matrix[center + dy][center + dx] = ring == 1 ? 0 : 1;
+                    }
+                }
+            }
+
+            matrix[size - 8][8] = 1;//暗模块
+        }
+
+        /**
+         * 7*7的定位图形及其外围一圈分隔符（超出矩阵的部分忽略）
+         */
+        private static void placeFinder(int[][] matrix, int left, int top) {
+            int size = matrix.length;
+            for (int dy = -1; dy <= 7; dy++) {
+                for (int dx = -1; dx <= 7; dx++) {
+                    int x = left + dx, y = top + dy;
+                    if (x < 0 || y < 0 || x >= size || y >= size) continue;
+                    int ring = Math.max(Math.abs(dx - 3), Math.abs(dy - 3));
+                    matrix[y][x] = ring == 4 || ring == 2 ? 0 : 1;
+                }
+            }
+        }
+
+        /**
+         * 格式信息：纠错等级和掩码共5位，BCH(15,5)编码后与0x5412异或，放置两份
+         */
+        private static void placeFormatInfo(int[][] matrix, int mask) {
+            int size = matrix.length;
+            int data = EC_LEVEL_M << 3 | mask;
+            int bits = data << 10;
+            for (int i = 14; i >= 10; i--) {//除以生成多项式0x537，求余数
+                if ((bits >> i & 1) == 1) {
+                    bits ^= 0x537 << (i - 10);
+                }
+            }
+            bits = (data << 10 | bits) ^ 0x5412;
+
+            for (int i = 0; i < 15; i++) {
+                int bit = bits >> i & 1;//第i位（最低位为第0位）
+                //第一份，围绕左上角的定位图形
+                if (i < 6) {
+                    matrix[i][8] = bit;
+                } else if (i < 8) {
+                    matrix[i + 1][8] = bit;
+                } else if (i == 8) {
+                    matrix[8][7] = bit;
+                } else {
+                    matrix[8][14 - i] = bit;
+                }
+                //第二份，分布在右上角和左下角
+                if (i < 8) {
+                    matrix[8][size - 1 - i] = bit;
+                } else {
+                    matrix[size - 15 + i][8] = bit;
+                }
+            }
+        }
+
+        /**
+         * 从右下角开始，每两列一组之字形放置数据位，并应用掩码
+         */
+        private static void placeData(int[][] matrix, byte[] codewords, int mask) {
+            int size = matrix.length;
+            int bitCount = codewords.length * 8;
+            int bitIndex = 0;
+            boolean upward = true;
+            for (int right = size - 1; right > 0; right -= 2) {
+                if (right == 6) right = 5;//跳过竖直的时序图形
+                for (int i = 0; i < size; i++) {
+                    int y = upward ? size - 1 - i : i;
+                    for (int j = 0; j < 2; j++) {
+                        int x = right - j;
+                        if (matrix[y][x] != -1) continue;
+                        boolean bit = false;//剩余位为0
+                        if (bitIndex < bitCount) {
+                            bit = (codewords[bitIndex >> 3] >> (7 - (bitIndex & 7)) & 1) == 1;
+                            bitIndex++;
+                        }
+                        if (maskBit(mask, x, y)) {
+                            bit = !bit;
+                        }
+                        matrix[y][x] = bit ? 1 : 0;
+                    }
+                }
+                upward = !upward;
+            }
+        }
+
+        private static boolean maskBit(int mask, int x, int y) {
+            switch (mask) {
+                case 0:
+                    return (y + x) % 2 == 0;
+                case 1:
+                    return y % 2 == 0;
+                case 2:
+                    return x % 3 == 0;
+                case 3:
+                    return (y + x) % 3 == 0;
+                case 4:
+                    return (y / 2 + x / 3) % 2 == 0;
+                case 5:
+                    return y * x % 2 + y * x % 3 == 0;
+                case 6:
+                    return (y * x % 2 + y * x % 3) % 2 == 0;
+                default:
+                    return ((y + x) % 2 + y * x % 3) % 2 == 0;
+            }
+        }
+
+        /**
+         * 掩码的惩罚分：连续同色、2*2同色块、类似定位图形的1:1:3:1:1、深浅比例失衡
+         */
+        private static int penalty(boolean[][] modules) {
+            int size = modules.length;
+            int penalty = 0;
+            int dark = 0;
+            for (int a = 0; a < size; a++) {
+                int rowRun = 1, columnRun = 1;
+                for (int b = 0; b < size; b++) {
+                    if (modules[a][b]) dark++;
+                    if (b > 0) {
+                        if (modules[a][b] == modules[a][b - 1]) {
+                            rowRun++;
+                        } else {
+                            if (rowRun >= 5) penalty += rowRun - 2;
+                            rowRun = 1;
+                        }
+                        if (modules[b][a] == modules[b - 1][a]) {
+                            columnRun++;
+                        } else {
+                            if (columnRun >= 5) penalty += columnRun - 2;
+                            columnRun = 1;
+                        }
+                    }
+                    if (a > 0 && b > 0 && modules[a][b] == modules[a - 1][b]
+                            && modules[a][b] == modules[a][b - 1] && modules[a][b] == modules[a - 1][b - 1]) {
+                        penalty += 3;
+                    }
+                    if (b + 6 < size && isFinderLike(modules, a, b, true)) penalty += 40;
+                    if (b + 6 < size && isFinderLike(modules, a, b, false)) penalty += 40;
+                }
+                if (rowRun >= 5) penalty += rowRun - 2;
+                if (columnRun >= 5) penalty += columnRun - 2;
+            }
+            int percent = dark * 100 / (size * size);
+            penalty += Math.abs(percent - 50) / 5 * 10;
+            return penalty;
+        }
+
+        /**
+         * 从(line, start)开始的7个模块是否为深浅深深深浅深（1:1:3:1:1）
+         *
+         * @param horizontal 为true时检查第line行，否则检查第line列
+         */
+        private static boolean isFinderLike(boolean[][] modules, int line, int start, boolean horizontal) {
+            boolean[] pattern = {true, false, true, true, true, false, true};
+            for (int i = 0; i < 7; i++) {
+                boolean module = horizontal ? modules[line][start + i] : modules[start + i][line];
+                if (module != pattern[i]) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package cn.szx.simplescanner.corpus;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import cn.szx.simplescanner.zbar.BarcodeFormat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 合成的码按标准（而不是按SyntheticSymbol的实现）检查：EAN/UPC的校验位和模块，CODE128的校验字符，
+ * QR码的功能图形、格式信息、数据码字和Reed-Solomon纠错码
+ */
+public class SyntheticSymbolTest {
+    //EAN的L码（模块，0为空），R码为L码取反，G码为R码倒序
+    private static final String[] L_CODES = {
+            "0001101", "0011001", "0010011", "0111101", "0100011", "0110001", "0101111", "0111011", "0110111", "0001011"
+    };
+    //EAN13首位对应的左侧6位的L/G排列
+    private static final String[] FIRST_DIGIT_PARITY = {
+            "LLLLLL", "LLGLGG", "LLGGLG", "LLGGGL", "LGLLGG", "LGGLLG", "LGGGLL", "LGLGLG", "LGLGGL", "LGGLGL"
+    };
+
+    @Test
+    public void eanCheckDigits() {
+        assertEquals("4006381333931", SyntheticSymbol.encode(BarcodeFormat.EAN13, "400638133393").contents);
+        assertEquals("5901234123457", SyntheticSymbol.encode(BarcodeFormat.EAN13, "590123412345").contents);
+        assertEquals("96385074", SyntheticSymbol.encode(BarcodeFormat.EAN8, "9638507").contents);
+        assertEquals("036000291452", SyntheticSymbol.encode(BarcodeFormat.UPCA, "03600029145").contents);
+        assertEquals("5012345678900", SyntheticSymbol.encode(BarcodeFormat.EAN13, "501234567890").contents);//校验位为0
+    }
+
+    @Test
+    public void eanRejectsInvalidPayload() {
+        assertIllegalPayload(BarcodeFormat.EAN13, "40063813339");//少一位
+        assertIllegalPayload(BarcodeFormat.EAN13, "4006381333931");//已含校验位
+        assertIllegalPayload(BarcodeFormat.EAN8, "96385A7");
+        assertIllegalPayload(BarcodeFormat.UPCA, "036000291452");
+    }
+
+    @Test
+    public void eanModulesDecodeToContents() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            SyntheticSymbol ean13 = SyntheticSymbol.random(BarcodeFormat.EAN13, random);
+            assertEquals(ean13.contents, decodeEan13(ean13.modules[0]));
+            SyntheticSymbol ean8 = SyntheticSymbol.random(BarcodeFormat.EAN8, random);
+            assertEquals(ean8.contents, decodeEan8(ean8.modules[0]));
+            SyntheticSymbol upca = SyntheticSymbol.random(BarcodeFormat.UPCA, random);
+            assertEquals("0" + upca.contents, decodeEan13(upca.modules[0]));//UPCA即首位为0的EAN13
+        }
+    }
+
+    @Test
+    public void code128Checksum() {
+        //字符集B："PJJ123C"的校验值为(104 + 48*1 + 42*2 + 42*3 + 17*4 + 18*5 + 19*6 + 35*7) % 103 = 55
+        SyntheticSymbol symbol = SyntheticSymbol.encode(BarcodeFormat.CODE128, "PJJ123C");
+        boolean[] modules = symbol.modules[0];
+        assertEquals(11 * 9 + 13, modules.length);//起始符、7个字符、校验字符、终止符
+        assertArrayEquals(widths("211214"), slice(modules, 0, 11));//START_B
+        assertArrayEquals(widths("311321"), slice(modules, 8 * 11, 11));//码值55
+        assertArrayEquals(widths("2331112"), slice(modules, 9 * 11, 13));//终止符
+    }
+
+    @Test
+    public void code39Layout() {
+        SyntheticSymbol symbol = SyntheticSymbol.encode(BarcodeFormat.CODE39, "A1");
+        boolean[] modules = symbol.modules[0];
+        assertEquals(4 * 16 - 1, modules.length);//每个字符3宽6窄共15个模块，字符之间一个窄空
+        //"*"为窄宽窄窄宽窄宽窄窄（条、空交替）
+        assertArrayEquals(widths("131131311"), slice(modules, 0, 15));
+        assertArrayEquals(slice(modules, 0, 15), slice(modules, 3 * 16, 15));
+        try {
+            SyntheticSymbol.encode(BarcodeFormat.CODE39, "a");
+            fail();
+        } catch (IllegalArgumentException e) {
+            //不支持小写字母
+        }
+    }
+
+    @Test
+    public void qrVersionGrowsWithPayload() {
+        assertEquals(21, SyntheticSymbol.encode(BarcodeFormat.QRCODE, "12345678901234").modules.length);//版本1最多14字节
+        assertEquals(25, SyntheticSymbol.encode(BarcodeFormat.QRCODE, "123456789012345").modules.length);
+        assertEquals(41, SyntheticSymbol.encode(BarcodeFormat.QRCODE, repeat('x', 106)).modules.length);//版本6
+        try {
+            SyntheticSymbol.encode(BarcodeFormat.QRCODE, repeat('x', 107));
+            fail();
+        } catch (IllegalArgumentException e) {
+            //内容过长
+        }
+    }
+
+    @Test
+    public void qrFunctionPatterns() {
+        for (int length : new int[]{5, 20, 40, 60, 80, 106}) {
+            boolean[][] m = SyntheticSymbol.encode(BarcodeFormat.QRCODE, repeat('a', length)).modules;
+            int size = m.length;
+            assertFinder(m, 0, 0);
+            assertFinder(m, size - 7, 0);
+            assertFinder(m, 0, size - 7);
+            for (int i = 8; i < size - 8; i++) {
+                assertEquals(i % 2 == 0, m[6][i]);
+                assertEquals(i % 2 == 0, m[i][6]);
+            }
+            assertTrue(m[size - 8][8]);//暗模块
+            if (size > 21) {
+                int center = size - 7;//版本2~6唯一的校正图形
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        assertEquals(Math.max(Math.abs(dx), Math.abs(dy)) != 1, m[center + dy][center + dx]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void qrFormatInformation() {
+        Random random = new Random(2);
+        for (int i = 0; i < 50; i++) {
+            boolean[][] m = SyntheticSymbol.random(BarcodeFormat.QRCODE, random).modules;
+            int format = readFormatBits(m);
+            assertEquals(0, format >> 13);//纠错等级M
+            int bits = format;
+            for (int b = 14; b >= 10; b--) {//BCH(15,5)码字能被生成多项式整除
+                if ((bits >> b & 1) == 1) {
+                    bits ^= 0x537 << (b - 10);
+                }
+            }
+            assertEquals(0, bits);
+        }
+    }
+
+    @Test
+    public void qrDataRoundTrip() {
+        //版本1-M：16个数据码字、10个纠错码字，只有一个块
+        String payload = "hello, world";
+        boolean[][] m = SyntheticSymbol.encode(BarcodeFormat.QRCODE, payload).modules;
+        assertEquals(21, m.length);
+        int mask = readFormatBits(m) >> 10 & 7;
+        int[] codewords = readCodewords(m, mask, 26);
+
+        assertEquals(0x4, codewords[0] >> 4);//字节模式
+        assertEquals(payload.length(), (codewords[0] & 0x0f) << 4 | codewords[1] >> 4);
+        for (int i = 0; i < payload.length(); i++) {
+            int value = (codewords[1 + i] & 0x0f) << 4 | codewords[2 + i] >> 4;
+            assertEquals(payload.charAt(i), (char) value);
+        }
+        assertEquals(0, codewords[1 + payload.length()] & 0x0f);//终止符
+        int[] pads = {0xEC, 0x11};
+        for (int i = payload.length() + 2; i < 16; i++) {
+            assertEquals(pads[(i - payload.length() - 2) % 2], codewords[i]);
+        }
+
+        //纠错码：整个码字多项式在α^0~α^9处的值都为0
+        Gf gf = new Gf();
+        for (int root = 0; root < 10; root++) {
+            int value = 0;
+            for (int codeword : codewords) {
+                value = gf.multiply(value, gf.exp[root]) ^ codeword;
+            }
+            assertEquals("syndrome " + root, 0, value);
+        }
+    }
+
+//--------------------------------------------------------------------------------------------------
+
+    private static void assertIllegalPayload(BarcodeFormat format, String payload) {
+        try {
+            SyntheticSymbol.encode(format, payload);
+            fail(payload);
+        } catch (IllegalArgumentException e) {
+            //payload不是规定位数的数字
+        }
+    }
+
+    private static String decodeEan13(boolean[] modules) {
+        assertEquals(95, modules.length);
+        assertEquals("101", bits(modules, 0, 3));
+        assertEquals("01010", bits(modules, 45, 5));
+        assertEquals("101", bits(modules, 92, 3));
+        StringBuilder digits = new StringBuilder();
+        StringBuilder parity = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            String code = bits(modules, 3 + i * 7, 7);
+            int digit = indexOf(L_CODES, code);
+            if (digit >= 0) {
+                parity.append('L');
+            } else {
+                digit = indexOf(L_CODES, reverse(invert(code)));
+                parity.append('G');
+            }
+            assertTrue(code, digit >= 0);
+            digits.append(digit);
+        }
+        for (int i = 0; i < 6; i++) {
+            int digit = indexOf(L_CODES, invert(bits(modules, 50 + i * 7, 7)));
+            assertTrue(digit >= 0);
+            digits.append(digit);
+        }
+        int first = indexOf(FIRST_DIGIT_PARITY, parity.toString());
+        assertTrue(parity.toString(), first >= 0);
+        return first + digits.toString();
+    }
+
+    private static String decodeEan8(boolean[] modules) {
+        assertEquals(67, modules.length);
+        assertEquals("101", bits(modules, 0, 3));
+        assertEquals("01010", bits(modules, 31, 5));
+        assertEquals("101", bits(modules, 64, 3));
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            digits.append(indexOf(L_CODES, bits(modules, 3 + i * 7, 7)));
+        }
+        for (int i = 0; i < 4; i++) {
+            digits.append(indexOf(L_CODES, invert(bits(modules, 36 + i * 7, 7))));
+        }
+        return digits.toString();
+    }
+
+    /**
+     * 7*7的定位图形及其分隔符
+     */
+    private static void assertFinder(boolean[][] m, int left, int top) {
+        int size = m.length;
+        for (int dy = -1; dy <= 7; dy++) {
+            for (int dx = -1; dx <= 7; dx++) {
+                int x = left + dx, y = top + dy;
+                if (x < 0 || y < 0 || x >= size || y >= size) continue;
+                int ring = Math.max(Math.abs(dx - 3), Math.abs(dy - 3));
+                assertEquals("(" + x + "," + y + ")", ring != 4 && ring != 2, m[y][x]);
+            }
+        }
+    }
+
+    /**
+     * 读取两份格式信息（应相同），返回与0x5412异或之前的15位
+     */
+    private static int readFormatBits(boolean[][] m) {
+        int size = m.length;
+        int first = 0, second = 0;
+        for (int i = 0; i < 15; i++) {
+            int y1 = i < 6 ? i : i < 8 ? i + 1 : 8;
+            int x1 = i < 8 ? 8 : i == 8 ? 7 : 14 - i;
+            if (m[y1][x1]) first |= 1 << i;
+            int y2 = i < 8 ? 8 : size - 15 + i;
+            int x2 = i < 8 ? size - 1 - i : 8;
+            if (m[y2][x2]) second |= 1 << i;
+        }
+        assertEquals(first, second);
+        return first ^ 0x5412;
+    }
+
+    /**
+     * 按之字形读取版本1的数据模块（去掉掩码）
+     */
+    private static int[] readCodewords(boolean[][] m, int mask, int count) {
+        int size = m.length;
+        int[] codewords = new int[count];
+        int bitIndex = 0;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) right = 5;
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vert = 0; vert < size; vert++) {
+                int y = upward ? size - 1 - vert : vert;
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    boolean function = (x < 9 && y < 9) || (x >= size - 8 && y < 9) || (x < 9 && y >= size - 8)
+                            || x == 6 || y == 6;
+                    if (function || bitIndex >= count * 8) continue;
+                    boolean bit = m[y][x] ^ masked(mask, y, x);
+                    if (bit) codewords[bitIndex >> 3] |= 0x80 >> (bitIndex & 7);
+                    bitIndex++;
+                }
+            }
+        }
+        return codewords;
+    }
+
+    /**
+     * 标准中的8种掩码条件，i为行，j为列
+     */
+    private static boolean masked(int mask, int i, int j) {
+        switch (mask) {
+            case 0:
+                return (i + j) % 2 == 0;
+            case 1:
+                return i % 2 == 0;
+            case 2:
+                return j % 3 == 0;
+            case 3:
+                return (i + j) % 3 == 0;
+            case 4:
+                return (i / 2 + j / 3) % 2 == 0;
+            case 5:
+                return (i * j) % 2 + (i * j) % 3 == 0;
+            case 6:
+                return ((i * j) % 2 + (i * j) % 3) % 2 == 0;
+            default:
+                return ((i + j) % 2 + (i * j) % 3) % 2 == 0;
+        }
+    }
+
+    /**
+     * GF(256)，本原多项式x^8+x^4+x^3+x^2+1
+     */
+    private static class Gf {
+        final int[] exp = new int[256];
+
+        Gf() {
+            int x = 1;
+            for (int i = 0; i < 256; i++) {
+                exp[i] = x;
+                x <<= 1;
+                if (x >= 256) x ^= 0x11d;
+            }
+        }
+
+        int multiply(int a, int b) {//俄罗斯农民乘法，不依赖对数表
+            int product = 0;
+            while (b != 0) {
+                if ((b & 1) != 0) product ^= a;
+                a <<= 1;
+                if (a >= 256) a ^= 0x11d;
+                b >>= 1;
+            }
+            return product;
+        }
+    }
+
+    private static boolean[] widths(String widths) {
+        int total = 0;
+        for (int i = 0; i < widths.length(); i++) {
+            total += widths.charAt(i) - '0';
+        }
+        boolean[] out = new boolean[total];
+        int pos = 0;
+        for (int i = 0; i < widths.length(); i++) {
+            for (int j = 0; j < widths.charAt(i) - '0'; j++) {
+                out[pos++] = i % 2 == 0;//从条开始
+            }
+        }
+        return out;
+    }
+
+    private static boolean[] slice(boolean[] modules, int start, int length) {
+        boolean[] out = new boolean[length];
+        System.arraycopy(modules, start, out, 0, length);
+        return out;
+    }
+
+    private static String bits(boolean[] modules, int start, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = start; i < start + length; i++) {
+            sb.append(modules[i] ? '1' : '0');
+        }
+        return sb.toString();
+    }
+
+    private static String invert(String bits) {
+        return bits.replace('0', 'x').replace('1', '0').replace('x', '1');
+    }
+
+    private static String reverse(String s) {
+        return new StringBuilder(s).reverse().toString();
+    }
+
+    private static int indexOf(String[] array, String value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].equals(value)) return i;
+        }
+        return -1;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,125 @@
+package cn.szx.simplescanner.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个相机的能力（朝向、传感器方向、支持的预览尺寸、对焦模式、闪光灯模式等），打开相机后探测一次，
+ * 保存在CameraCapabilityFile中，之后启动时不再查询
+ * <p>
+ * 不依赖Android，对焦模式、闪光灯模式等使用Camera.Parameters中的字符串
+ */
+public class CameraCapabilities {
+    public final int cameraId;
+    public final int facing;
+    public final int orientation;//相机图像需要顺时针旋转多少度才能与设备的自然方向一致
+    private final int[] previewSizes;//依次为每个预览尺寸的宽、高
+    public final List<String> focusModes;
+    public final List<String> flashModes;
+    public final boolean flashSupported;
+    public final int maxNumFocusAreas;
+
+    /**
+     * @param previewSizes 依次为每个预览尺寸的宽、高
+     */
+    public CameraCapabilities(int cameraId, int facing, int orientation, int[] previewSizes,
+                              List<String> focusModes, List<String> flashModes,
+                              boolean flashSupported, int maxNumFocusAreas) {
+        if (previewSizes.length % 2 != 0) {
+            throw new IllegalArgumentException("previewSizes的长度必须是偶数");
+        }
+        this.cameraId = cameraId;
+        this.facing = facing;
+        this.orientation = orientation;
+        this.previewSizes = previewSizes.clone();
+        this.focusModes = unmodifiable(focusModes);
+        this.flashModes = unmodifiable(flashModes);
+        this.flashSupported = flashSupported;
+        this.maxNumFocusAreas = maxNumFocusAreas;
+    }
+
+    private static List<String> unmodifiable(List<String> list) {
+        return list == null ? Collections.<String>emptyList() : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    public int getPreviewSizeCount() {
+        return previewSizes.length / 2;
+    }
+
+    public int getPreviewWidth(int index) {
+        return previewSizes[index * 2];
+    }
+
+    public int getPreviewHeight(int index) {
+        return previewSizes[index * 2 + 1];
+    }
+
+    public boolean isFocusModeSupported(String mode) {
+        return focusModes.contains(mode);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(cameraId);
+        out.writeInt(facing);
+        out.writeInt(orientation);
+        out.writeInt(previewSizes.length);
+        for (int value : previewSizes) {
+            out.writeInt(value);
+        }
+        writeStrings(out, focusModes);
+        writeStrings(out, flashModes);
+        out.writeBoolean(flashSupported);
+        out.writeInt(maxNumFocusAreas);
+    }
+
+    static CameraCapabilities read(DataInput in) throws IOException {
+        int cameraId = in.readInt();
+        int facing = in.readInt();
+        int orientation = in.readInt();
+        int[] previewSizes = new int[readCount(in)];
+        for (int i = 0; i < previewSizes.length; i++) {
+            previewSizes[i] = in.readInt();
+        }
+        List<String> focusModes = readStrings(in);
+        List<String> flashModes = readStrings(in);
+        boolean flashSupported = in.readBoolean();
+        int maxNumFocusAreas = in.readInt();
+        try {
+            return new CameraCapabilities(cameraId, facing, orientation, previewSizes,
+                    focusModes, flashModes, flashSupported, maxNumFocusAreas);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("能力数据已损坏", e);
+        }
+    }
+
+    private static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int count = readCount(in);
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    /**
+     * 读取一个数量（文件损坏时不会分配过大的数组）
+     */
+    static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > 4096) {
+            throw new IOException("能力数据已损坏：" + count);
+        }
+        return count;
+    }
+}
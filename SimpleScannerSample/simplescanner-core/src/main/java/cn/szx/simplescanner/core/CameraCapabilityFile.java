@@ -0,0 +1,135 @@
+package cn.szx.simplescanner.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 保存在文件中的相机能力（默认相机id和每个相机的CameraCapabilities），以设备指纹区分
+ * <p>
+ * 文件格式：MAGIC、VERSION、设备指纹、默认相机id、相机数量，之后依次为每个相机的能力。<br/>
+ * 读取时文件不存在、已损坏、版本或设备指纹（如系统升级后）不一致，都视为空，之后重新探测并覆盖。
+ * 写入时先写临时文件再重命名，进程意外退出不会留下写了一半的文件。所有方法都可以在任意线程调用
+ */
+public class CameraCapabilityFile {
+    static final int MAGIC = 0x53534343;//"SSCC"
+    static final int VERSION = 1;
+    private static final int UNKNOWN_CAMERA_ID = Integer.MIN_VALUE;
+
+    private final File file;
+    private final String fingerprint;
+    private int defaultCameraId = UNKNOWN_CAMERA_ID;
+    private final Map<Integer, CameraCapabilities> cameras = new TreeMap<>();
+    private boolean dirty = false;//是否有尚未保存的修改
+
+    private CameraCapabilityFile(File file, String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * 读取文件
+     *
+     * @param fingerprint 设备指纹（如Build.FINGERPRINT），与文件中的不一致时忽略文件内容
+     */
+    public static CameraCapabilityFile load(File file, String fingerprint) {
+        CameraCapabilityFile capabilityFile = new CameraCapabilityFile(file, fingerprint);
+        if (file.exists()) {
+            try {
+                capabilityFile.read();
+            } catch (IOException e) {//文件损坏，之后覆盖
+                capabilityFile.defaultCameraId = UNKNOWN_CAMERA_ID;
+                capabilityFile.cameras.clear();
+            }
+        }
+        return capabilityFile;
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !fingerprint.equals(in.readUTF())) {
+                return;//不是当前版本或不是当前系统写入的
+            }
+            int defaultCameraId = in.readInt();
+            int count = CameraCapabilities.readCount(in);
+            for (int i = 0; i < count; i++) {
+                CameraCapabilities capabilities = CameraCapabilities.read(in);
+                cameras.put(capabilities.cameraId, capabilities);
+            }
+            this.defaultCameraId = defaultCameraId;
+        }
+    }
+
+    /**
+     * 保存到文件（没有修改时什么也不做）
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(defaultCameraId);
+            out.writeInt(cameras.size());
+            for (CameraCapabilities capabilities : cameras.values()) {
+                capabilities.write(out);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("无法写入" + file);
+        }
+        dirty = false;
+    }
+
+    public synchronized boolean hasDefaultCameraId() {
+        return defaultCameraId != UNKNOWN_CAMERA_ID;
+    }
+
+    /**
+     * 默认相机（第一个后置相机）的id，没有后置相机时为-1。需先通过hasDefaultCameraId判断是否已保存
+     */
+    public synchronized int getDefaultCameraId() {
+        return defaultCameraId;
+    }
+
+    public synchronized void setDefaultCameraId(int cameraId) {
+        if (cameraId == UNKNOWN_CAMERA_ID) {
+            throw new IllegalArgumentException("cameraId无效");
+        }
+        if (defaultCameraId != cameraId) {
+            defaultCameraId = cameraId;
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return 没有保存过该相机的能力时为null
+     */
+    public synchronized CameraCapabilities get(int cameraId) {
+        return cameras.get(cameraId);
+    }
+
+    public synchronized void put(CameraCapabilities capabilities) {
+        cameras.put(capabilities.cameraId, capabilities);
+        dirty = true;
+    }
+
+    /**
+     * 清空所有内容并删除文件（如发现保存的能力与相机不符时）
+     */
+    public synchronized void clear() {
+        defaultCameraId = UNKNOWN_CAMERA_ID;
+        cameras.clear();
+        dirty = false;
+        file.delete();
+    }
+}
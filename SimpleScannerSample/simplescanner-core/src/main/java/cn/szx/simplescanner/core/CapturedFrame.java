@@ -0,0 +1,40 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 录制文件中一帧的元数据（图像数据通过FrameCaptureReader.readData读取）
+ */
+public final class CapturedFrame {
+    public final int index;//在录制文件中的序号，从0开始
+    public final long timestampNanos;//帧到达的时间（System.nanoTime），只有相对值有意义
+    public final int width;
+    public final int height;
+    public final int format;//相机的原始格式（如ImageFormat.NV21），文件中只保存亮度数据
+    public final int rotationCount;//相机图像需要被顺时针旋转几次（每次90度）
+    public final Roi cropRect;//扫码区域在相机图像（未旋转）中的位置
+    final int dataOffset;//亮度数据在文件中的位置
+
+    CapturedFrame(int index, long timestampNanos, int width, int height, int format, int rotationCount,
+                  Roi cropRect, int dataOffset) {
+        this.index = index;
+        this.timestampNanos = timestampNanos;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.rotationCount = rotationCount;
+        this.cropRect = cropRect;
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * 亮度数据的长度（width * height）
+     */
+    public int getDataLength() {
+        return width * height;
+    }
+
+    @Override
+    public String toString() {
+        return "CapturedFrame(#" + index + " " + width + "x" + height + " format=" + format
+                + " rotation=" + rotationCount + " crop=" + cropRect + ")";
+    }
+}
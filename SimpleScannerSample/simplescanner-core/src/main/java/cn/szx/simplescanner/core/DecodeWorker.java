@@ -0,0 +1,95 @@
+package cn.szx.simplescanner.core;
+
+import java.util.ArrayDeque;
+
+/**
+ * 解码线程
+ * <p>
+ * 相机线程只负责把预览帧放入队列，识别在此线程中进行，避免耗时的识别阻塞相机的各种回调（如自动对焦）。<br/>
+ * 队列容量有限，放入新帧时若队列已满，则丢弃最旧的帧，保证每次识别的都是最新的一帧。<br/>
+ * 每个解码线程持有一个独立的FrameDecoder，线程退出时释放
+ */
+class DecodeWorker extends Thread {
+    private final FramePipeline pipeline;
+    private final FrameDecoder frameDecoder;
+    private final int capacity;
+    private final ArrayDeque<PreviewFrame> frames = new ArrayDeque<>();//等待识别的帧
+    private boolean quit = false;
+
+    DecodeWorker(String name, FramePipeline pipeline, FrameDecoder frameDecoder, int capacity) {
+        super(name);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0");
+        }
+        this.pipeline = pipeline;
+        this.frameDecoder = frameDecoder;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void run() {
+        try {
+            PreviewFrame frame;
+            while ((frame = take()) != null) {
+                pipeline.decodeFrame(frameDecoder, frame);
+            }
+        } finally {//线程退出（quit）后，在本线程中释放解码器，保证不会与识别同时进行
+            frameDecoder.release();
+        }
+    }
+
+    /**
+     * 放入一帧（在相机线程调用）
+     *
+     * @return 因队列已满而被丢弃的旧帧，没有则返回null；线程已退出时返回frame本身
+     */
+    PreviewFrame offer(PreviewFrame frame) {
+        synchronized (frames) {
+            if (quit) return frame;
+
+            PreviewFrame dropped = null;
+            if (frames.size() >= capacity) {
+                dropped = frames.poll();
+            }
+            frames.add(frame);
+            frames.notify();
+            return dropped;
+        }
+    }
+
+    /**
+     * 取出一帧，队列为空时等待，线程退出时返回null
+     */
+    private PreviewFrame take() {
+        synchronized (frames) {
+            try {
+                while (frames.isEmpty() && !quit) {
+                    frames.wait();
+                }
+            } catch (InterruptedException e) {
+                return null;
+            }
+            return quit ? null : frames.poll();
+        }
+    }
+
+    /**
+     * 取出一帧尚未开始识别的帧（不等待），队列为空或线程已退出时返回null
+     */
+    PreviewFrame poll() {
+        synchronized (frames) {
+            return quit ? null : frames.poll();
+        }
+    }
+
+    /**
+     * 退出线程，队列中尚未识别的帧会被丢弃，解码器会在当前识别结束后释放
+     */
+    void quit() {
+        synchronized (frames) {
+            quit = true;
+            frames.clear();
+            frames.notify();
+        }
+    }
+}
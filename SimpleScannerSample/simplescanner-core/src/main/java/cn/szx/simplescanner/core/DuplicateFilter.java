@@ -0,0 +1,100 @@
+package cn.szx.simplescanner.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 重复结果过滤
+ * <p>
+ * 连续扫码时，同一个码停留在画面中会被反复识别。以(码格式, 内容)为键，记录最近返回过的结果，
+ * 在windowMillis时间内再次识别到时将其过滤掉。最多记录maxSize个结果，超出时淘汰最早的
+ * <p>
+ * 识别时用isDuplicate预先过滤（不记录），结果确定发送时才用accept记录（见ResultSequencer.Delivery）：
+ * 识别出的结果可能因暂停等原因被丢弃，若在识别时就记录，该码会在windowMillis内被过滤而一次也没有返回
+ */
+public class DuplicateFilter {
+    public static final int DEFAULT_MAX_SIZE = 64;
+    public static final long DEFAULT_WINDOW_MILLIS = 3000;
+
+    private final int maxSize;
+    private final long windowNanos;
+    private final LinkedHashMap<String, Long> recentResults;//键 -> 返回该结果的时间
+
+    public DuplicateFilter() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param maxSize      最多记录多少个结果
+     * @param windowMillis 同一个结果在返回后多久之内会被过滤
+     */
+    public DuplicateFilter(final int maxSize, long windowMillis) {
+        if (maxSize <= 0 || windowMillis < 0) {
+            throw new IllegalArgumentException("maxSize必须大于0，windowMillis不能小于0");
+        }
+        this.maxSize = maxSize;
+        this.windowNanos = windowMillis * 1000000L;
+        recentResults = new LinkedHashMap<String, Long>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 判断是否为最近返回过的结果，不记录（可在多个解码线程中同时调用）
+     *
+     * @param format   码格式的名称（如BarcodeFormat.getName()）
+     * @param contents 码的内容
+     */
+    public synchronized boolean isDuplicate(String format, String contents) {
+        return isDuplicate(format + '\n' + contents, System.nanoTime());
+    }
+
+    private boolean isDuplicate(String key, long now) {
+        Long lastTime = recentResults.get(key);
+        return lastTime != null && now - lastTime < windowNanos;
+    }
+
+    /**
+     * 判断结果是否应该返回：不是重复结果时返回true，并记录该结果（可在多个线程中同时调用）<br/>
+     * 应在结果确定返回时调用，只是预先过滤时使用isDuplicate
+     *
+     * @param format   码格式的名称（如BarcodeFormat.getName()）
+     * @param contents 码的内容
+     */
+    public synchronized boolean accept(String format, String contents) {
+        long now = System.nanoTime();
+        String key = format + '\n' + contents;
+
+        if (isDuplicate(key, now)) {
+            return false;
+        }
+
+        recentResults.remove(key);//重新插入，使其成为最新的
+        recentResults.put(key, now);
+        evictExpired(now);
+        return true;
+    }
+
+    /**
+     * 淘汰已过期的记录（按插入顺序，遇到未过期的即停止）
+     */
+    private void evictExpired(long now) {
+        Iterator<Long> iterator = recentResults.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next() < windowNanos) break;
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        recentResults.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
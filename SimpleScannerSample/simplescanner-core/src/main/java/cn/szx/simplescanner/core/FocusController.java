@@ -0,0 +1,139 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 对焦控制：由对焦事件和识别结果驱动对焦，而不是固定间隔地触发自动对焦
+ * <p>
+ * 1. 对焦成功（或连续对焦停止移动）时，画面刚刚变清晰，这时的帧最值得识别。onFocusFinished返回true，
+ * 由调用者丢弃对焦完成前排队的帧，并让静止画面检测重新开始。<br/>
+ * 2. 连续missesBeforeRefocus帧没有识别到码（被帧质量门限拒绝或识别失败）时，onFrameMissed返回true，由调用者重新触发对焦；
+ * 对焦过程中不再触发，两次对焦至少间隔minRefocusIntervalMillis，识别成功时重新计数。<br/>
+ * 不依赖Android，真正的对焦操作由相机一侧完成。所有方法都可以在任意线程调用
+ */
+public class FocusController {
+    public static final int DEFAULT_MISSES_BEFORE_REFOCUS = 15;
+    public static final long DEFAULT_MIN_REFOCUS_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_FOCUS_TIMEOUT_MILLIS = 3000;
+
+    private final int missesBeforeRefocus;
+    private final long minRefocusIntervalNanos;
+    private final long focusTimeoutNanos;//对焦迟迟没有结束（如回调丢失）时，视为已结束
+
+    private boolean focusing = false;//是否正在对焦
+    private long focusStartNanos;//最近一次开始对焦的时间
+    private long lastFocusNanos;//最近一次开始或结束对焦的时间
+    private int consecutiveMisses = 0;//连续没有识别到码的帧数
+    private long focusCount = 0;
+    private long focusSuccessCount = 0;
+    private long refocusCount = 0;
+
+    public FocusController() {
+        this(DEFAULT_MISSES_BEFORE_REFOCUS, DEFAULT_MIN_REFOCUS_INTERVAL_MILLIS, DEFAULT_FOCUS_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param missesBeforeRefocus      连续多少帧没有识别到码时重新对焦
+     * @param minRefocusIntervalMillis 两次对焦之间的最小间隔（从上一次对焦开始或结束算起）
+     * @param focusTimeoutMillis       开始对焦后多久仍没有结束时视为已结束
+     */
+    public FocusController(int missesBeforeRefocus, long minRefocusIntervalMillis, long focusTimeoutMillis) {
+        if (missesBeforeRefocus <= 0) {
+            throw new IllegalArgumentException("missesBeforeRefocus必须大于0");
+        }
+        if (minRefocusIntervalMillis < 0 || focusTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("minRefocusIntervalMillis不能小于0，focusTimeoutMillis必须大于0");
+        }
+        this.missesBeforeRefocus = missesBeforeRefocus;
+        this.minRefocusIntervalNanos = minRefocusIntervalMillis * 1000000L;
+        this.focusTimeoutNanos = focusTimeoutMillis * 1000000L;
+        lastFocusNanos = System.nanoTime() - minRefocusIntervalNanos;
+    }
+
+    /**
+     * 相机开始对焦（如开始预览时触发的自动对焦、连续对焦开始移动镜头）
+     */
+    public synchronized void onFocusStarted() {
+        long now = System.nanoTime();
+        if (!focusing) {
+            focusing = true;
+            focusCount++;
+        }
+        focusStartNanos = now;
+        lastFocusNanos = now;
+    }
+
+    /**
+     * 相机对焦结束
+     *
+     * @param success 是否对焦成功（连续对焦停止移动时视为成功）
+     * @return 是否应该优先识别接下来的帧（丢弃此前排队的帧等）
+     */
+    public synchronized boolean onFocusFinished(boolean success) {
+        focusing = false;
+        lastFocusNanos = System.nanoTime();
+        consecutiveMisses = 0;//对焦后的帧重新计数
+        if (success) {
+            focusSuccessCount++;
+        }
+        return success;
+    }
+
+    /**
+     * 一帧没有识别到码（在解码线程调用）
+     *
+     * @return 是否应该重新对焦；返回true时已视为开始对焦，调用者需触发相机对焦，并在结束时调用onFocusFinished
+     */
+    public synchronized boolean onFrameMissed() {
+        consecutiveMisses++;
+        long now = System.nanoTime();
+        if (focusing) {
+            if (now - focusStartNanos < focusTimeoutNanos) return false;
+            focusing = false;//对焦超时
+        }
+        if (consecutiveMisses < missesBeforeRefocus || now - lastFocusNanos < minRefocusIntervalNanos) {
+            return false;
+        }
+
+        consecutiveMisses = 0;
+        focusing = true;
+        focusStartNanos = now;
+        lastFocusNanos = now;
+        focusCount++;
+        refocusCount++;
+        return true;
+    }
+
+    /**
+     * 一帧识别到了码（包括被过滤掉的重复结果），说明焦点合适，重新计数
+     */
+    public synchronized void onFrameDecoded() {
+        consecutiveMisses = 0;
+    }
+
+    /**
+     * 重置状态（如相机重新打开）
+     */
+    public synchronized void reset() {
+        focusing = false;
+        consecutiveMisses = 0;
+        lastFocusNanos = System.nanoTime() - minRefocusIntervalNanos;
+    }
+
+    public synchronized boolean isFocusing() {
+        return focusing && System.nanoTime() - focusStartNanos < focusTimeoutNanos;
+    }
+
+    public synchronized long getFocusCount() {
+        return focusCount;
+    }
+
+    public synchronized long getFocusSuccessCount() {
+        return focusSuccessCount;
+    }
+
+    /**
+     * 因连续没有识别到码而重新对焦的次数
+     */
+    public synchronized long getRefocusCount() {
+        return refocusCount;
+    }
+}
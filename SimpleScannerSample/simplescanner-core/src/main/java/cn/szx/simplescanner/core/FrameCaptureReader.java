@@ -0,0 +1,100 @@
+package cn.szx.simplescanner.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读取FrameCaptureWriter录制的文件（内存映射，只读）
+ * <p>
+ * 打开时扫描一遍所有帧的头部，之后可以按序号随机读取；最后一帧不完整（如录制时进程意外退出）时忽略该帧
+ */
+public class FrameCaptureReader implements Closeable {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final List<CapturedFrame> frames = new ArrayList<>();
+
+    public FrameCaptureReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            long length = this.file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("录制文件过大：" + length);
+            }
+            if (length < FrameCaptureWriter.FILE_HEADER_SIZE) {
+                throw new IOException("不是录制文件：" + file);
+            }
+            buffer = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            readFrames(file);
+        } catch (IOException | RuntimeException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    private void readFrames(File file) throws IOException {
+        if (buffer.getInt(0) != FrameCaptureWriter.MAGIC) {
+            throw new IOException("不是录制文件：" + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != FrameCaptureWriter.VERSION) {
+            throw new IOException("不支持的录制文件版本：" + version);
+        }
+        int frameHeaderSize = buffer.getInt(8);
+        if (frameHeaderSize < FrameCaptureWriter.FRAME_HEADER_SIZE) {
+            throw new IOException("录制文件已损坏：" + file);
+        }
+
+        int limit = buffer.limit();
+        int position = FrameCaptureWriter.FILE_HEADER_SIZE;
+        while (position + frameHeaderSize <= limit) {
+            int dataLength = buffer.getInt(position);
+            if (dataLength <= 0 || position + frameHeaderSize + dataLength > limit) break;//已到结尾，或最后一帧不完整
+
+            long timestampNanos = buffer.getLong(position + 4);
+            int width = buffer.getInt(position + 12);
+            int height = buffer.getInt(position + 16);
+            int format = buffer.getInt(position + 20);
+            int rotationCount = buffer.getInt(position + 24);
+            Roi cropRect = new Roi(buffer.getInt(position + 28), buffer.getInt(position + 32),
+                    buffer.getInt(position + 36), buffer.getInt(position + 40));
+            if (width <= 0 || height <= 0 || (long) width * height != dataLength) {
+                throw new IOException("录制文件已损坏：第" + frames.size() + "帧");
+            }
+            frames.add(new CapturedFrame(frames.size(), timestampNanos, width, height, format, rotationCount,
+                    cropRect, position + frameHeaderSize));
+            position += frameHeaderSize + dataLength;
+        }
+    }
+
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    public CapturedFrame getFrame(int index) {
+        return frames.get(index);
+    }
+
+    /**
+     * 把一帧的亮度数据复制到dst的开头（可在任意线程调用）
+     */
+    public void readData(CapturedFrame frame, byte[] dst) {
+        if (dst.length < frame.getDataLength()) {
+            throw new IllegalArgumentException("dst的长度必须不小于width * height");
+        }
+        synchronized (buffer) {
+            buffer.position(frame.dataOffset);
+            buffer.get(dst, 0, frame.getDataLength());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,141 @@
+package cn.szx.simplescanner.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 把预览帧录制到文件中（内存映射，追加写入），用于复现现场无法识别的问题，通过FrameCaptureReader读取
+ * <p>
+ * 文件格式：文件头（MAGIC、VERSION、每一帧的头部长度、保留），之后依次为每一帧的头部（亮度数据长度、时间、宽、高、
+ * 格式、旋转次数、扫码区域的left/top/right/bottom）和亮度数据（width * height字节，不保存色度数据）。<br/>
+ * 每一帧的亮度数据长度最后写入，文件按块扩展（新扩展的部分为0），因此即使进程意外退出、未调用close，
+ * 已写完的帧也能被读取。可在任意线程调用，append之间互斥
+ */
+public class FrameCaptureWriter implements Closeable {
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    static final int MAGIC = 0x53534346;//"SSCF"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 44;
+    private static final int MAP_CHUNK_SIZE = 8 << 20;//每次扩展映射的大小
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long maxBytes;
+    private MappedByteBuffer buffer;//当前映射的区域，从bufferStart开始
+    private long bufferStart;
+    private long position;//下一帧写入的位置
+    private int frameCount = 0;
+    private boolean closed = false;
+
+    public FrameCaptureWriter(File file) throws IOException {
+        this(file, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * 创建录制文件（覆盖原有内容）
+     *
+     * @param maxBytes 文件的最大长度，达到后不再录制（append返回false），不能超过2GB
+     */
+    public FrameCaptureWriter(File file, long maxBytes) throws IOException {
+        if (maxBytes <= FILE_HEADER_SIZE || maxBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxBytes必须大于" + FILE_HEADER_SIZE + "且不超过2GB");
+        }
+        this.maxBytes = maxBytes;
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        channel = this.file.getChannel();
+
+        map(0, FILE_HEADER_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(FRAME_HEADER_SIZE);
+        buffer.putInt(0);
+        position = FILE_HEADER_SIZE;
+    }
+
+    /**
+     * 录制一帧（只保存前width * height字节的亮度数据）
+     *
+     * @param format         相机的原始格式（如ImageFormat.NV21）
+     * @param rotationCount  相机图像需要被顺时针旋转几次（每次90度）
+     * @param cropRect       扫码区域在相机图像（未旋转）中的位置
+     * @param timestampNanos 帧到达的时间（System.nanoTime）
+     * @return 文件已达到最大长度或已关闭时返回false
+     */
+    public synchronized boolean append(byte[] data, int width, int height, int format, int rotationCount,
+                                       Roi cropRect, long timestampNanos) throws IOException {
+        if (closed) return false;
+        int dataLength = width * height;
+        if (width <= 0 || height <= 0 || data.length < dataLength) {
+            throw new IllegalArgumentException("data的长度必须不小于width * height");
+        }
+        int frameSize = FRAME_HEADER_SIZE + dataLength;
+        if (position + frameSize + 4 > maxBytes) return false;//留出4字节，保证结尾为0
+
+        if (position + frameSize + 4 > bufferStart + buffer.capacity()) {
+            buffer.force();
+            map(position, Math.min(Math.max(MAP_CHUNK_SIZE, frameSize + 4), maxBytes - position));
+        }
+        int start = (int) (position - bufferStart);
+        buffer.position(start + 4);
+        buffer.putLong(timestampNanos);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putInt(format);
+        buffer.putInt(rotationCount);
+        buffer.putInt(cropRect.left);
+        buffer.putInt(cropRect.top);
+        buffer.putInt(cropRect.right);
+        buffer.putInt(cropRect.bottom);
+        buffer.put(data, 0, dataLength);
+        buffer.putInt(start, dataLength);//最后写入长度，表示这一帧已完整
+
+        position += frameSize;
+        frameCount++;
+        return true;
+    }
+
+    /**
+     * 映射从start开始的size字节（超出文件长度时，文件会被扩展）
+     */
+    private void map(long start, long size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+        bufferStart = start;
+    }
+
+    /**
+     * 已录制的帧数
+     */
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 已写入的字节数（包括文件头）
+     */
+    public synchronized long getLength() {
+        return position;
+    }
+
+    /**
+     * 写入磁盘，并把文件截断为实际长度
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            buffer.force();
+            buffer = null;
+            channel.truncate(position);
+        } finally {
+            file.close();
+        }
+    }
+}
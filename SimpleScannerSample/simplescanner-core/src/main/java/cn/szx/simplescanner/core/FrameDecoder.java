@@ -0,0 +1,23 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 帧解码器
+ * <p>
+ * 每个解码线程持有一个独立的FrameDecoder，其方法都只在所属的解码线程中被调用，因此实现类无需考虑线程安全
+ */
+public interface FrameDecoder {
+
+    /**
+     * 识别一帧图像数据
+     * <p>
+     * frame及其data在本方法返回后会被复用，返回的结果回调中不要引用它们
+     *
+     * @return 识别成功时，返回需要在主线程（ResultSequencer的deliveryExecutor）中执行的结果回调；识别失败时返回null
+     */
+    Runnable decode(PreviewFrame frame);
+
+    /**
+     * 释放解码器持有的资源（如native对象），解码线程退出时调用
+     */
+    void release();
+}
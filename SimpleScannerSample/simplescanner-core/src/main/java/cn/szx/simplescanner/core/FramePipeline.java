@@ -0,0 +1,312 @@
+package cn.szx.simplescanner.core;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * 帧处理流水线：把相机送来的帧轮流分发给各解码线程，并按帧的顺序发送识别结果
+ * <p>
+ * 不依赖Android，相机一侧通过FrameSource接入（如BarcodeScannerView），因此可以在普通JVM中运行和测试。<br/>
+ * 识别成功的结果确定发送后暂停处理新帧，直到调用resume（连续扫码模式下不暂停）。<br/>
+ * PreviewFrame在识别完成或被丢弃后放回对象池复用，识别失败的帧在流水线中不分配内存
+ */
+public class FramePipeline {
+    private final FrameSource frameSource;
+    private final ResultSequencer resultSequencer;
+    private final DecodeWorker[] workers;
+    private final ArrayDeque<PreviewFrame> freeFrames = new ArrayDeque<>();//可复用的PreviewFrame
+    private int nextWorker = 0;//轮流向各解码线程分发帧，只在相机线程访问
+    private volatile boolean paused = false;//发送一个结果后暂停处理帧，直到调用resume
+    private volatile ScanMetrics scanMetrics;//为null时不统计
+    private volatile FrameTracer tracer;//为null时不输出跟踪片段
+
+    /**
+     * 帧的来源（相机）
+     */
+    public interface FrameSource {
+        /**
+         * 需要下一帧（如重新设置一次性的预览回调，或把空闲的缓冲区交给相机），可能在任意线程调用
+         */
+        void requestNextFrame();
+
+        /**
+         * 一帧数据使用完毕，其缓冲区可以复用
+         */
+        void recycleFrame(byte[] data);
+    }
+
+    /**
+     * @param frameSource      帧的来源
+     * @param frameDecoders    每个解码线程一个解码器，解码线程的数量即为数组的长度
+     * @param queueCapacity    每个解码线程等待识别的帧的最大数量
+     * @param deliveryExecutor 执行结果回调的Executor（Android中即主线程）
+     */
+    public FramePipeline(FrameSource frameSource, FrameDecoder[] frameDecoders, int queueCapacity,
+                         Executor deliveryExecutor) {
+        if (frameDecoders.length == 0) {
+            throw new IllegalArgumentException("frameDecoders不能为空");
+        }
+        this.frameSource = frameSource;
+        resultSequencer = new ResultSequencer(deliveryExecutor, new ResultSequencer.PauseListener() {
+            @Override
+            public void onPaused() {
+                paused = true;//早于结果回调，之后的resume一定在此之后
+            }
+        });
+        workers = new DecodeWorker[frameDecoders.length];
+        for (int i = 0; i < frameDecoders.length; i++) {
+            workers[i] = new DecodeWorker("DecodeThread-" + i, this, frameDecoders[i], queueCapacity);
+        }
+        for (DecodeWorker worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * 放入一帧（在相机线程调用）
+     */
+    public void dispatch(byte[] data, int width, int height) {
+        dispatch(data, width, height, null);
+    }
+
+    /**
+     * 放入一帧（在相机线程调用）
+     *
+     * @param timings 该帧的耗时统计（ScanMetrics.onFrameArrived），未开启统计时为null
+     */
+    public void dispatch(byte[] data, int width, int height, FrameTimings timings) {
+        if (paused) {
+            frameSource.recycleFrame(data);
+            onFrameDropped();
+            return;
+        }
+
+        DecodeWorker worker = workers[nextWorker];
+        nextWorker = (nextWorker + 1) % workers.length;
+
+        PreviewFrame frame = obtainFrame(data, width, height, resultSequencer.nextSequence(), timings);
+        FrameTracer tracer = this.tracer;
+        if (tracer != null) {
+            tracer.beginAsyncSection("frame", (int) frame.sequence);
+        }
+        PreviewFrame dropped = worker.offer(frame);
+        if (dropped != null) {//丢弃过时的帧，缓冲区交还给相机
+            dropFrame(dropped, tracer);
+            requestNextFrame();
+        } else if (workers.length > 1) {//还有其他解码线程可用，立即获取下一帧
+            requestNextFrame();
+        }
+    }
+
+    /**
+     * 丢弃所有排队等待识别的帧（正在识别的帧不受影响），如对焦完成后，之前的帧大多是模糊的，优先识别新到达的帧
+     * <p>
+     * 可在任意线程调用，有帧被丢弃时请求下一帧
+     */
+    public void discardQueuedFrames() {
+        FrameTracer tracer = this.tracer;
+        boolean dropped = false;
+        for (DecodeWorker worker : workers) {
+            PreviewFrame frame;
+            while ((frame = worker.poll()) != null) {
+                dropFrame(frame, tracer);
+                dropped = true;
+            }
+        }
+        if (dropped) {
+            requestNextFrame();
+        }
+    }
+
+    /**
+     * 丢弃一帧尚未识别的帧：缓冲区交还给相机，该帧的结果视为空
+     */
+    private void dropFrame(PreviewFrame frame, FrameTracer tracer) {
+        frameSource.recycleFrame(frame.data);
+        onFrameDropped();
+        if (tracer != null) {
+            tracer.endAsyncSection("frame", (int) frame.sequence);
+        }
+        resultSequencer.complete(frame.sequence, null);
+        recycleFrame(frame);
+    }
+
+    /**
+     * 识别一帧图像数据（运行于解码线程）
+     */
+    void decodeFrame(FrameDecoder frameDecoder, PreviewFrame frame) {
+        ScanMetrics scanMetrics = this.scanMetrics;
+        FrameTimings timings = scanMetrics != null ? frame.timings : null;
+        FrameTracer tracer = this.tracer;
+        Runnable delivery = null;
+        if (!paused) {
+            if (timings != null) {
+                timings.set(ScanMetrics.Stage.QUEUE_WAIT, System.nanoTime() - timings.arrivalNanos);
+            }
+            if (tracer != null) {
+                tracer.beginSection("decode#" + frame.sequence);
+            }
+            try {
+                delivery = frameDecoder.decode(frame);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                if (tracer != null) {
+                    tracer.endSection();
+                }
+            }
+            if (timings != null) {
+                scanMetrics.onFrameFinished(timings, delivery != null);
+                if (delivery != null) {
+                    delivery = measureDispatch(scanMetrics, delivery);
+                }
+            }
+            if (tracer != null && delivery != null) {
+                delivery = traceDelivery(tracer, frame.sequence, delivery);
+            }
+        } else if (scanMetrics != null) {
+            scanMetrics.onFrameDropped();
+        }
+        if (tracer != null) {
+            tracer.endAsyncSection("frame", (int) frame.sequence);
+        }
+
+        frameSource.recycleFrame(frame.data);
+        //按帧的顺序发送结果，非连续扫码模式下发送后暂停（onPaused），直到调用者再次调用resume。
+        //结果被丢弃（如resume之前的帧）或被拒绝（Delivery.onDeliver）时不会暂停
+        resultSequencer.complete(frame.sequence, delivery);
+        requestNextFrame();//再获取一帧图像数据进行识别，已暂停时什么也不做
+        recycleFrame(frame);
+    }
+
+    private PreviewFrame obtainFrame(byte[] data, int width, int height, long sequence, FrameTimings timings) {
+        PreviewFrame frame;
+        synchronized (freeFrames) {
+            frame = freeFrames.poll();
+        }
+        if (frame == null) {
+            return new PreviewFrame(data, width, height, sequence, timings);
+        }
+        frame.set(data, width, height, sequence, timings);
+        return frame;
+    }
+
+    private void recycleFrame(PreviewFrame frame) {
+        frame.set(null, 0, 0, -1, null);
+        synchronized (freeFrames) {
+            freeFrames.push(frame);
+        }
+    }
+
+    /**
+     * 包装结果回调，统计从识别完成到回调在主线程中执行的耗时
+     */
+    private static Runnable measureDispatch(final ScanMetrics scanMetrics, final Runnable delivery) {
+        final long completedNanos = System.nanoTime();
+        return new ResultSequencer.Delivery() {
+            @Override
+            public boolean onDeliver() {
+                return ResultSequencer.confirm(delivery);
+            }
+
+            @Override
+            public void run() {
+                scanMetrics.onResultDispatched(System.nanoTime() - completedNanos);
+                delivery.run();
+            }
+        };
+    }
+
+    /**
+     * 包装结果回调，在跟踪中输出带帧序号的结果回调片段
+     */
+    private static Runnable traceDelivery(final FrameTracer tracer, final long sequence, final Runnable delivery) {
+        return new ResultSequencer.Delivery() {
+            @Override
+            public boolean onDeliver() {
+                return ResultSequencer.confirm(delivery);
+            }
+
+            @Override
+            public void run() {
+                tracer.beginSection("deliver#" + sequence);
+                try {
+                    delivery.run();
+                } finally {
+                    tracer.endSection();
+                }
+            }
+        };
+    }
+
+    private void onFrameDropped() {
+        ScanMetrics scanMetrics = this.scanMetrics;
+        if (scanMetrics != null) {
+            scanMetrics.onFrameDropped();
+        }
+    }
+
+    /**
+     * 恢复处理帧，并请求下一帧
+     */
+    public void resume() {
+        resultSequencer.resume();
+        paused = false;
+        requestFrame();
+    }
+
+    /**
+     * 识别失败后获取下一帧。与resume不同，若已暂停（识别成功后），则什么也不做
+     */
+    private void requestNextFrame() {
+        if (paused) return;
+        requestFrame();
+    }
+
+    private void requestFrame() {
+        ScanMetrics scanMetrics = this.scanMetrics;
+        if (scanMetrics != null) {
+            scanMetrics.onFrameRequested();
+        }
+        frameSource.requestNextFrame();
+    }
+
+    /**
+     * 是否已暂停（识别成功之后、调用resume之前）
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * 设置是否连续扫码：为true时识别成功后不暂停，结果按帧的顺序逐个发送
+     */
+    public void setContinuous(boolean continuous) {
+        resultSequencer.setContinuous(continuous);
+    }
+
+    /**
+     * 设置性能统计，为null时不统计
+     */
+    public void setScanMetrics(ScanMetrics scanMetrics) {
+        this.scanMetrics = scanMetrics;
+    }
+
+    /**
+     * 设置跟踪点（如Android中输出到systrace），为null时不输出<br/>
+     * 每一帧从放入队列到识别完成（或被丢弃）为一个名为"frame"的异步片段（cookie为帧序号），
+     * 识别和结果回调分别为"decode#帧序号"、"deliver#帧序号"同步片段
+     */
+    public void setTracer(FrameTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * 退出所有解码线程，队列中尚未识别的帧会被丢弃，解码器会在当前识别结束后释放
+     */
+    public void quit() {
+        for (DecodeWorker worker : workers) {
+            worker.quit();
+        }
+    }
+}
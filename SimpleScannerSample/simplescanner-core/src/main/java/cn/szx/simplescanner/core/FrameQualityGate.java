@@ -0,0 +1,123 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 帧质量门限
+ * <p>
+ * 自动对焦过程中镜头来回移动，这期间的帧往往是模糊的，不可能识别成功。
+ * 在识别之前，先在扫码区域内隔点取样，计算清晰度（梯度能量）和对比度（亮度标准差），
+ * 低于门限的帧直接跳过，节省一次完整的识别。<br/>
+ * 清晰度门限是自适应的：记录近期帧清晰度的峰值（逐帧衰减），清晰度低于峰值的一定比例即视为模糊
+ */
+public class FrameQualityGate {
+    public static final int DEFAULT_SAMPLE_STEP = 4;
+    public static final float DEFAULT_MIN_CONTRAST = 8f;
+    public static final float DEFAULT_RELATIVE_SHARPNESS = 0.35f;
+    public static final float DEFAULT_PEAK_DECAY = 0.97f;
+
+    private final int sampleStep;//取样间隔（像素）
+    private final float minContrast;//最低对比度（亮度标准差）
+    private final float relativeSharpness;//清晰度至少要达到峰值的多少
+    private final float peakDecay;//每一帧峰值的衰减系数
+
+    private float peakSharpness = 0;//近期帧清晰度的峰值
+    private float lastSharpness = 0;
+    private float lastContrast = 0;
+    private long acceptedCount = 0;
+    private long rejectedCount = 0;
+
+    public FrameQualityGate() {
+        this(DEFAULT_SAMPLE_STEP, DEFAULT_MIN_CONTRAST, DEFAULT_RELATIVE_SHARPNESS, DEFAULT_PEAK_DECAY);
+    }
+
+    /**
+     * @param sampleStep        取样间隔（像素），越大计算越快
+     * @param minContrast       最低对比度（扫码区域亮度的标准差，0~127），低于此值的帧被跳过
+     * @param relativeSharpness 清晰度低于近期峰值的多少倍时被跳过（0~1），为0时不检查清晰度
+     * @param peakDecay         清晰度峰值每帧的衰减系数（0~1），越小门限适应得越快
+     */
+    public FrameQualityGate(int sampleStep, float minContrast, float relativeSharpness, float peakDecay) {
+        if (sampleStep <= 0) {
+            throw new IllegalArgumentException("sampleStep必须大于0");
+        }
+        if (relativeSharpness < 0 || relativeSharpness > 1 || peakDecay <= 0 || peakDecay > 1) {
+            throw new IllegalArgumentException("relativeSharpness和peakDecay必须在0~1之间");
+        }
+        this.sampleStep = sampleStep;
+        this.minContrast = minContrast;
+        this.relativeSharpness = relativeSharpness;
+        this.peakDecay = peakDecay;
+    }
+
+    /**
+     * 判断一帧的扫码区域是否值得识别（可在多个解码线程中同时调用）
+     *
+     * @param data      亮度数据（Y800，或NV21等以亮度数据开头的格式）
+     * @param dataWidth 图像的宽
+     * @param left      扫码区域的左边界
+     * @param top       扫码区域的上边界
+     * @param width     扫码区域的宽
+     * @param height    扫码区域的高
+     */
+    public boolean accept(byte[] data, int dataWidth, int left, int top, int width, int height) {
+        int step = sampleStep;
+        int right = left + width - step;//保证x + step不越界
+        int bottom = top + height - step;
+
+        long sum = 0, sumSquare = 0, gradientEnergy = 0;
+        int count = 0;
+        for (int y = top; y < bottom; y += step) {
+            int row = y * dataWidth;
+            for (int x = left; x < right; x += step) {
+                int p = data[row + x] & 0xff;
+                int dx = (data[row + x + step] & 0xff) - p;
+                int dy = (data[row + step * dataWidth + x] & 0xff) - p;
+                sum += p;
+                sumSquare += p * p;
+                gradientEnergy += dx * dx + dy * dy;
+                count++;
+            }
+        }
+        if (count == 0) return true;//扫码区域太小，无法判断
+
+        float mean = (float) sum / count;
+        float contrast = (float) Math.sqrt(Math.max(0, (float) sumSquare / count - mean * mean));
+        float sharpness = (float) gradientEnergy / count;
+
+        synchronized (this) {
+            lastContrast = contrast;
+            lastSharpness = sharpness;
+            peakSharpness = Math.max(peakSharpness * peakDecay, sharpness);
+
+            boolean accepted = contrast >= minContrast && sharpness >= peakSharpness * relativeSharpness;
+            if (accepted) {
+                acceptedCount++;
+            } else {
+                rejectedCount++;
+            }
+            return accepted;
+        }
+    }
+
+    /**
+     * 重置自适应门限（如相机重新打开、画面发生了很大的变化）
+     */
+    public synchronized void reset() {
+        peakSharpness = 0;
+    }
+
+    public synchronized float getLastSharpness() {
+        return lastSharpness;
+    }
+
+    public synchronized float getLastContrast() {
+        return lastContrast;
+    }
+
+    public synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+}
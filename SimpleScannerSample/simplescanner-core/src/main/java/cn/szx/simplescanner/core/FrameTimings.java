@@ -0,0 +1,52 @@
+package cn.szx.simplescanner.core;
+
+import java.util.Arrays;
+
+/**
+ * 一帧在各阶段的耗时（纳秒），只在开启统计（ScanMetrics）时创建，随PreviewFrame传递
+ * <p>
+ * 各阶段依次在相机线程、解码线程中写入，线程之间通过解码队列的同步传递，因此不需要额外的同步
+ */
+public class FrameTimings {
+    public final long arrivalNanos;//帧到达（相机回调）的时间，System.nanoTime
+    private final long[] stageNanos = new long[ScanMetrics.Stage.values().length];
+    private boolean decoded = false;
+
+    FrameTimings(long arrivalNanos) {
+        this.arrivalNanos = arrivalNanos;
+        Arrays.fill(stageNanos, -1);
+    }
+
+    /**
+     * 某一阶段的耗时，没有经过该阶段（如被跳过的帧没有SCAN）时返回-1
+     */
+    public long get(ScanMetrics.Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public void set(ScanMetrics.Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] = nanos;
+    }
+
+    /**
+     * 是否识别成功
+     */
+    public boolean isDecoded() {
+        return decoded;
+    }
+
+    void setDecoded(boolean decoded) {
+        this.decoded = decoded;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FrameTimings(");
+        for (ScanMetrics.Stage stage : ScanMetrics.Stage.values()) {
+            long nanos = get(stage);
+            if (nanos < 0) continue;
+            sb.append(stage.name().toLowerCase()).append('=').append(String.format("%.2fms ", nanos / 1e6));
+        }
+        return sb.append(decoded ? "decoded)" : "missed)").toString();
+    }
+}
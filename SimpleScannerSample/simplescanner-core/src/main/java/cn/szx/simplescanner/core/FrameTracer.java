@@ -0,0 +1,32 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 帧处理流水线中的跟踪点，用于在系统跟踪工具（如Android的systrace/Perfetto）中显示每一帧的处理过程
+ * <p>
+ * FramePipeline在各线程中调用：帧从放入队列到识别完成为一个异步片段（cookie为帧序号），
+ * 识别和结果回调为所在线程中的同步片段（名称中带有帧序号）
+ */
+public interface FrameTracer {
+
+    /**
+     * 在当前线程开始一个同步片段，必须在同一线程中调用endSection结束
+     */
+    void beginSection(String name);
+
+    /**
+     * 结束当前线程中最近开始的同步片段
+     */
+    void endSection();
+
+    /**
+     * 开始一个异步片段，可以在其他线程中结束
+     *
+     * @param cookie 区分同名的异步片段
+     */
+    void beginAsyncSection(String name, int cookie);
+
+    /**
+     * 结束一个异步片段，name和cookie与beginAsyncSection相同
+     */
+    void endAsyncSection(String name, int cookie);
+}
@@ -0,0 +1,84 @@
+package cn.szx.simplescanner.core;
+
+import java.util.Arrays;
+
+/**
+ * 耗时分布（不可变），即RollingHistogram在某一时刻的快照，包含最近若干个样本
+ * <p>
+ * 按BUCKET_BOUNDS_MICROS分桶计数，并可计算任意百分位数
+ */
+public class LatencyHistogram {
+    /**
+     * 各桶的上界（微秒，不含），最后一个桶没有上界，因此桶的数量为BUCKET_BOUNDS_MICROS.length + 1
+     */
+    public static final long[] BUCKET_BOUNDS_MICROS = {500, 1000, 2000, 4000, 8000, 16000, 32000, 64000, 128000};
+
+    private final long[] sortedNanos;
+
+    /**
+     * @param sortedNanos 已升序排列的样本（纳秒），由调用者分配，之后不能再修改
+     */
+    LatencyHistogram(long[] sortedNanos) {
+        this.sortedNanos = sortedNanos;
+    }
+
+    /**
+     * 样本数
+     */
+    public int getCount() {
+        return sortedNanos.length;
+    }
+
+    public long getMinNanos() {
+        return sortedNanos.length == 0 ? 0 : sortedNanos[0];
+    }
+
+    public long getMaxNanos() {
+        return sortedNanos.length == 0 ? 0 : sortedNanos[sortedNanos.length - 1];
+    }
+
+    public long getMeanNanos() {
+        if (sortedNanos.length == 0) return 0;
+        long sum = 0;
+        for (long nanos : sortedNanos) {
+            sum += nanos;
+        }
+        return sum / sortedNanos.length;
+    }
+
+    /**
+     * 百分位数（nearest-rank），没有样本时返回0
+     *
+     * @param percentile 0~100，如50、90、99
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile必须在0~100之间");
+        }
+        if (sortedNanos.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sortedNanos.length);
+        return sortedNanos[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * 各桶的样本数，与BUCKET_BOUNDS_MICROS对应
+     */
+    public int[] getBucketCounts() {
+        int[] counts = new int[BUCKET_BOUNDS_MICROS.length + 1];
+        int bucket = 0;
+        for (long nanos : sortedNanos) {//样本已排序，桶的下标只增不减
+            while (bucket < BUCKET_BOUNDS_MICROS.length && nanos >= BUCKET_BOUNDS_MICROS[bucket] * 1000) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms buckets=%s", getCount(),
+                getPercentileNanos(50) / 1e6, getPercentileNanos(90) / 1e6, getPercentileNanos(99) / 1e6,
+                getMaxNanos() / 1e6, Arrays.toString(getBucketCounts()));
+    }
+}
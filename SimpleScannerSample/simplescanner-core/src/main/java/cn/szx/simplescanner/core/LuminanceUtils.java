@@ -0,0 +1,214 @@
+package cn.szx.simplescanner.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 亮度（Y分量）数据处理
+ * <p>
+ * NV21等YUV格式的预览数据中，前width*height个字节即为亮度数据，zbar识别时只需要这一部分（Y800格式）
+ */
+public class LuminanceUtils {
+    private static final int BLOCK_SIZE = 64;//分块旋转时每块的边长，使读写都尽量落在缓存中
+
+    /**
+     * 从预览数据中截取矩形区域的亮度数据，并顺时针旋转rotationCount*90度，一次完成，结果写入out
+     * <p>
+     * 旋转0度或180度时，结果的宽高为cropWidth*cropHeight；旋转90度或270度时，结果的宽高为cropHeight*cropWidth
+     *
+     * @param data          预览数据
+     * @param dataWidth     预览图像的宽
+     * @param dataHeight    预览图像的高
+     * @param left          截取区域的左边界（未旋转图像中的坐标）
+     * @param top           截取区域的上边界（未旋转图像中的坐标）
+     * @param cropWidth     截取区域的宽
+     * @param cropHeight    截取区域的高
+     * @param rotationCount 需要顺时针旋转几次（每次90度）
+     * @param out           结果，长度不能小于cropWidth*cropHeight，由调用者分配，可重复使用
+     * @return out
+     */
+    public static byte[] cropAndRotate(byte[] data, int dataWidth, int dataHeight,
+                                       int left, int top, int cropWidth, int cropHeight,
+                                       int rotationCount, byte[] out) {
+        if (left < 0 || top < 0 || cropWidth <= 0 || cropHeight <= 0
+                || left + cropWidth > dataWidth || top + cropHeight > dataHeight) {
+            throw new IllegalArgumentException("截取区域超出了图像范围");
+        }
+        if (data.length < dataWidth * dataHeight || out.length < cropWidth * cropHeight) {
+            throw new IllegalArgumentException("data或out的长度不足");
+        }
+
+        switch (((rotationCount % 4) + 4) % 4) {
+            case 0:
+                copy(data, dataWidth, left, top, cropWidth, cropHeight, out);
+                break;
+            case 1:
+                rotate90(data, dataWidth, left, top, cropWidth, cropHeight, out);
+                break;
+            case 2:
+                rotate180(data, dataWidth, left, top, cropWidth, cropHeight, out);
+                break;
+            case 3:
+                rotate270(data, dataWidth, left, top, cropWidth, cropHeight, out);
+                break;
+        }
+        return out;
+    }
+
+    /**
+     * 把整帧的亮度数据顺时针旋转rotationCount*90度，结果为新分配的数组（长度与data相同）；不需要旋转时直接返回data
+     * <p>
+     * 只需要扫码区域时，应使用cropAndRotate，只截取并旋转扫码区域，并可复用结果数组
+     */
+    public static byte[] rotate(byte[] data, int width, int height, int rotationCount) {
+        if (((rotationCount % 4) + 4) % 4 == 0) return data;
+
+        byte[] rotatedData = new byte[data.length];
+        return cropAndRotate(data, width, height, 0, 0, width, height, rotationCount, rotatedData);
+    }
+
+    /**
+     * 把一个图像平面（如Camera2中YUV_420_888的Y平面）中的数据复制到out中，结果为紧密排列的width*height个字节
+     * <p>
+     * 平面中每一行的末尾可能有填充（rowStride大于width），像素之间也可能有间隔（pixelStride大于1），复制时会去掉
+     *
+     * @param buffer      平面的数据，从position开始读取
+     * @param rowStride   相邻两行起始位置之间的字节数
+     * @param pixelStride 相邻两个像素之间的字节数（Y平面总是1）
+     * @param width       图像的宽
+     * @param height      图像的高
+     * @param out         结果，长度不能小于width*height，由调用者分配，可重复使用
+     * @return out
+     */
+    public static byte[] copyPlane(ByteBuffer buffer, int rowStride, int pixelStride,
+                                   int width, int height, byte[] out) {
+        if (out.length < width * height) {
+            throw new IllegalArgumentException("out的长度不足");
+        }
+
+        int start = buffer.position();
+        if (pixelStride == 1 && rowStride == width) {//没有填充，一次复制
+            buffer.get(out, 0, width * height);
+        } else if (pixelStride == 1) {//逐行复制，跳过每行末尾的填充
+            for (int y = 0; y < height; y++) {
+                buffer.position(start + y * rowStride);
+                buffer.get(out, y * width, width);
+            }
+        } else {
+            for (int y = 0; y < height; y++) {
+                int src = start + y * rowStride;
+                int dst = y * width;
+                for (int x = 0; x < width; x++) {
+                    out[dst + x] = buffer.get(src + x * pixelStride);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 把一行ARGB像素（如Bitmap.getPixels的结果）转换为亮度，每隔step个像素取一个，结果写入out
+     * <p>
+     * 亮度 = (77 * R + 150 * G + 29 * B) / 256，即ITU-R BT.601的整数近似
+     *
+     * @param pixels    ARGB像素
+     * @param count     转换后的像素个数，pixels的长度不能小于(count - 1) * step + 1
+     * @param step      取样间隔，为1时逐个转换
+     * @param out       结果
+     * @param outOffset 结果写入out的起始位置
+     */
+    public static void argbToLuminance(int[] pixels, int count, int step, byte[] out, int outOffset) {
+        for (int i = 0, src = 0; i < count; i++, src += step) {
+            int argb = pixels[src];
+            int r = (argb >> 16) & 0xff;
+            int g = (argb >> 8) & 0xff;
+            int b = argb & 0xff;
+            out[outOffset + i] = (byte) ((77 * r + 150 * g + 29 * b) >> 8);
+        }
+    }
+
+    /**
+     * 解码图片时的缩小倍数（BitmapFactory.Options.inSampleSize，2的幂），使缩小后的宽高都不超过maxDimension
+     * <p>
+     * 解码器按向上取整计算缩小后的尺寸，因此这里也按向上取整判断
+     */
+    public static int getSampleSize(int width, int height, int maxDimension) {
+        if (maxDimension <= 0) {
+            throw new IllegalArgumentException("maxDimension必须大于0");
+        }
+        int max = Math.max(width, height);
+        int sampleSize = 1;
+        while ((max + sampleSize - 1) / sampleSize > maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 转换为亮度时的取样间隔（见argbToLuminance），使width / step、height / step（向下取整）都不超过maxDimension
+     */
+    public static int getSampleStep(int width, int height, int maxDimension) {
+        if (maxDimension <= 0) {
+            throw new IllegalArgumentException("maxDimension必须大于0");
+        }
+        return Math.max(width, height) / (maxDimension + 1) + 1;//满足max / step <= maxDimension的最小的step
+    }
+
+    /**
+     * 不旋转：逐行复制
+     */
+    private static void copy(byte[] data, int dataWidth, int left, int top, int w, int h, byte[] out) {
+        for (int y = 0; y < h; y++) {
+            System.arraycopy(data, (top + y) * dataWidth + left, out, y * w, w);
+        }
+    }
+
+    /**
+     * 旋转180度：每一行倒序写入对应的行
+     */
+    private static void rotate180(byte[] data, int dataWidth, int left, int top, int w, int h, byte[] out) {
+        for (int y = 0; y < h; y++) {
+            int src = (top + y) * dataWidth + left;
+            int dst = (h - 1 - y) * w + w - 1;
+            for (int x = 0; x < w; x++) {
+                out[dst - x] = data[src + x];
+            }
+        }
+    }
+
+    /**
+     * 顺时针旋转90度：(x, y) -> (h - 1 - y, x)，结果宽为h
+     */
+    private static void rotate90(byte[] data, int dataWidth, int left, int top, int w, int h, byte[] out) {
+        for (int by = 0; by < h; by += BLOCK_SIZE) {
+            int yEnd = Math.min(by + BLOCK_SIZE, h);
+            for (int bx = 0; bx < w; bx += BLOCK_SIZE) {
+                int xEnd = Math.min(bx + BLOCK_SIZE, w);
+                for (int y = by; y < yEnd; y++) {
+                    int src = (top + y) * dataWidth + left;
+                    int dstX = h - 1 - y;
+                    for (int x = bx; x < xEnd; x++) {
+                        out[x * h + dstX] = data[src + x];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 顺时针旋转270度：(x, y) -> (y, w - 1 - x)，结果宽为h
+     */
+    private static void rotate270(byte[] data, int dataWidth, int left, int top, int w, int h, byte[] out) {
+        for (int by = 0; by < h; by += BLOCK_SIZE) {
+            int yEnd = Math.min(by + BLOCK_SIZE, h);
+            for (int bx = 0; bx < w; bx += BLOCK_SIZE) {
+                int xEnd = Math.min(bx + BLOCK_SIZE, w);
+                for (int y = by; y < yEnd; y++) {
+                    int src = (top + y) * dataWidth + left;
+                    for (int x = bx; x < xEnd; x++) {
+                        out[(w - 1 - x) * h + y] = data[src + x];
+                    }
+                }
+            }
+        }
+    }
+}
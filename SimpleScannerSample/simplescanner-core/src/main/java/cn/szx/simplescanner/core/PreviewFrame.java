@@ -0,0 +1,30 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 一帧预览数据，以及解码所需的预览尺寸
+ * <p>
+ * FramePipeline中的PreviewFrame会被复用（识别完成或被丢弃后放回对象池），FrameDecoder.decode返回后不要再持有
+ */
+public class PreviewFrame {
+    public byte[] data;
+    public int width;
+    public int height;
+    public long sequence;//帧序号，按相机回调的顺序递增
+    public FrameTimings timings;//各阶段的耗时，未开启统计（ScanMetrics）时为null
+
+    public PreviewFrame(byte[] data, int width, int height, long sequence) {
+        this(data, width, height, sequence, null);
+    }
+
+    public PreviewFrame(byte[] data, int width, int height, long sequence, FrameTimings timings) {
+        set(data, width, height, sequence, timings);
+    }
+
+    void set(byte[] data, int width, int height, long sequence, FrameTimings timings) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.sequence = sequence;
+        this.timings = timings;
+    }
+}
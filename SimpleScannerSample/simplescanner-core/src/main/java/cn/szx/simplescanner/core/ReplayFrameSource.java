@@ -0,0 +1,151 @@
+package cn.szx.simplescanner.core;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+
+/**
+ * 回放录制文件的帧来源：在单独的线程（相当于相机线程）中把录制的帧依次放入FramePipeline，不需要相机
+ * <p>
+ * 与缓冲模式的相机一样，第一帧直接送出，之后每一帧都需要FramePipeline请求（requestNextFrame）一次。<br/>
+ * 按录制速度回放时，每一帧在录制时的相对时间送出，届时没有请求则跳过该帧（与相机送来的帧无人接收时一样）；
+ * 按最大速度回放时，不跳过任何帧，一有请求就送出下一帧。<br/>
+ * 识别成功后FramePipeline会暂停请求，因此应使用连续扫码模式，或在结果回调中调用resume。
+ * 解码器通过getFrame(frame.data)获取一帧的元数据（旋转次数、扫码区域等）
+ */
+public class ReplayFrameSource implements FramePipeline.FrameSource {
+    private final FrameCaptureReader reader;
+    private final boolean realTime;
+
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+    private final IdentityHashMap<byte[], CapturedFrame> inFlightFrames = new IdentityHashMap<>();//已送出、尚未交还的帧
+    private int pendingRequests = 0;
+    private int framesDispatched = 0;
+    private int framesSkipped = 0;
+    private boolean replayFinished = false;//所有帧都已送出或跳过
+    private boolean stopped = false;
+    private Thread replayThread;
+
+    /**
+     * @param realTime 为true时按录制速度回放，否则按最大速度回放
+     */
+    public ReplayFrameSource(FrameCaptureReader reader, boolean realTime) {
+        this.reader = reader;
+        this.realTime = realTime;
+    }
+
+    /**
+     * 开始回放（只能调用一次）
+     */
+    public synchronized void start(final FramePipeline framePipeline) {
+        if (replayThread != null) {
+            throw new IllegalStateException("已经开始回放");
+        }
+        replayThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    replay(framePipeline);
+                } catch (InterruptedException e) {
+                    //stop
+                } finally {
+                    synchronized (ReplayFrameSource.this) {
+                        replayFinished = true;
+                        ReplayFrameSource.this.notifyAll();
+                    }
+                }
+            }
+        }, "ReplayThread");
+        replayThread.start();
+    }
+
+    private void replay(FramePipeline framePipeline) throws InterruptedException {
+        int frameCount = reader.getFrameCount();
+        if (frameCount == 0) return;
+        long firstTimestamp = reader.getFrame(0).timestampNanos;
+        long startNanos = System.nanoTime();
+
+        for (int i = 0; i < frameCount; i++) {
+            CapturedFrame frame = reader.getFrame(i);
+            byte[] data;
+            synchronized (this) {
+                if (realTime) {
+                    long dueNanos = startNanos + (frame.timestampNanos - firstTimestamp);
+                    long waitNanos;
+                    while (!stopped && (waitNanos = dueNanos - System.nanoTime()) > 0) {
+                        wait(waitNanos / 1000000, (int) (waitNanos % 1000000));
+                    }
+                    if (!stopped && i > 0 && pendingRequests == 0) {//没有请求，跳过这一帧
+                        framesSkipped++;
+                        continue;
+                    }
+                } else {
+                    while (!stopped && i > 0 && pendingRequests == 0) {
+                        wait();
+                    }
+                }
+                if (stopped) return;
+
+                if (i > 0) pendingRequests--;
+                data = obtainBuffer(frame.getDataLength());
+                inFlightFrames.put(data, frame);
+                framesDispatched++;
+            }
+            reader.readData(frame, data);
+            framePipeline.dispatch(data, frame.width, frame.height);
+        }
+    }
+
+    private byte[] obtainBuffer(int length) {
+        byte[] buffer = freeBuffers.poll();
+        return buffer != null && buffer.length >= length ? buffer : new byte[length];
+    }
+
+    @Override
+    public synchronized void requestNextFrame() {
+        pendingRequests++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void recycleFrame(byte[] data) {
+        if (inFlightFrames.remove(data) != null) {
+            freeBuffers.push(data);
+            notifyAll();
+        }
+    }
+
+    /**
+     * 已送出、尚未交还的帧的元数据，data为FramePipeline.dispatch传入的数组（PreviewFrame.data）
+     */
+    public synchronized CapturedFrame getFrame(byte[] data) {
+        return inFlightFrames.get(data);
+    }
+
+    /**
+     * 等待回放结束：所有帧都已送出或跳过，且送出的帧都已识别完毕（交还）
+     */
+    public synchronized void awaitFinished() throws InterruptedException {
+        while (!replayFinished || !inFlightFrames.isEmpty()) {
+            wait();
+        }
+    }
+
+    /**
+     * 停止回放，尚未送出的帧不再送出
+     */
+    public synchronized void stop() {
+        stopped = true;
+        notifyAll();
+    }
+
+    public synchronized int getFramesDispatched() {
+        return framesDispatched;
+    }
+
+    /**
+     * 按录制速度回放时，因没有请求而跳过的帧数
+     */
+    public synchronized int getFramesSkipped() {
+        return framesSkipped;
+    }
+}
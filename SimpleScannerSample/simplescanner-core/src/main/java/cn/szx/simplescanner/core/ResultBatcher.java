@@ -0,0 +1,120 @@
+package cn.szx.simplescanner.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 把一段时间窗口内的识别结果合并为一批，通过一次回调发送，避免高频扫码时频繁回调（如主线程）
+ * <p>
+ * 一批中的第一个结果到达时开始计时，windowMillis之后（或结果数达到maxBatchSize时）把这一批交给executor执行回调。
+ * 时间窗口由Timer结束，也可以由调用者定期调用flushIfDue检查（如不能在Timer的线程中回调时）。
+ * 结果按add的顺序排列，可在任意线程调用
+ */
+public class ResultBatcher<T> {
+
+    /**
+     * 一批结果的回调，运行于创建ResultBatcher时传入的Executor
+     */
+    public interface Callback<T> {
+        void onBatch(List<T> batch);
+    }
+
+    /**
+     * 延迟执行任务（Android中即Handler.postDelayed），可以不执行，此时由调用者通过flushIfDue结束时间窗口
+     */
+    public interface Timer {
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Timer timer;
+    private final Executor executor;
+    private final Callback<T> callback;
+    private ArrayList<T> pending = new ArrayList<>();
+    private int batchId = 0;//当前这一批的编号，用于忽略已提前发送的批次的定时任务
+    private long batchStartNanos;//当前这一批的第一个结果到达的时间
+
+    /**
+     * @param windowMillis 一批结果的时间窗口
+     * @param maxBatchSize 一批结果的最大数量，达到后立即发送
+     * @param timer        用于在时间窗口结束时发送
+     * @param executor     执行回调的Executor
+     */
+    public ResultBatcher(long windowMillis, int maxBatchSize, Timer timer, Executor executor, Callback<T> callback) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis必须大于0");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize必须大于0");
+        }
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.timer = timer;
+        this.executor = executor;
+        this.callback = callback;
+    }
+
+    public void add(T item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * 加入一组结果（如一帧中识别到的所有码）
+     */
+    public synchronized void addAll(List<T> items) {
+        if (items.isEmpty()) return;
+        if (pending.isEmpty()) {//新的一批，开始计时
+            batchStartNanos = System.nanoTime();
+            final int id = ++batchId;
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush(id);
+                }
+            }, windowMillis);
+        }
+        pending.addAll(items);
+        if (pending.size() >= maxBatchSize) {
+            send();
+        }
+    }
+
+    /**
+     * 立即发送当前这一批（如停止扫码时）
+     */
+    public synchronized void flush() {
+        if (!pending.isEmpty()) {
+            send();
+        }
+    }
+
+    /**
+     * 当前这一批的时间窗口已结束时发送（如在执行回调的线程中定期调用）
+     */
+    public synchronized void flushIfDue() {
+        if (!pending.isEmpty() && System.nanoTime() - batchStartNanos >= windowMillis * 1000000L) {
+            send();
+        }
+    }
+
+    private synchronized void flush(int id) {
+        if (id == batchId && !pending.isEmpty()) {
+            send();
+        }
+    }
+
+    private void send() {
+        final List<T> batch = pending;
+        pending = new ArrayList<>();
+        batchId++;//之后到达的结果属于新的一批，这一批的定时任务不再生效
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onBatch(batch);
+            }
+        });
+    }
+}
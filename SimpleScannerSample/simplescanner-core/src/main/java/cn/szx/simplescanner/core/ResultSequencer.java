@@ -0,0 +1,161 @@
+package cn.szx.simplescanner.core;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * 按帧的顺序分发识别结果
+ * <p>
+ * 多个解码线程并行识别时，后到的帧可能先识别完成。每一帧在放入解码队列前分配一个递增的序号，
+ * 识别完成（或被丢弃）后按序号顺序把结果交给deliveryExecutor（Android中即主线程）。一个结果发送后即暂停，直到调用resume，
+ * 这期间完成识别的其他帧的结果会被丢弃（连续扫码模式下不暂停）。<br/>
+ * 结果回调实现了Delivery时，确定发送前先调用其onDeliver，返回false时视为识别失败
+ */
+public class ResultSequencer {
+    private final Executor deliveryExecutor;
+    private final PauseListener pauseListener;
+    //已分配序号、尚未完成的帧的序号（递增）。同时在流水线中的帧的数量有限（各解码线程的队列容量），
+    //数组只在开始时扩容，此后乱序完成、等待的帧再多也不分配内存
+    private long[] unfinished = new long[8];
+    private int unfinishedCount = 0;
+    //已识别成功、但之前还有帧未完成的结果（按序号递增）
+    private long[] waitingSequences = new long[4];
+    private Runnable[] waitingDeliveries = new Runnable[4];
+    private int waitingCount = 0;
+    private long nextSequence = 0;//下一个要分配的序号
+    private long acceptFrom = 0;//序号小于此值的结果会被丢弃
+    private volatile boolean continuous = false;//是否为连续扫码模式
+
+    /**
+     * 需要在确定发送时确认的结果回调
+     * <p>
+     * 结果是否发送要等到之前的帧都完成后才能确定（暂停期间的结果会被丢弃）。
+     * 需要在确定发送时才生效的操作（如记录已返回的结果，见DuplicateFilter）放在onDeliver中，被丢弃的结果不会调用
+     */
+    public interface Delivery extends Runnable {
+        /**
+         * 确定发送该结果时调用（在调用complete的线程中，持有ResultSequencer的锁，应尽快返回）
+         *
+         * @return 为false时不发送，视为识别失败（如此时才发现是重复结果）
+         */
+        boolean onDeliver();
+    }
+
+    /**
+     * 暂停监听
+     */
+    public interface PauseListener {
+        /**
+         * 非连续扫码模式下发送一个结果后暂停（在调用complete的线程中，持有ResultSequencer的锁，早于结果回调的执行）
+         */
+        void onPaused();
+    }
+
+    /**
+     * @param deliveryExecutor 执行结果回调的Executor，按提交顺序执行
+     */
+    public ResultSequencer(Executor deliveryExecutor) {
+        this(deliveryExecutor, null);
+    }
+
+    /**
+     * @param deliveryExecutor 执行结果回调的Executor，按提交顺序执行
+     * @param pauseListener    发送结果后暂停时回调，可以为null
+     */
+    public ResultSequencer(Executor deliveryExecutor, PauseListener pauseListener) {
+        this.deliveryExecutor = deliveryExecutor;
+        this.pauseListener = pauseListener;
+    }
+
+    /**
+     * 为一帧分配序号，之后必须调用一次complete
+     */
+    public synchronized long nextSequence() {
+        if (unfinishedCount == unfinished.length) {
+            unfinished = Arrays.copyOf(unfinished, unfinished.length * 2);
+        }
+        unfinished[unfinishedCount++] = nextSequence;
+        return nextSequence++;
+    }
+
+    /**
+     * 一帧识别完成
+     *
+     * @param delivery 识别成功时的结果回调，识别失败或帧被丢弃时为null
+     */
+    public synchronized void complete(long sequence, Runnable delivery) {
+        for (int i = 0; i < unfinishedCount; i++) {
+            if (unfinished[i] == sequence) {
+                System.arraycopy(unfinished, i + 1, unfinished, i, unfinishedCount - i - 1);
+                unfinishedCount--;
+                break;
+            }
+        }
+        if (delivery != null) {
+            addWaiting(sequence, delivery);
+        }
+
+        //之前的帧都已完成的结果按顺序发送
+        while (waitingCount > 0 && (unfinishedCount == 0 || waitingSequences[0] < unfinished[0])) {
+            long next = waitingSequences[0];
+            Runnable nextDelivery = waitingDeliveries[0];
+            waitingCount--;
+            System.arraycopy(waitingSequences, 1, waitingSequences, 0, waitingCount);
+            System.arraycopy(waitingDeliveries, 1, waitingDeliveries, 0, waitingCount);
+            waitingDeliveries[waitingCount] = null;
+            deliver(next, nextDelivery);
+        }
+    }
+
+    /**
+     * 按序号顺序插入一个等待发送的结果
+     */
+    private void addWaiting(long sequence, Runnable delivery) {
+        if (waitingCount == waitingSequences.length) {
+            waitingSequences = Arrays.copyOf(waitingSequences, waitingCount * 2);
+            waitingDeliveries = Arrays.copyOf(waitingDeliveries, waitingCount * 2);
+        }
+        int i = waitingCount;
+        while (i > 0 && waitingSequences[i - 1] > sequence) {
+            waitingSequences[i] = waitingSequences[i - 1];
+            waitingDeliveries[i] = waitingDeliveries[i - 1];
+            i--;
+        }
+        waitingSequences[i] = sequence;
+        waitingDeliveries[i] = delivery;
+        waitingCount++;
+    }
+
+    /**
+     * 发送一帧的结果（之前的帧都已完成）
+     */
+    private void deliver(long sequence, Runnable delivery) {
+        if (sequence >= acceptFrom && confirm(delivery)) {
+            if (!continuous) {
+                acceptFrom = Long.MAX_VALUE;//暂停，直到调用resume
+                if (pauseListener != null) {
+                    pauseListener.onPaused();
+                }
+            }
+            deliveryExecutor.execute(delivery);
+        }
+    }
+
+    /**
+     * 确定发送一个结果：实现了Delivery时调用其onDeliver，否则直接返回true
+     */
+    static boolean confirm(Runnable delivery) {
+        return !(delivery instanceof Delivery) || ((Delivery) delivery).onDeliver();
+    }
+
+    /**
+     * 恢复发送结果，此后分配序号的帧的结果才会被发送
+     */
+    public synchronized void resume() {
+        acceptFrom = nextSequence;
+    }
+
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+    }
+}
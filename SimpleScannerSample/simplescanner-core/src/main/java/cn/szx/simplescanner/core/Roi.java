@@ -0,0 +1,52 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 矩形区域（如扫码区域），与android.graphics.Rect相同，包含left、top，不包含right、bottom
+ */
+public final class Roi {
+    public final int left;
+    public final int top;
+    public final int right;
+    public final int bottom;
+
+    public Roi(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+
+    public boolean isEmpty() {
+        return left >= right || top >= bottom;
+    }
+
+    public Roi offset(int dx, int dy) {
+        return new Roi(left + dx, top + dy, right + dx, bottom + dy);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Roi)) return false;
+        Roi roi = (Roi) o;
+        return left == roi.left && top == roi.top && right == roi.right && bottom == roi.bottom;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((left * 31 + top) * 31 + right) * 31 + bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "Roi(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+    }
+}
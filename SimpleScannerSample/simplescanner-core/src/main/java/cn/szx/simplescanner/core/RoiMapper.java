@@ -0,0 +1,76 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 扫码区域在各坐标系之间的换算
+ * <p>
+ * 涉及三个坐标系：View（扫码框所在的ViewFinderView）、已旋转为与屏幕方向一致的相机图像、相机图像（未旋转，横屏）。<br/>
+ * rotationCount为相机图像需要顺时针旋转几次（每次90度）才能与屏幕方向一致
+ */
+public class RoiMapper {
+
+    /**
+     * 根据View和（已旋转的）相机图像的尺寸之比，把View中的矩形缩放到相机图像中
+     */
+    public static Roi scaleToFrame(Roi rect, int viewWidth, int viewHeight, int frameWidth, int frameHeight) {
+        return new Roi(rect.left * frameWidth / viewWidth,
+                rect.top * frameHeight / viewHeight,
+                rect.right * frameWidth / viewWidth,
+                rect.bottom * frameHeight / viewHeight);
+    }
+
+    /**
+     * scaleToFrame的逆过程：把（已旋转的）相机图像中的矩形缩放到View中
+     */
+    public static Roi scaleToView(Roi rect, int frameWidth, int frameHeight, int viewWidth, int viewHeight) {
+        return new Roi(rect.left * viewWidth / frameWidth,
+                rect.top * viewHeight / frameHeight,
+                rect.right * viewWidth / frameWidth,
+                rect.bottom * viewHeight / frameHeight);
+    }
+
+    /**
+     * 把已旋转的相机图像中的矩形还原为相机图像（未旋转）中的矩形，即把矩形逆时针旋转rotationCount*90度
+     *
+     * @param width  相机图像（未旋转）的宽
+     * @param height 相机图像（未旋转）的高
+     */
+    public static Roi unrotate(Roi rect, int width, int height, int rotationCount) {
+        switch (((rotationCount % 4) + 4) % 4) {
+            case 1://若相机图像需要顺时针旋转90度，则将矩形逆时针旋转90度
+                return new Roi(rect.top, height - rect.right, rect.bottom, height - rect.left);
+            case 2://若相机图像需要顺时针旋转180度,则将矩形逆时针旋转180度
+                return new Roi(width - rect.right, height - rect.bottom, width - rect.left, height - rect.top);
+            case 3://若相机图像需要顺时针旋转270度，则将矩形逆时针旋转270度
+                return new Roi(width - rect.bottom, rect.left, width - rect.top, rect.right);
+            default:
+                return rect;
+        }
+    }
+
+    /**
+     * unrotate的逆过程：把相机图像（未旋转）中的矩形顺时针旋转rotationCount*90度
+     *
+     * @param width  相机图像（未旋转）的宽
+     * @param height 相机图像（未旋转）的高
+     */
+    public static Roi rotate(Roi rect, int width, int height, int rotationCount) {
+        switch (((rotationCount % 4) + 4) % 4) {
+            case 1:
+                return new Roi(height - rect.bottom, rect.left, height - rect.top, rect.right);
+            case 2:
+                return new Roi(width - rect.right, height - rect.bottom, width - rect.left, height - rect.top);
+            case 3:
+                return new Roi(rect.top, width - rect.right, rect.bottom, width - rect.left);
+            default:
+                return rect;
+        }
+    }
+
+    /**
+     * 把矩形限制在图像范围内，结果可能为空（isEmpty）
+     */
+    public static Roi clamp(Roi rect, int width, int height) {
+        return new Roi(Math.max(rect.left, 0), Math.max(rect.top, 0),
+                Math.min(rect.right, width), Math.min(rect.bottom, height));
+    }
+}
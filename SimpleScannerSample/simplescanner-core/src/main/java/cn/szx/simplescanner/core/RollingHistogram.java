@@ -0,0 +1,38 @@
+package cn.szx.simplescanner.core;
+
+import java.util.Arrays;
+
+/**
+ * 滚动的耗时统计：只保留最近windowSize个样本（环形缓冲区），旧样本被新样本覆盖
+ * <p>
+ * record不分配内存；snapshot时复制并排序当前窗口中的样本
+ */
+class RollingHistogram {
+    private final long[] samples;
+    private int next = 0;//下一个样本写入的位置
+    private int count = 0;//窗口中的样本数，不超过samples.length
+
+    RollingHistogram(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize必须大于0");
+        }
+        samples = new long[windowSize];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    synchronized LatencyHistogram snapshot() {
+        long[] sorted = Arrays.copyOf(samples, count);//未写满时，样本都在前count个位置
+        Arrays.sort(sorted);
+        return new LatencyHistogram(sorted);
+    }
+
+    synchronized void clear() {
+        next = 0;
+        count = 0;
+    }
+}
@@ -0,0 +1,254 @@
+package cn.szx.simplescanner.core;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 扫码性能统计：每一帧在各阶段的耗时、帧数、识别成功率、从打开相机到第一次识别成功的耗时
+ * <p>
+ * 各阶段的耗时保存在滚动的直方图中（最近windowSize帧），每隔reportIntervalMillis通过Listener回调一次快照。<br/>
+ * 由BarcodeScannerView、FramePipeline和帧解码器在各自的线程中记录；未开启统计时这些地方只判断一次null，几乎没有开销
+ */
+public class ScanMetrics {
+    public static final int DEFAULT_WINDOW_SIZE = 256;
+    public static final long DEFAULT_REPORT_INTERVAL_MILLIS = 1000;
+
+    /**
+     * 一帧经过的各个阶段
+     */
+    public enum Stage {
+        CAMERA_DELIVERY,//从请求下一帧到相机送来一帧（缓冲模式和Camera2中，帧可能在请求之前就已到达，此时为0）
+        PARAMETERS,//获取相机参数（预览尺寸），Camera2中没有此阶段
+        QUEUE_WAIT,//在解码队列中等待
+        CROP,//截取（和旋转）扫码区域
+        SCAN,//zbar识别（自适应扫描密度时包含所有密度级别），被跳过的帧没有此阶段
+        MAIN_THREAD_DISPATCH,//从识别完成到结果回调在主线程中执行，只有识别成功的帧有此阶段
+        TOTAL//从帧到达到识别完成
+    }
+
+    /**
+     * 统计结果的回调
+     */
+    public interface Listener {
+        /**
+         * 一帧处理完毕（识别成功、失败或被跳过），运行于解码线程，不要做耗时操作<br/>
+         * timings中没有MAIN_THREAD_DISPATCH（此时结果尚未发送）
+         */
+        void onFrame(FrameTimings timings);
+
+        /**
+         * 定期回调的统计快照，运行于创建ScanMetrics时传入的Executor（Android中即主线程）
+         */
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    /**
+     * 某一时刻的统计快照
+     */
+    public static class Snapshot {
+        public final long framesDelivered;//相机送来的帧数
+        public final long framesDropped;//未识别就被丢弃的帧数（解码队列已满，或识别成功后暂停期间）
+        public final long framesSkipped;//被跳过识别的帧数（如静止画面、模糊的帧）
+        public final long framesScanned;//经过zbar识别的帧数
+        public final long framesDecoded;//识别成功的帧数
+        public final long timeToFirstDecodeMillis;//从打开相机到第一次识别成功的耗时，尚未识别成功时为-1
+        private final LatencyHistogram[] histograms;
+
+        Snapshot(long framesDelivered, long framesDropped, long framesSkipped, long framesScanned,
+                 long framesDecoded, long timeToFirstDecodeMillis, LatencyHistogram[] histograms) {
+            this.framesDelivered = framesDelivered;
+            this.framesDropped = framesDropped;
+            this.framesSkipped = framesSkipped;
+            this.framesScanned = framesScanned;
+            this.framesDecoded = framesDecoded;
+            this.timeToFirstDecodeMillis = timeToFirstDecodeMillis;
+            this.histograms = histograms;
+        }
+
+        /**
+         * 识别成功率：识别成功的帧数 / 经过zbar识别的帧数，没有识别过时为0
+         */
+        public float getSuccessRate() {
+            return framesScanned == 0 ? 0 : (float) framesDecoded / framesScanned;
+        }
+
+        /**
+         * 某一阶段最近windowSize帧的耗时分布
+         */
+        public LatencyHistogram getHistogram(Stage stage) {
+            return histograms[stage.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("delivered=%d dropped=%d skipped=%d scanned=%d decoded=%d success=%.1f%% firstDecode=%dms",
+                    framesDelivered, framesDropped, framesSkipped, framesScanned, framesDecoded,
+                    getSuccessRate() * 100, timeToFirstDecodeMillis));
+            for (Stage stage : Stage.values()) {
+                sb.append('\n').append(stage.name().toLowerCase()).append(": ").append(getHistogram(stage));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final Listener listener;
+    private final Executor listenerExecutor;
+    private final long reportIntervalNanos;
+    private final RollingHistogram[] histograms;
+
+    private long framesDelivered, framesDropped, framesSkipped, framesScanned, framesDecoded;
+    private long startNanos = 0;//打开相机的时间，为0时表示尚未打开
+    private long timeToFirstDecodeMillis = -1;
+    private long requestNanos = 0;//最早的一次尚未得到帧的请求的时间，为0时表示没有
+    private long lastReportNanos;
+
+    /**
+     * @param listener         统计结果的回调
+     * @param listenerExecutor 执行onSnapshot的Executor
+     */
+    public ScanMetrics(Listener listener, Executor listenerExecutor) {
+        this(listener, listenerExecutor, DEFAULT_WINDOW_SIZE, DEFAULT_REPORT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param listener             统计结果的回调
+     * @param listenerExecutor     执行onSnapshot的Executor
+     * @param windowSize           每个直方图保留的最近样本数
+     * @param reportIntervalMillis onSnapshot的回调间隔
+     */
+    public ScanMetrics(Listener listener, Executor listenerExecutor, int windowSize, long reportIntervalMillis) {
+        if (reportIntervalMillis <= 0) {
+            throw new IllegalArgumentException("reportIntervalMillis必须大于0");
+        }
+        this.listener = listener;
+        this.listenerExecutor = listenerExecutor;
+        this.reportIntervalNanos = reportIntervalMillis * 1000000L;
+        histograms = new RollingHistogram[Stage.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new RollingHistogram(windowSize);
+        }
+        lastReportNanos = System.nanoTime();
+    }
+
+    /**
+     * 打开相机（startCamera）时调用，重新开始计算到第一次识别成功的耗时
+     */
+    public synchronized void onCameraStarted() {
+        startNanos = System.nanoTime();
+        timeToFirstDecodeMillis = -1;
+        requestNanos = 0;
+    }
+
+    /**
+     * 请求了下一帧
+     */
+    public synchronized void onFrameRequested() {
+        if (requestNanos == 0) {
+            requestNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * 相机送来一帧（在相机线程调用），返回该帧的FrameTimings，已写入CAMERA_DELIVERY
+     */
+    public synchronized FrameTimings onFrameArrived() {
+        long now = System.nanoTime();
+        FrameTimings timings = new FrameTimings(now);
+        timings.set(Stage.CAMERA_DELIVERY, requestNanos == 0 ? 0 : now - requestNanos);
+        requestNanos = 0;
+        framesDelivered++;
+        return timings;
+    }
+
+    /**
+     * 一帧未识别就被丢弃
+     */
+    public synchronized void onFrameDropped() {
+        framesDropped++;
+    }
+
+    /**
+     * 一帧处理完毕（在解码线程调用）：写入TOTAL，把各阶段的耗时计入直方图，并通知Listener
+     */
+    public void onFrameFinished(FrameTimings timings, boolean decoded) {
+        long now = System.nanoTime();
+        timings.set(Stage.TOTAL, now - timings.arrivalNanos);
+        timings.setDecoded(decoded);
+        for (Stage stage : Stage.values()) {
+            long nanos = timings.get(stage);
+            if (nanos >= 0) {
+                histograms[stage.ordinal()].record(nanos);
+            }
+        }
+
+        boolean report;
+        synchronized (this) {
+            if (timings.get(Stage.SCAN) < 0) {
+                framesSkipped++;
+            } else {
+                framesScanned++;
+            }
+            if (decoded) {
+                framesDecoded++;
+                if (timeToFirstDecodeMillis < 0 && startNanos != 0) {
+                    timeToFirstDecodeMillis = (now - startNanos) / 1000000;
+                }
+            }
+            report = now - lastReportNanos >= reportIntervalNanos;
+            if (report) {
+                lastReportNanos = now;
+            }
+        }
+
+        listener.onFrame(timings);
+        if (report) {
+            final Snapshot snapshot = snapshot();
+            listenerExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onSnapshot(snapshot);
+                }
+            });
+        }
+    }
+
+    /**
+     * 识别结果的回调开始执行（在主线程调用）
+     *
+     * @param nanos 从识别完成到此时的耗时
+     */
+    public void onResultDispatched(long nanos) {
+        histograms[Stage.MAIN_THREAD_DISPATCH.ordinal()].record(nanos);
+    }
+
+    /**
+     * 当前的统计快照（可在任意线程调用）
+     */
+    public synchronized Snapshot snapshot() {
+        LatencyHistogram[] snapshots = new LatencyHistogram[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            snapshots[i] = histograms[i].snapshot();
+        }
+        return new Snapshot(framesDelivered, framesDropped, framesSkipped, framesScanned, framesDecoded,
+                timeToFirstDecodeMillis, snapshots);
+    }
+
+    /**
+     * 清空所有统计，相机已打开时从此刻起重新计算到第一次识别成功的耗时
+     * <p>
+     * 此前尚未得到帧的请求也被丢弃，reset后的第一帧CAMERA_DELIVERY为0
+     */
+    public synchronized void reset() {
+        long now = System.nanoTime();
+        framesDelivered = framesDropped = framesSkipped = framesScanned = framesDecoded = 0;
+        if (startNanos != 0) {
+            startNanos = now;
+        }
+        timeToFirstDecodeMillis = -1;
+        requestNanos = 0;
+        lastReportNanos = now;
+        for (RollingHistogram histogram : histograms) {
+            histogram.clear();
+        }
+    }
+}
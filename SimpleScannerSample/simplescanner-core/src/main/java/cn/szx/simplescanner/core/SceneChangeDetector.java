@@ -0,0 +1,117 @@
+package cn.szx.simplescanner.core;
+
+/**
+ * 静止画面检测
+ * <p>
+ * 设备静止地对着没有码的画面时，每一帧的识别结果都一样（失败），重复识别只是在浪费CPU和电量。<br/>
+ * 把扫码区域缩小为一个很小的亮度签名（gridSize*gridSize个格子的平均亮度），保存最近一次识别失败的帧的签名，
+ * 新帧的签名与之相差很小时跳过识别；画面移动或亮度变化时立即恢复识别。
+ * 为避免一直跳过（如对焦完成后画面只是变清晰，签名几乎不变），每隔maxSkipMillis仍会识别一次
+ */
+public class SceneChangeDetector {
+    public static final int DEFAULT_GRID_SIZE = 16;
+    public static final int DEFAULT_SAMPLE_STEP = 4;
+    public static final float DEFAULT_THRESHOLD = 4f;
+    public static final long DEFAULT_MAX_SKIP_MILLIS = 1000;
+
+    private final int gridSize;
+    private final int sampleStep;
+    private final float threshold;//签名中各格子平均亮度的平均差值小于此值时，视为画面没有变化
+    private final long maxSkipNanos;
+
+    private final int[] lastFailedSignature;//最近一次识别失败的帧的签名
+    private boolean hasLastFailed = false;
+    private long lastDecodeNanos = 0;//最近一次没有跳过的时间
+    private long skippedCount = 0;
+
+    public SceneChangeDetector() {
+        this(DEFAULT_GRID_SIZE, DEFAULT_SAMPLE_STEP, DEFAULT_THRESHOLD, DEFAULT_MAX_SKIP_MILLIS);
+    }
+
+    /**
+     * @param gridSize      签名的边长（格子数）
+     * @param sampleStep    计算签名时的取样间隔（像素）
+     * @param threshold     各格子平均亮度的平均差值（0~255）小于此值时，视为画面没有变化
+     * @param maxSkipMillis 画面没有变化时，最多连续跳过多久
+     */
+    public SceneChangeDetector(int gridSize, int sampleStep, float threshold, long maxSkipMillis) {
+        if (gridSize <= 0 || sampleStep <= 0) {
+            throw new IllegalArgumentException("gridSize和sampleStep必须大于0");
+        }
+        this.gridSize = gridSize;
+        this.sampleStep = sampleStep;
+        this.threshold = threshold;
+        this.maxSkipNanos = maxSkipMillis * 1000000L;
+        lastFailedSignature = new int[gridSize * gridSize];
+    }
+
+    /**
+     * 创建一个签名数组，由调用者持有并复用（每个解码线程一个）
+     */
+    public int[] newSignature() {
+        return new int[gridSize * gridSize];
+    }
+
+    /**
+     * 计算扫码区域的签名，结果写入signature
+     */
+    public void computeSignature(byte[] data, int dataWidth, int left, int top, int width, int height, int[] signature) {
+        for (int gy = 0; gy < gridSize; gy++) {
+            int y0 = top + gy * height / gridSize;
+            int y1 = Math.max(top + (gy + 1) * height / gridSize, y0 + 1);
+            for (int gx = 0; gx < gridSize; gx++) {
+                int x0 = left + gx * width / gridSize;
+                int x1 = Math.max(left + (gx + 1) * width / gridSize, x0 + 1);
+
+                int sum = 0, count = 0;
+                for (int y = y0; y < y1; y += sampleStep) {
+                    int row = y * dataWidth;
+                    for (int x = x0; x < x1; x += sampleStep) {
+                        sum += data[row + x] & 0xff;
+                        count++;
+                    }
+                }
+                signature[gy * gridSize + gx] = sum / count;
+            }
+        }
+    }
+
+    /**
+     * 是否应该跳过识别：与最近一次识别失败的帧相比，画面没有变化
+     */
+    public synchronized boolean shouldSkip(int[] signature) {
+        long now = System.nanoTime();
+        if (hasLastFailed && now - lastDecodeNanos < maxSkipNanos) {
+            long diff = 0;
+            for (int i = 0; i < signature.length; i++) {
+                diff += Math.abs(signature[i] - lastFailedSignature[i]);
+            }
+            if (diff < threshold * signature.length) {
+                skippedCount++;
+                return true;
+            }
+        }
+
+        lastDecodeNanos = now;
+        return false;
+    }
+
+    /**
+     * 识别失败后调用，保存该帧的签名
+     */
+    public synchronized void onDecodeFailed(int[] signature) {
+        System.arraycopy(signature, 0, lastFailedSignature, 0, lastFailedSignature.length);
+        hasLastFailed = true;
+    }
+
+    /**
+     * 识别成功后（或需要强制恢复识别时）调用
+     */
+    public synchronized void reset() {
+        hasLastFailed = false;
+    }
+
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+}
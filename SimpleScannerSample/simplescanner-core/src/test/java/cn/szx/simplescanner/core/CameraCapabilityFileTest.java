@@ -0,0 +1,188 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CameraCapabilityFileTest {
+    private static final String FINGERPRINT = "vendor/device/device:9/PQ1A/1234:user/release-keys";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        assertFalse(file.hasDefaultCameraId());
+        file.setDefaultCameraId(0);
+        file.put(backCamera());
+        file.put(frontCamera());
+        file.save();
+        assertFalse(new File(path.getPath() + ".tmp").exists());
+
+        CameraCapabilityFile loaded = CameraCapabilityFile.load(path, FINGERPRINT);
+        assertTrue(loaded.hasDefaultCameraId());
+        assertEquals(0, loaded.getDefaultCameraId());
+        assertCapabilitiesEqual(backCamera(), loaded.get(0));
+        assertCapabilitiesEqual(frontCamera(), loaded.get(1));
+        assertNull(loaded.get(2));
+    }
+
+    @Test
+    public void noBackCamera() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        file.setDefaultCameraId(-1);//没有后置相机
+        file.save();
+
+        CameraCapabilityFile loaded = CameraCapabilityFile.load(path, FINGERPRINT);
+        assertTrue(loaded.hasDefaultCameraId());
+        assertEquals(-1, loaded.getDefaultCameraId());
+    }
+
+    @Test
+    public void saveWithoutChangesDoesNotWrite() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        CameraCapabilityFile.load(path, FINGERPRINT).save();
+        assertFalse(path.exists());
+
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        file.setDefaultCameraId(0);
+        file.save();
+        assertTrue(path.delete());
+        file.setDefaultCameraId(0);//与原来相同，不算修改
+        file.save();
+        assertFalse(path.exists());
+    }
+
+    @Test
+    public void fingerprintMismatchIsIgnored() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        file.setDefaultCameraId(0);
+        file.put(backCamera());
+        file.save();
+
+        CameraCapabilityFile upgraded = CameraCapabilityFile.load(path, FINGERPRINT + ".1");//如系统升级后
+        assertFalse(upgraded.hasDefaultCameraId());
+        assertNull(upgraded.get(0));
+
+        upgraded.setDefaultCameraId(1);//重新探测后覆盖
+        upgraded.save();
+        assertEquals(1, CameraCapabilityFile.load(path, FINGERPRINT + ".1").getDefaultCameraId());
+        assertFalse(CameraCapabilityFile.load(path, FINGERPRINT).hasDefaultCameraId());
+    }
+
+    @Test
+    public void corruptFileIsTreatedAsEmpty() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        try (FileOutputStream out = new FileOutputStream(path)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        }
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        assertFalse(file.hasDefaultCameraId());
+        assertNull(file.get(0));
+    }
+
+    @Test
+    public void invalidCountIsTreatedAsEmpty() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(path))) {
+            out.writeInt(CameraCapabilityFile.MAGIC);
+            out.writeInt(CameraCapabilityFile.VERSION);
+            out.writeUTF(FINGERPRINT);
+            out.writeInt(0);
+            out.writeInt(Integer.MAX_VALUE);//相机数量已损坏，不会分配过大的数组
+        }
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        assertFalse(file.hasDefaultCameraId());
+    }
+
+    @Test
+    public void truncatedFileIsTreatedAsEmpty() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        file.setDefaultCameraId(0);
+        file.put(backCamera());
+        file.put(frontCamera());
+        file.save();
+        long length = path.length();
+
+        for (long truncated = length - 1; truncated >= 0; truncated -= 7) {
+            try (RandomAccessFile raf = new RandomAccessFile(path, "rw")) {
+                raf.setLength(truncated);
+            }
+            CameraCapabilityFile loaded = CameraCapabilityFile.load(path, FINGERPRINT);
+            assertFalse("length=" + truncated, loaded.hasDefaultCameraId());//不会只读出一部分相机
+            assertNull("length=" + truncated, loaded.get(0));
+            assertNull("length=" + truncated, loaded.get(1));
+        }
+    }
+
+    @Test
+    public void clearDeletesFile() throws IOException {
+        File path = new File(folder.getRoot(), "capabilities");
+        CameraCapabilityFile file = CameraCapabilityFile.load(path, FINGERPRINT);
+        file.setDefaultCameraId(0);
+        file.put(backCamera());
+        file.save();
+        assertTrue(path.exists());
+
+        file.clear();
+        assertFalse(path.exists());
+        assertFalse(file.hasDefaultCameraId());
+        assertNull(file.get(0));
+        file.save();//清空后没有修改，不会重新写入
+        assertFalse(path.exists());
+
+        file.put(frontCamera());
+        file.save();
+        CameraCapabilityFile loaded = CameraCapabilityFile.load(path, FINGERPRINT);
+        assertNull(loaded.get(0));
+        assertCapabilitiesEqual(frontCamera(), loaded.get(1));
+    }
+
+    private static CameraCapabilities backCamera() {
+        return new CameraCapabilities(0, 0, 90, new int[]{1920, 1080, 1280, 720, 640, 480},
+                Arrays.asList("auto", "continuous-picture", "macro"), Arrays.asList("off", "torch"), true, 1);
+    }
+
+    private static CameraCapabilities frontCamera() {
+        return new CameraCapabilities(1, 1, 270, new int[]{1280, 720},
+                Arrays.asList("fixed"), null, false, 0);
+    }
+
+    private static void assertCapabilitiesEqual(CameraCapabilities expected, CameraCapabilities actual) {
+        assertEquals(expected.cameraId, actual.cameraId);
+        assertEquals(expected.facing, actual.facing);
+        assertEquals(expected.orientation, actual.orientation);
+        assertArrayEquals(previewSizes(expected), previewSizes(actual));
+        assertEquals(expected.focusModes, actual.focusModes);
+        assertEquals(expected.flashModes, actual.flashModes);
+        assertEquals(expected.flashSupported, actual.flashSupported);
+        assertEquals(expected.maxNumFocusAreas, actual.maxNumFocusAreas);
+    }
+
+    private static int[] previewSizes(CameraCapabilities capabilities) {
+        int[] sizes = new int[capabilities.getPreviewSizeCount() * 2];
+        for (int i = 0; i < capabilities.getPreviewSizeCount(); i++) {
+            sizes[i * 2] = capabilities.getPreviewWidth(i);
+            sizes[i * 2 + 1] = capabilities.getPreviewHeight(i);
+        }
+        return sizes;
+    }
+}
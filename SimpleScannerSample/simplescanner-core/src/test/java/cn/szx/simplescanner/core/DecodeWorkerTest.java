@@ -0,0 +1,74 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DecodeWorkerTest {
+    private static final FrameDecoder NO_OP_DECODER = new FrameDecoder() {
+        @Override
+        public Runnable decode(PreviewFrame frame) {
+            return null;
+        }
+
+        @Override
+        public void release() {
+        }
+    };
+
+    @Test
+    public void offerDropsOldestWhenFull() {
+        DecodeWorker worker = new DecodeWorker("test", null, NO_OP_DECODER, 2);//不启动线程，只测试队列
+        PreviewFrame a = frame(0), b = frame(1), c = frame(2);
+        assertNull(worker.offer(a));
+        assertNull(worker.offer(b));
+        assertSame(a, worker.offer(c));
+        assertSame(b, worker.poll());
+        assertSame(c, worker.poll());
+        assertNull(worker.poll());
+    }
+
+    @Test
+    public void offerAfterQuitReturnsFrame() {
+        DecodeWorker worker = new DecodeWorker("test", null, NO_OP_DECODER, 1);
+        worker.offer(frame(0));
+        worker.quit();
+        assertNull(worker.poll());//队列已清空
+        PreviewFrame frame = frame(1);
+        assertSame(frame, worker.offer(frame));
+    }
+
+    @Test
+    public void releasesDecoderOnQuit() throws InterruptedException {
+        final CountDownLatch released = new CountDownLatch(1);
+        DecodeWorker worker = new DecodeWorker("test", null, new FrameDecoder() {
+            @Override
+            public Runnable decode(PreviewFrame frame) {
+                return null;
+            }
+
+            @Override
+            public void release() {
+                released.countDown();
+            }
+        }, 1);
+        worker.start();
+        worker.quit();
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        worker.join(5000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new DecodeWorker("test", null, NO_OP_DECODER, 0);
+    }
+
+    private static PreviewFrame frame(long sequence) {
+        return new PreviewFrame(new byte[1], 1, 1, sequence);
+    }
+}
@@ -0,0 +1,70 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateFilterTest {
+
+    @Test
+    public void filtersRepeatedResult() {
+        DuplicateFilter filter = new DuplicateFilter();
+        assertTrue(filter.accept("QRCODE", "abc"));
+        assertFalse(filter.accept("QRCODE", "abc"));
+        assertTrue(filter.accept("EAN13", "abc"));//格式不同
+        assertTrue(filter.accept("QRCODE", "abcd"));
+    }
+
+    @Test
+    public void isDuplicateDoesNotRecord() {
+        DuplicateFilter filter = new DuplicateFilter();
+        assertFalse(filter.isDuplicate("QRCODE", "abc"));
+        assertFalse(filter.isDuplicate("QRCODE", "abc"));
+        assertTrue(filter.accept("QRCODE", "abc"));
+        assertTrue(filter.isDuplicate("QRCODE", "abc"));
+        assertFalse(filter.isDuplicate("EAN13", "abc"));
+    }
+
+    @Test
+    public void acceptsAgainAfterWindow() throws InterruptedException {
+        DuplicateFilter filter = new DuplicateFilter(DuplicateFilter.DEFAULT_MAX_SIZE, 50);
+        assertTrue(filter.accept("QRCODE", "abc"));
+        assertFalse(filter.accept("QRCODE", "abc"));
+        Thread.sleep(80);
+        assertFalse(filter.isDuplicate("QRCODE", "abc"));
+        assertTrue(filter.accept("QRCODE", "abc"));
+        assertFalse(filter.accept("QRCODE", "abc"));
+    }
+
+    @Test
+    public void zeroWindowNeverFilters() {
+        DuplicateFilter filter = new DuplicateFilter(DuplicateFilter.DEFAULT_MAX_SIZE, 0);
+        assertTrue(filter.accept("QRCODE", "abc"));
+        assertTrue(filter.accept("QRCODE", "abc"));
+    }
+
+    @Test
+    public void evictsEldestWhenFull() {
+        DuplicateFilter filter = new DuplicateFilter(2, 60000);
+        assertTrue(filter.accept("QRCODE", "a"));
+        assertTrue(filter.accept("QRCODE", "b"));
+        assertTrue(filter.accept("QRCODE", "c"));//淘汰a
+        assertFalse(filter.accept("QRCODE", "c"));
+        assertFalse(filter.accept("QRCODE", "b"));
+        assertTrue(filter.accept("QRCODE", "a"));
+    }
+
+    @Test
+    public void clear() {
+        DuplicateFilter filter = new DuplicateFilter();
+        filter.accept("QRCODE", "abc");
+        filter.clear();
+        assertTrue(filter.accept("QRCODE", "abc"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxSizeMustBePositive() {
+        new DuplicateFilter(0, 1000);
+    }
+}
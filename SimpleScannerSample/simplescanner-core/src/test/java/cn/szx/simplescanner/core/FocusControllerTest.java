@@ -0,0 +1,119 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FocusControllerTest {
+    private static final long LONG_MILLIS = 60000;//测试过程中不会到达的间隔
+
+    @Test
+    public void refocusAfterMisses() {
+        FocusController controller = new FocusController(3, 0, LONG_MILLIS);
+        assertFalse(controller.onFrameMissed());
+        assertFalse(controller.onFrameMissed());
+        assertTrue(controller.onFrameMissed());//第3帧
+        assertTrue(controller.isFocusing());
+        assertEquals(1, controller.getFocusCount());
+        assertEquals(1, controller.getRefocusCount());
+    }
+
+    @Test
+    public void decodedFrameRestartsCounting() {
+        FocusController controller = new FocusController(3, 0, LONG_MILLIS);
+        controller.onFrameMissed();
+        controller.onFrameMissed();
+        controller.onFrameDecoded();
+        assertFalse(controller.onFrameMissed());
+        assertFalse(controller.onFrameMissed());
+        assertTrue(controller.onFrameMissed());
+    }
+
+    @Test
+    public void noRefocusWhileFocusing() {
+        FocusController controller = new FocusController(1, 0, LONG_MILLIS);
+        controller.onFocusStarted();
+        for (int i = 0; i < 10; i++) {
+            assertFalse(controller.onFrameMissed());
+        }
+        assertEquals(0, controller.getRefocusCount());
+
+        assertFalse(controller.onFocusFinished(false));
+        assertFalse(controller.isFocusing());
+        assertTrue(controller.onFrameMissed());//对焦结束后重新计数
+    }
+
+    @Test
+    public void focusTimeout() throws InterruptedException {
+        FocusController controller = new FocusController(1, 0, 50);
+        assertTrue(controller.onFrameMissed());
+        assertTrue(controller.isFocusing());
+        assertFalse(controller.onFrameMissed());//正在对焦
+
+        Thread.sleep(100);//对焦回调丢失
+        assertFalse(controller.isFocusing());
+        assertTrue(controller.onFrameMissed());
+        assertEquals(2, controller.getRefocusCount());
+    }
+
+    @Test
+    public void minRefocusInterval() throws InterruptedException {
+        FocusController controller = new FocusController(1, LONG_MILLIS, LONG_MILLIS);
+        assertTrue(controller.onFrameMissed());//刚创建时不受间隔限制
+        controller.onFocusFinished(true);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(controller.onFrameMissed());
+        }
+
+        controller = new FocusController(1, 50, LONG_MILLIS);
+        controller.onFocusStarted();
+        controller.onFocusFinished(true);
+        assertFalse(controller.onFrameMissed());//从对焦结束算起不到50毫秒
+        Thread.sleep(100);
+        assertTrue(controller.onFrameMissed());
+    }
+
+    @Test
+    public void focusFinishedCounts() {
+        FocusController controller = new FocusController();
+        controller.onFocusStarted();
+        controller.onFocusStarted();//连续对焦移动镜头时可能多次开始，只算一次
+        assertTrue(controller.isFocusing());
+        assertTrue(controller.onFocusFinished(true));
+        controller.onFocusStarted();
+        assertFalse(controller.onFocusFinished(false));
+
+        assertEquals(2, controller.getFocusCount());
+        assertEquals(1, controller.getFocusSuccessCount());
+        assertEquals(0, controller.getRefocusCount());
+    }
+
+    @Test
+    public void resetStopsFocusingAndIgnoresInterval() {
+        FocusController controller = new FocusController(2, LONG_MILLIS, LONG_MILLIS);
+        controller.onFocusStarted();
+        controller.onFrameMissed();
+        controller.reset();
+        assertFalse(controller.isFocusing());
+
+        assertFalse(controller.onFrameMissed());//重置前的一帧不再计数
+        assertTrue(controller.onFrameMissed());//重置后不受最小间隔限制
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroMissesBeforeRefocus() {
+        new FocusController(0, 0, LONG_MILLIS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeRefocusInterval() {
+        new FocusController(1, -1, LONG_MILLIS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroFocusTimeout() {
+        new FocusController(1, 0, 0);
+    }
+}
@@ -0,0 +1,193 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * FrameCaptureWriter录制、FrameCaptureReader读取
+ */
+public class FrameCaptureTest {
+    private static final int NV21 = 17;//ImageFormat.NV21
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        File file = folder.newFile();
+        byte[][] frames = {randomFrame(16, 8, 1), randomFrame(7, 5, 2), randomFrame(64, 48, 3)};
+        int[][] sizes = {{16, 8}, {7, 5}, {64, 48}};
+        try (FrameCaptureWriter writer = new FrameCaptureWriter(file)) {
+            for (int i = 0; i < frames.length; i++) {
+                assertTrue(writer.append(frames[i], sizes[i][0], sizes[i][1], NV21, i,
+                        new Roi(i, i + 1, i + 2, i + 3), 1000L * i));
+            }
+            assertEquals(frames.length, writer.getFrameCount());
+        }
+        assertEquals(expectedLength(sizes), file.length());//close后截断为实际长度
+
+        try (FrameCaptureReader reader = new FrameCaptureReader(file)) {
+            assertEquals(frames.length, reader.getFrameCount());
+            for (int i = 0; i < frames.length; i++) {
+                CapturedFrame frame = reader.getFrame(i);
+                assertEquals(i, frame.index);
+                assertEquals(1000L * i, frame.timestampNanos);
+                assertEquals(sizes[i][0], frame.width);
+                assertEquals(sizes[i][1], frame.height);
+                assertEquals(NV21, frame.format);
+                assertEquals(i, frame.rotationCount);
+                assertEquals(new Roi(i, i + 1, i + 2, i + 3), frame.cropRect);
+                assertLuminanceEquals(frames[i], reader, frame);
+            }
+        }
+    }
+
+    @Test
+    public void unclosedFileKeepsWrittenFrames() throws IOException {
+        File file = folder.newFile();
+        byte[] data = randomFrame(32, 16, 1);
+        FrameCaptureWriter writer = new FrameCaptureWriter(file);
+        try {
+            writer.append(data, 32, 16, NV21, 1, new Roi(0, 0, 32, 16), 0);
+            writer.append(data, 32, 16, NV21, 1, new Roi(0, 0, 32, 16), 1);
+            assertTrue(file.length() > writer.getLength());//未close（如进程意外退出），文件末尾是扩展出的0
+
+            try (FrameCaptureReader reader = new FrameCaptureReader(file)) {
+                assertEquals(2, reader.getFrameCount());
+                assertLuminanceEquals(data, reader, reader.getFrame(1));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void truncatedLastFrameIsIgnored() throws IOException {
+        File file = folder.newFile();
+        byte[] data = randomFrame(32, 16, 1);
+        try (FrameCaptureWriter writer = new FrameCaptureWriter(file)) {
+            writer.append(data, 32, 16, NV21, 0, new Roi(0, 0, 32, 16), 0);
+            writer.append(data, 32, 16, NV21, 0, new Roi(0, 0, 32, 16), 1);
+        }
+        truncate(file, file.length() - 1);//最后一帧的数据不完整
+        try (FrameCaptureReader reader = new FrameCaptureReader(file)) {
+            assertEquals(1, reader.getFrameCount());
+            assertLuminanceEquals(data, reader, reader.getFrame(0));
+        }
+
+        truncate(file, FrameCaptureWriter.FILE_HEADER_SIZE + FrameCaptureWriter.FRAME_HEADER_SIZE - 1);//头部也不完整
+        try (FrameCaptureReader reader = new FrameCaptureReader(file)) {
+            assertEquals(0, reader.getFrameCount());
+        }
+    }
+
+    @Test
+    public void notACaptureFile() throws IOException {
+        File file = folder.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0x12345678);
+            raf.writeInt(FrameCaptureWriter.VERSION);
+            raf.writeInt(FrameCaptureWriter.FRAME_HEADER_SIZE);
+            raf.writeInt(0);
+        }
+        try {
+            new FrameCaptureReader(file).close();
+            fail();
+        } catch (IOException e) {
+            //不是录制文件
+        }
+    }
+
+    @Test
+    public void framesSpanningMapChunks() throws IOException {
+        //每一帧3MB，第3帧跨过8MB（映射一次扩展的大小）
+        int width = 2048, height = 1536;
+        File file = folder.newFile();
+        byte[][] frames = new byte[4][];
+        try (FrameCaptureWriter writer = new FrameCaptureWriter(file)) {
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = randomFrame(width, height, i);
+                assertTrue(writer.append(frames[i], width, height, NV21, 0, new Roi(0, 0, width, height), i));
+            }
+        }
+        long thirdFrameStart = FrameCaptureWriter.FILE_HEADER_SIZE
+                + 2L * (FrameCaptureWriter.FRAME_HEADER_SIZE + width * height);
+        long thirdFrameEnd = thirdFrameStart + FrameCaptureWriter.FRAME_HEADER_SIZE + width * height;
+        assertTrue(thirdFrameStart < 8 << 20 && thirdFrameEnd > 8 << 20);
+
+        try (FrameCaptureReader reader = new FrameCaptureReader(file)) {
+            assertEquals(frames.length, reader.getFrameCount());
+            for (int i = 0; i < frames.length; i++) {
+                assertEquals(i, reader.getFrame(i).timestampNanos);
+                assertLuminanceEquals(frames[i], reader, reader.getFrame(i));
+            }
+        }
+    }
+
+    @Test
+    public void stopsAtMaxBytes() throws IOException {
+        File file = folder.newFile();
+        int frameSize = FrameCaptureWriter.FRAME_HEADER_SIZE + 16 * 8;
+        byte[] data = randomFrame(16, 8, 1);
+        try (FrameCaptureWriter writer = new FrameCaptureWriter(file,
+                FrameCaptureWriter.FILE_HEADER_SIZE + 2 * frameSize + 4)) {
+            assertTrue(writer.append(data, 16, 8, NV21, 0, new Roi(0, 0, 16, 8), 0));
+            assertTrue(writer.append(data, 16, 8, NV21, 0, new Roi(0, 0, 16, 8), 1));
+            assertFalse(writer.append(data, 16, 8, NV21, 0, new Roi(0, 0, 16, 8), 2));
+            assertEquals(2, writer.getFrameCount());
+        }
+        try (FrameCaptureReader reader = new FrameCaptureReader(file)) {
+            assertEquals(2, reader.getFrameCount());
+        }
+    }
+
+    @Test
+    public void appendAfterCloseReturnsFalse() throws IOException {
+        FrameCaptureWriter writer = new FrameCaptureWriter(folder.newFile());
+        writer.close();
+        assertFalse(writer.append(new byte[4], 2, 2, NV21, 0, new Roi(0, 0, 2, 2), 0));
+    }
+
+    /**
+     * 一帧NV21数据（亮度之后是色度），录制文件中只保存亮度
+     */
+    private static byte[] randomFrame(int width, int height, long seed) {
+        byte[] data = new byte[width * height * 3 / 2];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static void assertLuminanceEquals(byte[] expected, FrameCaptureReader reader, CapturedFrame frame) {
+        byte[] luminance = new byte[frame.getDataLength()];
+        reader.readData(frame, luminance);
+        byte[] expectedLuminance = new byte[frame.getDataLength()];
+        System.arraycopy(expected, 0, expectedLuminance, 0, expectedLuminance.length);
+        assertArrayEquals(expectedLuminance, luminance);
+    }
+
+    private static long expectedLength(int[][] sizes) {
+        long length = FrameCaptureWriter.FILE_HEADER_SIZE;
+        for (int[] size : sizes) {
+            length += FrameCaptureWriter.FRAME_HEADER_SIZE + size[0] * size[1];
+        }
+        return length;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用假的相机和解码器驱动FramePipeline：每一帧只有一个字节，不为0时视为识别成功，结果即该字节的值；
+ * 小于0时结果在发送时被拒绝（Delivery.onDeliver返回false）
+ */
+public class FramePipelineTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final TestFrameSource frameSource = new TestFrameSource();
+    private final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+    private final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private FramePipeline pipeline;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.quit();
+        }
+    }
+
+    @Test
+    public void failedFrameRequestsNextFrame() throws InterruptedException {
+        pipeline = new FramePipeline(frameSource, new FrameDecoder[]{new TestDecoder(null)}, 1, directExecutor);
+        byte[] data = {0};
+        pipeline.dispatch(data, 1, 1);
+        frameSource.awaitRequested(1);//缓冲区先交还给相机，再请求下一帧
+        assertTrue(frameSource.recycled.contains(data));
+        assertEquals(0, delivered.size());
+        assertFalse(pipeline.isPaused());
+    }
+
+    @Test
+    public void pausesAfterResultUntilResume() throws InterruptedException {
+        pipeline = new FramePipeline(frameSource, new FrameDecoder[]{new TestDecoder(null)}, 1, directExecutor);
+        pipeline.dispatch(new byte[]{1}, 1, 1);
+        frameSource.awaitRecycled(1);
+        awaitDelivered(1);
+        assertTrue(pipeline.isPaused());
+        assertEquals(0, frameSource.requested.get());//暂停后不再请求下一帧
+
+        byte[] ignored = {2};
+        pipeline.dispatch(ignored, 1, 1);//暂停期间的帧直接交还给相机
+        assertTrue(frameSource.recycled.contains(ignored));
+
+        pipeline.resume();
+        assertEquals(1, frameSource.requested.get());
+        pipeline.dispatch(new byte[]{3}, 1, 1);
+        awaitDelivered(2);
+        assertEquals(Arrays.asList(1, 3), delivered);
+    }
+
+    @Test
+    public void rejectedResultDoesNotPause() throws InterruptedException {
+        pipeline = new FramePipeline(frameSource, new FrameDecoder[]{new TestDecoder(null)}, 1, directExecutor);
+        pipeline.setTracer(new NoOpTracer());//结果回调被包装，onDeliver需要传递下去
+        pipeline.dispatch(new byte[]{-1}, 1, 1);
+        frameSource.awaitRequested(1);
+        assertFalse(pipeline.isPaused());
+        assertEquals(0, delivered.size());
+
+        pipeline.dispatch(new byte[]{2}, 1, 1);
+        awaitDelivered(1);
+        assertEquals(Arrays.asList(2), delivered);
+        assertTrue(pipeline.isPaused());
+    }
+
+    @Test
+    public void droppedResultDoesNotPause() throws InterruptedException {
+        CountDownLatch slow = new CountDownLatch(1);
+        pipeline = new FramePipeline(frameSource, new FrameDecoder[]{new TestDecoder(slow)}, 1, directExecutor);
+        pipeline.dispatch(new byte[]{1}, 1, 1);
+        frameSource.awaitDecoding();
+        pipeline.resume();//正在识别的帧在resume之前分配序号，其结果会被丢弃
+        slow.countDown();
+        frameSource.awaitRequested(2);
+        assertFalse(pipeline.isPaused());
+        assertEquals(0, delivered.size());
+    }
+
+    @Test
+    public void deliversInFrameOrderAcrossThreads() throws InterruptedException {
+        CountDownLatch slow = new CountDownLatch(1);
+        pipeline = new FramePipeline(frameSource,
+                new FrameDecoder[]{new TestDecoder(slow), new TestDecoder(null)}, 1, directExecutor);
+        pipeline.setContinuous(true);
+        pipeline.dispatch(new byte[]{1}, 1, 1);//解码线程0，等待slow
+        pipeline.dispatch(new byte[]{2}, 1, 1);//解码线程1，先识别完成
+        frameSource.awaitRecycled(1);
+        assertEquals(0, delivered.size());//帧0尚未完成，帧1的结果等待
+
+        slow.countDown();
+        awaitDelivered(2);
+        assertEquals(Arrays.asList(1, 2), delivered);
+        assertFalse(pipeline.isPaused());
+    }
+
+    @Test
+    public void fullQueueDropsOldestFrame() throws InterruptedException {
+        CountDownLatch slow = new CountDownLatch(1);
+        pipeline = new FramePipeline(frameSource, new FrameDecoder[]{new TestDecoder(slow)}, 1, directExecutor);
+        pipeline.setContinuous(true);
+        pipeline.dispatch(new byte[]{1}, 1, 1);//正在识别
+        frameSource.awaitDecoding();
+        byte[] stale = {2};
+        pipeline.dispatch(stale, 1, 1);//排队
+        pipeline.dispatch(new byte[]{3}, 1, 1);//队列已满，丢弃帧2
+        assertTrue(frameSource.recycled.contains(stale));
+
+        slow.countDown();
+        awaitDelivered(2);
+        assertEquals(Arrays.asList(1, 3), delivered);
+    }
+
+    @Test
+    public void discardQueuedFrames() throws InterruptedException {
+        CountDownLatch slow = new CountDownLatch(1);
+        pipeline = new FramePipeline(frameSource, new FrameDecoder[]{new TestDecoder(slow)}, 2, directExecutor);
+        pipeline.setContinuous(true);
+        pipeline.dispatch(new byte[]{1}, 1, 1);
+        frameSource.awaitDecoding();
+        pipeline.dispatch(new byte[]{2}, 1, 1);
+        pipeline.dispatch(new byte[]{3}, 1, 1);
+        int requested = frameSource.requested.get();
+        pipeline.discardQueuedFrames();
+        assertEquals(requested + 1, frameSource.requested.get());//丢弃后请求新帧
+        assertEquals(2, frameSource.recycled.size());
+
+        slow.countDown();
+        pipeline.dispatch(new byte[]{4}, 1, 1);
+        awaitDelivered(2);
+        assertEquals(Arrays.asList(1, 4), delivered);
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (delivered.size() < count) {
+            assertTrue("等待结果超时", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private class TestDecoder implements FrameDecoder {
+        private final CountDownLatch gate;//不为null时等待其打开后才返回
+
+        TestDecoder(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public Runnable decode(PreviewFrame frame) {
+            frameSource.decoding.countDown();
+            if (gate != null) {
+                try {
+                    gate.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            final int value = frame.data[0];
+            if (value == 0) return null;
+            if (value < 0) {
+                return new ResultSequencer.Delivery() {
+                    @Override
+                    public boolean onDeliver() {
+                        return false;
+                    }
+
+                    @Override
+                    public void run() {
+                        delivered.add(value);
+                    }
+                };
+            }
+            return new Runnable() {
+                @Override
+                public void run() {
+                    delivered.add(value);
+                }
+            };
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    private static class NoOpTracer implements FrameTracer {
+        @Override
+        public void beginSection(String name) {
+        }
+
+        @Override
+        public void endSection() {
+        }
+
+        @Override
+        public void beginAsyncSection(String name, int cookie) {
+        }
+
+        @Override
+        public void endAsyncSection(String name, int cookie) {
+        }
+    }
+
+    private static class TestFrameSource implements FramePipeline.FrameSource {
+        final AtomicInteger requested = new AtomicInteger();
+        final List<byte[]> recycled = Collections.synchronizedList(new ArrayList<byte[]>());
+        final CountDownLatch decoding = new CountDownLatch(1);
+
+        @Override
+        public void requestNextFrame() {
+            requested.incrementAndGet();
+        }
+
+        @Override
+        public void recycleFrame(byte[] data) {
+            recycled.add(data);
+        }
+
+        void awaitRecycled(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (recycled.size() < count) {
+                assertTrue("等待帧超时", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+        }
+
+        void awaitRequested(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (requested.get() < count) {
+                assertTrue("等待请求超时", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+        }
+
+        void awaitDecoding() throws InterruptedException {
+            assertTrue(decoding.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+}
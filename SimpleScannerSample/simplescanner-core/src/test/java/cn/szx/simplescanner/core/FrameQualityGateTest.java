@@ -0,0 +1,86 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameQualityGateTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    public void rejectsFlatFrame() {
+        FrameQualityGate gate = new FrameQualityGate();
+        byte[] flat = new byte[WIDTH * HEIGHT];
+        Arrays.fill(flat, (byte) 128);
+        assertFalse(gate.accept(flat, WIDTH, 0, 0, WIDTH, HEIGHT));
+        assertEquals(0f, gate.getLastContrast(), 0.01f);
+        assertEquals(1, gate.getRejectedCount());
+    }
+
+    @Test
+    public void acceptsSharpFrame() {
+        FrameQualityGate gate = new FrameQualityGate();
+        assertTrue(gate.accept(noise(1), WIDTH, 0, 0, WIDTH, HEIGHT));
+        assertTrue(gate.getLastContrast() > FrameQualityGate.DEFAULT_MIN_CONTRAST);
+        assertEquals(1, gate.getAcceptedCount());
+    }
+
+    @Test
+    public void rejectsBlurredFrameAfterSharpFrame() {
+        FrameQualityGate gate = new FrameQualityGate();
+        byte[] blurred = gradient();
+        assertTrue(gate.accept(blurred, WIDTH, 0, 0, WIDTH, HEIGHT));//还没有清晰的帧作为参照
+        assertTrue(gate.accept(noise(2), WIDTH, 0, 0, WIDTH, HEIGHT));
+        assertFalse(gate.accept(blurred, WIDTH, 0, 0, WIDTH, HEIGHT));//对比度足够，但清晰度远低于峰值
+
+        gate.reset();
+        assertTrue(gate.accept(blurred, WIDTH, 0, 0, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void onlySamplesRegion() {
+        FrameQualityGate gate = new FrameQualityGate();
+        byte[] data = noise(3);
+        for (int y = 16; y < 32; y++) {
+            Arrays.fill(data, y * WIDTH + 16, y * WIDTH + 48, (byte) 200);
+        }
+        assertFalse(gate.accept(data, WIDTH, 16, 16, 32, 16));//区域内是平坦的
+        assertTrue(gate.accept(data, WIDTH, 0, 0, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void tinyRegionIsAccepted() {
+        FrameQualityGate gate = new FrameQualityGate();
+        assertTrue(gate.accept(new byte[WIDTH * HEIGHT], WIDTH, 0, 0, 4, 4));//无法取样
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampleStepMustBePositive() {
+        new FrameQualityGate(0, 8f, 0.35f, 0.97f);
+    }
+
+    private static byte[] noise(long seed) {
+        byte[] data = new byte[WIDTH * HEIGHT];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * 从左到右亮度逐渐变化的图像：对比度高，但几乎没有边缘
+     */
+    private static byte[] gradient() {
+        byte[] data = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * WIDTH + x] = (byte) (x * 255 / WIDTH);
+            }
+        }
+        return data;
+    }
+}
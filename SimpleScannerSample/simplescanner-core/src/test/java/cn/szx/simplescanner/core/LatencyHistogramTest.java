@@ -0,0 +1,79 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[0]);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMinNanos());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertArrayEquals(new int[LatencyHistogram.BUCKET_BOUNDS_MICROS.length + 1], histogram.getBucketCounts());
+    }
+
+    @Test
+    public void nearestRankPercentiles() {
+        long[] samples = new long[100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = i + 1;
+        }
+        LatencyHistogram histogram = new LatencyHistogram(samples);
+        assertEquals(1, histogram.getPercentileNanos(0));
+        assertEquals(1, histogram.getPercentileNanos(1));
+        assertEquals(50, histogram.getPercentileNanos(50));
+        assertEquals(51, histogram.getPercentileNanos(50.5));//向上取整
+        assertEquals(90, histogram.getPercentileNanos(90));
+        assertEquals(99, histogram.getPercentileNanos(99));
+        assertEquals(100, histogram.getPercentileNanos(100));
+        assertEquals(50, histogram.getMeanNanos());//5050 / 100，向下取整
+    }
+
+    @Test
+    public void percentilesOfFewSamples() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[]{10, 20, 30});
+        assertEquals(10, histogram.getPercentileNanos(33));
+        assertEquals(20, histogram.getPercentileNanos(34));
+        assertEquals(20, histogram.getPercentileNanos(50));
+        assertEquals(30, histogram.getPercentileNanos(67));
+        assertEquals(30, histogram.getPercentileNanos(99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileOutOfRange() {
+        new LatencyHistogram(new long[]{1}).getPercentileNanos(100.1);
+    }
+
+    @Test
+    public void bucketBoundsAreExclusive() {
+        long[] samples = {
+                0, 499999,//第0个桶：< 500us
+                500000,//恰好等于上界，属于下一个桶
+                999999,
+                1000000, 1999999,
+                127999999,//第8个桶：64ms~128ms
+                128000000, 5000000000L//最后一个桶没有上界
+        };
+        int[] expected = {2, 2, 2, 0, 0, 0, 0, 0, 1, 2};
+        assertArrayEquals(expected, new LatencyHistogram(samples).getBucketCounts());
+    }
+
+    @Test
+    public void everySampleIsCountedOnce() {
+        long[] samples = new long[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = i * 200000L;//0~200ms，每0.2ms一个
+        }
+        int total = 0;
+        for (int count : new LatencyHistogram(samples).getBucketCounts()) {
+            total += count;
+        }
+        assertEquals(samples.length, total);
+    }
+}
@@ -0,0 +1,215 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LuminanceUtilsTest {
+    //3x2的图像：
+    //1 2 3
+    //4 5 6
+    private static final byte[] IMAGE = {1, 2, 3, 4, 5, 6};
+
+    @Test
+    public void rotateSmallImage() {
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, rotate(IMAGE, 3, 2, 0));
+        assertArrayEquals(new byte[]{4, 1, 5, 2, 6, 3}, rotate(IMAGE, 3, 2, 1));//结果为2x3
+        assertArrayEquals(new byte[]{6, 5, 4, 3, 2, 1}, rotate(IMAGE, 3, 2, 2));
+        assertArrayEquals(new byte[]{3, 6, 2, 5, 1, 4}, rotate(IMAGE, 3, 2, 3));
+        assertArrayEquals(rotate(IMAGE, 3, 2, 1), rotate(IMAGE, 3, 2, 5));
+        assertArrayEquals(rotate(IMAGE, 3, 2, 3), rotate(IMAGE, 3, 2, -1));
+    }
+
+    @Test
+    public void cropSmallImage() {
+        byte[] out = new byte[4];
+        LuminanceUtils.cropAndRotate(IMAGE, 3, 2, 1, 0, 2, 2, 0, out);
+        assertArrayEquals(new byte[]{2, 3, 5, 6}, out);
+        LuminanceUtils.cropAndRotate(IMAGE, 3, 2, 1, 0, 2, 2, 1, out);
+        assertArrayEquals(new byte[]{5, 2, 6, 3}, out);
+    }
+
+    @Test
+    public void rotateZeroReturnsInput() {
+        assertSame(IMAGE, LuminanceUtils.rotate(IMAGE, 3, 2, 0));
+        assertSame(IMAGE, LuminanceUtils.rotate(IMAGE, 3, 2, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cropOutsideImage() {
+        LuminanceUtils.cropAndRotate(IMAGE, 3, 2, 2, 0, 2, 2, 0, new byte[4]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outTooSmall() {
+        LuminanceUtils.cropAndRotate(IMAGE, 3, 2, 0, 0, 3, 2, 0, new byte[5]);
+    }
+
+    @Test
+    public void copyPlaneWithoutPadding() {
+        byte[] out = new byte[6];
+        LuminanceUtils.copyPlane(ByteBuffer.wrap(IMAGE), 3, 1, 3, 2, out);
+        assertArrayEquals(IMAGE, out);
+    }
+
+    @Test
+    public void copyPlaneSkipsRowPadding() {
+        byte[] plane = {1, 2, 3, 0, 0, 4, 5, 6, 0, 0};
+        byte[] out = new byte[6];
+        LuminanceUtils.copyPlane(ByteBuffer.wrap(plane), 5, 1, 3, 2, out);
+        assertArrayEquals(IMAGE, out);
+    }
+
+    @Test
+    public void copyPlaneSkipsPixelStride() {
+        byte[] plane = {9, 9, 1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6};
+        ByteBuffer buffer = ByteBuffer.wrap(plane);
+        buffer.position(2);//从position开始读取
+        byte[] out = new byte[6];
+        LuminanceUtils.copyPlane(buffer, 6, 2, 3, 2, out);
+        assertArrayEquals(IMAGE, out);
+    }
+
+    @Test
+    public void argbToLuminance() {
+        int[] pixels = {0xff000000, 0xffffffff, 0xffff0000, 0xff00ff00, 0xff0000ff};
+        byte[] out = new byte[6];
+        LuminanceUtils.argbToLuminance(pixels, 5, 1, out, 1);
+        assertArrayEquals(new byte[]{0, 0, (byte) 255, 76, (byte) 149, 28}, out);
+
+        byte[] sampled = new byte[3];
+        LuminanceUtils.argbToLuminance(pixels, 3, 2, sampled, 0);//每隔2个像素取一个
+        assertArrayEquals(new byte[]{0, 76, 28}, sampled);
+    }
+
+    @Test
+    public void sampleSize() {
+        assertEquals(1, LuminanceUtils.getSampleSize(2048, 1536, 2048));
+        assertEquals(2, LuminanceUtils.getSampleSize(4096, 3072, 2048));
+        assertEquals(4, LuminanceUtils.getSampleSize(4097, 3072, 2048));//缩小2倍后为2049（向上取整）
+        assertEquals(8, LuminanceUtils.getSampleSize(1000, 12000, 2048));
+        assertEquals(1, LuminanceUtils.getSampleStep(2048, 2048, 2048));
+        assertEquals(2, LuminanceUtils.getSampleStep(2049, 100, 2048));
+        assertEquals(2, LuminanceUtils.getSampleStep(4097, 100, 2048));//4097 / 2 = 2048
+        assertEquals(1, LuminanceUtils.getSampleStep(0, 0, 2048));
+    }
+
+    /**
+     * 先按inSampleSize缩小、再隔点取样后，宽高都不超过maxDimension，且不会过度缩小
+     */
+    @Test
+    public void sampledImageFitsMaxDimension() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            int maxDimension = 1 + random.nextInt(4096);
+            int width = 1 + random.nextInt(20000);
+            int height = 1 + random.nextInt(20000);
+
+            int sampleSize = LuminanceUtils.getSampleSize(width, height, maxDimension);
+            int decodedWidth = (width + sampleSize - 1) / sampleSize;
+            int decodedHeight = (height + sampleSize - 1) / sampleSize;
+            assertTrue(Math.max(decodedWidth, decodedHeight) <= maxDimension);
+            if (sampleSize > 1) {
+                int half = sampleSize / 2;
+                assertTrue(Math.max((width + half - 1) / half, (height + half - 1) / half) > maxDimension);
+            }
+
+            int step = LuminanceUtils.getSampleStep(width, height, maxDimension);
+            assertTrue(Math.max(width / step, height / step) <= maxDimension);
+            if (step > 1) {
+                assertTrue(Math.max(width, height) / (step - 1) > maxDimension);
+            }
+        }
+    }
+
+    /**
+     * 与旧的实现比较：先用rotateData（原BarcodeScannerView中的逐像素循环）旋转整帧，再从旋转后的图像中截取扫码区域
+     */
+    @Test
+    public void cropAndRotateMatchesRotateThenCrop() {
+        int[][] sizes = {{1, 1}, {7, 5}, {37, 23}, {64, 64}, {65, 63}, {130, 67}, {200, 129}};
+        Random random = new Random(42);
+        for (int[] size : sizes) {
+            int width = size[0], height = size[1];
+            byte[] data = new byte[width * height];
+            random.nextBytes(data);
+
+            for (int rotationCount = 0; rotationCount < 4; rotationCount++) {
+                byte[] rotated = rotateData(data, width, height, rotationCount);
+                boolean swap = rotationCount % 2 == 1;
+                int rotatedWidth = swap ? height : width;
+
+                for (Roi crop : crops(width, height, random)) {
+                    Roi rotatedCrop = RoiMapper.rotate(crop, width, height, rotationCount);
+                    byte[] expected = crop(rotated, rotatedWidth, rotatedCrop);
+
+                    byte[] actual = new byte[crop.width() * crop.height()];
+                    LuminanceUtils.cropAndRotate(data, width, height, crop.left, crop.top,
+                            crop.width(), crop.height(), rotationCount, actual);
+                    assertArrayEquals(width + "x" + height + " rotationCount=" + rotationCount + " " + crop,
+                            expected, actual);
+                }
+            }
+        }
+    }
+
+    /**
+     * 截取区域：整幅图像、贴着四条边和四个角的区域、单个像素，以及一些随机区域
+     */
+    private static Roi[] crops(int width, int height, Random random) {
+        int w = Math.max(1, width / 2), h = Math.max(1, height / 3);
+        Roi[] crops = new Roi[14];
+        crops[0] = new Roi(0, 0, width, height);
+        crops[1] = new Roi(0, 0, w, h);
+        crops[2] = new Roi(width - w, 0, width, h);
+        crops[3] = new Roi(0, height - h, w, height);
+        crops[4] = new Roi(width - w, height - h, width, height);
+        crops[5] = new Roi(0, 0, width, 1);
+        crops[6] = new Roi(width - 1, 0, width, height);
+        crops[7] = new Roi(width - 1, height - 1, width, height);
+        for (int i = 8; i < crops.length; i++) {
+            int left = random.nextInt(width), top = random.nextInt(height);
+            int right = left + 1 + random.nextInt(width - left);
+            int bottom = top + 1 + random.nextInt(height - top);
+            crops[i] = new Roi(left, top, right, bottom);
+        }
+        return crops;
+    }
+
+    /**
+     * 原BarcodeScannerView.rotateData：整帧顺时针旋转rotationCount次，每次90度
+     */
+    private static byte[] rotateData(byte[] data, int width, int height, int rotationCount) {
+        for (int i = 0; i < rotationCount; i++) {
+            byte[] rotatedData = new byte[data.length];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++)
+                    rotatedData[x * height + height - y - 1] = data[x + y * width];
+            }
+            data = rotatedData;
+            int tmp = width;
+            width = height;
+            height = tmp;
+        }
+        return data;
+    }
+
+    private static byte[] crop(byte[] data, int width, Roi rect) {
+        byte[] out = new byte[rect.width() * rect.height()];
+        for (int y = 0; y < rect.height(); y++) {
+            System.arraycopy(data, (rect.top + y) * width + rect.left, out, y * rect.width(), rect.width());
+        }
+        return out;
+    }
+
+    private static byte[] rotate(byte[] data, int width, int height, int rotationCount) {
+        return LuminanceUtils.cropAndRotate(data, width, height, 0, 0, width, height, rotationCount,
+                new byte[width * height]);
+    }
+}
@@ -0,0 +1,110 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 回放录制文件：每一帧的第一个字节为其序号，解码器记录收到的序号，识别总是失败
+ */
+public class ReplayFrameSourceTest {
+    private static final int FRAME_COUNT = 50;
+    private static final long FRAME_INTERVAL_NANOS = 2000000;//录制时每2ms一帧
+    private static final long DECODE_MILLIS = 10;//识别比录制时的帧间隔慢
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FrameCaptureReader reader;
+    private FramePipeline pipeline;
+    private final List<Integer> decoded = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Before
+    public void setUp() throws IOException {
+        File file = folder.newFile();
+        try (FrameCaptureWriter writer = new FrameCaptureWriter(file)) {
+            byte[] data = new byte[16 * 8];
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                data[0] = (byte) i;
+                writer.append(data, 16, 8, 17, 1, new Roi(0, 0, 16, 8), 1000000000L + i * FRAME_INTERVAL_NANOS);
+            }
+        }
+        reader = new FrameCaptureReader(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (pipeline != null) {
+            pipeline.quit();
+        }
+        reader.close();
+    }
+
+    @Test
+    public void realTimeReplaySkipsFramesWhenDecodingIsSlow() throws InterruptedException {
+        ReplayFrameSource source = replay(true);
+        assertTrue(source.getFramesSkipped() > 0);//识别时到达的帧没有请求，被跳过
+        assertEquals(FRAME_COUNT, source.getFramesDispatched() + source.getFramesSkipped());
+        assertEquals(source.getFramesDispatched(), decoded.size());
+        assertEquals(0, (int) decoded.get(0));
+        for (int i = 1; i < decoded.size(); i++) {
+            assertTrue(decoded.get(i) > decoded.get(i - 1));
+        }
+    }
+
+    @Test
+    public void maxSpeedReplayIsLossless() throws InterruptedException {
+        ReplayFrameSource source = replay(false);
+        assertEquals(0, source.getFramesSkipped());
+        assertEquals(FRAME_COUNT, source.getFramesDispatched());
+        assertEquals(FRAME_COUNT, decoded.size());
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            assertEquals(i, (int) decoded.get(i));//按顺序识别了每一帧
+        }
+    }
+
+    private ReplayFrameSource replay(boolean realTime) throws InterruptedException {
+        final ReplayFrameSource source = new ReplayFrameSource(reader, realTime);
+        FrameDecoder decoder = new FrameDecoder() {
+            @Override
+            public Runnable decode(PreviewFrame frame) {
+                //在解码线程中断言失败不会使测试失败，数据与元数据不符时记录-1
+                CapturedFrame capturedFrame = source.getFrame(frame.data);
+                boolean matched = capturedFrame != null && frame.data[0] == (byte) capturedFrame.index
+                        && capturedFrame.rotationCount == 1;
+                decoded.add(matched ? capturedFrame.index : -1);
+                try {
+                    Thread.sleep(DECODE_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+
+            @Override
+            public void release() {
+            }
+        };
+        pipeline = new FramePipeline(source, new FrameDecoder[]{decoder}, 1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        source.start(pipeline);
+        source.awaitFinished();
+        return source;
+    }
+}
@@ -0,0 +1,92 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 定时任务由测试手动执行，回调直接在调用线程中执行
+ */
+public class ResultBatcherTest {
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<List<Integer>> batches = new ArrayList<>();
+    private final ResultBatcher.Timer timer = new ResultBatcher.Timer() {
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            scheduled.add(task);
+        }
+    };
+    private final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private final ResultBatcher.Callback<Integer> callback = new ResultBatcher.Callback<Integer>() {
+        @Override
+        public void onBatch(List<Integer> batch) {
+            batches.add(batch);
+        }
+    };
+
+    @Test
+    public void sendsWhenWindowEnds() {
+        ResultBatcher<Integer> batcher = new ResultBatcher<>(100, Integer.MAX_VALUE, timer, directExecutor, callback);
+        batcher.add(1);
+        batcher.addAll(Arrays.asList(2, 3));
+        assertEquals(1, scheduled.size());//只在一批开始时计时
+        assertEquals(0, batches.size());
+
+        scheduled.get(0).run();
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3)), batches);
+    }
+
+    @Test
+    public void sendsWhenFull() {
+        ResultBatcher<Integer> batcher = new ResultBatcher<>(100, 2, timer, directExecutor, callback);
+        batcher.add(1);
+        batcher.add(2);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2)), batches);
+
+        batcher.add(3);
+        scheduled.get(0).run();//已提前发送的一批的定时任务不再生效
+        assertEquals(1, batches.size());
+        scheduled.get(1).run();
+        assertEquals(Arrays.asList(3), batches.get(1));
+    }
+
+    @Test
+    public void flushIfDueWithoutTimer() throws InterruptedException {
+        ResultBatcher<Integer> batcher = new ResultBatcher<>(50, Integer.MAX_VALUE, timer, directExecutor, callback);
+        batcher.flushIfDue();
+        batcher.add(1);
+        batcher.flushIfDue();
+        assertEquals(0, batches.size());//时间窗口尚未结束
+
+        Thread.sleep(80);
+        batcher.flushIfDue();
+        assertEquals(Arrays.asList(Arrays.asList(1)), batches);
+        scheduled.get(0).run();//这一批已经发送
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void flushSendsImmediately() {
+        ResultBatcher<Integer> batcher = new ResultBatcher<>(100, Integer.MAX_VALUE, timer, directExecutor, callback);
+        batcher.flush();
+        assertEquals(0, batches.size());
+        batcher.add(1);
+        batcher.flush();
+        assertEquals(Arrays.asList(Arrays.asList(1)), batches);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroWindow() {
+        new ResultBatcher<>(0, 1, timer, directExecutor, callback);
+    }
+}
@@ -0,0 +1,155 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ResultSequencerTest {
+    private final List<Integer> delivered = new ArrayList<>();
+    private ResultSequencer sequencer;
+
+    @Before
+    public void setUp() {
+        sequencer = new ResultSequencer(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @Test
+    public void deliversInSequenceOrder() {
+        sequencer.setContinuous(true);
+        for (int i = 0; i < 4; i++) {
+            sequencer.nextSequence();
+        }
+        sequencer.complete(2, result(2));
+        sequencer.complete(1, result(1));
+        assertEquals(0, delivered.size());//帧0尚未完成
+
+        sequencer.complete(0, null);
+        assertEquals(Arrays.asList(1, 2), delivered);
+        sequencer.complete(3, result(3));
+        assertEquals(Arrays.asList(1, 2, 3), delivered);
+    }
+
+    @Test
+    public void deliversManyOutOfOrderFrames() {
+        sequencer.setContinuous(true);
+        int count = 100;//超过内部数组的初始容量
+        for (int i = 0; i < count; i++) {
+            sequencer.nextSequence();
+        }
+        for (int i = count - 1; i >= 1; i--) {
+            sequencer.complete(i, i % 3 == 0 ? null : result(i));
+        }
+        assertEquals(0, delivered.size());
+        sequencer.complete(0, result(0));
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || i % 3 != 0) expected.add(i);
+        }
+        assertEquals(expected, delivered);
+    }
+
+    @Test
+    public void pausesAfterFirstResult() {
+        for (int i = 0; i < 3; i++) {
+            sequencer.nextSequence();
+        }
+        sequencer.complete(1, result(1));
+        sequencer.complete(0, result(0));
+        sequencer.complete(2, result(2));
+        assertEquals(Arrays.asList(0), delivered);//之后完成的帧的结果被丢弃
+
+        sequencer.resume();
+        sequencer.complete(sequencer.nextSequence(), result(3));
+        assertEquals(Arrays.asList(0, 3), delivered);
+    }
+
+    @Test
+    public void resumeIgnoresFramesSequencedBefore() {
+        long pending = sequencer.nextSequence();
+        sequencer.resume();
+        sequencer.complete(pending, result(0));//resume之前分配序号的帧
+        sequencer.complete(sequencer.nextSequence(), result(1));
+        assertEquals(Arrays.asList(1), delivered);
+    }
+
+    @Test
+    public void rejectedDeliveryIsTreatedAsMiss() {
+        final List<String> events = new ArrayList<>();
+        sequencer = new ResultSequencer(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                events.add("execute");
+                command.run();
+            }
+        }, new ResultSequencer.PauseListener() {
+            @Override
+            public void onPaused() {
+                events.add("paused");
+            }
+        });
+        sequencer.complete(sequencer.nextSequence(), delivery(0, false));
+        assertEquals(0, delivered.size());
+        assertEquals(0, events.size());//被拒绝的结果不会暂停
+
+        sequencer.complete(sequencer.nextSequence(), delivery(1, true));
+        assertEquals(Arrays.asList(1), delivered);
+        assertEquals(Arrays.asList("paused", "execute"), events);//先暂停再执行结果回调
+    }
+
+    @Test
+    public void droppedDeliveryIsNotConfirmed() {
+        long first = sequencer.nextSequence();
+        long second = sequencer.nextSequence();
+        final boolean[] confirmed = {false};
+        sequencer.complete(second, new ResultSequencer.Delivery() {
+            @Override
+            public boolean onDeliver() {
+                confirmed[0] = true;
+                return true;
+            }
+
+            @Override
+            public void run() {
+            }
+        });
+        sequencer.complete(first, result(0));//发送后暂停，帧1的结果被丢弃
+        assertEquals(Arrays.asList(0), delivered);
+        assertFalse(confirmed[0]);
+    }
+
+    private ResultSequencer.Delivery delivery(final int id, final boolean accepted) {
+        return new ResultSequencer.Delivery() {
+            @Override
+            public boolean onDeliver() {
+                return accepted;
+            }
+
+            @Override
+            public void run() {
+                delivered.add(id);
+            }
+        };
+    }
+
+    private Runnable result(final int id) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                delivered.add(id);
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RoiMapperTest {
+    private static final int WIDTH = 640;//相机图像（未旋转）的尺寸
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void unrotateKnownRects() {
+        Roi rect = new Roi(10, 20, 110, 70);
+        assertEquals(rect, RoiMapper.unrotate(rect, WIDTH, HEIGHT, 0));
+        //已旋转的图像为480x640，其中的(10, 20)-(110, 70)逆时针旋转90度
+        assertEquals(new Roi(20, 370, 70, 470), RoiMapper.unrotate(rect, WIDTH, HEIGHT, 1));
+        assertEquals(new Roi(530, 410, 630, 460), RoiMapper.unrotate(rect, WIDTH, HEIGHT, 2));
+        assertEquals(new Roi(570, 10, 620, 110), RoiMapper.unrotate(rect, WIDTH, HEIGHT, 3));
+    }
+
+    @Test
+    public void rotateIsInverseOfUnrotate() {
+        Roi rect = new Roi(13, 7, 201, 333);
+        for (int rotationCount = -1; rotationCount <= 4; rotationCount++) {
+            Roi unrotated = RoiMapper.unrotate(rect, WIDTH, HEIGHT, rotationCount);
+            assertEquals(rect.width() * rect.height(), unrotated.width() * unrotated.height());
+            assertEquals(rect, RoiMapper.rotate(unrotated, WIDTH, HEIGHT, rotationCount));
+        }
+    }
+
+    @Test
+    public void unrotatedRectStaysInsideImage() {
+        Roi fullRotated = new Roi(0, 0, HEIGHT, WIDTH);//旋转90度后的整幅图像
+        assertEquals(new Roi(0, 0, WIDTH, HEIGHT), RoiMapper.unrotate(fullRotated, WIDTH, HEIGHT, 1));
+        assertEquals(new Roi(0, 0, WIDTH, HEIGHT), RoiMapper.unrotate(fullRotated, WIDTH, HEIGHT, 3));
+    }
+
+    @Test
+    public void scaleToFrameAndBack() {
+        Roi viewRect = new Roi(100, 200, 300, 400);
+        Roi frameRect = RoiMapper.scaleToFrame(viewRect, 1000, 2000, 500, 1000);
+        assertEquals(new Roi(50, 100, 150, 200), frameRect);
+        assertEquals(viewRect, RoiMapper.scaleToView(frameRect, 500, 1000, 1000, 2000));
+    }
+
+    @Test
+    public void clamp() {
+        assertEquals(new Roi(0, 0, 640, 480), RoiMapper.clamp(new Roi(-5, -5, 700, 500), WIDTH, HEIGHT));
+        assertEquals(new Roi(10, 10, 20, 20), RoiMapper.clamp(new Roi(10, 10, 20, 20), WIDTH, HEIGHT));
+        assertTrue(RoiMapper.clamp(new Roi(650, 10, 700, 20), WIDTH, HEIGHT).isEmpty());
+    }
+}
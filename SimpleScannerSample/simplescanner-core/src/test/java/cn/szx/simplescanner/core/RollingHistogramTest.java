@@ -0,0 +1,65 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RollingHistogramTest {
+
+    @Test
+    public void keepsSamplesUntilWindowIsFull() {
+        RollingHistogram histogram = new RollingHistogram(4);
+        assertEquals(0, histogram.snapshot().getCount());
+        histogram.record(30);
+        histogram.record(10);
+        histogram.record(20);
+        LatencyHistogram snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(10, snapshot.getMinNanos());
+        assertEquals(30, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void oldestSamplesAreOverwritten() {
+        RollingHistogram histogram = new RollingHistogram(3);
+        for (long nanos = 1; nanos <= 7; nanos++) {//绕回两次，只剩5、6、7
+            histogram.record(nanos * 100);
+        }
+        LatencyHistogram snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(500, snapshot.getMinNanos());
+        assertEquals(700, snapshot.getMaxNanos());
+        assertEquals(600, snapshot.getMeanNanos());
+    }
+
+    @Test
+    public void snapshotIsNotAffectedByLaterSamples() {
+        RollingHistogram histogram = new RollingHistogram(2);
+        histogram.record(1);
+        histogram.record(2);
+        LatencyHistogram snapshot = histogram.snapshot();
+        histogram.record(100);
+        histogram.record(200);
+        assertEquals(1, snapshot.getMinNanos());
+        assertEquals(2, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void clearEmptiesWindow() {
+        RollingHistogram histogram = new RollingHistogram(3);
+        histogram.record(5);
+        histogram.record(6);
+        histogram.clear();
+        assertEquals(0, histogram.snapshot().getCount());
+
+        histogram.record(9);//清空后从头写入，旧样本不会再出现
+        LatencyHistogram snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(9, snapshot.getMinNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroWindowSize() {
+        new RollingHistogram(0);
+    }
+}
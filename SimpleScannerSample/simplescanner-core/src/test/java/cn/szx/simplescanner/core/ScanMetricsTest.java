@@ -0,0 +1,99 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanMetricsTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final ScanMetrics.Listener LISTENER = new ScanMetrics.Listener() {
+        @Override
+        public void onFrame(FrameTimings timings) {
+        }
+
+        @Override
+        public void onSnapshot(ScanMetrics.Snapshot snapshot) {
+        }
+    };
+
+    @Test
+    public void countsFrames() {
+        ScanMetrics metrics = newMetrics();
+        metrics.onCameraStarted();
+        finish(metrics, metrics.onFrameArrived(), true, false);
+        finish(metrics, metrics.onFrameArrived(), true, true);
+        finish(metrics, metrics.onFrameArrived(), false, false);//被跳过，没有SCAN
+        metrics.onFrameDropped();
+
+        ScanMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.framesDelivered);
+        assertEquals(1, snapshot.framesDropped);
+        assertEquals(1, snapshot.framesSkipped);
+        assertEquals(2, snapshot.framesScanned);
+        assertEquals(1, snapshot.framesDecoded);
+        assertEquals(0.5f, snapshot.getSuccessRate(), 0.001f);
+        assertTrue(snapshot.timeToFirstDecodeMillis >= 0);
+        assertEquals(2, snapshot.getHistogram(ScanMetrics.Stage.SCAN).getCount());
+        assertEquals(3, snapshot.getHistogram(ScanMetrics.Stage.TOTAL).getCount());
+    }
+
+    @Test
+    public void noTimeToFirstDecodeBeforeCameraStarted() {
+        ScanMetrics metrics = newMetrics();
+        finish(metrics, metrics.onFrameArrived(), true, true);
+        assertEquals(-1, metrics.snapshot().timeToFirstDecodeMillis);
+    }
+
+    @Test
+    public void resetRestartsTimeToFirstDecode() throws InterruptedException {
+        ScanMetrics metrics = newMetrics();
+        metrics.onCameraStarted();
+        finish(metrics, metrics.onFrameArrived(), true, true);
+        Thread.sleep(200);
+
+        metrics.reset();
+        ScanMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.framesDelivered);
+        assertEquals(-1, snapshot.timeToFirstDecodeMillis);
+        assertEquals(0, snapshot.getHistogram(ScanMetrics.Stage.TOTAL).getCount());
+
+        finish(metrics, metrics.onFrameArrived(), true, true);
+        long timeToFirstDecode = metrics.snapshot().timeToFirstDecodeMillis;
+        assertTrue(timeToFirstDecode >= 0);//相机仍然打开，从reset时重新计算
+        assertTrue(timeToFirstDecode < 200);
+    }
+
+    @Test
+    public void resetDiscardsPendingRequest() throws InterruptedException {
+        ScanMetrics metrics = newMetrics();
+        metrics.onCameraStarted();
+        metrics.onFrameRequested();
+        Thread.sleep(20);
+        metrics.reset();
+        assertEquals(0, metrics.onFrameArrived().get(ScanMetrics.Stage.CAMERA_DELIVERY));
+
+        metrics.onFrameRequested();
+        Thread.sleep(20);
+        assertTrue(metrics.onFrameArrived().get(ScanMetrics.Stage.CAMERA_DELIVERY) >= 20000000);
+    }
+
+    private static ScanMetrics newMetrics() {
+        return new ScanMetrics(LISTENER, DIRECT, ScanMetrics.DEFAULT_WINDOW_SIZE, 60000);
+    }
+
+    private static void finish(ScanMetrics metrics, FrameTimings timings, boolean scanned, boolean decoded) {
+        if (scanned) {
+            timings.set(ScanMetrics.Stage.SCAN, 1000);
+        }
+        metrics.onFrameFinished(timings, decoded);
+    }
+}
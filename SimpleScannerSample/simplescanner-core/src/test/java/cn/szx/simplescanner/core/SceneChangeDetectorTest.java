@@ -0,0 +1,104 @@
+package cn.szx.simplescanner.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SceneChangeDetectorTest {
+    private static final long LONG_MILLIS = 60000;//测试过程中不会到达的间隔
+    private static final int WIDTH = 8, HEIGHT = 8;
+
+    @Test
+    public void signatureIsCellAverage() {
+        //8x8的图像，左半边为10，右半边为200，只有第一行为50
+        byte[] data = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * WIDTH + x] = (byte) (y == 0 ? 50 : x < WIDTH / 2 ? 10 : 200);
+            }
+        }
+        SceneChangeDetector detector = new SceneChangeDetector(2, 1, 4, LONG_MILLIS);
+        int[] signature = detector.newSignature();
+        assertEquals(4, signature.length);
+        detector.computeSignature(data, WIDTH, 0, 0, WIDTH, HEIGHT, signature);
+        assertArrayEquals(new int[]{(50 * 4 + 10 * 12) / 16, (50 * 4 + 200 * 12) / 16, 10, 200}, signature);
+
+        //截取x为2~7的区域，格子的列为2~4、5~7，行为0~3、4~7，取样间隔为2时取x=2、4和5、7，y=0、2和4、6
+        detector = new SceneChangeDetector(2, 2, 4, LONG_MILLIS);
+        detector.computeSignature(data, WIDTH, 2, 0, 6, 8, signature);
+        assertArrayEquals(new int[]{(50 + 50 + 10 + 200) / 4, (50 + 50 + 200 + 200) / 4, (10 + 200) / 2, 200},
+                signature);
+    }
+
+    @Test
+    public void skipUnchangedSceneAfterFailure() {
+        SceneChangeDetector detector = new SceneChangeDetector(2, 1, 4, LONG_MILLIS);
+        int[] signature = {100, 100, 100, 100};
+        assertFalse(detector.shouldSkip(signature));//还没有识别失败过
+        detector.onDecodeFailed(signature);
+
+        assertTrue(detector.shouldSkip(signature));
+        assertTrue(detector.shouldSkip(new int[]{103, 97, 103, 97}));//平均差值为3
+        assertEquals(2, detector.getSkippedCount());
+    }
+
+    @Test
+    public void changedSceneIsDecoded() {
+        SceneChangeDetector detector = new SceneChangeDetector(2, 1, 4, LONG_MILLIS);
+        detector.onDecodeFailed(new int[]{100, 100, 100, 100});
+        assertFalse(detector.shouldSkip(new int[]{104, 96, 104, 96}));//平均差值等于门限
+        assertFalse(detector.shouldSkip(new int[]{100, 100, 100, 116}));//一个格子变化较大
+        assertEquals(0, detector.getSkippedCount());
+    }
+
+    @Test
+    public void onDecodeFailedCopiesSignature() {
+        SceneChangeDetector detector = new SceneChangeDetector(2, 1, 4, LONG_MILLIS);
+        int[] signature = {100, 100, 100, 100};
+        detector.onDecodeFailed(signature);
+        Arrays.fill(signature, 0);//调用者复用签名数组
+        assertFalse(detector.shouldSkip(signature));
+        assertTrue(detector.shouldSkip(new int[]{100, 100, 100, 100}));
+    }
+
+    @Test
+    public void resetResumesDecoding() {
+        SceneChangeDetector detector = new SceneChangeDetector(2, 1, 4, LONG_MILLIS);
+        int[] signature = {100, 100, 100, 100};
+        detector.onDecodeFailed(signature);
+        detector.reset();
+        assertFalse(detector.shouldSkip(signature));
+        detector.onDecodeFailed(signature);
+        assertTrue(detector.shouldSkip(signature));
+    }
+
+    @Test
+    public void decodeAtLeastEveryMaxSkip() throws InterruptedException {
+        SceneChangeDetector detector = new SceneChangeDetector(2, 1, 4, 50);
+        int[] signature = {100, 100, 100, 100};
+        assertFalse(detector.shouldSkip(signature));
+        detector.onDecodeFailed(signature);
+        assertTrue(detector.shouldSkip(signature));
+
+        Thread.sleep(100);
+        assertFalse(detector.shouldSkip(signature));//超过maxSkipMillis，强制识别一次
+        detector.onDecodeFailed(signature);
+        assertTrue(detector.shouldSkip(signature));//从强制识别时重新计时
+        assertEquals(2, detector.getSkippedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroGridSize() {
+        new SceneChangeDetector(0, 1, 4, LONG_MILLIS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroSampleStep() {
+        new SceneChangeDetector(2, 0, 4, LONG_MILLIS);
+    }
+}
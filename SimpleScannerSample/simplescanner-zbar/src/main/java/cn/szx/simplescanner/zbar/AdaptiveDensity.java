@@ -0,0 +1,89 @@
+package cn.szx.simplescanner.zbar;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 自适应扫描密度
+ * <p>
+ * zbar的X_DENSITY/Y_DENSITY表示每隔几列/几行扫描一次，值越大识别越快，但较小的码容易被漏掉。<br/>
+ * 启用后，先使用最稀疏的扫描线识别，只有在没有识别到结果（或只得到PARTIAL结果）时，才逐级提高密度：
+ * 可以在同一帧上立即重试，也可以在后续的帧上使用更高的密度。<br/>
+ * 同时统计每一级密度的识别次数和成功次数，用于评估效果
+ */
+public class AdaptiveDensity {
+    public static final int[] DEFAULT_DENSITIES = {6, 3, 1};
+
+    private final int[] densities;//由稀疏到密集
+    private final boolean escalateOnSameFrame;
+    private final AtomicLongArray attempts;//每一级的识别次数
+    private final AtomicLongArray successes;//每一级的成功次数
+
+    public AdaptiveDensity() {
+        this(DEFAULT_DENSITIES, true);
+    }
+
+    /**
+     * @param densities           各级扫描密度，由稀疏到密集排列，如{6, 3, 1}
+     * @param escalateOnSameFrame 为true时，识别失败后在同一帧上立即使用更高的密度重试；
+     *                            为false时，下一帧才使用更高的密度（单帧耗时更稳定）
+     */
+    public AdaptiveDensity(int[] densities, boolean escalateOnSameFrame) {
+        if (densities == null || densities.length == 0) {
+            throw new IllegalArgumentException("densities不能为空");
+        }
+        for (int density : densities) {
+            if (density <= 0) {
+                throw new IllegalArgumentException("density必须大于0");
+            }
+        }
+        this.densities = densities.clone();
+        this.escalateOnSameFrame = escalateOnSameFrame;
+        attempts = new AtomicLongArray(densities.length);
+        successes = new AtomicLongArray(densities.length);
+    }
+
+    public int getLevelCount() {
+        return densities.length;
+    }
+
+    public int getDensity(int level) {
+        return densities[level];
+    }
+
+    public boolean isEscalateOnSameFrame() {
+        return escalateOnSameFrame;
+    }
+
+    /**
+     * 记录一次识别（在解码线程中调用）
+     */
+    void record(int level, boolean success) {
+        attempts.incrementAndGet(level);
+        if (success) {
+            successes.incrementAndGet(level);
+        }
+    }
+
+    public long getAttempts(int level) {
+        return attempts.get(level);
+    }
+
+    public long getSuccesses(int level) {
+        return successes.get(level);
+    }
+
+    /**
+     * 某一级密度的识别成功率，没有识别过时返回0
+     */
+    public float getSuccessRate(int level) {
+        long attemptCount = attempts.get(level);
+        return attemptCount == 0 ? 0 : (float) successes.get(level) / attemptCount;
+    }
+
+    public void resetStatistics() {
+        for (int i = 0; i < densities.length; i++) {
+            attempts.set(i, 0);
+            successes.set(i, 0);
+        }
+    }
+}
@@ -6,8 +6,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class BarcodeFormat {
-    private int mId;
-    private String mName;
+    private final int mId;
+    private final String mName;
 
     public static final BarcodeFormat NONE = new BarcodeFormat(Symbol.NONE, "NONE");
     public static final BarcodeFormat PARTIAL = new BarcodeFormat(Symbol.PARTIAL, "PARTIAL");
@@ -28,6 +28,7 @@ public class BarcodeFormat {
     public static final BarcodeFormat CODE128 = new BarcodeFormat(Symbol.CODE128, "CODE128");
 
     public static final List<BarcodeFormat> ALL_FORMATS = new ArrayList<BarcodeFormat>();
+    private static final BarcodeFormat[] FORMATS_BY_ID = new BarcodeFormat[Symbol.CODE128 + 1];//下标为码格式的id
 
     static {
         ALL_FORMATS.add(BarcodeFormat.PARTIAL);
@@ -46,6 +47,10 @@ public class BarcodeFormat {
         ALL_FORMATS.add(BarcodeFormat.QRCODE);
         ALL_FORMATS.add(BarcodeFormat.CODE93);
         ALL_FORMATS.add(BarcodeFormat.CODE128);
+
+        for (BarcodeFormat format : ALL_FORMATS) {
+            FORMATS_BY_ID[format.getId()] = format;
+        }
     }
 
     public BarcodeFormat(int id, String name) {
@@ -61,9 +66,13 @@ public class BarcodeFormat {
         return mName;
     }
 
+    /**
+     * 根据zbar的码格式id（Symbol.getType）查找，未知的id返回NONE
+     */
     public static BarcodeFormat getFormatById(int id) {
-        for(BarcodeFormat format : ALL_FORMATS) {
-            if(format.getId() == id) {
+        if (id >= 0 && id < FORMATS_BY_ID.length) {
+            BarcodeFormat format = FORMATS_BY_ID[id];
+            if (format != null) {
                 return format;
             }
         }
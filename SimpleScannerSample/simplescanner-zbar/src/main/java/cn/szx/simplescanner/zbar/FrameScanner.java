@@ -0,0 +1,42 @@
+package cn.szx.simplescanner.zbar;
+
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.SymbolSet;
+
+/**
+ * 截取扫码区域并识别，ZBarFrameDecoder通过它使用zbar
+ * <p>
+ * 实现类为ZBarFrameScanner。zbar的类需要native库（libzbarjni），单元测试等没有native库的环境可以提供不调用zbar的实现。<br/>
+ * 实现类不需要是线程安全的，每个解码线程持有一个
+ */
+public interface FrameScanner {
+
+    /**
+     * 截取扫码区域，得到交给scan识别的图像
+     *
+     * @param left          扫码区域在相机图像（未旋转）中的位置，不能超出图像范围
+     * @param rotationCount 相机图像需要顺时针旋转几次（每次90度）
+     * @param rotateData    为true时截取扫码区域并旋转图像数据（方案一），否则直接在相机图像上设置截取区域（方案二）
+     * @return 复用的Image，下一次调用crop时会被修改
+     */
+    Image crop(byte[] data, int previewWidth, int previewHeight,
+               int left, int top, int cropWidth, int cropHeight,
+               int rotationCount, boolean rotateData);
+
+    /**
+     * 设置扫描密度（每隔几行/几列扫描一次）
+     */
+    void setDensity(int density);
+
+    /**
+     * 识别一次，识别到（非PARTIAL的）结果时返回结果集，否则返回null
+     *
+     * @param acceptPartial 是否接受只有PARTIAL（不完整的）结果的结果集
+     */
+    SymbolSet scan(Image barcode, boolean acceptPartial);
+
+    /**
+     * 释放资源，之后不能再使用
+     */
+    void release();
+}
@@ -0,0 +1,278 @@
+package cn.szx.simplescanner.zbar;
+
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.SymbolSet;
+
+import cn.szx.simplescanner.core.FrameDecoder;
+import cn.szx.simplescanner.core.FrameQualityGate;
+import cn.szx.simplescanner.core.FrameTimings;
+import cn.szx.simplescanner.core.FrameTracer;
+import cn.szx.simplescanner.core.PreviewFrame;
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.core.ScanMetrics;
+import cn.szx.simplescanner.core.SceneChangeDetector;
+
+/**
+ * 基于zbar的帧解码器，每个解码线程一个，各自持有一个FrameScanner
+ * <p>
+ * 识别一帧的完整过程：截取扫码区域、静止画面检测、帧质量门限、截取（旋转）、自适应扫描密度识别，
+ * 识别失败的帧不分配内存。不依赖Android，视图一侧（扫码区域、旋转角度、各项设置、对焦、结果的生成和回调）
+ * 由子类提供（见ZBarScannerView），因此可以在普通JVM中测试
+ */
+public abstract class ZBarFrameDecoder implements FrameDecoder {
+    private FrameScanner frameScanner;
+    private int configVersion;//frameScanner创建时的设置版本
+    private int nextLevel = 0;//自适应扫描密度下，下一帧开始识别时使用的密度级别
+    private int[] sceneSignature;//当前帧的画面签名，复用
+    private SceneChangeDetector sceneSignatureOwner;//sceneSignature所属的检测器
+
+    /**
+     * 识别一帧图像数据（运行于解码线程，不会阻塞相机线程）
+     */
+    @Override
+    public Runnable decode(PreviewFrame frame) {
+        if (!isResultWanted()) return null;
+
+        byte[] data = frame.data;
+        int previewWidth = frame.width;
+        int previewHeight = frame.height;
+
+        //扫码区域在相机图像中的位置
+        Roi rect = getCropRect(previewWidth, previewHeight);
+        if (rect == null) return null;
+        int left = Math.max(rect.left, 0);//截取区域不能超出图像范围
+        int top = Math.max(rect.top, 0);
+        int cropWidth = Math.min(rect.right, previewWidth) - left;
+        int cropHeight = Math.min(rect.bottom, previewHeight) - top;
+        if (cropWidth <= 0 || cropHeight <= 0) return null;
+
+        //画面与最近一次识别失败时相比没有变化，跳过识别
+        SceneChangeDetector sceneChangeDetector = getSceneChangeDetector();
+        if (sceneChangeDetector != null) {
+            if (sceneSignature == null || sceneSignatureOwner != sceneChangeDetector) {
+                sceneSignature = sceneChangeDetector.newSignature();
+                sceneSignatureOwner = sceneChangeDetector;
+            }
+            sceneChangeDetector.computeSignature(data, previewWidth, left, top, cropWidth, cropHeight, sceneSignature);
+            if (sceneChangeDetector.shouldSkip(sceneSignature)) {
+                onFrameMissed();
+                return null;
+            }
+        }
+
+        //跳过模糊（如正在对焦）或几乎没有内容的帧
+        FrameQualityGate frameQualityGate = getFrameQualityGate();
+        if (frameQualityGate != null
+                && !frameQualityGate.accept(data, previewWidth, left, top, cropWidth, cropHeight)) {
+            onFrameMissed();//连续多帧模糊时重新对焦
+            return null;
+        }
+
+        FrameTimings timings = frame.timings;//未开启统计时为null
+        long stageStart = timings != null ? System.nanoTime() : 0;
+        FrameTracer tracer = getTracer();
+
+        int rotationCount = getRotationCount();//相机图像需要被顺时针旋转几次（每次90度）
+        boolean rotateData = isRotateDataEnabled();
+        FrameScanner frameScanner = getFrameScanner();
+        Image barcode;
+        if (tracer != null) {
+            tracer.beginSection("crop");
+        }
+        try {
+            barcode = frameScanner.crop(data, previewWidth, previewHeight,
+                    left, top, cropWidth, cropHeight, rotationCount, rotateData);
+        } finally {
+            if (tracer != null) {
+                tracer.endSection();
+            }
+        }
+        if (timings != null) {
+            long now = System.nanoTime();
+            timings.set(ScanMetrics.Stage.CROP, now - stageStart);
+            stageStart = now;
+        }
+
+        //使用zbar库识别扫码区域
+        AdaptiveDensity adaptiveDensity = getAdaptiveDensity();
+        boolean acceptPartial = adaptiveDensity == null && !isMultiResult();//是否接受PARTIAL（不完整的）结果
+        SymbolSet syms;
+        if (tracer != null) {
+            tracer.beginSection("scan");
+        }
+        try {
+            syms = scan(frameScanner, adaptiveDensity, barcode, acceptPartial);
+        } finally {
+            if (tracer != null) {
+                tracer.endSection();
+            }
+        }
+        if (timings != null) {
+            timings.set(ScanMetrics.Stage.SCAN, System.nanoTime() - stageStart);
+        }
+
+        Runnable delivery = null;//识别失败时不分配
+        if (syms != null) {
+            delivery = onSymbolsFound(syms, acceptPartial, previewWidth, previewHeight,
+                    new Roi(left, top, left + cropWidth, top + cropHeight), rotationCount, rotateData);
+        }
+
+        if (sceneChangeDetector != null) {
+            if (delivery != null) {
+                sceneChangeDetector.reset();
+            } else {
+                sceneChangeDetector.onDecodeFailed(sceneSignature);//记录识别失败（或只识别到重复结果）时的画面
+            }
+        }
+
+        if (syms != null) {//识别到了码（包括被过滤掉的重复结果）
+            onFrameDecoded();
+        } else {
+            onFrameMissed();
+        }
+        return delivery;
+    }
+
+    /**
+     * 识别图像，识别失败时返回null
+     * <p>
+     * 启用自适应扫描密度时，由稀疏到密集逐级识别，直到识别到非PARTIAL的结果
+     */
+    private SymbolSet scan(FrameScanner frameScanner, AdaptiveDensity adaptiveDensity, Image barcode,
+                           boolean acceptPartial) {
+        if (adaptiveDensity == null) {
+            frameScanner.setDensity(ZBarFrameScanner.DEFAULT_DENSITY);
+            return frameScanner.scan(barcode, acceptPartial);
+        }
+
+        int levelCount = adaptiveDensity.getLevelCount();
+        int level = adaptiveDensity.isEscalateOnSameFrame() ? 0 : Math.min(nextLevel, levelCount - 1);
+        while (true) {
+            frameScanner.setDensity(adaptiveDensity.getDensity(level));
+            SymbolSet syms = frameScanner.scan(barcode, false);
+            adaptiveDensity.record(level, syms != null);
+
+            if (syms != null) {
+                nextLevel = 0;//识别成功，下一帧重新从最稀疏的密度开始
+                return syms;
+            }
+            if (adaptiveDensity.isEscalateOnSameFrame() && level + 1 < levelCount) {
+                level++;//在同一帧上提高密度重试
+            } else {
+                nextLevel = (level + 1) % levelCount;//下一帧提高密度，最高一级也失败后重新从最稀疏的开始
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 获取当前线程的FrameScanner，若设置已更新（如setFormats），则销毁旧的并重新创建
+     */
+    private FrameScanner getFrameScanner() {
+        int version = getScannerConfigVersion();
+        if (frameScanner == null || configVersion != version) {
+            releaseFrameScanner();
+            frameScanner = createFrameScanner();
+            configVersion = version;
+        }
+        return frameScanner;
+    }
+
+    /**
+     * 解码线程退出时调用，子类覆盖时需调用super.release()
+     */
+    @Override
+    public void release() {
+        releaseFrameScanner();
+    }
+
+    private void releaseFrameScanner() {
+        if (frameScanner != null) {
+            frameScanner.release();//释放native资源
+            frameScanner = null;
+        }
+    }
+
+//--------------------------------------------------------------------------------------------------
+//以下方法由子类提供，都在解码线程中调用
+
+    /**
+     * 是否需要识别（如没有设置结果回调时不识别）
+     */
+    protected abstract boolean isResultWanted();
+
+    /**
+     * 扫码区域在相机图像（未旋转）中的位置，可以超出图像范围，尚未确定时返回null<br/>
+     * 每一帧都会调用，应返回缓存的对象，不要每次都分配
+     */
+    protected abstract Roi getCropRect(int previewWidth, int previewHeight);
+
+    /**
+     * 相机图像需要顺时针旋转几次（每次90度）才能与屏幕方向一致
+     */
+    protected abstract int getRotationCount();
+
+    /**
+     * 是否先截取并旋转图像数据再识别（方案一）
+     */
+    protected abstract boolean isRotateDataEnabled();
+
+    /**
+     * 是否返回一帧中的所有码（此时不接受PARTIAL结果）
+     */
+    protected abstract boolean isMultiResult();
+
+    /**
+     * @return 为null时使用固定的扫描密度
+     */
+    protected abstract AdaptiveDensity getAdaptiveDensity();
+
+    /**
+     * @return 为null时不检查帧质量
+     */
+    protected abstract FrameQualityGate getFrameQualityGate();
+
+    /**
+     * @return 为null时不检测静止画面
+     */
+    protected abstract SceneChangeDetector getSceneChangeDetector();
+
+    /**
+     * FrameScanner设置的版本，与创建当前FrameScanner时不同时重新创建
+     */
+    protected abstract int getScannerConfigVersion();
+
+    /**
+     * 创建FrameScanner（如new ZBarFrameScanner(formats)）
+     */
+    protected abstract FrameScanner createFrameScanner();
+
+    /**
+     * 识别到了码，生成结果回调
+     *
+     * @param syms          识别结果，下一次识别时会被覆盖
+     * @param acceptPartial 是否接受PARTIAL结果
+     * @param cropRect      截取区域在相机图像（未旋转）中的位置，已限制在图像范围内
+     * @return 结果回调（见FrameDecoder.decode），所有结果都被过滤掉（如重复结果）时返回null
+     */
+    protected abstract Runnable onSymbolsFound(SymbolSet syms, boolean acceptPartial,
+                                               int previewWidth, int previewHeight, Roi cropRect,
+                                               int rotationCount, boolean rotateData);
+
+    /**
+     * 一帧没有识别到码（被跳过或识别失败）
+     */
+    protected abstract void onFrameMissed();
+
+    /**
+     * 一帧识别到了码
+     */
+    protected abstract void onFrameDecoded();
+
+    /**
+     * 截取、识别的跟踪片段（"crop"、"scan"）输出到哪里，为null时不输出（默认）
+     */
+    protected FrameTracer getTracer() {
+        return null;
+    }
+}
@@ -0,0 +1,146 @@
+package cn.szx.simplescanner.zbar;
+
+import net.sourceforge.zbar.Config;
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.ImageScanner;
+import net.sourceforge.zbar.Symbol;
+import net.sourceforge.zbar.SymbolSet;
+
+import java.util.Collection;
+
+import cn.szx.simplescanner.core.LuminanceUtils;
+
+/**
+ * 截取一帧中的扫码区域并用zbar识别，不依赖Android
+ * <p>
+ * ZBarScannerView的每个解码线程（ZBarFrameDecoder）持有一个；simplescanner-benchmark中的识别测试（CorpusRunner）也用它识别合成的帧，
+ * 保证离线测试与预览帧的识别过程一致。<br/>
+ * ImageScanner不是线程安全的，每个实例只能在一个线程中使用。<br/>
+ * 交给zbar的Image只创建一次，之后每一帧只更新尺寸、截取区域和数据，识别失败的帧不分配内存
+ */
+public class ZBarFrameScanner implements FrameScanner {
+    public static final int DEFAULT_DENSITY = 3;//默认的扫描密度
+
+    private ImageScanner imageScanner;
+    private int currentDensity;//imageScanner当前的扫描密度
+    private byte[] rotatedData;//方案一中旋转后的扫码区域数据，尺寸不变时复用
+    private Image image;//交给zbar识别的图像，复用
+    private int imageWidth, imageHeight;//image当前的尺寸
+
+    /**
+     * @param formats 支持的码格式
+     */
+    public ZBarFrameScanner(Collection<BarcodeFormat> formats) {
+        imageScanner = new ImageScanner();
+
+        imageScanner.setConfig(0, Config.X_DENSITY, DEFAULT_DENSITY);
+        imageScanner.setConfig(0, Config.Y_DENSITY, DEFAULT_DENSITY);
+        currentDensity = DEFAULT_DENSITY;
+
+        imageScanner.setConfig(Symbol.NONE, Config.ENABLE, 0);
+
+        for (BarcodeFormat format : formats) {//设置支持的码格式
+            imageScanner.setConfig(format.getId(), Config.ENABLE, 1);
+        }
+    }
+
+    /**
+     * 截取扫码区域，得到交给zbar识别的图像
+     *
+     * @param data          预览数据（亮度数据在前）
+     * @param left          扫码区域在相机图像（未旋转）中的位置，不能超出图像范围
+     * @param rotationCount 相机图像需要顺时针旋转几次（每次90度）
+     * @param rotateData    为true时截取扫码区域并旋转图像数据（方案一），否则直接在相机图像上设置截取区域（方案二）
+     * @return 复用的Image，下一次调用crop时会被修改，调用者不要destroy
+     */
+    @Override
+    public Image crop(byte[] data, int previewWidth, int previewHeight,
+                      int left, int top, int cropWidth, int cropHeight,
+                      int rotationCount, boolean rotateData) {
+        Image barcode;
+        if (rotateData) {
+            /*
+             * 方案一：截取扫码区域并旋转图像数据（一次完成，结果写入可复用的数组）
+             */
+            if (rotatedData == null || rotatedData.length != cropWidth * cropHeight) {
+                rotatedData = new byte[cropWidth * cropHeight];
+            }
+            LuminanceUtils.cropAndRotate(data, previewWidth, previewHeight,
+                    left, top, cropWidth, cropHeight, rotationCount, rotatedData);
+
+            if (rotationCount == 1 || rotationCount == 3) {//相机图像需要顺时针旋转90度或270度，交换宽高
+                barcode = obtainImage(cropHeight, cropWidth);
+                barcode.setCrop(0, 0, cropHeight, cropWidth);
+            } else {
+                barcode = obtainImage(cropWidth, cropHeight);
+                barcode.setCrop(0, 0, cropWidth, cropHeight);
+            }
+            barcode.setData(rotatedData);
+        } else {
+            /*
+             * 方案二：旋转截取区域，直接从preView的图像中截取扫码区域
+             */
+            barcode = obtainImage(previewWidth, previewHeight);
+            barcode.setData(data);
+            barcode.setCrop(left, top, cropWidth, cropHeight);
+        }
+        return barcode;
+    }
+
+    /**
+     * 获取复用的Image，并设置为width * height
+     */
+    private Image obtainImage(int width, int height) {
+        if (image == null) {
+            image = new Image(width, height, "Y800");
+        } else if (imageWidth != width || imageHeight != height) {
+            image.setSize(width, height);
+        }
+        imageWidth = width;
+        imageHeight = height;
+        return image;
+    }
+
+    /**
+     * 设置扫描密度（每隔几行/几列扫描一次），与当前值相同时不做任何操作
+     */
+    @Override
+    public void setDensity(int density) {
+        if (currentDensity == density) return;
+        imageScanner.setConfig(0, Config.X_DENSITY, density);
+        imageScanner.setConfig(0, Config.Y_DENSITY, density);
+        currentDensity = density;
+    }
+
+    /**
+     * 识别一次，识别到（非PARTIAL的）结果时返回结果集，否则返回null
+     *
+     * @param acceptPartial 是否接受只有PARTIAL（不完整的）结果的结果集
+     */
+    @Override
+    public SymbolSet scan(Image barcode, boolean acceptPartial) {
+        if (imageScanner.scanImage(barcode) == 0) return null;
+
+        SymbolSet syms = imageScanner.getResults();
+        if (acceptPartial) return syms;
+        for (Symbol sym : syms) {
+            if (sym.getType() != Symbol.PARTIAL) return syms;
+        }
+        return null;
+    }
+
+    /**
+     * 释放native资源，之后不能再使用
+     */
+    @Override
+    public void release() {
+        if (imageScanner != null) {
+            imageScanner.destroy();
+            imageScanner = null;
+        }
+        if (image != null) {
+            image.destroy();
+            image = null;
+        }
+    }
+}
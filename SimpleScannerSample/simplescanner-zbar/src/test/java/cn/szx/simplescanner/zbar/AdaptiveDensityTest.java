@@ -0,0 +1,243 @@
+package cn.szx.simplescanner.zbar;
+
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.SymbolSet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cn.szx.simplescanner.core.FrameQualityGate;
+import cn.szx.simplescanner.core.PreviewFrame;
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.core.SceneChangeDetector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 自适应扫描密度：统计、参数检查，以及ZBarFrameDecoder中逐级提高密度的顺序
+ * <p>
+ * zbar的SymbolSet需要native库，无法在JVM中创建，识别由总是失败的FrameScanner完成，只检查失败时提高密度的路径；
+ * 识别成功时的统计直接通过record检查
+ */
+public class AdaptiveDensityTest {
+    private static final int WIDTH = 64, HEIGHT = 48;
+
+    @Test
+    public void statistics() {
+        AdaptiveDensity adaptiveDensity = new AdaptiveDensity();
+        assertEquals(3, adaptiveDensity.getLevelCount());
+        assertEquals(0, adaptiveDensity.getSuccessRate(0), 0);//没有识别过
+
+        adaptiveDensity.record(0, false);
+        adaptiveDensity.record(0, false);
+        adaptiveDensity.record(0, true);
+        adaptiveDensity.record(2, true);
+        assertEquals(3, adaptiveDensity.getAttempts(0));
+        assertEquals(1, adaptiveDensity.getSuccesses(0));
+        assertEquals(1f / 3, adaptiveDensity.getSuccessRate(0), 1e-6);
+        assertEquals(0, adaptiveDensity.getAttempts(1));
+        assertEquals(1, adaptiveDensity.getSuccessRate(2), 0);
+
+        adaptiveDensity.resetStatistics();
+        for (int level = 0; level < adaptiveDensity.getLevelCount(); level++) {
+            assertEquals(0, adaptiveDensity.getAttempts(level));
+            assertEquals(0, adaptiveDensity.getSuccesses(level));
+        }
+    }
+
+    @Test
+    public void densitiesAreCopied() {
+        int[] densities = {4, 2};
+        AdaptiveDensity adaptiveDensity = new AdaptiveDensity(densities, true);
+        densities[0] = 1;
+        assertEquals(4, adaptiveDensity.getDensity(0));
+        assertEquals(2, adaptiveDensity.getDensity(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullDensities() {
+        new AdaptiveDensity(null, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyDensities() {
+        new AdaptiveDensity(new int[0], true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroDensity() {
+        new AdaptiveDensity(new int[]{3, 0}, true);
+    }
+
+    /**
+     * 在同一帧上由稀疏到密集逐级重试，每一帧都从最稀疏的开始
+     */
+    @Test
+    public void escalateOnSameFrame() {
+        AdaptiveDensity adaptiveDensity = new AdaptiveDensity(new int[]{6, 3, 1}, true);
+        TestDecoder decoder = new TestDecoder(adaptiveDensity);
+        decoder.decodeFrames(2);
+
+        assertEquals(Arrays.asList(6, 3, 1, 6, 3, 1), decoder.frameScanner.densities);
+        for (int level = 0; level < 3; level++) {
+            assertEquals(2, adaptiveDensity.getAttempts(level));
+            assertEquals(0, adaptiveDensity.getSuccesses(level));
+        }
+        assertEquals(2, decoder.missedCount);
+    }
+
+    /**
+     * 每一帧只识别一次，失败后下一帧提高密度，最高一级也失败后重新从最稀疏的开始
+     */
+    @Test
+    public void escalateOnNextFrame() {
+        AdaptiveDensity adaptiveDensity = new AdaptiveDensity(new int[]{6, 3, 1}, false);
+        TestDecoder decoder = new TestDecoder(adaptiveDensity);
+        decoder.decodeFrames(7);
+
+        assertEquals(Arrays.asList(6, 3, 1, 6, 3, 1, 6), decoder.frameScanner.densities);
+        assertEquals(3, adaptiveDensity.getAttempts(0));
+        assertEquals(2, adaptiveDensity.getAttempts(1));
+        assertEquals(2, adaptiveDensity.getAttempts(2));
+        assertEquals(7, decoder.missedCount);
+    }
+
+    /**
+     * 换成级数更少的AdaptiveDensity时，下一帧的级别不会越界
+     */
+    @Test
+    public void fewerLevelsAfterChange() {
+        TestDecoder decoder = new TestDecoder(new AdaptiveDensity(new int[]{6, 3, 1}, false));
+        decoder.decodeFrames(2);//下一帧使用第3级
+        decoder.adaptiveDensity = new AdaptiveDensity(new int[]{4, 2}, false);
+        decoder.decodeFrames(2);
+
+        assertEquals(Arrays.asList(6, 3, 2, 4), decoder.frameScanner.densities);
+    }
+
+    @Test
+    public void fixedDensity() {
+        TestDecoder decoder = new TestDecoder(null);
+        decoder.decodeFrames(2);
+
+        assertEquals(Arrays.asList(ZBarFrameScanner.DEFAULT_DENSITY, ZBarFrameScanner.DEFAULT_DENSITY),
+                decoder.frameScanner.densities);
+    }
+
+    private static class TestDecoder extends ZBarFrameDecoder {
+        private final Roi cropRect = new Roi(0, 0, WIDTH, HEIGHT);
+        final RecordingFrameScanner frameScanner = new RecordingFrameScanner();
+        AdaptiveDensity adaptiveDensity;
+        int missedCount = 0;
+
+        TestDecoder(AdaptiveDensity adaptiveDensity) {
+            this.adaptiveDensity = adaptiveDensity;
+        }
+
+        void decodeFrames(int count) {
+            byte[] data = new byte[WIDTH * HEIGHT * 3 / 2];
+            for (int i = 0; i < count; i++) {
+                assertNull(decode(new PreviewFrame(data, WIDTH, HEIGHT, i)));
+            }
+        }
+
+        @Override
+        protected boolean isResultWanted() {
+            return true;
+        }
+
+        @Override
+        protected Roi getCropRect(int previewWidth, int previewHeight) {
+            return cropRect;
+        }
+
+        @Override
+        protected int getRotationCount() {
+            return 0;
+        }
+
+        @Override
+        protected boolean isRotateDataEnabled() {
+            return false;
+        }
+
+        @Override
+        protected boolean isMultiResult() {
+            return false;
+        }
+
+        @Override
+        protected AdaptiveDensity getAdaptiveDensity() {
+            return adaptiveDensity;
+        }
+
+        @Override
+        protected FrameQualityGate getFrameQualityGate() {
+            return null;
+        }
+
+        @Override
+        protected SceneChangeDetector getSceneChangeDetector() {
+            return null;
+        }
+
+        @Override
+        protected int getScannerConfigVersion() {
+            return 0;
+        }
+
+        @Override
+        protected FrameScanner createFrameScanner() {
+            return frameScanner;
+        }
+
+        @Override
+        protected Runnable onSymbolsFound(SymbolSet syms, boolean acceptPartial, int previewWidth, int previewHeight,
+                                          Roi cropRect, int rotationCount, boolean rotateData) {
+            throw new AssertionError("不会识别到码");
+        }
+
+        @Override
+        protected void onFrameMissed() {
+            missedCount++;
+        }
+
+        @Override
+        protected void onFrameDecoded() {
+            throw new AssertionError("不会识别到码");
+        }
+    }
+
+    /**
+     * 不调用zbar的FrameScanner：记录每次识别时的扫描密度，总是识别失败
+     */
+    private static class RecordingFrameScanner implements FrameScanner {
+        final List<Integer> densities = new ArrayList<>();
+        private int density;
+
+        @Override
+        public Image crop(byte[] data, int previewWidth, int previewHeight, int left, int top,
+                          int cropWidth, int cropHeight, int rotationCount, boolean rotateData) {
+            return null;//zbar的Image需要native库
+        }
+
+        @Override
+        public void setDensity(int density) {
+            this.density = density;
+        }
+
+        @Override
+        public SymbolSet scan(Image barcode, boolean acceptPartial) {
+            densities.add(density);
+            return null;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package cn.szx.simplescanner.zbar;
+
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.SymbolSet;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import cn.szx.simplescanner.core.FocusController;
+import cn.szx.simplescanner.core.FrameDecoder;
+import cn.szx.simplescanner.core.FramePipeline;
+import cn.szx.simplescanner.core.FrameQualityGate;
+import cn.szx.simplescanner.core.LuminanceUtils;
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.core.RoiMapper;
+import cn.szx.simplescanner.core.SceneChangeDetector;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 识别失败的帧在稳定状态下不分配内存
+ * <p>
+ * 模拟缓冲模式的相机：预分配的缓冲区轮流送入FramePipeline，由ZBarFrameDecoder识别（与ZBarScannerView相同的识别过程），
+ * 启用静止画面检测、帧质量门限、自适应扫描密度和对焦控制（连续识别失败时重新对焦并丢弃排队的帧），
+ * 扫码区域与ZBarScannerView一样由扫码框缩放、旋转得到。帧的内容有噪声、平坦和渐变的画面，会经过跳过、拒绝和识别各条路径。<br/>
+ * zbar需要native库，识别由不调用zbar的FrameScanner完成：真正截取并旋转扫码区域，但总是识别失败。
+ * 识别成功的路径（Result、DuplicateFilter）需要zbar给出的结果，不在此测试。<br/>
+ * 预热后统计相机线程和各解码线程分配的字节数（HotSpot的ThreadMXBean）
+ */
+public class FailedFrameAllocationTest {
+    private static final int WIDTH = 1280, HEIGHT = 720;
+    private static final int VIEW_WIDTH = 1080, VIEW_HEIGHT = 1920;//竖屏
+    private static final int ROTATION_COUNT = 1;
+    private static final int BUFFER_COUNT = 3;//与PreviewBufferPool的默认值相同
+    private static final int WARMUP_FRAMES = 20000;//足够让JIT完成编译（逃逸分析等）
+    private static final int FRAMES = 5000;
+    //每一次分配至少16字节，平均每帧不到1字节说明稳定状态下没有逐帧的分配（ThreadMXBean本身的调用等固定开销除外）
+    private static final double MAX_BYTES_PER_FRAME = 1;
+
+    @Test
+    public void singleThreadRotateCrop() throws InterruptedException {
+        run(1, false, new AdaptiveDensity());
+    }
+
+    @Test
+    public void singleThreadRotateData() throws InterruptedException {
+        run(1, true, new AdaptiveDensity(AdaptiveDensity.DEFAULT_DENSITIES, false));
+    }
+
+    @Test
+    public void twoThreadsRotateData() throws InterruptedException {
+        run(2, true, new AdaptiveDensity());
+    }
+
+    @Test
+    public void twoThreadsFixedDensity() throws InterruptedException {
+        run(2, false, null);
+    }
+
+    private void run(int threadCount, boolean rotateData, AdaptiveDensity adaptiveDensity) throws InterruptedException {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        Camera camera = new Camera();
+        Scanner scanner = new Scanner(rotateData, adaptiveDensity);
+        TestDecoder[] decoders = new TestDecoder[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            decoders[i] = new TestDecoder(scanner);
+        }
+        FramePipeline framePipeline = new FramePipeline(camera, decoders, 1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        scanner.framePipeline = framePipeline;
+        try {
+            camera.requestNextFrame();//相机送来的第一帧不需要请求
+            camera.feed(framePipeline, WARMUP_FRAMES);
+
+            long cameraThreadId = Thread.currentThread().getId();
+            long[] threadIds = new long[threadCount + 1];
+            threadIds[0] = cameraThreadId;
+            for (int i = 0; i < threadCount; i++) {
+                threadIds[i + 1] = decoders[i].threadId;
+            }
+            long[] start = new long[threadIds.length];
+            for (int i = 0; i < threadIds.length; i++) {
+                start[i] = threadMXBean.getThreadAllocatedBytes(threadIds[i]);
+            }
+            camera.feed(framePipeline, FRAMES);
+            long[] allocated = new long[threadIds.length];
+            for (int i = 0; i < threadIds.length; i++) {
+                allocated[i] = threadMXBean.getThreadAllocatedBytes(threadIds[i]) - start[i];
+            }
+
+            String message = "threads=" + threadCount + " rotateData=" + rotateData
+                    + " 分配的字节数（相机线程、各解码线程）=" + Arrays.toString(allocated);
+            for (long bytes : allocated) {
+                assertTrue(message, (double) bytes / FRAMES < MAX_BYTES_PER_FRAME);
+            }
+            assertTrue("没有经过识别的路径", scanner.scanCount > 0);
+            assertTrue("没有经过跳过静止画面的路径", scanner.sceneChangeDetector.getSkippedCount() > 0);
+            assertTrue("没有经过帧质量门限拒绝的路径", scanner.frameQualityGate.getRejectedCount() > 0);
+            assertTrue("没有重新对焦", scanner.focusController.getRefocusCount() > 0);
+        } finally {
+            framePipeline.quit();
+        }
+    }
+
+    /**
+     * 模拟缓冲模式的相机：预分配的画面轮流送入（在测试线程中），每一帧都等待FramePipeline请求后再送入，
+     * 且同时最多有BUFFER_COUNT帧没有交还（recycleFrame），与真实的相机一样不会无限地超前于解码线程
+     */
+    private static class Camera implements FramePipeline.FrameSource {
+        private final byte[][] buffers;
+        private int nextBuffer = 0;
+        private int pendingRequests = 0;//通过this同步访问
+        private int framesInUse = 0;//已送入、尚未交还的帧数，通过this同步访问
+
+        Camera() {
+            Random random = new Random(1);
+            byte[] noise1 = new byte[WIDTH * HEIGHT * 3 / 2];
+            byte[] noise2 = new byte[noise1.length];
+            random.nextBytes(noise1);
+            random.nextBytes(noise2);
+            byte[] flat = new byte[noise1.length];
+            Arrays.fill(flat, (byte) 128);
+            byte[] gradient = new byte[noise1.length];
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    gradient[y * WIDTH + x] = (byte) (x * 255 / WIDTH);
+                }
+            }
+            //相邻的相同画面会被静止画面检测跳过，平坦和渐变的画面会被帧质量门限拒绝
+            buffers = new byte[][]{noise1, noise1.clone(), flat, flat.clone(), noise2, gradient, gradient.clone()};
+        }
+
+        @Override
+        public synchronized void requestNextFrame() {
+            pendingRequests++;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void recycleFrame(byte[] data) {
+            framesInUse--;
+            notifyAll();
+        }
+
+        void feed(FramePipeline framePipeline, int frames) throws InterruptedException {
+            for (int i = 0; i < frames; i++) {
+                byte[] data;
+                synchronized (this) {
+                    while (pendingRequests == 0 || framesInUse >= BUFFER_COUNT) {
+                        wait();
+                    }
+                    pendingRequests--;
+                    framesInUse++;
+                    data = buffers[nextBuffer];
+                    nextBuffer = (nextBuffer + 1) % buffers.length;
+                }
+                framePipeline.dispatch(data, WIDTH, HEIGHT);
+            }
+        }
+    }
+
+    /**
+     * 各解码线程共用的设置，相当于ZBarScannerView
+     */
+    private static class Scanner {
+        final boolean rotateData;
+        final AdaptiveDensity adaptiveDensity;
+        final SceneChangeDetector sceneChangeDetector = new SceneChangeDetector();
+        final FrameQualityGate frameQualityGate = new FrameQualityGate();
+        final FocusController focusController = new FocusController(FocusController.DEFAULT_MISSES_BEFORE_REFOCUS,
+                0, FocusController.DEFAULT_FOCUS_TIMEOUT_MILLIS);
+        final Roi cropRect;
+        volatile FramePipeline framePipeline;
+        volatile long scanCount = 0;
+
+        Scanner(boolean rotateData, AdaptiveDensity adaptiveDensity) {
+            this.rotateData = rotateData;
+            this.adaptiveDensity = adaptiveDensity;
+            //与ZBarScannerView相同：扫码框（画面中央的正方形）缩放到已旋转的相机图像中，再旋转回相机图像（getScaledRect、getRotatedRect）
+            int side = VIEW_WIDTH * 6 / 10;
+            Roi framingRect = new Roi((VIEW_WIDTH - side) / 2, (VIEW_HEIGHT - side) / 2,
+                    (VIEW_WIDTH + side) / 2, (VIEW_HEIGHT + side) / 2);
+            Roi scaledRect = RoiMapper.scaleToFrame(framingRect, VIEW_WIDTH, VIEW_HEIGHT, HEIGHT, WIDTH);
+            cropRect = RoiMapper.unrotate(scaledRect, WIDTH, HEIGHT, ROTATION_COUNT);
+        }
+
+        /**
+         * 与BarcodeScannerView.onFrameMissed相同，需要重新对焦时模拟一次立即成功的对焦（onFocusSucceeded）
+         */
+        void onFrameMissed() {
+            if (!focusController.onFrameMissed()) return;
+            if (focusController.onFocusFinished(true)) {
+                framePipeline.discardQueuedFrames();
+                sceneChangeDetector.reset();
+            }
+        }
+    }
+
+    private static class TestDecoder extends ZBarFrameDecoder {
+        private final Scanner scanner;
+        volatile long threadId = -1;
+
+        TestDecoder(Scanner scanner) {
+            this.scanner = scanner;
+        }
+
+        @Override
+        protected boolean isResultWanted() {
+            threadId = Thread.currentThread().getId();
+            return true;
+        }
+
+        @Override
+        protected Roi getCropRect(int previewWidth, int previewHeight) {
+            return scanner.cropRect;
+        }
+
+        @Override
+        protected int getRotationCount() {
+            return ROTATION_COUNT;
+        }
+
+        @Override
+        protected boolean isRotateDataEnabled() {
+            return scanner.rotateData;
+        }
+
+        @Override
+        protected boolean isMultiResult() {
+            return false;
+        }
+
+        @Override
+        protected AdaptiveDensity getAdaptiveDensity() {
+            return scanner.adaptiveDensity;
+        }
+
+        @Override
+        protected FrameQualityGate getFrameQualityGate() {
+            return scanner.frameQualityGate;
+        }
+
+        @Override
+        protected SceneChangeDetector getSceneChangeDetector() {
+            return scanner.sceneChangeDetector;
+        }
+
+        @Override
+        protected int getScannerConfigVersion() {
+            return 0;
+        }
+
+        @Override
+        protected FrameScanner createFrameScanner() {
+            return new MissingFrameScanner(scanner);
+        }
+
+        @Override
+        protected Runnable onSymbolsFound(SymbolSet syms, boolean acceptPartial, int previewWidth, int previewHeight,
+                                          Roi cropRect, int rotationCount, boolean rotateData) {
+            throw new AssertionError("不会识别到码");
+        }
+
+        @Override
+        protected void onFrameMissed() {
+            scanner.onFrameMissed();
+        }
+
+        @Override
+        protected void onFrameDecoded() {
+            scanner.focusController.onFrameDecoded();
+        }
+    }
+
+    /**
+     * 不调用zbar的FrameScanner：与ZBarFrameScanner一样截取（并旋转）扫码区域，但总是识别失败
+     */
+    private static class MissingFrameScanner implements FrameScanner {
+        private final Scanner scanner;
+        private byte[] rotatedData;
+
+        MissingFrameScanner(Scanner scanner) {
+            this.scanner = scanner;
+        }
+
+        @Override
+        public Image crop(byte[] data, int previewWidth, int previewHeight, int left, int top,
+                          int cropWidth, int cropHeight, int rotationCount, boolean rotateData) {
+            if (rotateData) {
+                if (rotatedData == null || rotatedData.length != cropWidth * cropHeight) {
+                    rotatedData = new byte[cropWidth * cropHeight];
+                }
+                LuminanceUtils.cropAndRotate(data, previewWidth, previewHeight,
+                        left, top, cropWidth, cropHeight, rotationCount, rotatedData);
+            }
+            return null;//zbar的Image需要native库
+        }
+
+        @Override
+        public void setDensity(int density) {
+        }
+
+        @Override
+        public SymbolSet scan(Image barcode, boolean acceptPartial) {
+            scanner.scanCount++;
+            return null;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
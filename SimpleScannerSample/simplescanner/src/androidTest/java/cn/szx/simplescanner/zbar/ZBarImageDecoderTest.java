@@ -0,0 +1,229 @@
+package cn.szx.simplescanner.zbar;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用仓库根目录下的示例图片（构建时由copyCorpusImages复制到androidTest的assets中）测试ZBarImageDecoder
+ * <p>
+ * 示例图片中没有码，直接识别时结果应为空；在图片上画出EAN-13后，应识别出其内容，位置为原图中的坐标
+ */
+@RunWith(AndroidJUnit4.class)
+public class ZBarImageDecoderTest {
+    private static final String[] CORPUS = {"area.jpg", "landscape.jpg", "potrait.jpg", "rotated1.jpg", "rotated2.jpg"};
+    private static final String EAN13 = "6901234567892";
+    private static final int MODULE_SIZE = 2;//每个模块的宽度（像素）
+    private static final int BAR_HEIGHT = 80;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    //EAN-13左侧奇校验的编码，偶校验为其反码的倒序，右侧为其反码
+    private static final String[] L_CODES = {"0001101", "0011001", "0010011", "0111101", "0100011",
+            "0110001", "0101111", "0111011", "0110111", "0001011"};
+    //第一位数字决定左侧6位的奇偶（1为偶校验）
+    private static final String[] PARITIES = {"000000", "001011", "001101", "001110", "010011",
+            "011001", "011100", "010101", "010110", "011010"};
+
+    private ZBarImageDecoder decoder;
+    private CountDownLatch done;
+    private final Map<Object, List<Result>> decoded = new ConcurrentHashMap<>();
+    private final Map<Object, Throwable> errors = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        decoder = new ZBarImageDecoder(2, 4, new ZBarImageDecoder.Callback() {
+            @Override
+            public void onDecoded(Object tag, List<Result> results) {
+                decoded.put(tag, results);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Object tag, Throwable e) {
+                errors.put(tag, e);
+                done.countDown();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        decoder.shutdown();
+        assertTrue(decoder.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void corpusWithoutBarcodes() throws Exception {
+        done = new CountDownLatch(CORPUS.length * 2);
+        for (String name : CORPUS) {
+            decoder.decode(copyToCache(name), name + ":file");
+            decoder.decode(readAsset(name), name + ":bytes");
+        }
+        await();
+
+        for (String name : CORPUS) {
+            assertEquals(name, 0, decoded.get(name + ":file").size());
+            assertEquals(name, 0, decoded.get(name + ":bytes").size());
+        }
+    }
+
+    @Test
+    public void barcodeOnCorpusImages() throws Exception {
+        done = new CountDownLatch(CORPUS.length);
+        Rect[] drawn = new Rect[CORPUS.length];
+        for (int i = 0; i < CORPUS.length; i++) {
+            Bitmap bitmap = decodeAsset(CORPUS[i]);
+            drawn[i] = drawEan13(bitmap, EAN13, 10, bitmap.getHeight() - BAR_HEIGHT - 10);
+            decoder.decode(bitmap, CORPUS[i]);
+        }
+        await();
+
+        for (int i = 0; i < CORPUS.length; i++) {
+            assertSingleEan13(CORPUS[i], decoded.get(CORPUS[i]), drawn[i], 1);
+        }
+    }
+
+    /**
+     * 限制最大边长后，图片在解码时缩小一半，结果中的位置仍为原图中的坐标
+     */
+    @Test
+    public void downsampledImagesReportOriginalBounds() throws Exception {
+        decoder.setMaxDimension(288);//示例图片的长边为576
+        done = new CountDownLatch(CORPUS.length);
+        Rect[] drawn = new Rect[CORPUS.length];
+        for (int i = 0; i < CORPUS.length; i++) {
+            Bitmap bitmap = decodeAsset(CORPUS[i]);
+            drawn[i] = drawEan13(bitmap, EAN13, 10, bitmap.getHeight() - BAR_HEIGHT - 10);
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, png);//无损，缩小后每个模块为1像素
+            bitmap.recycle();
+            decoder.decode(png.toByteArray(), CORPUS[i]);
+        }
+        await();
+
+        for (int i = 0; i < CORPUS.length; i++) {
+            assertSingleEan13(CORPUS[i], decoded.get(CORPUS[i]), drawn[i], 2);
+        }
+    }
+
+    private void await() throws InterruptedException {
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    /**
+     * @param scale 识别时图片缩小的倍数，结果的位置允许有2个（缩小后的）像素的误差
+     */
+    private static void assertSingleEan13(String name, List<Result> results, Rect drawn, int scale) {
+        assertEquals(name, 1, results.size());
+        Result result = results.get(0);
+        assertEquals(name, BarcodeFormat.EAN13, result.getBarcodeFormat());
+        assertEquals(name, EAN13, result.getContents());
+        Rect bounds = result.getBounds();
+        assertNotNull(name, bounds);
+        Rect allowed = new Rect(drawn);
+        allowed.inset(-2 * scale, -2 * scale);
+        assertTrue(name + " " + bounds + " " + drawn, allowed.contains(bounds));
+    }
+
+    /**
+     * 在bitmap上画出EAN-13（含左右空白区）
+     *
+     * @return 条和空所在的区域（不含空白区）
+     */
+    private static Rect drawEan13(Bitmap bitmap, String contents, int left, int top) {
+        StringBuilder modules = new StringBuilder("101");
+        String parity = PARITIES[contents.charAt(0) - '0'];
+        for (int i = 1; i <= 6; i++) {
+            String code = L_CODES[contents.charAt(i) - '0'];
+            modules.append(parity.charAt(i - 1) == '1' ? new StringBuilder(invert(code)).reverse().toString() : code);
+        }
+        modules.append("01010");
+        for (int i = 7; i <= 12; i++) {
+            modules.append(invert(L_CODES[contents.charAt(i) - '0']));
+        }
+        modules.append("101");
+
+        int quietZone = 9 * MODULE_SIZE;
+        int width = modules.length() * MODULE_SIZE;
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        canvas.drawRect(left, top, left + quietZone * 2 + width, top + BAR_HEIGHT, paint);
+        paint.setColor(Color.BLACK);
+        int barsLeft = left + quietZone;
+        for (int i = 0; i < modules.length(); i++) {
+            if (modules.charAt(i) == '1') {
+                int x = barsLeft + i * MODULE_SIZE;
+                canvas.drawRect(x, top, x + MODULE_SIZE, top + BAR_HEIGHT, paint);
+            }
+        }
+        return new Rect(barsLeft, top, barsLeft + width, top + BAR_HEIGHT);
+    }
+
+    private static String invert(String code) {
+        StringBuilder inverted = new StringBuilder(code.length());
+        for (int i = 0; i < code.length(); i++) {
+            inverted.append(code.charAt(i) == '1' ? '0' : '1');
+        }
+        return inverted.toString();
+    }
+
+    private static Bitmap decodeAsset(String name) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;//需要在上面画码
+        byte[] data = readAsset(name);
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    private static byte[] readAsset(String name) throws IOException {
+        InputStream in = InstrumentationRegistry.getContext().getAssets().open(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static File copyToCache(String name) throws IOException {
+        File file = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(readAsset(name));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
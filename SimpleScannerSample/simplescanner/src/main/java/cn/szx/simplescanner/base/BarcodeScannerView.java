@@ -4,15 +4,35 @@ import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
+import android.graphics.ImageFormat;
 import android.graphics.Rect;
 import android.hardware.Camera;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
 import android.support.v4.content.ContextCompat;
 import android.util.Log;
 import android.view.View;
 import android.widget.FrameLayout;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import cn.szx.simplescanner.core.CameraCapabilities;
+import cn.szx.simplescanner.core.FocusController;
+import cn.szx.simplescanner.core.FrameCaptureWriter;
+import cn.szx.simplescanner.core.FrameDecoder;
+import cn.szx.simplescanner.core.FramePipeline;
+import cn.szx.simplescanner.core.FrameTimings;
+import cn.szx.simplescanner.core.LuminanceUtils;
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.core.RoiMapper;
+import cn.szx.simplescanner.core.ScanMetrics;
 
 /**
  * 基本扫码视图，包含CameraPreview（相机预览）和ViewFinderView（扫码框、阴影遮罩等）
@@ -20,14 +40,43 @@ import java.util.ArrayList;
 public abstract class BarcodeScannerView extends FrameLayout implements Camera.PreviewCallback {
     private static final String TAG = "BarcodeScannerView";
 
-    protected CameraHandlerThread cameraHandlerThread;//当相机被释放时会被置为null
-    protected CameraWrapper cameraWrapper;//当相机被释放时会被置为null
+    protected volatile CameraHandlerThread cameraHandlerThread;//当相机被释放时会被置为null
+    private CameraHandlerThread releasingCameraThread;//正在释放相机的旧线程，再次打开相机前需等待其退出
+    protected volatile CameraWrapper cameraWrapper;//当相机被释放时会被置为null
+    private volatile FramePipeline framePipeline;//解码线程和结果分发，当相机被释放时会被置为null
 
     private IViewFinder viewFinderView;
-    private CameraPreview cameraPreview;
+    private volatile CameraPreview cameraPreview;
+    private volatile Camera2Preview camera2Preview;//使用Camera2时不为null，当相机被释放时会被置为null
+    private volatile int lastRotationCount = 0;//最后一次从预览得到的旋转次数，预览被释放后使用
+    private boolean camera2Enabled = false;//是否使用Camera2（Android 5.0及以上）
     private Rect scaledRect, rotatedRect;
     private ArrayList<Camera.Area> focusAreas;
     private boolean shouldAdjustFocusArea = false;//是否需要自动调整对焦区域
+    private boolean bufferedPreviewEnabled = false;//是否使用缓冲模式获取预览帧
+    private volatile PreviewBufferPool previewBufferPool;//缓冲模式下不为null，相机重新打开时复用
+    private int decodeQueueCapacity = 1;//每个解码线程等待识别的帧的最大数量
+    private int decodeThreadCount = 1;//解码线程的数量
+    private volatile boolean continuousScanEnabled = false;//是否连续扫码（识别成功后不暂停）
+    private volatile ScanMetrics scanMetrics;//为null时不统计性能
+    private volatile FrameCaptureWriter frameCaptureWriter;//为null时不录制预览帧
+    private volatile Executor resultExecutor;//执行识别结果回调的Executor，为null时在主线程执行
+    private volatile FocusController focusController = new FocusController();//为null时不根据识别结果重新对焦
+    private boolean continuousFocusEnabled = true;//支持时是否使用连续对焦
+    private CameraSession cameraSession;//为null时每次stopCamera都释放相机
+    private CameraCapabilityCache capabilityCache;//为null时每次打开相机都查询相机能力
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * 相机操作（打开、释放）完成的回调，在主线程回调
+     */
+    public interface CameraCallback {
+        /**
+         * @param success 是否成功（如开始预览前相机打开失败或被停止时为false）
+         */
+        void onComplete(boolean success);
+    }
 
     public BarcodeScannerView(@NonNull Context context, @NonNull IViewFinder viewFinderView) {
         super(context);
@@ -43,11 +92,50 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
      * 打开系统相机，并进行基本的初始化
      */
     public void startCamera() {
+        startCamera(null);
+    }
+
+    /**
+     * 打开系统相机，并进行基本的初始化，立即返回<br/>
+     * 相机在相机线程中打开，callback在开始预览后（或打开失败时）在主线程回调
+     */
+    public void startCamera(@Nullable CameraCallback callback) {
         if (ContextCompat.checkSelfPermission(getContext(), Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED) {
+            ScanMetrics scanMetrics = this.scanMetrics;
+            if (scanMetrics != null) {
+                scanMetrics.onCameraStarted();//开始计算到第一次识别成功的耗时
+            }
+
+            if (isCamera2Supported()) {
+                if (framePipeline == null) {
+                    startFramePipeline();
+                }
+                if (camera2Preview == null) {
+                    setupCamera2Preview(callback);
+                } else {
+                    notifyCameraCallback(callback, true);//已经打开
+                }
+                return;
+            }
+
+            if (framePipeline == null) {
+                startFramePipeline();
+            }
+            CameraSession cameraSession = this.cameraSession;
+            if (cameraHandlerThread == null && cameraSession != null && cameraSession.acquire(this, callback)) {
+                return;//使用会话中保持打开的相机，不需要重新打开
+            }
             if (cameraHandlerThread == null) {
                 cameraHandlerThread = new CameraHandlerThread(this);
+                cameraHandlerThread.setCapabilityCache(capabilityCache);
             }
-            cameraHandlerThread.startCamera(CameraUtils.getDefaultCameraId());
+            CameraHandlerThread previous = releasingCameraThread;
+            if (previous == null && cameraSession != null) {
+                previous = cameraSession.takeReleasingThread();//会话中的相机正在被释放
+            }
+            PreviewPlan plan = capabilityCache != null ? PreviewPlan.create(this, continuousFocusEnabled) : null;
+            cameraHandlerThread.startDefaultCamera(previous, plan, callback);
+            releasingCameraThread = null;
         } else {//没有相机权限
             throw new RuntimeException("没有Camera权限");
         }
@@ -57,20 +145,161 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
      * 基本初始化
      */
     public void setupCameraPreview(final CameraWrapper cameraWrapper) {
-        this.cameraWrapper = cameraWrapper;
+        setupCameraPreview(cameraWrapper, null);
+    }
 
-        if (this.cameraWrapper != null) {
+    /**
+     * 基本初始化（在主线程调用，相机已在cameraHandlerThread中打开）
+     *
+     * @param callback 开始预览后（或相机打开失败时）回调
+     */
+    public void setupCameraPreview(final CameraWrapper cameraWrapper, @Nullable CameraCallback callback) {
+        CameraHandlerThread cameraHandlerThread = this.cameraHandlerThread;
+        if (cameraWrapper != null && cameraHandlerThread != null) {
+            this.cameraWrapper = cameraWrapper;
+            ScanTrace.beginSection("setupCameraPreview");
             removeAllViews();
-            cameraPreview = new CameraPreview(getContext(), cameraWrapper, this, new CameraPreview.FocusAreaSetter() {
+            cameraPreview = new CameraPreview(getContext(), cameraHandlerThread, cameraWrapper, this, new CameraPreview.FocusAreaSetter() {
                 @Override
                 public void setAutoFocusArea() {
                     setupFocusAreas();//设置对焦区域
                 }
             });
+            if (bufferedPreviewEnabled) {
+                int bufferCount = decodeThreadCount + 2;//保证每个解码线程都有帧可识别
+                if (previewBufferPool == null || previewBufferPool.getBufferCount() != bufferCount) {
+                    previewBufferPool = new PreviewBufferPool(bufferCount);
+                }
+            } else {
+                previewBufferPool = null;
+            }
+            cameraPreview.setPreviewBufferPool(previewBufferPool);
+            cameraPreview.setContinuousFocusEnabled(continuousFocusEnabled);
+            cameraPreview.setFocusCallback(focusCallback);
+            cameraPreview.setStartCallback(callback);//surface创建后开始预览
+            resetFocusController();
             addView(cameraPreview);
             addView(((View) viewFinderView));
+            if (cameraSession != null) {
+                cameraSession.onCameraOpened(this, cameraHandlerThread, cameraWrapper);//stopCamera时交给会话保温
+            }
+            ScanTrace.endSection();
         } else {
             Log.e(TAG, "相机打开失败");
+            notifyCameraCallback(callback, false);
+        }
+    }
+
+    /**
+     * 接管CameraSession中保持打开的相机（在主线程调用）
+     */
+    void adoptCamera(CameraHandlerThread cameraHandlerThread, CameraWrapper cameraWrapper,
+                     @Nullable CameraCallback callback) {
+        this.cameraHandlerThread = cameraHandlerThread;
+        releasingCameraThread = null;
+        setupCameraPreview(cameraWrapper, callback);
+    }
+
+    /**
+     * 相机被另一个视图接管（在主线程调用），之后本视图不再操作相机
+     *
+     * @return 需要停止的预览
+     */
+    CameraPreview releaseCameraToSession() {
+        cameraWrapper = null;
+        cameraHandlerThread = null;
+        return cameraPreview;
+    }
+
+    /**
+     * 使用Camera2时的基本初始化：相机在Camera2Preview的surface准备好之后打开
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private void setupCamera2Preview(@Nullable CameraCallback callback) {
+        removeAllViews();
+        int bufferCount = decodeThreadCount + 2;//保证每个解码线程都有帧可识别
+        if (previewBufferPool == null || previewBufferPool.getBufferCount() != bufferCount) {
+            previewBufferPool = new PreviewBufferPool(bufferCount);
+        }
+        camera2Preview = new Camera2Preview(getContext(), this, previewBufferPool, new CameraPreview.FocusAreaSetter() {
+            @Override
+            public void setAutoFocusArea() {
+                setupFocusAreas();//设置对焦区域
+            }
+        });
+        camera2Preview.setContinuousFocusEnabled(continuousFocusEnabled);
+        camera2Preview.setFocusCallback(focusCallback);
+        camera2Preview.setStartCallback(callback);
+        resetFocusController();
+        addView(camera2Preview);
+        addView(((View) viewFinderView));
+    }
+
+    /**
+     * 相机对焦的开始和结束，交给FocusController
+     */
+    private final CameraPreview.FocusCallback focusCallback = new CameraPreview.FocusCallback() {
+        @Override
+        public void onFocusStarted() {
+            FocusController focusController = BarcodeScannerView.this.focusController;
+            if (focusController != null) {
+                focusController.onFocusStarted();
+            }
+        }
+
+        @Override
+        public void onFocusFinished(boolean success) {
+            FocusController focusController = BarcodeScannerView.this.focusController;
+            if (focusController != null ? focusController.onFocusFinished(success) : success) {
+                onFocusSucceeded();
+            }
+        }
+    };
+
+    /**
+     * 对焦成功（或连续对焦停止移动）后调用（运行于相机线程）
+     * <p>
+     * 此前排队的帧大多是对焦过程中的模糊画面，丢弃它们，优先识别对焦后到达的帧。子类可以覆盖，如重置静止画面检测
+     */
+    protected void onFocusSucceeded() {
+        FramePipeline framePipeline = this.framePipeline;
+        if (framePipeline != null) {
+            framePipeline.discardQueuedFrames();
+        }
+    }
+
+    /**
+     * 一帧没有识别到码时由子类调用（运行于解码线程）。连续多帧没有识别到码时，重新触发对焦（见FocusController）
+     */
+    protected void onFrameMissed() {
+        FocusController focusController = this.focusController;
+        if (focusController == null || !focusController.onFrameMissed()) return;
+
+        Camera2Preview camera2Preview = this.camera2Preview;
+        CameraPreview cameraPreview = this.cameraPreview;
+        if (camera2Preview != null) {
+            camera2Preview.requestAutoFocus();
+        } else if (cameraWrapper != null && cameraPreview != null) {
+            cameraPreview.requestAutoFocus();
+        } else {
+            focusController.onFocusFinished(false);//相机已关闭
+        }
+    }
+
+    /**
+     * 一帧识别到码时由子类调用（运行于解码线程）
+     */
+    protected void onFrameDecoded() {
+        FocusController focusController = this.focusController;
+        if (focusController != null) {
+            focusController.onFrameDecoded();
+        }
+    }
+
+    private void resetFocusController() {
+        FocusController focusController = this.focusController;
+        if (focusController != null) {
+            focusController.reset();
         }
     }
 
@@ -80,10 +309,18 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
     private void setupFocusAreas() {
         if (!shouldAdjustFocusArea) return;
 
-        if (cameraWrapper == null) return;
+        Camera2Preview camera2Preview = this.camera2Preview;
+        if (cameraWrapper == null && camera2Preview == null) return;
 
-        Camera.Parameters parameters = cameraWrapper.camera.getParameters();
-        if (parameters.getMaxNumFocusAreas() <= 0) {
+        int maxNumFocusAreas;
+        if (camera2Preview != null) {
+            maxNumFocusAreas = camera2Preview.getMaxNumFocusAreas();
+        } else {
+            CameraCapabilities capabilities = cameraWrapper.getCapabilities();//有缓存时不需要在提交前读取相机参数
+            maxNumFocusAreas = capabilities != null
+                    ? capabilities.maxNumFocusAreas : cameraWrapper.getParameters().maxNumFocusAreas;
+        }
+        if (maxNumFocusAreas <= 0) {
             Log.e(TAG, "不支持设置对焦区域");
             return;
         }
@@ -96,78 +333,312 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
             int viewFinderViewHeight = ((View) viewFinderView).getHeight();
 
             //1.根据ViewFinderView和2000*2000的尺寸之比，缩放对焦区域
-            Rect scaledRect = new Rect(framingRect);
-            scaledRect.left = scaledRect.left * width / viewFinderViewWidth;
-            scaledRect.right = scaledRect.right * width / viewFinderViewWidth;
-            scaledRect.top = scaledRect.top * height / viewFinderViewHeight;
-            scaledRect.bottom = scaledRect.bottom * height / viewFinderViewHeight;
-
-            //2.旋转对焦区域
-            Rect rotatedRect = new Rect(scaledRect);
-            int rotationCount = getRotationCount();
-            if (rotationCount == 1) {//若相机图像需要顺时针旋转90度，则将扫码框逆时针旋转90度
-                rotatedRect.left = scaledRect.top;
-                rotatedRect.top = 2000 - scaledRect.right;
-                rotatedRect.right = scaledRect.bottom;
-                rotatedRect.bottom = 2000 - scaledRect.left;
-            } else if (rotationCount == 2) {//若相机图像需要顺时针旋转180度,则将扫码框逆时针旋转180度
-                rotatedRect.left = 2000 - scaledRect.right;
-                rotatedRect.top = 2000 - scaledRect.bottom;
-                rotatedRect.right = 2000 - scaledRect.left;
-                rotatedRect.bottom = 2000 - scaledRect.top;
-            } else if (rotationCount == 3) {//若相机图像需要顺时针旋转270度，则将扫码框逆时针旋转270度
-                rotatedRect.left = 2000 - scaledRect.bottom;
-                rotatedRect.top = scaledRect.left;
-                rotatedRect.right = 2000 - scaledRect.top;
-                rotatedRect.bottom = scaledRect.right;
-            }
+            Roi scaledRect = RoiMapper.scaleToFrame(toRoi(framingRect), viewFinderViewWidth, viewFinderViewHeight, width, height);
+
+            //2.旋转对焦区域（若相机图像需要顺时针旋转，则将扫码框逆时针旋转相同的角度）
+            Roi rotatedRect = RoiMapper.unrotate(scaledRect, width, height, getRotationCount());
 
             //3.坐标系平移
-            Rect rect = new Rect(rotatedRect.left - 1000, rotatedRect.top - 1000, rotatedRect.right - 1000, rotatedRect.bottom - 1000);
+            Rect rect = toRect(rotatedRect.offset(-1000, -1000));
 
             Camera.Area area = new Camera.Area(rect, 1000);
             focusAreas = new ArrayList<>();
             focusAreas.add(area);
         }
 
-        parameters.setFocusAreas(focusAreas);
-        cameraWrapper.camera.setParameters(parameters);
+        if (camera2Preview != null) {
+            camera2Preview.setFocusArea(focusAreas.get(0).rect);
+            return;
+        }
+
+        cameraWrapper.enqueueParameters(new ParameterTransaction().setFocusAreas(focusAreas));//由CameraPreview统一提交
     }
 
     /**
      * 释放相机资源等各种资源
      */
     public void stopCamera() {
-        if (cameraHandlerThread != null) {
-            cameraHandlerThread.quit();
+        stopCamera(null);
+    }
+
+    /**
+     * 释放相机资源等各种资源，立即返回，不会阻塞主线程<br/>
+     * 停止预览和释放相机在相机线程中进行，callback在相机释放后在主线程回调。之后可以立即再次startCamera，
+     * 新的相机线程会等待相机释放后再打开。设置了CameraSession时只停止预览，相机在会话中保温，callback在停止预览后回调
+     */
+    public void stopCamera(@Nullable CameraCallback callback) {
+        if (framePipeline != null) {
+            framePipeline.quit();//队列中尚未识别的帧会被丢弃，解码器会在当前识别结束后释放
+            framePipeline = null;
+        }
+
+        boolean releasing = false;
+        if (camera2Preview != null) {
+            camera2Preview.release(callback);//在相机线程中关闭相机，之后结束相机线程
+            camera2Preview = null;
+            releasing = true;
+        }
+
+        cameraWrapper = null;//之后相机线程中的命令（如请求下一帧）不再操作相机
+        CameraSession cameraSession = this.cameraSession;
+        if (cameraSession != null && cameraSession.release(this, cameraPreview, callback)) {
+            cameraHandlerThread = null;//只停止预览，相机交给会话保温
+            releasing = true;
+        } else if (cameraHandlerThread != null) {
+            cameraHandlerThread.stopCamera(cameraPreview, callback);//停止相机预览、置空各种回调并释放相机
+            releasingCameraThread = cameraHandlerThread;
             cameraHandlerThread = null;
+            releasing = true;
         }
 
-        if (cameraWrapper != null) {
-            cameraPreview.stopCameraPreview();//停止相机预览并置空各种回调
-            cameraPreview.setCamera(null, null);
+        stopFrameCapture();
+        if (!releasing) {
+            notifyCameraCallback(callback, true);
+        }
+    }
+
+    /**
+     * 在主线程回调callback（callback为null时什么也不做）
+     */
+    static void notifyCameraCallback(@Nullable final CameraCallback callback, final boolean success) {
+        if (callback == null) return;
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onComplete(success);
+            }
+        });
+    }
+
+    /**
+     * Called as preview frames are displayed.<br/>
+     * This callback is invoked on the event thread open(int) was called from.<br/>
+     * (此方法与Camera.open运行于同一线程，在本项目中，就是CameraHandlerThread线程)
+     * <p>
+     * 此处只把预览帧放入解码线程的队列，识别在解码线程中进行（见FramePipeline）
+     */
+    @Override
+    public void onPreviewFrame(byte[] data, Camera camera) {
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper == null) {
+            recycleFrame(data);
+            return;
+        }
+
+        try {
+            ScanMetrics scanMetrics = this.scanMetrics;
+            FrameTimings timings = scanMetrics != null ? scanMetrics.onFrameArrived() : null;
+            CameraParameters parameters = cameraWrapper.getParameters();//使用参数快照，避免每一帧都调用camera.getParameters()
+            if (timings != null) {
+                timings.set(ScanMetrics.Stage.PARAMETERS, System.nanoTime() - timings.arrivalNanos);
+            }
+            dispatchFrame(data, parameters.previewWidth, parameters.previewHeight, parameters.previewFormat, timings);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            recycleFrame(data);
+        }
+    }
+
+    /**
+     * 使用Camera2时，收到一帧亮度数据（运行于Camera2Preview的相机线程）
+     */
+    void onLuminanceFrame(byte[] data, int width, int height) {
+        try {
+            ScanMetrics scanMetrics = this.scanMetrics;
+            dispatchFrame(data, width, height, ImageFormat.YUV_420_888,
+                    scanMetrics != null ? scanMetrics.onFrameArrived() : null);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            recycleFrame(data);
+        }
+    }
+
+    /**
+     * 使用Camera2时，是否需要新的帧（不需要时，Camera2Preview直接丢弃，不复制数据）
+     */
+    boolean isFrameWanted() {
+        FramePipeline framePipeline = this.framePipeline;
+        return framePipeline != null && !framePipeline.isPaused();
+    }
+
+    /**
+     * 把一帧放入解码线程的队列（运行于相机线程）
+     *
+     * @param format  相机的原始格式，只用于录制
+     * @param timings 该帧的耗时统计，未开启统计时为null
+     */
+    private void dispatchFrame(byte[] data, int previewWidth, int previewHeight, int format, FrameTimings timings) {
+        FramePipeline framePipeline = this.framePipeline;
+        if (framePipeline == null) {
+            recycleFrame(data);
+            return;
+        }
+        FrameCaptureWriter frameCaptureWriter = this.frameCaptureWriter;
+        if (frameCaptureWriter != null) {
+            captureFrame(frameCaptureWriter, data, previewWidth, previewHeight, format,
+                    timings != null ? timings.arrivalNanos : System.nanoTime());
+        }
+        framePipeline.dispatch(data, previewWidth, previewHeight, timings);
+    }
+
+    /**
+     * 录制一帧，连同当前的旋转次数和扫码区域（运行于相机线程）
+     */
+    private void captureFrame(FrameCaptureWriter frameCaptureWriter, byte[] data, int previewWidth, int previewHeight,
+                              int format, long timestampNanos) {
+        Rect rect = getRotatedRect(previewWidth, previewHeight, getScaledRect(previewWidth, previewHeight));
+        Roi cropRect = RoiMapper.clamp(toRoi(rect), previewWidth, previewHeight);
+        try {
+            if (!frameCaptureWriter.append(data, previewWidth, previewHeight, format, getRotationCount(),
+                    cropRect, timestampNanos)) {
+                Log.w(TAG, "录制文件已达到最大长度，停止录制");
+                stopFrameCapture(frameCaptureWriter);
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            stopFrameCapture(frameCaptureWriter);
+        }
+    }
+
+    /**
+     * 创建帧解码器。每个解码线程会调用一次，得到一个独立的解码器
+     */
+    protected abstract FrameDecoder createFrameDecoder();
+
+    /**
+     * 创建解码线程
+     */
+    private void startFramePipeline() {
+        FrameDecoder[] frameDecoders = new FrameDecoder[decodeThreadCount];
+        for (int i = 0; i < decodeThreadCount; i++) {
+            frameDecoders[i] = createFrameDecoder();
+        }
+        FramePipeline framePipeline = new FramePipeline(frameSource, frameDecoders, decodeQueueCapacity, deliveryExecutor);
+        framePipeline.setContinuous(continuousScanEnabled);
+        framePipeline.setScanMetrics(scanMetrics);
+        framePipeline.setTracer(ScanTrace.isEnabled() ? ScanTrace.FRAME_TRACER : null);
+        this.framePipeline = framePipeline;
+    }
+
+    /**
+     * 在主线程执行识别结果的回调
+     */
+    private final Executor mainThreadExecutor = new Executor() {
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mainHandler.post(command);
+        }
+    };
+
+    /**
+     * 在调用execute的线程（即解码线程）中直接执行识别结果的回调，见setResultExecutor
+     */
+    public static final Executor DECODE_THREAD_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * FramePipeline按帧的顺序发送识别结果时使用，每次都通过getDeliveryExecutor获取实际的Executor
+     */
+    private final Executor deliveryExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            getDeliveryExecutor().execute(command);
+        }
+    };
+
+    /**
+     * FramePipeline发送的识别结果由哪个Executor执行，默认为getResultExecutor，子类可以覆盖（如批量回调时先在解码线程中收集）
+     */
+    protected Executor getDeliveryExecutor() {
+        return getResultExecutor();
+    }
+
+    /**
+     * FramePipeline获取帧和归还缓冲区的方式
+     */
+    private final FramePipeline.FrameSource frameSource = new FramePipeline.FrameSource() {
+        /**
+         * 再获取一帧图像数据进行识别（会再次触发onPreviewFrame方法）
+         * <p>
+         * 缓冲模式下，会把所有空闲的缓冲区交给相机；使用Camera2时，预览帧会持续到达，不需要再次请求
+         */
+        @Override
+        public void requestNextFrame() {
+            CameraHandlerThread cameraHandlerThread = BarcodeScannerView.this.cameraHandlerThread;
+            if (cameraHandlerThread != null) {
+                if (Looper.myLooper() == cameraHandlerThread.getLooper()) {
+                    requestFrameCommand.run();
+                } else {
+                    cameraHandlerThread.post(requestFrameCommand);
+                }
+            }
+        }
+
+        @Override
+        public void recycleFrame(byte[] data) {
+            BarcodeScannerView.this.recycleFrame(data);
+        }
+    };
+
+    /**
+     * 请求下一帧（运行于相机线程），复用同一个Runnable，不分配内存
+     */
+    private final Runnable requestFrameCommand = new Runnable() {
+        @Override
+        public void run() {
+            CameraWrapper cameraWrapper = BarcodeScannerView.this.cameraWrapper;
+            if (cameraWrapper == null) return;//相机已释放
+            PreviewBufferPool previewBufferPool = BarcodeScannerView.this.previewBufferPool;
+            try {
+                if (previewBufferPool != null) {
+                    previewBufferPool.queueFreeBuffers(cameraWrapper.camera);
+                } else {
+                    cameraWrapper.camera.setOneShotPreviewCallback(BarcodeScannerView.this);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    };
+
+    /**
+     * 再获取一帧图像数据进行识别（会再次触发onPreviewFrame方法）
+     * <p>
+     * 缓冲模式下，会把所有空闲的缓冲区交给相机，恢复处理预览帧
+     */
+    public void getOneMoreFrame() {
+        FramePipeline framePipeline = this.framePipeline;
+        if (framePipeline != null) {
+            framePipeline.resume();
+        }
+    }
 
-            cameraWrapper.camera.release();//释放资源
-            cameraWrapper = null;
+    /**
+     * 一帧预览数据使用完毕后调用。缓冲模式下，把缓冲区归还给缓冲池，等待下一次请求时将其交给相机
+     */
+    private void recycleFrame(byte[] data) {
+        if (previewBufferPool != null) {
+            previewBufferPool.recycle(data);
         }
     }
 
     /**
      * 根据ViewFinderView和preview的尺寸之比，缩放扫码区域
      */
-    public Rect getScaledRect(int previewWidth, int previewHeight) {
+    public synchronized Rect getScaledRect(int previewWidth, int previewHeight) {
         if (scaledRect == null) {
             Rect framingRect = viewFinderView.getFramingRect();//获得扫码框区域
             int viewFinderViewWidth = ((View) viewFinderView).getWidth();
             int viewFinderViewHeight = ((View) viewFinderView).getHeight();
 
             int width, height;
-            if (DisplayUtils.getScreenOrientation(getContext()) == Configuration.ORIENTATION_PORTRAIT//竖屏使用
-                    && previewHeight < previewWidth) {
-                width = previewHeight;
-                height = previewWidth;
-            } else if (DisplayUtils.getScreenOrientation(getContext()) == Configuration.ORIENTATION_LANDSCAPE//横屏使用
-                    && previewHeight > previewWidth) {
+            if (shouldSwapPreviewSize(previewWidth, previewHeight)) {
                 width = previewHeight;
                 height = previewWidth;
             } else {
@@ -175,72 +646,109 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
                 height = previewHeight;
             }
 
-            scaledRect = new Rect(framingRect);
-            scaledRect.left = scaledRect.left * width / viewFinderViewWidth;
-            scaledRect.right = scaledRect.right * width / viewFinderViewWidth;
-            scaledRect.top = scaledRect.top * height / viewFinderViewHeight;
-            scaledRect.bottom = scaledRect.bottom * height / viewFinderViewHeight;
+            scaledRect = toRect(RoiMapper.scaleToFrame(toRoi(framingRect),
+                    viewFinderViewWidth, viewFinderViewHeight, width, height));
         }
 
         return scaledRect;
     }
 
-    public Rect getRotatedRect(int previewWidth, int previewHeight, Rect rect) {
+    /**
+     * 相机图像的宽高是否需要交换，才能与屏幕的方向一致（相机图像默认都是横屏）
+     */
+    private boolean shouldSwapPreviewSize(int previewWidth, int previewHeight) {
+        int screenOrientation = DisplayUtils.getScreenOrientation(getContext());
+        return screenOrientation == Configuration.ORIENTATION_PORTRAIT && previewHeight < previewWidth//竖屏使用
+                || screenOrientation == Configuration.ORIENTATION_LANDSCAPE && previewHeight > previewWidth;//横屏使用
+    }
+
+    /**
+     * 把相机图像（未旋转）中的矩形映射到ViewFinderView的坐标系中，是getScaledRect和getRotatedRect的逆过程
+     */
+    public Rect mapPreviewRectToView(int previewWidth, int previewHeight, Rect rect) {
+        //1.旋转为与屏幕一致的方向
+        Rect rotated = toRect(RoiMapper.rotate(toRoi(rect), previewWidth, previewHeight, getRotationCount()));
+
+        //2.根据ViewFinderView和preview的尺寸之比进行缩放
+        return mapRotatedRectToView(previewWidth, previewHeight, rotated);
+    }
+
+    /**
+     * 把已旋转为与屏幕方向一致的相机图像中的矩形映射到ViewFinderView的坐标系中，是getScaledRect的逆过程
+     */
+    public Rect mapRotatedRectToView(int previewWidth, int previewHeight, Rect rect) {
+        int viewFinderViewWidth = ((View) viewFinderView).getWidth();
+        int viewFinderViewHeight = ((View) viewFinderView).getHeight();
+
+        int width, height;
+        if (shouldSwapPreviewSize(previewWidth, previewHeight)) {
+            width = previewHeight;
+            height = previewWidth;
+        } else {
+            width = previewWidth;
+            height = previewHeight;
+        }
+
+        return toRect(RoiMapper.scaleToView(toRoi(rect), width, height, viewFinderViewWidth, viewFinderViewHeight));
+    }
+
+    /**
+     * 旋转截取区域，得到扫码区域在相机图像（未旋转）中的位置
+     */
+    public synchronized Rect getRotatedRect(int previewWidth, int previewHeight, Rect rect) {
         if (rotatedRect == null) {
-            int rotationCount = getRotationCount();
-            rotatedRect = new Rect(rect);
-
-            if (rotationCount == 1) {//若相机图像需要顺时针旋转90度，则将扫码框逆时针旋转90度
-                rotatedRect.left = rect.top;
-                rotatedRect.top = previewHeight - rect.right;
-                rotatedRect.right = rect.bottom;
-                rotatedRect.bottom = previewHeight - rect.left;
-            } else if (rotationCount == 2) {//若相机图像需要顺时针旋转180度,则将扫码框逆时针旋转180度
-                rotatedRect.left = previewWidth - rect.right;
-                rotatedRect.top = previewHeight - rect.bottom;
-                rotatedRect.right = previewWidth - rect.left;
-                rotatedRect.bottom = previewHeight - rect.top;
-            } else if (rotationCount == 3) {//若相机图像需要顺时针旋转270度，则将扫码框逆时针旋转270度
-                rotatedRect.left = previewWidth - rect.bottom;
-                rotatedRect.top = rect.left;
-                rotatedRect.right = previewWidth - rect.top;
-                rotatedRect.bottom = rect.right;
-            }
+            //若相机图像需要顺时针旋转，则将扫码框逆时针旋转相同的角度
+            rotatedRect = toRect(RoiMapper.unrotate(toRoi(rect), previewWidth, previewHeight, getRotationCount()));
         }
 
         return rotatedRect;
     }
 
+    private static Roi toRoi(Rect rect) {
+        return new Roi(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    private static Rect toRect(Roi roi) {
+        return new Rect(roi.left, roi.top, roi.right, roi.bottom);
+    }
+
     /**
      * 旋转data
      */
     public byte[] rotateData(byte[] data, Camera camera) {
-        Camera.Parameters parameters = camera.getParameters();
-        int width = parameters.getPreviewSize().width;
-        int height = parameters.getPreviewSize().height;
-
-        int rotationCount = getRotationCount();
-        for (int i = 0; i < rotationCount; i++) {
-            byte[] rotatedData = new byte[data.length];
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++)
-                    rotatedData[x * height + height - y - 1] = data[x + y * width];
-            }
-            data = rotatedData;
-            int tmp = width;
-            width = height;
-            height = tmp;
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper != null && cameraWrapper.camera == camera) {
+            CameraParameters parameters = cameraWrapper.getParameters();
+            return rotateData(data, parameters.previewWidth, parameters.previewHeight);
+        } else {
+            Camera.Size previewSize = camera.getParameters().getPreviewSize();
+            return rotateData(data, previewSize.width, previewSize.height);
         }
+    }
 
-        return data;
+    /**
+     * 旋转data（只旋转亮度数据，一次完成）
+     * <p>
+     * 只需要扫码区域时，应使用LuminanceUtils.cropAndRotate，只截取并旋转扫码区域，并可复用结果数组
+     */
+    public byte[] rotateData(byte[] data, int width, int height) {
+        return LuminanceUtils.rotate(data, width, height, getRotationCount());
     }
 
     /**
      * 获取（旋转角度/90）
+     * <p>
+     * 在解码线程调用，预览可能同时被释放（stopCamera后置为null），此时返回最后一次得到的值
      */
-    private int getRotationCount() {
-        int displayOrientation = cameraPreview.getDisplayOrientation();
-        return displayOrientation / 90;
+    protected int getRotationCount() {
+        Camera2Preview camera2Preview = this.camera2Preview;
+        CameraPreview cameraPreview = this.cameraPreview;
+        if (camera2Preview != null) {
+            lastRotationCount = camera2Preview.getDisplayOrientation() / 90;
+        } else if (cameraPreview != null) {
+            lastRotationCount = cameraPreview.getDisplayOrientation() / 90;
+        }
+        return lastRotationCount;
     }
 
 //-------------------------------------------------------------------------
@@ -249,20 +757,37 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
      * 开启/关闭闪光灯
      */
     public void setFlash(boolean flag) {
-        if (cameraWrapper != null && CameraUtils.isFlashSupported(cameraWrapper.camera)) {
-            Camera.Parameters parameters = cameraWrapper.camera.getParameters();
-            if (flag) {
-                if (parameters.getFlashMode().equals(Camera.Parameters.FLASH_MODE_TORCH)) {
-                    return;
-                }
-                parameters.setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
-            } else {
-                if (parameters.getFlashMode().equals(Camera.Parameters.FLASH_MODE_OFF)) {
-                    return;
+        Camera2Preview camera2Preview = this.camera2Preview;
+        if (camera2Preview != null) {
+            camera2Preview.setFlash(flag);
+            return;
+        }
+
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper != null && cameraWrapper.getParameters().flashSupported) {
+            applyCameraParameters(new ParameterTransaction().setFlashMode(
+                    flag ? Camera.Parameters.FLASH_MODE_TORCH : Camera.Parameters.FLASH_MODE_OFF));
+        }
+    }
+
+    /**
+     * 修改相机参数（闪光灯、对焦模式、对焦/测光区域、缩放、曝光补偿等），可在任意线程调用
+     * <p>
+     * 修改会与其它尚未提交的修改合并，在相机线程中与当前参数比较后，通过一次setParameters提交；
+     * 没有变化时不会提交。仅对Camera生效，使用Camera2时被忽略
+     */
+    public void applyCameraParameters(ParameterTransaction transaction) {
+        final CameraWrapper cameraWrapper = this.cameraWrapper;
+        CameraHandlerThread cameraHandlerThread = this.cameraHandlerThread;
+        if (cameraWrapper == null || cameraHandlerThread == null) return;
+
+        if (cameraWrapper.enqueueParameters(transaction)) {//已有待提交的修改时，会在那一次提交中一起提交
+            cameraHandlerThread.post(new Runnable() {
+                @Override
+                public void run() {
+                    cameraWrapper.commitPendingParameters();
                 }
-                parameters.setFlashMode(Camera.Parameters.FLASH_MODE_OFF);
-            }
-            cameraWrapper.camera.setParameters(parameters);
+            });
         }
     }
 
@@ -270,28 +795,30 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
      * 切换闪光灯的点亮状态
      */
     public void toggleFlash() {
-        if (cameraWrapper != null && CameraUtils.isFlashSupported(cameraWrapper.camera)) {
-            Camera.Parameters parameters = cameraWrapper.camera.getParameters();
-            if (parameters.getFlashMode().equals(Camera.Parameters.FLASH_MODE_TORCH)) {
-                parameters.setFlashMode(Camera.Parameters.FLASH_MODE_OFF);
-            } else {
-                parameters.setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
-            }
-            cameraWrapper.camera.setParameters(parameters);
+        Camera2Preview camera2Preview = this.camera2Preview;
+        if (camera2Preview != null) {
+            camera2Preview.setFlash(!camera2Preview.isFlashOn());
+            return;
+        }
+
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper != null && cameraWrapper.getParameters().flashSupported) {
+            setFlash(!cameraWrapper.isFlashOn());//连续切换时以尚未提交的状态为准
         }
     }
 
     /**
-     * 闪光灯是否被点亮
+     * 闪光灯是否被点亮（包括已调用setFlash、尚未在相机线程中提交的修改）
      */
     public boolean isFlashOn() {
-        if (cameraWrapper != null && CameraUtils.isFlashSupported(cameraWrapper.camera)) {
-            Camera.Parameters parameters = cameraWrapper.camera.getParameters();
-            if (parameters.getFlashMode().equals(Camera.Parameters.FLASH_MODE_TORCH)) {
-                return true;
-            } else {
-                return false;
-            }
+        Camera2Preview camera2Preview = this.camera2Preview;
+        if (camera2Preview != null) {
+            return camera2Preview.isFlashOn();
+        }
+
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper != null) {
+            return cameraWrapper.isFlashOn();
         }
         return false;
     }
@@ -305,4 +832,200 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
     public void setShouldAdjustFocusArea(boolean shouldAdjustFocusArea) {
         this.shouldAdjustFocusArea = shouldAdjustFocusArea;
     }
+
+    /**
+     * 设置共享的相机会话（需在startCamera之前调用）<br/>
+     * 默认值为null，即每次stopCamera都释放相机；设置后stopCamera只停止预览，相机在会话中保温，
+     * 之后（包括其它页面中的视图）startCamera时直接使用，不需要重新打开（见CameraSession）。仅对Camera生效
+     */
+    public void setCameraSession(@Nullable CameraSession cameraSession) {
+        this.cameraSession = cameraSession;
+    }
+
+    @Nullable
+    public CameraSession getCameraSession() {
+        return cameraSession;
+    }
+
+    /**
+     * 设置相机能力缓存（需在startCamera之前调用）<br/>
+     * 默认值为null，即每次打开相机都遍历相机并在读取相机参数后选择预览尺寸和对焦模式；
+     * 设置后第一次打开相机时探测并保存，之后冷启动直接使用（见CameraCapabilityCache）。仅对Camera生效
+     */
+    public void setCapabilityCache(@Nullable CameraCapabilityCache capabilityCache) {
+        this.capabilityCache = capabilityCache;
+    }
+
+    /**
+     * 设置是否在支持时使用连续对焦（需在startCamera之前调用）<br/>
+     * 默认值为true，即优先使用FOCUS_MODE_CONTINUOUS_PICTURE（Camera2中为CONTROL_AF_MODE_CONTINUOUS_PICTURE），由相机自行对焦；
+     * 设置为false或不支持时，使用自动对焦，在开始预览时触发一次。两种模式下，连续多帧没有识别到码时都会再次触发对焦（见setFocusController）
+     */
+    public void setContinuousFocusEnabled(boolean continuousFocusEnabled) {
+        this.continuousFocusEnabled = continuousFocusEnabled;
+    }
+
+    /**
+     * 设置对焦控制，为null时只在开始预览时对焦（连续对焦模式下由相机自行对焦）<br/>
+     * 默认为new FocusController()：连续15帧没有识别到码时重新对焦，两次对焦至少间隔1秒；
+     * 对焦成功后丢弃此前排队的帧，优先识别对焦后的帧。门限值通过FocusController的构造方法配置
+     */
+    public void setFocusController(@Nullable FocusController focusController) {
+        this.focusController = focusController;
+    }
+
+    @Nullable
+    public FocusController getFocusController() {
+        return focusController;
+    }
+
+    /**
+     * 设置是否使用缓冲模式获取预览帧（需在startCamera之前调用）<br/>
+     * 默认值为false，即每次通过setOneShotPreviewCallback获取一帧，相机每一帧都会重新分配一个byte[]<br/>
+     * 设置为true后，会通过setPreviewCallbackWithBuffer复用预先分配的缓冲区，减少内存分配和GC
+     */
+    public void setBufferedPreviewEnabled(boolean bufferedPreviewEnabled) {
+        this.bufferedPreviewEnabled = bufferedPreviewEnabled;
+    }
+
+    /**
+     * 设置是否使用Camera2（需在startCamera之前调用）<br/>
+     * 默认值为false，即使用android.hardware.Camera。设置为true后，在Android 5.0及以上的设备上使用Camera2，
+     * 通过ImageReader直接读取预览帧的亮度数据；低于Android 5.0时此设置无效<br/>
+     * 扫码框、闪光灯、对焦区域等功能与使用android.hardware.Camera时相同
+     */
+    public void setCamera2Enabled(boolean camera2Enabled) {
+        this.camera2Enabled = camera2Enabled;
+    }
+
+    /**
+     * 是否会使用Camera2（设置了setCamera2Enabled，且系统版本支持）
+     */
+    public boolean isCamera2Supported() {
+        return camera2Enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    /**
+     * 设置是否连续扫码<br/>
+     * 默认值为false，即识别成功一次后暂停，直到调用者调用getOneMoreFrame<br/>
+     * 设置为true后，识别成功后继续识别，不需要调用getOneMoreFrame，结果按帧的顺序逐个返回。
+     * 通常需要同时设置重复结果过滤（如ZBarScannerView.setDuplicateFilter），避免同一个码被反复返回
+     */
+    public void setContinuousScanEnabled(boolean continuousScanEnabled) {
+        this.continuousScanEnabled = continuousScanEnabled;
+        FramePipeline framePipeline = this.framePipeline;
+        if (framePipeline != null) {
+            framePipeline.setContinuous(continuousScanEnabled);
+        }
+        if (continuousScanEnabled) {
+            getOneMoreFrame();//若已暂停，则恢复
+        }
+    }
+
+    public boolean isContinuousScanEnabled() {
+        return continuousScanEnabled;
+    }
+
+    /**
+     * 设置性能统计的监听器<br/>
+     * 默认值为null，即不统计。设置后统计每一帧在各阶段（相机送帧、获取参数、排队、截取、识别、主线程分发）的耗时、
+     * 帧数（送达、丢弃、跳过、识别、成功）、识别成功率，以及从startCamera到第一次识别成功的耗时。
+     * 各阶段的耗时保存在滚动的直方图中，每秒通过listener.onSnapshot在主线程回调一次
+     */
+    public void setScanMetricsListener(@Nullable ScanMetrics.Listener listener) {
+        ScanMetrics scanMetrics = listener != null ? new ScanMetrics(listener, mainThreadExecutor) : null;
+        this.scanMetrics = scanMetrics;
+        FramePipeline framePipeline = this.framePipeline;
+        if (framePipeline != null) {
+            framePipeline.setScanMetrics(scanMetrics);
+        }
+    }
+
+    /**
+     * 当前的性能统计，未设置监听器时为null（可随时调用snapshot获取快照）
+     */
+    public ScanMetrics getScanMetrics() {
+        return scanMetrics;
+    }
+
+    /**
+     * 开始把预览帧录制到file中（覆盖原有内容），用于复现现场无法识别的问题<br/>
+     * 每一帧保存亮度数据及尺寸、格式、旋转次数、扫码区域、时间，可在JVM中通过ReplayFrameSource回放。
+     * 文件达到maxBytes（默认256MB）或调用stopFrameCapture、stopCamera后停止录制
+     */
+    public void startFrameCapture(File file) throws IOException {
+        startFrameCapture(file, FrameCaptureWriter.DEFAULT_MAX_BYTES);
+    }
+
+    public void startFrameCapture(File file, long maxBytes) throws IOException {
+        stopFrameCapture();
+        frameCaptureWriter = new FrameCaptureWriter(file, maxBytes);
+    }
+
+    /**
+     * 停止录制，并关闭录制文件
+     */
+    public void stopFrameCapture() {
+        FrameCaptureWriter frameCaptureWriter = this.frameCaptureWriter;
+        if (frameCaptureWriter != null) {
+            stopFrameCapture(frameCaptureWriter);
+        }
+    }
+
+    private void stopFrameCapture(FrameCaptureWriter frameCaptureWriter) {
+        if (this.frameCaptureWriter == frameCaptureWriter) {
+            this.frameCaptureWriter = null;
+        }
+        try {
+            frameCaptureWriter.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public boolean isFrameCaptureEnabled() {
+        return frameCaptureWriter != null;
+    }
+
+    /**
+     * 设置执行识别结果回调的Executor<br/>
+     * 默认值为null，即在主线程回调。结果需要交给后台处理（如网络请求）时，可以使用DECODE_THREAD_EXECUTOR直接在解码线程中回调，
+     * 或传入自己的线程池，省去切换到主线程的开销。<br/>
+     * 结果按帧的顺序交给executor，只有单线程的executor才能保证按此顺序回调；在解码线程中回调时，回调执行期间其他解码线程无法发送结果，
+     * 因此不要在回调中做耗时操作
+     */
+    public void setResultExecutor(@Nullable Executor resultExecutor) {
+        this.resultExecutor = resultExecutor;
+    }
+
+    /**
+     * 执行识别结果回调的Executor，未设置时为主线程
+     */
+    public Executor getResultExecutor() {
+        Executor resultExecutor = this.resultExecutor;
+        return resultExecutor != null ? resultExecutor : mainThreadExecutor;
+    }
+
+    /**
+     * 设置解码队列的容量（需在startCamera之前调用）<br/>
+     * 默认值为1，即只保留最新的一帧。队列已满时放入新帧，最旧的帧会被丢弃
+     */
+    public void setDecodeQueueCapacity(int decodeQueueCapacity) {
+        if (decodeQueueCapacity <= 0) {
+            throw new IllegalArgumentException("decodeQueueCapacity必须大于0");
+        }
+        this.decodeQueueCapacity = decodeQueueCapacity;
+    }
+
+    /**
+     * 设置解码线程的数量（需在startCamera之前调用）<br/>
+     * 默认值为1。多核设备上可以设置为大于1的值，多帧并行识别，识别结果仍按帧的顺序发送<br/>
+     * 建议同时开启缓冲模式（setBufferedPreviewEnabled），避免并行识别时频繁分配内存
+     */
+    public void setDecodeThreadCount(int decodeThreadCount) {
+        if (decodeThreadCount <= 0) {
+            throw new IllegalArgumentException("decodeThreadCount必须大于0");
+        }
+        this.decodeThreadCount = decodeThreadCount;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,689 @@
+package cn.szx.simplescanner.base;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.util.Log;
+import android.util.Size;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cn.szx.simplescanner.core.LuminanceUtils;
+
+/**
+ * 基于Camera2的相机预览（Android 5.0及以上）
+ * <p>
+ * 预览画面输出到本SurfaceView，同时通过ImageReader以YUV_420_888格式获取预览帧。
+ * 识别只需要亮度数据，因此直接从Y平面的ByteBuffer中按行（考虑rowStride）复制到缓冲池的数组中，不需要先转换为NV21。<br/>
+ * 所有相机操作都在单独的相机线程中进行，运行的主线为SurfaceHolder.Callback的回调方法
+ * <p>
+ * 对焦与CameraPreview相同：支持时优先使用连续对焦，否则开始预览时触发一次自动对焦，之后只在requestAutoFocus时再次触发。
+ * 对焦的开始和结束根据每一帧结果中的CONTROL_AF_STATE判断
+ */
+@RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+public class Camera2Preview extends SurfaceView implements SurfaceHolder.Callback {
+    private static final String TAG = "Camera2Preview";
+    private static final int MAX_IMAGES = 2;//ImageReader最多同时持有的Image数量（每一帧复制后立即关闭）
+    private static final Object AF_TRIGGER_TAG = new Object();//触发对焦的请求的标记
+
+    private final BarcodeScannerView scannerView;
+    private final PreviewBufferPool previewBufferPool;
+    private final CameraPreview.FocusAreaSetter focusAreaSetter;
+    private final CameraManager cameraManager;
+    private final HandlerThread cameraThread;
+    private final Handler cameraHandler;
+
+    //相机的固有属性，在构造方法中读取
+    private String cameraId;//没有可用的相机时为null
+    private int sensorOrientation = 90;
+    private boolean frontFacing = false;
+    private boolean flashSupported = false;
+    private boolean continuousFocusSupported = false;
+    private boolean autoFocusSupported = false;
+    private int maxNumFocusAreas = 0;
+    private Rect activeArraySize;
+    private Size[] outputSizes;
+    private volatile int displayOrientation = 0;//相机图像需要旋转的角度，创建、surface创建和配置变化时更新
+
+    //以下字段只在相机线程中访问
+    private CameraDevice cameraDevice;
+    private CameraCaptureSession captureSession;
+    private CaptureRequest.Builder requestBuilder;
+    private ImageReader imageReader;
+    private Size previewSize;
+    private MeteringRectangle[] focusRegions;
+    private boolean opening = false;//是否正在打开相机（已调用openCamera，尚未回调）
+    private boolean continuousFocus = false;//当前是否为连续对焦模式
+    private boolean afTriggered = false;//是否已触发对焦，等待锁定
+    private long afTriggerFrameNumber = -1;//触发对焦的请求的帧号，尚未得到结果时为-1
+    private int lastAfState = -1;//上一帧的对焦状态
+
+    private volatile boolean flashOn = false;
+    private volatile boolean continuousFocusEnabled = true;//支持时是否使用连续对焦
+    private volatile CameraPreview.FocusCallback focusCallback;
+    private volatile BarcodeScannerView.CameraCallback startCallback;//开始预览后回调一次
+    private boolean surfaceCreated = false;//surface是否已创建
+    private boolean cameraOpening = false;//是否已经开始打开相机
+    private float aspectTolerance = 0.1f;//允许的实际宽高比和理想宽高比之间的最大差值
+
+    public Camera2Preview(Context context, BarcodeScannerView scannerView, PreviewBufferPool previewBufferPool,
+                          CameraPreview.FocusAreaSetter focusAreaSetter) {
+        super(context);
+        this.scannerView = scannerView;
+        this.previewBufferPool = previewBufferPool;
+        this.focusAreaSetter = focusAreaSetter;
+        cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        readCameraCharacteristics();
+        updateDisplayOrientation();
+
+        cameraThread = new HandlerThread("Camera2HandlerThread");
+        cameraThread.start();
+        cameraHandler = new Handler(cameraThread.getLooper());
+
+        getHolder().addCallback(this);//surface生命周期的回调
+    }
+
+    /**
+     * 选择后置相机，并读取其固有属性
+     */
+    private void readCameraCharacteristics() {
+        try {
+            String[] cameraIds = cameraManager.getCameraIdList();
+            for (String id : cameraIds) {
+                CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(id);
+                Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                if (cameraId == null || facing != null && facing == CameraMetadata.LENS_FACING_BACK) {
+                    cameraId = id;
+                    frontFacing = facing != null && facing == CameraMetadata.LENS_FACING_FRONT;
+
+                    Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+                    sensorOrientation = orientation != null ? orientation : 90;
+                    Boolean flashAvailable = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+                    flashSupported = flashAvailable != null && flashAvailable;
+                    int[] afModes = characteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES);
+                    continuousFocusSupported = contains(afModes, CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                    autoFocusSupported = contains(afModes, CameraMetadata.CONTROL_AF_MODE_AUTO);
+                    Integer maxRegions = characteristics.get(CameraCharacteristics.CONTROL_MAX_REGIONS_AF);
+                    maxNumFocusAreas = maxRegions != null ? maxRegions : 0;
+                    activeArraySize = characteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+                    StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+                    outputSizes = map != null ? map.getOutputSizes(ImageFormat.YUV_420_888) : null;
+
+                    if (!frontFacing) break;
+                }
+            }
+        } catch (CameraAccessException | RuntimeException e) {
+            e.printStackTrace();
+            cameraId = null;
+        }
+    }
+
+    private static boolean contains(int[] array, int value) {
+        if (array == null) return false;
+        for (int item : array) {
+            if (item == value) return true;
+        }
+        return false;
+    }
+
+//--------------------------------------------------------------------------------------------------
+
+    @Override
+    public void surfaceCreated(SurfaceHolder surfaceHolder) {
+        surfaceCreated = true;
+        updateDisplayOrientation();
+        if (cameraId == null) {
+            Log.e(TAG, "相机打开失败");
+            notifyStarted(false);
+            return;
+        }
+
+        previewSize = getOptimalPreviewSize();
+        if (previewSize == null) {
+            Log.e(TAG, "没有合适的预览尺寸");
+            notifyStarted(false);
+            return;
+        }
+        surfaceHolder.setFixedSize(previewSize.getWidth(), previewSize.getHeight());//surfaceChanged会被再次调用
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder surfaceHolder, int format, int width, int height) {
+        //surface的尺寸与预览尺寸一致后，才能作为相机的输出
+        if (!surfaceCreated || cameraOpening || previewSize == null
+                || width != previewSize.getWidth() || height != previewSize.getHeight()) {
+            return;
+        }
+
+        cameraOpening = true;
+        focusAreaSetter.setAutoFocusArea();//设置对焦区域
+        cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                openCamera();
+            }
+        });
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder surfaceHolder) {
+        surfaceCreated = false;
+        cameraOpening = false;
+        closeCameraAndWait();//surfaceDestroyed返回后surface不再可用，必须先停止向其输出
+    }
+
+//--------------------------------------------------------------------------------------------------
+
+    /**
+     * 打开相机（运行于相机线程）
+     */
+    private void openCamera() {
+        opening = true;
+        ScanTrace.beginAsyncSection("openCamera", 0);//到onOpened或出错为止
+        try {
+            cameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
+                @Override
+                public void onOpened(CameraDevice camera) {
+                    endOpenCameraTrace();
+                    cameraDevice = camera;
+                    createCaptureSession();
+                }
+
+                @Override
+                public void onDisconnected(CameraDevice camera) {
+                    endOpenCameraTrace();
+                    notifyStarted(false);
+                    camera.close();
+                    if (cameraDevice == camera) {
+                        cameraDevice = null;
+                    }
+                }
+
+                @Override
+                public void onError(CameraDevice camera, int error) {
+                    Log.e(TAG, "相机出错：" + error);
+                    onDisconnected(camera);
+                }
+            }, cameraHandler);
+        } catch (CameraAccessException | RuntimeException e) {//没有相机权限时抛出SecurityException
+            e.printStackTrace();
+            endOpenCameraTrace();
+            notifyStarted(false);
+        }
+    }
+
+    /**
+     * 结束打开相机在跟踪中的异步片段（运行于相机线程）
+     */
+    private void endOpenCameraTrace() {
+        if (opening) {
+            opening = false;
+            ScanTrace.endAsyncSection("openCamera", 0);
+        }
+    }
+
+    /**
+     * 创建预览会话：同时输出到本SurfaceView和ImageReader（运行于相机线程）
+     */
+    private void createCaptureSession() {
+        try {
+            int width = previewSize.getWidth();
+            int height = previewSize.getHeight();
+            previewBufferPool.prepare(width * height);//只需要亮度数据
+            imageReader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, MAX_IMAGES);
+            imageReader.setOnImageAvailableListener(onImageAvailableListener, cameraHandler);
+
+            Surface previewSurface = getHolder().getSurface();
+            requestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            requestBuilder.addTarget(previewSurface);
+            requestBuilder.addTarget(imageReader.getSurface());
+            continuousFocus = continuousFocusEnabled && continuousFocusSupported;
+            if (continuousFocus) {
+                requestBuilder.set(CaptureRequest.CONTROL_AF_MODE, CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+            } else if (autoFocusSupported) {
+                requestBuilder.set(CaptureRequest.CONTROL_AF_MODE, CameraMetadata.CONTROL_AF_MODE_AUTO);
+            }
+            requestBuilder.set(CaptureRequest.FLASH_MODE, flashOn ? CameraMetadata.FLASH_MODE_TORCH : CameraMetadata.FLASH_MODE_OFF);
+            if (focusRegions != null) {
+                requestBuilder.set(CaptureRequest.CONTROL_AF_REGIONS, focusRegions);
+            }
+
+            cameraDevice.createCaptureSession(Arrays.asList(previewSurface, imageReader.getSurface()),
+                    new CameraCaptureSession.StateCallback() {
+                        @Override
+                        public void onConfigured(CameraCaptureSession session) {
+                            if (cameraDevice == null) return;//相机已关闭
+                            captureSession = session;
+                            applyRequest();//开始预览
+                            notifyStarted(true);
+                            if (!continuousFocus && autoFocusSupported) {
+                                autoFocus();//自动对焦
+                            }
+                        }
+
+                        @Override
+                        public void onConfigureFailed(CameraCaptureSession session) {
+                            Log.e(TAG, "预览会话创建失败");
+                            notifyStarted(false);
+                        }
+                    }, cameraHandler);
+        } catch (CameraAccessException | RuntimeException e) {
+            e.printStackTrace();
+            notifyStarted(false);
+        }
+    }
+
+    /**
+     * 回调startCallback（只回调一次）
+     */
+    private void notifyStarted(boolean started) {
+        BarcodeScannerView.CameraCallback startCallback = this.startCallback;
+        if (startCallback != null) {
+            this.startCallback = null;
+            BarcodeScannerView.notifyCameraCallback(startCallback, started);
+        }
+    }
+
+    /**
+     * 以当前的参数重新开始预览（运行于相机线程）
+     */
+    private void applyRequest() {
+        if (captureSession == null) return;
+        try {
+            captureSession.setRepeatingRequest(requestBuilder.build(), captureCallback, cameraHandler);
+        } catch (CameraAccessException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 触发一次对焦（运行于相机线程）<br/>
+     * 连续对焦模式下会进行一次对焦扫描并锁定，锁定后取消触发，恢复连续对焦
+     */
+    private void autoFocus() {
+        if (captureSession == null || !continuousFocus && !autoFocusSupported) {
+            notifyFocusFinished(false);
+            return;
+        }
+        try {
+            requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_START);
+            requestBuilder.setTag(AF_TRIGGER_TAG);
+            captureSession.capture(requestBuilder.build(), captureCallback, cameraHandler);
+            afTriggered = true;
+            afTriggerFrameNumber = -1;
+            notifyFocusStarted();
+        } catch (CameraAccessException | RuntimeException e) {
+            e.printStackTrace();
+            notifyFocusFinished(false);
+        } finally {
+            requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
+            requestBuilder.setTag(null);
+        }
+    }
+
+    /**
+     * 取消触发的对焦，恢复连续对焦（运行于相机线程）
+     */
+    private void cancelAutoFocus() {
+        if (captureSession == null) return;
+        try {
+            requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_CANCEL);
+            captureSession.capture(requestBuilder.build(), captureCallback, cameraHandler);
+        } catch (CameraAccessException | RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
+        }
+    }
+
+    private final Runnable autoFocusRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!afTriggered) {
+                autoFocus();
+            }
+        }
+    };
+
+    /**
+     * 请求再次对焦（如连续多帧没有识别到码），可在任意线程调用
+     */
+    public void requestAutoFocus() {
+        cameraHandler.post(autoFocusRunnable);
+    }
+
+    /**
+     * 根据每一帧的对焦状态通知对焦的开始和结束（运行于相机线程）
+     */
+    private final CameraCaptureSession.CaptureCallback captureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(CameraCaptureSession session, CaptureRequest request, TotalCaptureResult result) {
+            if (request.getTag() == AF_TRIGGER_TAG) {
+                afTriggerFrameNumber = result.getFrameNumber();
+            }
+            Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);
+            if (afState == null) return;
+
+            if (afTriggered) {//等待触发的对焦锁定（忽略触发之前的帧）
+                if (afTriggerFrameNumber < 0 || result.getFrameNumber() < afTriggerFrameNumber) return;
+                if (afState == CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED
+                        || afState == CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED) {
+                    afTriggered = false;
+                    lastAfState = afState;
+                    if (continuousFocus) {
+                        cancelAutoFocus();
+                    }
+                    notifyFocusFinished(afState == CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED);
+                }
+                return;
+            }
+
+            if (afState == lastAfState) return;
+            lastAfState = afState;
+            switch (afState) {//连续对焦
+                case CaptureResult.CONTROL_AF_STATE_PASSIVE_SCAN:
+                    notifyFocusStarted();
+                    break;
+                case CaptureResult.CONTROL_AF_STATE_PASSIVE_FOCUSED:
+                    notifyFocusFinished(true);
+                    break;
+                case CaptureResult.CONTROL_AF_STATE_PASSIVE_UNFOCUSED:
+                    notifyFocusFinished(false);
+                    break;
+            }
+        }
+    };
+
+    private void notifyFocusStarted() {
+        CameraPreview.FocusCallback focusCallback = this.focusCallback;
+        if (focusCallback != null) {
+            focusCallback.onFocusStarted();
+        }
+    }
+
+    private void notifyFocusFinished(boolean success) {
+        CameraPreview.FocusCallback focusCallback = this.focusCallback;
+        if (focusCallback != null) {
+            focusCallback.onFocusFinished(success);
+        }
+    }
+
+    /**
+     * 收到一帧预览数据（运行于相机线程）
+     * <p>
+     * 只复制Y平面，复制完成后立即关闭Image，使ImageReader可以继续接收新帧
+     */
+    private final ImageReader.OnImageAvailableListener onImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireLatestImage();//丢弃积压的旧帧
+            if (image == null) return;
+
+            byte[] data = null;
+            int width = image.getWidth();
+            int height = image.getHeight();
+            try {
+                if (!scannerView.isFrameWanted()) return;
+                data = previewBufferPool.obtain();
+                if (data == null) return;//所有缓冲区都在识别中，丢弃这一帧
+
+                Image.Plane yPlane = image.getPlanes()[0];
+                LuminanceUtils.copyPlane(yPlane.getBuffer(), yPlane.getRowStride(), yPlane.getPixelStride(),
+                        width, height, data);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                previewBufferPool.recycle(data);
+                data = null;
+            } finally {
+                image.close();
+            }
+
+            if (data != null) {
+                scannerView.onLuminanceFrame(data, width, height);
+            }
+        }
+    };
+
+    /**
+     * 关闭相机，并等待关闭完成（相机线程已退出时，等待其退出）
+     */
+    private void closeCameraAndWait() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        boolean posted = cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                closeCamera();
+                latch.countDown();
+            }
+        });
+        try {
+            if (posted) {
+                latch.await(1, TimeUnit.SECONDS);
+            } else {
+                cameraThread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 关闭相机（运行于相机线程）
+     */
+    private void closeCamera() {
+        cameraHandler.removeCallbacks(autoFocusRunnable);
+        notifyStarted(false);//尚未开始预览就被关闭
+        afTriggered = false;
+        lastAfState = -1;
+        if (captureSession != null) {
+            captureSession.close();
+            captureSession = null;
+        }
+        if (cameraDevice != null) {
+            cameraDevice.close();
+            cameraDevice = null;
+        }
+        if (imageReader != null) {
+            imageReader.close();
+            imageReader = null;
+        }
+        requestBuilder = null;
+    }
+
+    /**
+     * 关闭相机并结束相机线程
+     */
+    public void release() {
+        release(null);
+    }
+
+    /**
+     * 关闭相机并结束相机线程，立即返回，不会阻塞主线程
+     * <p>
+     * 相机在相机线程中关闭，之后线程退出；surface在此之前被销毁时，surfaceDestroyed会等待关闭完成
+     *
+     * @param callback 相机关闭后回调（在主线程回调）
+     */
+    public void release(@Nullable final BarcodeScannerView.CameraCallback callback) {
+        boolean posted = cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                closeCamera();
+                BarcodeScannerView.notifyCameraCallback(callback, true);
+            }
+        });
+        cameraThread.quitSafely();//队列中的命令执行完毕后退出，之后的命令（如打开相机）不会被执行
+        if (!posted) {
+            BarcodeScannerView.notifyCameraCallback(callback, true);
+        }
+    }
+
+    /**
+     * 设置开始预览后（或开始预览失败时）的回调，只回调一次（在主线程回调）
+     */
+    public void setStartCallback(@Nullable BarcodeScannerView.CameraCallback startCallback) {
+        this.startCallback = startCallback;
+    }
+
+//--------------------------------------------------------------------------------------------------
+
+    /**
+     * 开启/关闭闪光灯
+     */
+    public void setFlash(final boolean flag) {
+        if (!flashSupported) return;
+
+        flashOn = flag;
+        cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (requestBuilder == null) return;//开始预览时会使用flashOn
+                requestBuilder.set(CaptureRequest.FLASH_MODE, flag ? CameraMetadata.FLASH_MODE_TORCH : CameraMetadata.FLASH_MODE_OFF);
+                applyRequest();
+            }
+        });
+    }
+
+    public boolean isFlashOn() {
+        return flashOn;
+    }
+
+    public boolean isFlashSupported() {
+        return flashSupported;
+    }
+
+    /**
+     * 设置是否在支持时使用连续对焦（需在打开相机前设置），默认值为true
+     */
+    public void setContinuousFocusEnabled(boolean continuousFocusEnabled) {
+        this.continuousFocusEnabled = continuousFocusEnabled;
+    }
+
+    public void setFocusCallback(CameraPreview.FocusCallback focusCallback) {
+        this.focusCallback = focusCallback;
+    }
+
+    public int getMaxNumFocusAreas() {
+        return maxNumFocusAreas;
+    }
+
+    /**
+     * 设置对焦区域
+     *
+     * @param rect 对焦区域，与Camera.Area相同，使用相机图像（未旋转）中-1000~1000的坐标系
+     */
+    public void setFocusArea(Rect rect) {
+        if (maxNumFocusAreas <= 0 || activeArraySize == null) return;
+
+        //映射到传感器的有效区域
+        int width = activeArraySize.width();
+        int height = activeArraySize.height();
+        Rect sensorRect = new Rect(
+                activeArraySize.left + (rect.left + 1000) * width / 2000,
+                activeArraySize.top + (rect.top + 1000) * height / 2000,
+                activeArraySize.left + (rect.right + 1000) * width / 2000,
+                activeArraySize.top + (rect.bottom + 1000) * height / 2000);
+        final MeteringRectangle[] regions = {new MeteringRectangle(sensorRect, MeteringRectangle.METERING_WEIGHT_MAX)};
+
+        cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                focusRegions = regions;
+                if (requestBuilder == null) return;//开始预览时会使用focusRegions
+                requestBuilder.set(CaptureRequest.CONTROL_AF_REGIONS, regions);
+                applyRequest();
+            }
+        });
+    }
+
+    /**
+     * 要使相机图像的方向与手机中窗口的方向一致，相机图像需要顺时针旋转的角度
+     * <p>
+     * 解码线程每一帧都会调用，只返回缓存的值，不查询Display
+     */
+    public int getDisplayOrientation() {
+        return displayOrientation;
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        updateDisplayOrientation();//屏幕旋转后窗口的方向可能改变
+    }
+
+    /**
+     * 重新计算相机图像需要旋转的角度并缓存（在主线程调用）
+     * <p>
+     * 与CameraPreview中的计算相同，只是相机的方向来自CameraCharacteristics
+     */
+    private void updateDisplayOrientation() {
+        displayOrientation = CameraUtils.getDisplayOrientation(frontFacing, sensorOrientation,
+                DisplayUtils.getDisplayRotation(getContext()));
+    }
+
+    /**
+     * 找到一个合适的预览尺寸（根据控件的尺寸），与CameraPreview中的规则相同
+     */
+    private Size getOptimalPreviewSize() {
+        if (outputSizes == null) return null;
+
+        //相机图像默认都是横屏(即宽>高)
+        int w, h;
+        if (DisplayUtils.getScreenOrientation(getContext()) == Configuration.ORIENTATION_LANDSCAPE) {
+            w = getWidth();
+            h = getHeight();
+        } else {
+            w = getHeight();
+            h = getWidth();
+        }
+
+        double targetRatio = (double) w / h;
+        Size optimalSize = null;
+        double minDiff = Double.MAX_VALUE;
+        int targetHeight = h;
+
+        for (Size size : outputSizes) {
+            double ratio = (double) size.getWidth() / size.getHeight();
+            if (Math.abs(ratio - targetRatio) > aspectTolerance) continue;
+            if (Math.abs(size.getHeight() - targetHeight) < minDiff) {
+                optimalSize = size;
+                minDiff = Math.abs(size.getHeight() - targetHeight);
+            }
+        }
+
+        if (optimalSize == null) {
+            minDiff = Double.MAX_VALUE;
+            for (Size size : outputSizes) {
+                if (Math.abs(size.getHeight() - targetHeight) < minDiff) {
+                    optimalSize = size;
+                    minDiff = Math.abs(size.getHeight() - targetHeight);
+                }
+            }
+        }
+        return optimalSize;
+    }
+}
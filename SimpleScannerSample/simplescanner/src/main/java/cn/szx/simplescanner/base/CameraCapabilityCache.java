@@ -0,0 +1,110 @@
+package cn.szx.simplescanner.base;
+
+import android.content.Context;
+import android.hardware.Camera;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import cn.szx.simplescanner.core.CameraCapabilities;
+import cn.szx.simplescanner.core.CameraCapabilityFile;
+
+/**
+ * 相机能力缓存：第一次打开相机时探测默认相机id、朝向、传感器方向、预览尺寸、对焦和闪光灯模式，保存在文件中（以设备指纹区分）
+ * <p>
+ * 之后冷启动时不再遍历相机（getNumberOfCameras、getCameraInfo），并在打开相机之前就选好预览尺寸、对焦模式和预览图像的旋转角度，
+ * 相机打开后立即提交，与主线程中创建预览视图并行（见PreviewPlan）；开始预览时只提交其余的参数（如对焦区域）。<br/>
+ * 通过BarcodeScannerView.setCapabilityCache使用。文件在相机线程中读写
+ */
+public class CameraCapabilityCache {
+    private static final String TAG = "CameraCapabilityCache";
+    private static final String FILE_NAME = "simplescanner_camera_capabilities";
+
+    private static CameraCapabilityCache instance;
+
+    private final File path;
+    private CameraCapabilityFile file;//第一次使用时读取
+
+    private CameraCapabilityCache(File path) {
+        this.path = path;
+    }
+
+    /**
+     * 获取进程内唯一的缓存，文件位于应用的缓存目录中
+     */
+    public static synchronized CameraCapabilityCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new CameraCapabilityCache(new File(context.getApplicationContext().getCacheDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    private synchronized CameraCapabilityFile file() {
+        if (file == null) {
+            file = CameraCapabilityFile.load(path, Build.FINGERPRINT);
+        }
+        return file;
+    }
+
+    /**
+     * 默认相机（第一个后置相机）的id，没有后置相机时为-1。只在第一次调用时遍历相机
+     */
+    public int getDefaultCameraId() {
+        CameraCapabilityFile file = file();
+        if (!file.hasDefaultCameraId()) {
+            file.setDefaultCameraId(CameraUtils.getDefaultCameraId());
+            save(file);
+        }
+        return file.getDefaultCameraId();
+    }
+
+    /**
+     * @return 尚未探测过该相机时为null
+     */
+    @Nullable
+    public CameraCapabilities get(int cameraId) {
+        return file().get(cameraId);
+    }
+
+    /**
+     * 探测已打开的相机的能力并保存（运行于相机线程）。使用相机参数快照，不会额外读取相机参数
+     */
+    CameraCapabilities probe(CameraWrapper cameraWrapper) {
+        Camera.CameraInfo info = cameraWrapper.getCameraInfo();
+        CameraParameters parameters = cameraWrapper.getParameters();
+        List<Camera.Size> sizes = parameters.supportedPreviewSizes;
+        int[] previewSizes = new int[sizes == null ? 0 : sizes.size() * 2];
+        for (int i = 0; i < previewSizes.length / 2; i++) {
+            previewSizes[i * 2] = sizes.get(i).width;
+            previewSizes[i * 2 + 1] = sizes.get(i).height;
+        }
+        CameraCapabilities capabilities = new CameraCapabilities(cameraWrapper.cameraId, info.facing, info.orientation,
+                previewSizes, parameters.supportedFocusModes, parameters.supportedFlashModes,
+                parameters.flashSupported, parameters.maxNumFocusAreas);
+
+        CameraCapabilityFile file = file();
+        file.put(capabilities);
+        save(file);
+        return capabilities;
+    }
+
+    /**
+     * 删除缓存文件，下次打开相机时重新探测
+     */
+    public void clear() {
+        file().clear();
+    }
+
+    private static void save(CameraCapabilityFile file) {
+        try {
+            file.save();
+        } catch (IOException e) {
+            Log.w(TAG, "保存相机能力失败", e);
+        }
+    }
+}
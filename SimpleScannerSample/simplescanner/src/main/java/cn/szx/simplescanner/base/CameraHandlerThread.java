@@ -4,36 +4,257 @@ import android.hardware.Camera;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cn.szx.simplescanner.core.CameraCapabilities;
 
 // This code is mostly based on the top answer here:
 // http://stackoverflow.com/questions/18149964/best-use-of-handlerthread-over-other-similar-classes
+
+/**
+ * 相机线程：打开、设置参数、开始/停止预览、对焦、释放等所有相机操作都放入本线程的命令队列依次执行，不会阻塞主线程
+ * <p>
+ * 相机在本线程中打开，因此预览帧、自动对焦等回调也都在本线程中执行。<br/>
+ * stopCamera把停止预览和释放相机放入队列后立即返回，队列中的命令执行完毕后线程退出；
+ * 再次打开相机时，新的相机线程会先等待旧线程退出（即相机已被释放）
+ */
 public class CameraHandlerThread extends HandlerThread {
     private static final String TAG = "CameraHandlerThread";
-    private BarcodeScannerView mScannerView;
+    private static final long PREVIOUS_RELEASE_TIMEOUT = 2000;//等待上一个相机线程释放相机的最长时间（毫秒）
+
+    private volatile BarcodeScannerView mScannerView;//打开相机后交给此视图，相机在CameraSession中保温时为null
+    private final Handler handler;//相机线程的命令队列
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private CameraWrapper cameraWrapper;//本线程打开的相机，只在相机线程访问
+    private volatile boolean stopped = false;//是否已调用stopCamera
+    private volatile CameraCapabilityCache capabilityCache;//为null时不使用相机能力缓存
 
     public CameraHandlerThread(BarcodeScannerView scannerView) {
         super("CameraHandlerThread");
         mScannerView = scannerView;
         start();
+        handler = new Handler(getLooper());
+    }
+
+    /**
+     * 更换使用本线程相机的视图（相机在CameraSession中被其它视图接管或保温时）
+     */
+    void setScannerView(@Nullable BarcodeScannerView scannerView) {
+        mScannerView = scannerView;
+    }
+
+    /**
+     * 设置相机能力缓存（在startCamera之前调用）
+     */
+    void setCapabilityCache(@Nullable CameraCapabilityCache capabilityCache) {
+        this.capabilityCache = capabilityCache;
+    }
+
+    /**
+     * 在相机线程执行一个相机操作
+     *
+     * @return 线程已退出时返回false，操作不会被执行
+     */
+    public boolean post(Runnable command) {
+        return handler.post(command);
+    }
+
+    public boolean postDelayed(Runnable command, long delayMillis) {
+        return handler.postDelayed(command, delayMillis);
+    }
+
+    public void removeCallbacks(Runnable command) {
+        handler.removeCallbacks(command);
+    }
+
+    /**
+     * 在相机线程执行一个相机操作，并等待其完成（如surface销毁前必须停止预览）
+     * <p>
+     * 已调用stopCamera时不再执行，只等待线程退出（即相机已被释放）
+     *
+     * @param timeoutMillis 最长等待时间
+     */
+    public void runAndWait(final Runnable command, long timeoutMillis) {
+        if (Looper.myLooper() == getLooper()) {
+            command.run();
+            return;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        boolean posted = !stopped && handler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run();
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+        try {
+            if (posted) {
+                latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                join(timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
      * 打开系统相机，并进行基本的初始化
      */
     public void startCamera(final int cameraId) {
-        Handler localHandler = new Handler(getLooper());
-        localHandler.post(new Runnable() {//在HandlerThread线程执行
+        startCamera(cameraId, null, null);
+    }
+
+    /**
+     * 打开系统相机（运行于相机线程），并在主线程中进行基本的初始化
+     *
+     * @param cameraId 相机id，为-1时打开主相机
+     * @param previous 上一个相机线程（正在释放相机），打开相机前等待其退出，为null时不等待
+     * @param callback 相机打开失败，或开始预览后回调（在主线程回调）
+     */
+    public void startCamera(final int cameraId, @Nullable final CameraHandlerThread previous,
+                            @Nullable final BarcodeScannerView.CameraCallback callback) {
+        handler.post(new Runnable() {//在HandlerThread线程执行
             @Override
             public void run() {
-                final Camera camera = CameraUtils.getCameraInstance(cameraId);//打开camera
-                Handler mainHandler = new Handler(Looper.getMainLooper());//切换到主线程
-                mainHandler.post(new Runnable() {//在主线程执行
-                    @Override
-                    public void run() {
-                        mScannerView.setupCameraPreview(CameraWrapper.getWrapper(camera, cameraId));
+                openCamera(cameraId, previous, null, callback);
+            }
+        });
+    }
+
+    /**
+     * 打开默认的相机（第一个后置相机），相机id在相机线程中查询
+     *
+     * @see #startCamera(int, CameraHandlerThread, BarcodeScannerView.CameraCallback)
+     */
+    public void startDefaultCamera(@Nullable final CameraHandlerThread previous,
+                                   @Nullable final BarcodeScannerView.CameraCallback callback) {
+        startDefaultCamera(previous, null, callback);
+    }
+
+    /**
+     * 打开默认的相机
+     *
+     * @param plan 冷启动时的预览设置，有相机能力缓存时在打开相机之前计算、打开后立即提交，为null时不使用
+     * @see #startDefaultCamera(CameraHandlerThread, BarcodeScannerView.CameraCallback)
+     */
+    void startDefaultCamera(@Nullable final CameraHandlerThread previous, @Nullable final PreviewPlan plan,
+                            @Nullable final BarcodeScannerView.CameraCallback callback) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                CameraCapabilityCache capabilityCache = CameraHandlerThread.this.capabilityCache;
+                openCamera(capabilityCache != null ? capabilityCache.getDefaultCameraId() : CameraUtils.getDefaultCameraId(),
+                        previous, plan, callback);//有缓存时不再遍历相机
+            }
+        });
+    }
+
+    /**
+     * 打开相机（运行于相机线程）
+     */
+    private void openCamera(int cameraId, @Nullable CameraHandlerThread previous, @Nullable PreviewPlan plan,
+                            @Nullable final BarcodeScannerView.CameraCallback callback) {
+        if (previous != null) {
+            try {
+                previous.join(PREVIOUS_RELEASE_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (stopped) {
+            BarcodeScannerView.notifyCameraCallback(callback, false);
+            return;
+        }
+        if (cameraWrapper != null) {
+            Log.w(TAG, "相机已经打开");
+            BarcodeScannerView.notifyCameraCallback(callback, true);
+            return;
+        }
+
+        CameraCapabilityCache capabilityCache = this.capabilityCache;
+        CameraCapabilities capabilities = capabilityCache != null ? capabilityCache.get(cameraId) : null;
+        if (plan != null && capabilities != null) {
+            plan.prepare(capabilities);//在打开相机之前选好预览尺寸、对焦模式和旋转角度
+        } else {
+            plan = null;//第一次打开该相机，没有缓存
+        }
+
+        final Camera camera = CameraUtils.getCameraInstance(cameraId);//打开camera
+        cameraWrapper = CameraWrapper.getWrapper(camera, cameraId);
+        final CameraWrapper wrapper = cameraWrapper;
+        if (wrapper != null && capabilityCache != null) {
+            wrapper.setCapabilities(capabilities);
+        }
+        mainHandler.post(new Runnable() {//在主线程执行
+            @Override
+            public void run() {
+                BarcodeScannerView scannerView = mScannerView;
+                if (stopped || scannerView == null) {//已调用stopCamera，相机会在相机线程中被释放
+                    BarcodeScannerView.notifyCameraCallback(callback, false);
+                    return;
+                }
+                scannerView.setupCameraPreview(wrapper, callback);
+            }
+        });
+
+        if (wrapper != null && plan != null) {//与主线程中创建预览视图并行提交，开始预览时相同的参数不再提交
+            plan.apply(wrapper);
+        }
+
+        if (wrapper != null && capabilityCache != null && capabilities == null) {//第一次打开该相机，与主线程中的初始化并行探测
+            try {
+                wrapper.setCapabilities(capabilityCache.probe(wrapper));
+            } catch (RuntimeException e) {
+                Log.w(TAG, "探测相机能力失败", e);
+            }
+        }
+    }
+
+    /**
+     * 停止预览、释放相机并结束线程，立即返回（在主线程调用）
+     * <p>
+     * 停止和释放在相机线程中执行，此前放入队列的命令（如设置参数）会先执行完毕，之后放入的命令不会被执行，
+     * 释放完成后线程退出
+     *
+     * @param cameraPreview 需要停止的预览，为null时只释放相机
+     * @param callback      相机释放后回调（在主线程回调）
+     */
+    public void stopCamera(@Nullable final CameraPreview cameraPreview,
+                           @Nullable final BarcodeScannerView.CameraCallback callback) {
+        stopped = true;
+        boolean posted = handler.post(new Runnable() {
+            @Override
+            public void run() {
+                ScanTrace.beginSection("releaseCamera");
+                try {
+                    if (cameraPreview != null) {
+                        cameraPreview.stopCameraPreview();//停止相机预览并置空各种回调
+                        cameraPreview.setCamera(null, null);
+                    }
+                    if (cameraWrapper != null) {
+                        cameraWrapper.camera.release();//释放资源
+                        cameraWrapper = null;
                     }
-                });
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    ScanTrace.endSection();
+                    quit();//丢弃之后放入队列的命令，线程退出
+                }
+                BarcodeScannerView.notifyCameraCallback(callback, true);
             }
         });
+        if (!posted) {//线程已退出
+            BarcodeScannerView.notifyCameraCallback(callback, true);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package cn.szx.simplescanner.base;
+
+import android.hardware.Camera;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 相机参数快照
+ * <p>
+ * Camera.getParameters()每次都要跨进程调用并解析一个很长的参数字符串，代价较高。
+ * 此类在设置相机参数后保存一份不可变的快照，供预览回调等频繁调用的地方直接读取
+ */
+public class CameraParameters {
+    public final int previewWidth;
+    public final int previewHeight;
+    public final int previewFormat;
+    public final List<Camera.Size> supportedPreviewSizes;
+
+    public final String flashMode;//不支持闪光灯时为null
+    public final boolean flashSupported;
+    public final List<String> supportedFlashModes;
+
+    public final String focusMode;
+    public final List<String> supportedFocusModes;
+    public final int maxNumFocusAreas;
+    public final List<Camera.Area> focusAreas;//未设置时为null
+    public final int maxNumMeteringAreas;
+    public final List<Camera.Area> meteringAreas;
+
+    public final boolean zoomSupported;
+    public final int zoom;
+    public final int maxZoom;
+
+    public final int exposureCompensation;
+    public final int minExposureCompensation;//与max都为0时不支持曝光补偿
+    public final int maxExposureCompensation;
+
+    CameraParameters(Camera.Parameters parameters) {
+        Camera.Size previewSize = parameters.getPreviewSize();
+        previewWidth = previewSize.width;
+        previewHeight = previewSize.height;
+        previewFormat = parameters.getPreviewFormat();
+        supportedPreviewSizes = unmodifiable(parameters.getSupportedPreviewSizes());
+
+        flashMode = parameters.getFlashMode();
+        flashSupported = CameraUtils.isFlashSupported(parameters);
+        supportedFlashModes = unmodifiable(parameters.getSupportedFlashModes());
+
+        focusMode = parameters.getFocusMode();
+        supportedFocusModes = unmodifiable(parameters.getSupportedFocusModes());
+        maxNumFocusAreas = parameters.getMaxNumFocusAreas();
+        focusAreas = unmodifiable(parameters.getFocusAreas());
+        maxNumMeteringAreas = parameters.getMaxNumMeteringAreas();
+        meteringAreas = unmodifiable(parameters.getMeteringAreas());
+
+        zoomSupported = parameters.isZoomSupported();
+        zoom = zoomSupported ? parameters.getZoom() : 0;
+        maxZoom = zoomSupported ? parameters.getMaxZoom() : 0;
+
+        exposureCompensation = parameters.getExposureCompensation();
+        minExposureCompensation = parameters.getMinExposureCompensation();
+        maxExposureCompensation = parameters.getMaxExposureCompensation();
+    }
+
+    private static <T> List<T> unmodifiable(List<T> list) {
+        return list == null ? null : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 闪光灯是否被点亮
+     */
+    public boolean isFlashOn() {
+        return flashSupported && Camera.Parameters.FLASH_MODE_TORCH.equals(flashMode);
+    }
+
+    public boolean isFocusModeSupported(String mode) {
+        return supportedFocusModes != null && supportedFocusModes.contains(mode);
+    }
+}
@@ -3,39 +3,77 @@ package cn.szx.simplescanner.base;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.hardware.Camera;
-import android.os.Handler;
-import android.view.Display;
-import android.view.Surface;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
-import android.view.WindowManager;
 
 import java.util.List;
 
+import cn.szx.simplescanner.core.CameraCapabilities;
+
 /**
  * 相机预览
  * <p>
- * 运行的主线为SurfaceHolder.Callback的三个回调方法
+ * 运行的主线为SurfaceHolder.Callback的三个回调方法，所有相机操作都放入相机线程（CameraHandlerThread）执行：
+ * surface创建后在相机线程中开始预览；surface销毁时在相机线程中停止预览，并等待其完成
+ * <p>
+ * 对焦：支持时优先使用连续对焦（FOCUS_MODE_CONTINUOUS_PICTURE），由相机自行对焦；否则开始预览时触发一次自动对焦。
+ * 之后不再定时对焦，只在requestAutoFocus时（如连续多帧没有识别到码）再次触发。对焦的开始和结束通过FocusCallback通知
  */
 public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback {
     private static final String TAG = "CameraPreview";
 
-    private CameraWrapper cameraWrapper;//当相机被释放时会被置为null
-    private Camera.PreviewCallback previewCallback;//当相机被释放时会被置为null
+    private static final long STOP_PREVIEW_TIMEOUT = 1000;//surface销毁时等待停止预览的最长时间（毫秒）
+    static final float DEFAULT_ASPECT_TOLERANCE = 0.1f;//允许的实际宽高比和理想宽高比之间的最大差值
+
+    private final CameraHandlerThread cameraThread;
+    private volatile CameraWrapper cameraWrapper;//当相机被释放时会被置为null
+    private volatile Camera.PreviewCallback previewCallback;//当相机被释放时会被置为null
     private FocusAreaSetter focusAreaSetter;
+    private volatile PreviewBufferPool previewBufferPool;//不为null时，使用缓冲模式获取预览帧
+    private volatile BarcodeScannerView.CameraCallback startCallback;//开始预览后回调一次
+
+    private boolean surfaceCreated = false;//surface是否已创建，只在主线程访问
+    private float aspectTolerance = DEFAULT_ASPECT_TOLERANCE;
+    private volatile boolean continuousFocusEnabled = true;//支持时是否使用连续对焦
+    private volatile FocusCallback focusCallback;
+    private volatile int displayOrientation = 0;//相机图像需要旋转的角度，设置相机、开始预览和配置变化时更新
 
-    private Handler autoFocusHandler = new Handler();
-    private boolean previewing = true;//是否正在预览
-    private boolean surfaceCreated = false;//surface是否已创建
-    private float aspectTolerance = 0.1f;//允许的实际宽高比和理想宽高比之间的最大差值
+    //以下字段只在相机线程中访问
+    private boolean previewing = false;//是否正在预览
+    private int autoFocusCookie = 0;//每一次自动对焦在跟踪中的异步片段的cookie
+    private boolean autoFocusing = false;//是否正在自动对焦（已调用autoFocus，尚未回调）
+    private boolean continuousFocus = false;//当前是否为连续对焦模式
+    private boolean autoFocusSupported = false;//当前的对焦模式是否可以通过autoFocus触发对焦（定焦的相机不能）
 
+    /**
+     * 设置对焦区域（运行于相机线程）<br/>
+     * 只需通过CameraWrapper.enqueueParameters放入对焦区域，由CameraPreview与其它参数一起提交
+     */
     public interface FocusAreaSetter {
         void setAutoFocusArea();
     }
 
-    public CameraPreview(Context context, CameraWrapper cameraWrapper,
+    /**
+     * 对焦的开始和结束（在相机线程回调）
+     */
+    public interface FocusCallback {
+        void onFocusStarted();
+
+        /**
+         * @param success 是否对焦成功，连续对焦停止移动时为true
+         */
+        void onFocusFinished(boolean success);
+    }
+
+    /**
+     * @param cameraThread 打开相机的线程，所有相机操作都在其中执行
+     */
+    public CameraPreview(Context context, CameraHandlerThread cameraThread, CameraWrapper cameraWrapper,
                          Camera.PreviewCallback previewCallback, FocusAreaSetter focusAreaSetter) {
         super(context);
+        this.cameraThread = cameraThread;
         setCamera(cameraWrapper, previewCallback);
         this.focusAreaSetter = focusAreaSetter;
 
@@ -46,6 +84,35 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
     public void setCamera(CameraWrapper cameraWrapper, Camera.PreviewCallback previewCallback) {
         this.cameraWrapper = cameraWrapper;
         this.previewCallback = previewCallback;
+        if (cameraWrapper != null) {
+            updateDisplayOrientation();
+        }
+    }
+
+    /**
+     * 设置是否在支持时使用连续对焦（需在开始预览前设置）<br/>
+     * 默认值为true；为false或不支持时，使用FOCUS_MODE_AUTO，在开始预览和requestAutoFocus时触发对焦
+     */
+    public void setContinuousFocusEnabled(boolean continuousFocusEnabled) {
+        this.continuousFocusEnabled = continuousFocusEnabled;
+    }
+
+    public void setFocusCallback(FocusCallback focusCallback) {
+        this.focusCallback = focusCallback;
+    }
+
+    /**
+     * 设置预览帧缓冲池，为null时使用一次性的预览回调（需在开始预览前设置）
+     */
+    public void setPreviewBufferPool(PreviewBufferPool previewBufferPool) {
+        this.previewBufferPool = previewBufferPool;
+    }
+
+    /**
+     * 设置开始预览后（或开始预览失败时）的回调，只回调一次（在主线程回调）
+     */
+    public void setStartCallback(BarcodeScannerView.CameraCallback startCallback) {
+        this.startCallback = startCallback;
     }
 
 //--------------------------------------------------------------------------------------------------
@@ -63,185 +130,341 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
     @Override
     public void surfaceDestroyed(SurfaceHolder surfaceHolder) {
         surfaceCreated = false;
-        stopCameraPreview();
+        //surfaceDestroyed返回后surface不再可用，必须先停止向其输出
+        cameraThread.runAndWait(stopPreviewRunnable, STOP_PREVIEW_TIMEOUT);
     }
 
+    private final Runnable stopPreviewRunnable = new Runnable() {
+        @Override
+        public void run() {
+            stopCameraPreview();
+        }
+    };
+
 //--------------------------------------------------------------------------------------------------
 
     /**
-     * 开始预览
+     * 开始预览（在主线程调用，预览在相机线程中开始）
      */
     public void startCameraPreview() {
-        if (cameraWrapper != null) {
+        if (!surfaceCreated) return;
+        final int width, height;//预览尺寸根据控件的尺寸选择（相机图像默认都是横屏，即宽>高）
+        if (DisplayUtils.getScreenOrientation(getContext()) == Configuration.ORIENTATION_LANDSCAPE) {
+            width = getWidth();
+            height = getHeight();
+        } else {
+            width = getHeight();
+            height = getWidth();
+        }
+        cameraThread.post(new Runnable() {
+            @Override
+            public void run() {
+                startCameraPreview(width, height);
+            }
+        });
+    }
+
+    /**
+     * 开始预览（运行于相机线程）
+     */
+    private void startCameraPreview(int width, int height) {
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        boolean started = false;
+        if (cameraWrapper != null && !previewing) {
+            ScanTrace.beginSection("startCameraPreview");
             try {
                 previewing = true;
-                setupCameraParameters();//设置相机参数
+                setupCameraParameters(width, height);//设置相机参数
                 cameraWrapper.camera.setPreviewDisplay(getHolder());//设置在当前surfaceView中进行相机预览
-                cameraWrapper.camera.setDisplayOrientation(getDisplayOrientation());//设置相机预览图像的旋转角度
-                cameraWrapper.camera.setOneShotPreviewCallback(previewCallback);//设置一次性的预览回调
+                cameraWrapper.setDisplayOrientation(updateDisplayOrientation());//设置相机预览图像的旋转角度（冷启动时可能已设置）
+                setupPreviewCallback();//设置预览回调
                 cameraWrapper.camera.startPreview();//开始预览
-                safeAutoFocus();//自动对焦
+                if (continuousFocus) {
+                    startContinuousFocus();//相机自行对焦
+                } else {
+                    safeAutoFocus();//自动对焦
+                }
+                started = true;
             } catch (Exception e) {
                 e.printStackTrace();
+            } finally {
+                ScanTrace.endSection();
             }
         }
+        notifyStarted(started);
     }
 
     /**
-     * 停止预览
+     * 停止预览（运行于相机线程）
      */
     public void stopCameraPreview() {
-        if (cameraWrapper != null) {
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper != null && previewing) {
             try {
                 previewing = false;
-                getHolder().removeCallback(this);
+                cameraThread.removeCallbacks(autoFocusRunnable);
+                if (continuousFocus && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    cameraWrapper.camera.setAutoFocusMoveCallback(null);
+                }
                 cameraWrapper.camera.cancelAutoFocus();
-                cameraWrapper.camera.setOneShotPreviewCallback(null);
+                endAutoFocusTrace();//取消后不会再回调onAutoFocus
+                if (previewBufferPool != null) {
+                    cameraWrapper.camera.setPreviewCallbackWithBuffer(null);//同时会清空相机持有的缓冲区
+                } else {
+                    cameraWrapper.camera.setOneShotPreviewCallback(null);
+                }
                 cameraWrapper.camera.stopPreview();
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
+        notifyStarted(false);//尚未开始预览就被停止
+    }
+
+    /**
+     * 回调startCallback（只回调一次）
+     */
+    private void notifyStarted(boolean started) {
+        BarcodeScannerView.CameraCallback startCallback = this.startCallback;
+        if (startCallback != null) {
+            this.startCallback = null;
+            BarcodeScannerView.notifyCameraCallback(startCallback, started);
+        }
+    }
+
+    /**
+     * 设置预览回调
+     * <p>
+     * 缓冲模式下，根据协商好的预览尺寸和格式准备缓冲区，并交给相机；否则设置一次性的预览回调
+     */
+    private void setupPreviewCallback() {
+        if (previewBufferPool != null) {
+            CameraParameters parameters = cameraWrapper.getParameters();
+            previewBufferPool.prepare(parameters.previewWidth, parameters.previewHeight, parameters.previewFormat);
+            cameraWrapper.camera.setPreviewCallbackWithBuffer(previewCallback);
+            previewBufferPool.queueFreeBuffers(cameraWrapper.camera);
+        } else {
+            cameraWrapper.camera.setOneShotPreviewCallback(previewCallback);//设置一次性的预览回调
+        }
     }
 
+    /**
+     * 连续对焦模式下，监听镜头的移动（Android 4.1及以上），对焦区域已在设置相机参数时设置
+     */
+    private void startContinuousFocus() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setAutoFocusMoveCallback();
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void setAutoFocusMoveCallback() {
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper == null) return;
+        cameraWrapper.camera.setAutoFocusMoveCallback(new Camera.AutoFocusMoveCallback() {
+            @Override
+            public void onAutoFocusMoving(boolean start, Camera camera) {
+                if (autoFocusing) return;//由autoFocus触发的对焦，在autoFocusCB中通知
+                FocusCallback focusCallback = CameraPreview.this.focusCallback;
+                if (focusCallback == null) return;
+                if (start) {
+                    focusCallback.onFocusStarted();
+                } else {
+                    focusCallback.onFocusFinished(true);//停止移动，画面已稳定
+                }
+            }
+        });
+    }
+
+    /**
+     * 请求再次对焦（如连续多帧没有识别到码），可在任意线程调用<br/>
+     * 连续对焦模式下会触发一次对焦扫描，完成后恢复连续对焦；无法对焦时立即通知对焦失败
+     */
+    public void requestAutoFocus() {
+        if (!cameraThread.post(autoFocusRunnable)) {//相机线程已退出
+            notifyFocusFinished(false);
+        }
+    }
+
+    private final Runnable autoFocusRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!autoFocusing) {
+                safeAutoFocus();
+            }
+        }
+    };
+
     /**
      * 尝试自动对焦
      */
     private void safeAutoFocus() {
-        if (cameraWrapper != null && previewing && surfaceCreated) {
+        CameraWrapper cameraWrapper = this.cameraWrapper;
+        if (cameraWrapper != null && previewing && (autoFocusSupported || continuousFocus)) {
             try {
                 focusAreaSetter.setAutoFocusArea();
+                cameraWrapper.commitPendingParameters();//对焦区域没有变化时不会提交
+                autoFocusing = true;
+                ScanTrace.beginAsyncSection("autoFocus", ++autoFocusCookie);
+                notifyFocusStarted();
                 cameraWrapper.camera.autoFocus(autoFocusCB);
             } catch (Exception e) {
                 e.printStackTrace();
-                scheduleAutoFocus();//如果对焦失败，则1s后重试
+                endAutoFocusTrace();
+                notifyFocusFinished(false);//等待下一次requestAutoFocus
             }
+        } else {
+            notifyFocusFinished(false);
         }
     }
 
-    /**
-     * 一秒之后尝试自动对焦
-     */
-    private void scheduleAutoFocus() {
-        autoFocusHandler.postDelayed(new Runnable() {
-            public void run() {
-                safeAutoFocus();
-            }
-        }, 1000);
-    }
-
     Camera.AutoFocusCallback autoFocusCB = new Camera.AutoFocusCallback() {
         //自动对焦完成时此方法被调用
         public void onAutoFocus(boolean success, Camera camera) {
-            scheduleAutoFocus();//一秒之后再次自动对焦
+            endAutoFocusTrace();
+            if (continuousFocus) {
+                try {
+                    camera.cancelAutoFocus();//autoFocus会锁定焦点，取消后恢复连续对焦
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            notifyFocusFinished(success);
         }
     };
 
+    private void notifyFocusStarted() {
+        FocusCallback focusCallback = this.focusCallback;
+        if (focusCallback != null) {
+            focusCallback.onFocusStarted();
+        }
+    }
+
+    private void notifyFocusFinished(boolean success) {
+        FocusCallback focusCallback = this.focusCallback;
+        if (focusCallback != null) {
+            focusCallback.onFocusFinished(success);
+        }
+    }
+
     /**
-     * 设置相机参数
+     * 结束当前这次自动对焦在跟踪中的异步片段
      */
-    private void setupCameraParameters() {
+    private void endAutoFocusTrace() {
+        if (autoFocusing) {
+            autoFocusing = false;
+            ScanTrace.endAsyncSection("autoFocus", autoFocusCookie);
+        }
+    }
+
+    /**
+     * 设置相机参数（运行于相机线程）
+     *
+     * @param width  控件的宽（横屏方向）
+     * @param height 控件的高（横屏方向）
+     */
+    private void setupCameraParameters(int width, int height) {
+        CameraWrapper cameraWrapper = this.cameraWrapper;
         if (cameraWrapper != null) {
-            Camera.Parameters parameters = cameraWrapper.camera.getParameters();
-            Camera.Size optimalSize = getOptimalPreviewSize();
-            parameters.setPreviewSize(optimalSize.width, optimalSize.height);
-            parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_AUTO);
-            cameraWrapper.camera.setParameters(parameters);
+            ParameterTransaction transaction = new ParameterTransaction();
+            int[] optimalSize = getOptimalPreviewSize(width, height);
+            if (optimalSize != null) {
+                transaction.setPreviewSize(optimalSize[0], optimalSize[1]);
+            }
+
+            //优先使用连续对焦；不支持时使用自动对焦，都不支持时（定焦）保持默认的对焦模式
+            CameraCapabilities capabilities = cameraWrapper.getCapabilities();//有缓存时不需要在提交前读取相机参数
+            if (capabilities != null) {
+                continuousFocus = continuousFocusEnabled
+                        && capabilities.isFocusModeSupported(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+                autoFocusSupported = capabilities.isFocusModeSupported(Camera.Parameters.FOCUS_MODE_AUTO);
+            } else {
+                CameraParameters snapshot = cameraWrapper.getParameters();
+                continuousFocus = continuousFocusEnabled
+                        && snapshot.isFocusModeSupported(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+                autoFocusSupported = snapshot.isFocusModeSupported(Camera.Parameters.FOCUS_MODE_AUTO);
+            }
+            if (continuousFocus) {
+                transaction.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+            } else if (autoFocusSupported) {
+                transaction.setFocusMode(Camera.Parameters.FOCUS_MODE_AUTO);
+            }
+            cameraWrapper.enqueueParameters(transaction);
+            focusAreaSetter.setAutoFocusArea();//对焦区域也放入同一次提交
+            cameraWrapper.commitPendingParameters();//一次setParameters，同时更新相机参数快照
         }
     }
 
     /**
      * 要使相机图像的方向与手机中窗口的方向一致，相机图像需要顺时针旋转的角度
      * <p>
-     * 此方法由google官方提供，详见Camera类中setDisplayOrientation的方法说明
+     * 解码线程每一帧都会调用，只返回缓存的值，不查询Display
      */
     public int getDisplayOrientation() {
+        return displayOrientation;
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        updateDisplayOrientation();//屏幕旋转后窗口的方向可能改变
+    }
+
+    /**
+     * 重新计算相机图像需要旋转的角度并缓存，没有相机时不更新
+     * <p>
+     * @return 缓存的角度
+     */
+    private int updateDisplayOrientation() {
+        CameraWrapper cameraWrapper = this.cameraWrapper;//相机可能同时被释放
         if (cameraWrapper == null) {
-            return 0;
+            return displayOrientation;
         }
 
-        Camera.CameraInfo info = new Camera.CameraInfo();
-        if (cameraWrapper.cameraId == -1) {
-            Camera.getCameraInfo(Camera.CameraInfo.CAMERA_FACING_BACK, info);
-        } else {
-            Camera.getCameraInfo(cameraWrapper.cameraId, info);
-        }
-
-        WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-        Display display = wm.getDefaultDisplay();
-
-        int rotation = display.getRotation();
-        int degrees = 0;
-        switch (rotation) {
-            case Surface.ROTATION_0:
-                degrees = 0;
-                break;
-            case Surface.ROTATION_90:
-                degrees = 90;
-                break;
-            case Surface.ROTATION_180:
-                degrees = 180;
-                break;
-            case Surface.ROTATION_270:
-                degrees = 270;
-                break;
-        }
-
-        int result;
-        if (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-            result = (info.orientation + degrees) % 360;
-            result = (360 - result) % 360;  // compensate the mirror
-        } else {  // back-facing
-            result = (info.orientation - degrees + 360) % 360;
-        }
+        Camera.CameraInfo info = cameraWrapper.getCameraInfo();
+        int result = CameraUtils.getDisplayOrientation(info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT,
+                info.orientation, DisplayUtils.getDisplayRotation(getContext()));
+        displayOrientation = result;
         return result;
     }
 
     /**
-     * 找到一个合适的previewSize（根据控件的尺寸）
+     * 找到一个合适的previewSize（根据控件的尺寸）<br/>
+     * 有相机能力缓存时使用缓存的预览尺寸，不需要先读取相机参数
+     *
+     * @param w 控件的宽（横屏方向）
+     * @param h 控件的高（横屏方向）
+     * @return 预览尺寸的宽、高，没有可用的尺寸时为null
      */
-    private Camera.Size getOptimalPreviewSize() {
+    private int[] getOptimalPreviewSize(int w, int h) {
+        CameraWrapper cameraWrapper = this.cameraWrapper;
         if (cameraWrapper == null) {
             return null;
         }
 
         //相机图像默认都是横屏(即宽>高)
-        List<Camera.Size> sizes = cameraWrapper.camera.getParameters().getSupportedPreviewSizes();
-        if (sizes == null) return null;
-        int w, h;
-        if (DisplayUtils.getScreenOrientation(getContext()) == Configuration.ORIENTATION_LANDSCAPE) {
-            w = getWidth();
-            h = getHeight();
+        int[] widths, heights;
+        CameraCapabilities capabilities = cameraWrapper.getCapabilities();
+        if (capabilities != null) {
+            int count = capabilities.getPreviewSizeCount();
+            widths = new int[count];
+            heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = capabilities.getPreviewWidth(i);
+                heights[i] = capabilities.getPreviewHeight(i);
+            }
         } else {
-            w = getHeight();
-            h = getWidth();
-        }
-
-        double targetRatio = (double) w / h;
-        Camera.Size optimalSize = null;
-        double minDiff = Double.MAX_VALUE;
-        int targetHeight = h;
-
-        // Try to find an size match aspect ratio and size
-        for (Camera.Size size : sizes) {
-            double ratio = (double) size.width / size.height;
-            if (Math.abs(ratio - targetRatio) > aspectTolerance) continue;
-            if (Math.abs(size.height - targetHeight) < minDiff) {
-                optimalSize = size;
-                minDiff = Math.abs(size.height - targetHeight);
+            List<Camera.Size> sizes = cameraWrapper.getParameters().supportedPreviewSizes;
+            if (sizes == null) return null;
+            widths = new int[sizes.size()];
+            heights = new int[sizes.size()];
+            for (int i = 0; i < sizes.size(); i++) {
+                widths[i] = sizes.get(i).width;
+                heights[i] = sizes.get(i).height;
             }
         }
 
-        // Cannot find the one match the aspect ratio, ignore the requirement
-        if (optimalSize == null) {
-            minDiff = Double.MAX_VALUE;
-            for (Camera.Size size : sizes) {
-                if (Math.abs(size.height - targetHeight) < minDiff) {
-                    optimalSize = size;
-                    minDiff = Math.abs(size.height - targetHeight);
-                }
-            }
-        }
-        return optimalSize;
+        int optimalIndex = CameraUtils.getOptimalPreviewSize(widths, heights, w, h, aspectTolerance);
+        return optimalIndex == -1 ? null : new int[]{widths[optimalIndex], heights[optimalIndex]};
     }
 }
\ No newline at end of file
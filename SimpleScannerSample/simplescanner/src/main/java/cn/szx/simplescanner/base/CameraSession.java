@@ -0,0 +1,258 @@
+package cn.szx.simplescanner.base;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 进程内共享的相机会话：在页面切换、暂停/恢复之间保持相机打开，避免每次重新打开相机（300~800ms）
+ * <p>
+ * 通过BarcodeScannerView.setCameraSession使用。startCamera时引用计数加1，若会话中有打开的相机则直接使用；
+ * stopCamera时引用计数减1，相机只停止预览而不释放。引用计数为0且持续idleTimeoutMillis后，
+ * 或内存紧张、应用退到后台时，才在相机线程中释放相机。<br/>
+ * 同一时刻只有一个BarcodeScannerView使用相机预览：新的视图startCamera时，正在使用的视图（如尚未onPause的上一个页面）会被停止预览。<br/>
+ * 仅支持Camera，使用Camera2时不经过会话。所有方法都需要在主线程调用
+ */
+public class CameraSession implements ComponentCallbacks2 {
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 3000;
+
+    private static CameraSession instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<BarcodeScannerView> holders = new ArrayList<>();//引用计数，startCamera后、stopCamera前的视图
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    private CameraHandlerThread cameraThread;//保持打开的相机所在的线程，没有相机时为null
+    private CameraWrapper cameraWrapper;
+    private BarcodeScannerView owner;//正在使用相机预览的视图，相机保温时为null
+    private CameraHandlerThread releasingThread;//正在释放相机的线程，再次打开相机前需等待其退出
+    private long releaseCount = 0;
+
+    private CameraSession() {
+    }
+
+    /**
+     * 获取进程内唯一的会话（在主线程调用）
+     */
+    public static CameraSession getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new CameraSession();
+            context.getApplicationContext().registerComponentCallbacks(instance);//监听内存紧张
+        }
+        return instance;
+    }
+
+    /**
+     * 设置引用计数为0后，保持相机打开的时间<br/>
+     * 默认值为3000ms；为0时引用计数为0后立即释放
+     */
+    public void setIdleTimeout(long idleTimeoutMillis) {
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("idleTimeoutMillis不能小于0");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeoutMillis;
+    }
+
+    public int getRefCount() {
+        return holders.size();
+    }
+
+    /**
+     * 会话中是否有打开的相机（包括保温中的相机）
+     */
+    public boolean isCameraOpen() {
+        return cameraWrapper != null;
+    }
+
+    /**
+     * 相机被释放的次数（保温超时、内存紧张或release）
+     */
+    public long getReleaseCount() {
+        return releaseCount;
+    }
+
+    /**
+     * 立即释放保温中的相机（引用计数为0时），正在使用的相机不受影响
+     */
+    public void release() {
+        if (holders.isEmpty()) {
+            releaseCamera();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+
+    /**
+     * 视图开始使用相机，引用计数加1
+     *
+     * @return 会话中有打开的相机时返回true，视图已在本方法中接管相机（见BarcodeScannerView.adoptCamera）；
+     * 返回false时视图需要自己打开相机，打开后调用onCameraOpened
+     */
+    boolean acquire(BarcodeScannerView view, @Nullable BarcodeScannerView.CameraCallback callback) {
+        if (!holders.contains(view)) {
+            holders.add(view);
+        }
+        mainHandler.removeCallbacks(idleReleaseRunnable);
+
+        if (cameraWrapper == null) return false;
+        if (owner != null && owner != view) {
+            detachOwner();//同一时刻只有一个视图使用预览
+        }
+        owner = view;
+        cameraThread.setScannerView(view);
+        view.adoptCamera(cameraThread, cameraWrapper, callback);
+        return true;
+    }
+
+    /**
+     * 视图自己打开了相机，交给会话管理
+     */
+    void onCameraOpened(BarcodeScannerView view, CameraHandlerThread thread, CameraWrapper wrapper) {
+        if (cameraWrapper == wrapper) return;
+        if (owner != null && owner != view) {
+            detachOwner();
+        }
+        if (cameraThread != null && cameraThread != thread) {
+            releaseCamera();//不会发生：会话中有相机时视图不会自己打开
+        }
+        cameraThread = thread;
+        cameraWrapper = wrapper;
+        owner = view;
+    }
+
+    /**
+     * 视图停止使用相机，引用计数减1<br/>
+     * 视图正在使用会话中的相机时，只停止预览，相机保持打开；引用计数为0时开始计时，超时后释放
+     *
+     * @param cameraPreview 视图的预览，为null时视图没有使用会话中的相机
+     * @param callback      停止预览后回调（在主线程回调）
+     * @return 视图的相机是否交给了会话（为false时视图需要自己释放相机）
+     */
+    boolean release(BarcodeScannerView view, @Nullable CameraPreview cameraPreview,
+                    @Nullable BarcodeScannerView.CameraCallback callback) {
+        holders.remove(view);
+        boolean parked = false;
+        if (owner == view) {
+            owner = null;
+            cameraThread.setScannerView(null);//保温期间不持有视图（及其Activity）
+            parkCamera(cameraPreview, callback);
+            parked = true;
+        }
+        if (holders.isEmpty() && cameraWrapper != null) {
+            mainHandler.removeCallbacks(idleReleaseRunnable);
+            if (idleTimeoutMillis == 0) {
+                releaseCamera();
+            } else {
+                mainHandler.postDelayed(idleReleaseRunnable, idleTimeoutMillis);
+            }
+        }
+        return parked;
+    }
+
+    /**
+     * 再次打开相机前需要等待的线程（正在释放会话中的相机），没有时为null
+     */
+    @Nullable
+    CameraHandlerThread takeReleasingThread() {
+        CameraHandlerThread thread = releasingThread;
+        releasingThread = null;
+        return thread != null && thread.isAlive() ? thread : null;
+    }
+
+    /**
+     * 停止当前视图的预览，相机交给下一个视图
+     */
+    private void detachOwner() {
+        CameraPreview cameraPreview = owner.releaseCameraToSession();
+        parkCamera(cameraPreview, null);
+        owner = null;
+    }
+
+    /**
+     * 停止预览并关闭闪光灯，相机保持打开（在相机线程中执行）
+     */
+    private void parkCamera(@Nullable final CameraPreview cameraPreview,
+                            @Nullable final BarcodeScannerView.CameraCallback callback) {
+        final CameraWrapper wrapper = cameraWrapper;
+        boolean posted = cameraThread.post(new Runnable() {
+            @Override
+            public void run() {
+                ScanTrace.beginSection("parkCamera");
+                try {
+                    if (cameraPreview != null) {
+                        cameraPreview.stopCameraPreview();//停止相机预览并置空各种回调
+                        cameraPreview.setCamera(null, null);
+                    }
+                    wrapper.enqueueParameters(new ParameterTransaction().setFlashMode(Camera.Parameters.FLASH_MODE_OFF));
+                    wrapper.commitPendingParameters();//闪光灯未点亮时不会提交
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    ScanTrace.endSection();
+                }
+                BarcodeScannerView.notifyCameraCallback(callback, true);
+            }
+        });
+        if (!posted) {//线程已退出
+            BarcodeScannerView.notifyCameraCallback(callback, true);
+        }
+    }
+
+    /**
+     * 在相机线程中释放会话中的相机
+     */
+    private void releaseCamera() {
+        mainHandler.removeCallbacks(idleReleaseRunnable);
+        if (cameraThread == null) return;
+        if (owner != null) {
+            detachOwner();
+        }
+        cameraThread.stopCamera(null, null);//停止预览已在parkCamera中完成，此处只释放相机并结束线程
+        releasingThread = cameraThread;
+        cameraThread = null;
+        cameraWrapper = null;
+        releaseCount++;
+    }
+
+    private final Runnable idleReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (holders.isEmpty()) {
+                releaseCamera();
+            }
+        }
+    };
+
+    //-------------------------------------------------------------------------
+
+    /**
+     * 内存紧张或应用退到后台（其它应用可能需要相机）时，立即释放保温中的相机
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            release();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        release();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
@@ -30,6 +30,7 @@ public class CameraUtils {
 
     public static Camera getCameraInstance(int cameraId) {
         Camera c = null;
+        ScanTrace.beginSection("getCameraInstance");
         try {
             if (cameraId == -1) {
                 c = Camera.open(); //打开主相机
@@ -39,27 +40,90 @@ public class CameraUtils {
         } catch (Exception e) {
             // Camera is not available (in use or does not exist)
             Log.e(TAG, e.toString());
+        } finally {
+            ScanTrace.endSection();
         }
         return c; // returns null if camera is unavailable
     }
 
     public static boolean isFlashSupported(Camera camera) {
-        /* Credits: Top answer at http://stackoverflow.com/a/19599365/868173 */
         if (camera != null) {
-            Camera.Parameters parameters = camera.getParameters();
+            return isFlashSupported(camera.getParameters());
+        } else {
+            return false;
+        }
+    }
 
-            if (parameters.getFlashMode() == null) {
-                return false;
-            }
+    public static boolean isFlashSupported(Camera.Parameters parameters) {
+        /* Credits: Top answer at http://stackoverflow.com/a/19599365/868173 */
+        if (parameters.getFlashMode() == null) {
+            return false;
+        }
 
-            List<String> supportedFlashModes = parameters.getSupportedFlashModes();
-            if (supportedFlashModes == null || supportedFlashModes.isEmpty() || supportedFlashModes.size() == 1 && supportedFlashModes.get(0).equals(Camera.Parameters.FLASH_MODE_OFF)) {
-                return false;
-            }
-        } else {
+        List<String> supportedFlashModes = parameters.getSupportedFlashModes();
+        if (supportedFlashModes == null || supportedFlashModes.isEmpty() || supportedFlashModes.size() == 1 && supportedFlashModes.get(0).equals(Camera.Parameters.FLASH_MODE_OFF)) {
             return false;
         }
 
         return true;
     }
+
+    /**
+     * 要使相机图像的方向与手机中窗口的方向一致，相机图像需要顺时针旋转的角度
+     * <p>
+     * 此方法由google官方提供，详见Camera类中setDisplayOrientation的方法说明
+     *
+     * @param frontFacing       是否为前置相机
+     * @param sensorOrientation 相机的方向（Camera.CameraInfo.orientation）
+     * @param displayRotation   窗口的旋转角度（见DisplayUtils.getDisplayRotation）
+     */
+    public static int getDisplayOrientation(boolean frontFacing, int sensorOrientation, int displayRotation) {
+        int result;
+        if (frontFacing) {
+            result = (sensorOrientation + displayRotation) % 360;
+            result = (360 - result) % 360;  // compensate the mirror
+        } else {  // back-facing
+            result = (sensorOrientation - displayRotation + 360) % 360;
+        }
+        return result;
+    }
+
+    /**
+     * 找到一个合适的预览尺寸：优先在宽高比与控件接近的尺寸中选高度最接近的，没有时忽略宽高比
+     *
+     * @param widths          每个预览尺寸的宽
+     * @param heights         每个预览尺寸的高
+     * @param w               控件的宽（横屏方向）
+     * @param h               控件的高（横屏方向）
+     * @param aspectTolerance 允许的实际宽高比和理想宽高比之间的最大差值
+     * @return 选中的尺寸的序号，没有可用的尺寸时为-1
+     */
+    public static int getOptimalPreviewSize(int[] widths, int[] heights, int w, int h, float aspectTolerance) {
+        double targetRatio = (double) w / h;
+        int optimalIndex = -1;
+        double minDiff = Double.MAX_VALUE;
+        int targetHeight = h;
+
+        // Try to find an size match aspect ratio and size
+        for (int i = 0; i < widths.length; i++) {
+            double ratio = (double) widths[i] / heights[i];
+            if (Math.abs(ratio - targetRatio) > aspectTolerance) continue;
+            if (Math.abs(heights[i] - targetHeight) < minDiff) {
+                optimalIndex = i;
+                minDiff = Math.abs(heights[i] - targetHeight);
+            }
+        }
+
+        // Cannot find the one match the aspect ratio, ignore the requirement
+        if (optimalIndex == -1) {
+            minDiff = Double.MAX_VALUE;
+            for (int i = 0; i < widths.length; i++) {
+                if (Math.abs(heights[i] - targetHeight) < minDiff) {
+                    optimalIndex = i;
+                    minDiff = Math.abs(heights[i] - targetHeight);
+                }
+            }
+        }
+        return optimalIndex;
+    }
 }
\ No newline at end of file
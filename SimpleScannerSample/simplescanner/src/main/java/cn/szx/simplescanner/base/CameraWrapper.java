@@ -1,10 +1,21 @@
 package cn.szx.simplescanner.base;
 
 import android.hardware.Camera;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import cn.szx.simplescanner.core.CameraCapabilities;
 
 public class CameraWrapper {
+    private static final String TAG = "CameraWrapper";
+
     public final Camera camera;
     public final int cameraId;
+    private volatile CameraParameters parameters;//相机参数快照，修改相机参数时更新
+    private volatile Camera.CameraInfo cameraInfo;//相机的朝向和传感器方向，不会改变
+    private volatile CameraCapabilities capabilities;//从CameraCapabilityCache中读取或探测的相机能力，没有时为null
+    private ParameterTransaction pendingParameters;//尚未提交的参数修改，由this同步
+    private int displayOrientation = -1;//已设置的预览图像旋转角度，只在相机线程访问
 
     private CameraWrapper(Camera camera, int cameraId) {
         this.camera = camera;
@@ -18,4 +29,146 @@ public class CameraWrapper {
             return new CameraWrapper(camera, cameraId);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 获取相机参数快照（不会跨进程调用，仅在第一次调用时读取相机参数）
+     */
+    public CameraParameters getParameters() {
+        CameraParameters parameters = this.parameters;
+        if (parameters == null) {
+            parameters = new CameraParameters(camera.getParameters());
+            this.parameters = parameters;
+        }
+        return parameters;
+    }
+
+    /**
+     * 获取相机信息（朝向、传感器方向），仅在第一次调用时读取，有相机能力缓存时不读取
+     */
+    public Camera.CameraInfo getCameraInfo() {
+        Camera.CameraInfo cameraInfo = this.cameraInfo;
+        if (cameraInfo == null) {
+            cameraInfo = new Camera.CameraInfo();
+            CameraCapabilities capabilities = this.capabilities;
+            if (capabilities != null) {
+                cameraInfo.facing = capabilities.facing;
+                cameraInfo.orientation = capabilities.orientation;
+            } else {
+                Camera.getCameraInfo(cameraId == -1 ? Camera.CameraInfo.CAMERA_FACING_BACK : cameraId, cameraInfo);
+            }
+            this.cameraInfo = cameraInfo;
+        }
+        return cameraInfo;
+    }
+
+    /**
+     * 相机能力（见CameraCapabilityCache），没有使用缓存时为null
+     */
+    @Nullable
+    public CameraCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    void setCapabilities(@Nullable CameraCapabilities capabilities) {
+        this.capabilities = capabilities;
+    }
+
+    /**
+     * 设置预览图像的旋转角度（在相机线程调用），与已设置的角度相同时不调用相机
+     */
+    public void setDisplayOrientation(int degrees) {
+        if (displayOrientation == degrees) return;
+        camera.setDisplayOrientation(degrees);
+        displayOrientation = degrees;
+    }
+
+    /**
+     * 获取一份可修改的相机参数，修改后通过setParameters提交
+     */
+    public Camera.Parameters editParameters() {
+        return camera.getParameters();
+    }
+
+    /**
+     * 提交相机参数，并以提交的参数更新快照
+     */
+    public void setParameters(Camera.Parameters parameters) {
+        camera.setParameters(parameters);
+        this.parameters = new CameraParameters(parameters);
+    }
+
+    /**
+     * 使快照失效，下次调用getParameters时重新读取
+     */
+    public void invalidateParameters() {
+        parameters = null;
+    }
+
+    /**
+     * 合并一组参数修改，等待commitPendingParameters一并提交（可在任意线程调用）
+     *
+     * @return 此前没有待提交的修改时返回true，调用者需安排一次commitPendingParameters
+     */
+    public synchronized boolean enqueueParameters(ParameterTransaction transaction) {
+        boolean schedule = pendingParameters == null;
+        if (schedule) {
+            pendingParameters = new ParameterTransaction();
+        }
+        pendingParameters.merge(transaction);
+        return schedule;
+    }
+
+    /**
+     * 提交所有待提交的参数修改（在相机线程调用）
+     * <p>
+     * 与快照比较后只写入发生变化的参数，通过一次setParameters提交；没有变化时不会跨进程调用
+     *
+     * @return 是否调用了setParameters
+     */
+    public boolean commitPendingParameters() {
+        ParameterTransaction transaction;
+        synchronized (this) {
+            transaction = pendingParameters;
+            pendingParameters = null;
+        }
+        if (transaction == null) return false;
+
+        try {
+            CameraParameters committed = this.parameters;
+            Camera.Parameters parameters = null;
+            if (committed == null) {//还没有快照（如刚打开相机）：只读取一次参数，同时生成快照
+                parameters = editParameters();
+                committed = new CameraParameters(parameters);
+                this.parameters = committed;
+            }
+            if (!transaction.applyTo(null, committed)) {
+                return false;//所有修改都与当前参数相同，不读取也不提交参数
+            }
+            if (parameters == null) {
+                parameters = editParameters();
+            }
+            transaction.applyTo(parameters, committed);
+            setParameters(parameters);
+            return true;
+        } catch (RuntimeException e) {//相机已释放或参数不被支持
+            Log.w(TAG, "提交相机参数失败", e);
+            invalidateParameters();
+            return false;
+        }
+    }
+
+    /**
+     * 闪光灯是否被点亮（包括尚未提交的修改）
+     */
+    public boolean isFlashOn() {
+        String pendingFlashMode;
+        synchronized (this) {
+            pendingFlashMode = pendingParameters == null ? null : pendingParameters.getFlashMode();
+        }
+        CameraParameters parameters = getParameters();
+        if (pendingFlashMode == null || !parameters.flashSupported) {
+            return parameters.isFlashOn();
+        }
+        return Camera.Parameters.FLASH_MODE_TORCH.equals(pendingFlashMode);
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Point;
 import android.view.Display;
+import android.view.Surface;
 import android.view.WindowManager;
 
 public class DisplayUtils {
@@ -42,4 +43,23 @@ public class DisplayUtils {
         }
         return orientation;
     }
+
+    /**
+     * 窗口相对于设备自然方向的旋转角度（0、90、180、270）
+     */
+    public static int getDisplayRotation(Context context) {
+        WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        Display display = wm.getDefaultDisplay();
+
+        switch (display.getRotation()) {
+            case Surface.ROTATION_90:
+                return 90;
+            case Surface.ROTATION_180:
+                return 180;
+            case Surface.ROTATION_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package cn.szx.simplescanner.base;
+
+import android.hardware.Camera;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 相机参数事务：收集一组待修改的参数（预览尺寸、闪光灯、对焦模式、对焦/测光区域、缩放、曝光补偿）
+ * <p>
+ * 每一次setParameters都会把完整的参数字符串交给HAL，部分机型上会使预览卡顿。
+ * 修改先通过CameraWrapper.enqueueParameters合并，之后在相机线程中与最近一次提交的参数比较，
+ * 只有确实发生变化时才通过一次setParameters提交（见CameraWrapper.commitPendingParameters）。<br/>
+ * 未设置的参数保持不变；相机不支持的值会被忽略（缩放、曝光补偿会被限制在支持的范围内）
+ */
+public class ParameterTransaction {
+    private int previewWidth = -1, previewHeight = -1;//为-1时不修改
+    private String flashMode;//为null时不修改
+    private String focusMode;
+    private List<Camera.Area> focusAreas;
+    private boolean focusAreasSet = false;//focusAreas为null时表示恢复默认的对焦区域
+    private List<Camera.Area> meteringAreas;
+    private boolean meteringAreasSet = false;
+    private Integer zoom;
+    private Integer exposureCompensation;
+
+    public ParameterTransaction setPreviewSize(int width, int height) {
+        previewWidth = width;
+        previewHeight = height;
+        return this;
+    }
+
+    /**
+     * @param flashMode 如Camera.Parameters.FLASH_MODE_TORCH
+     */
+    public ParameterTransaction setFlashMode(String flashMode) {
+        this.flashMode = flashMode;
+        return this;
+    }
+
+    /**
+     * @param focusMode 如Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE
+     */
+    public ParameterTransaction setFocusMode(String focusMode) {
+        this.focusMode = focusMode;
+        return this;
+    }
+
+    /**
+     * @param focusAreas 对焦区域，为null时恢复相机默认的对焦区域
+     */
+    public ParameterTransaction setFocusAreas(List<Camera.Area> focusAreas) {
+        this.focusAreas = copy(focusAreas);
+        focusAreasSet = true;
+        return this;
+    }
+
+    /**
+     * @param meteringAreas 测光区域，为null时恢复相机默认的测光区域
+     */
+    public ParameterTransaction setMeteringAreas(List<Camera.Area> meteringAreas) {
+        this.meteringAreas = copy(meteringAreas);
+        meteringAreasSet = true;
+        return this;
+    }
+
+    /**
+     * @param zoom 缩放级别（0~Camera.Parameters.getMaxZoom()）
+     */
+    public ParameterTransaction setZoom(int zoom) {
+        this.zoom = zoom;
+        return this;
+    }
+
+    /**
+     * @param exposureCompensation 曝光补偿（getMinExposureCompensation~getMaxExposureCompensation）
+     */
+    public ParameterTransaction setExposureCompensation(int exposureCompensation) {
+        this.exposureCompensation = exposureCompensation;
+        return this;
+    }
+
+    private static List<Camera.Area> copy(List<Camera.Area> areas) {
+        return areas == null ? null : new ArrayList<>(areas);
+    }
+
+    /**
+     * 合并另一组修改，other中设置了的参数覆盖本事务中的值
+     */
+    void merge(ParameterTransaction other) {
+        if (other.previewWidth != -1) {
+            previewWidth = other.previewWidth;
+            previewHeight = other.previewHeight;
+        }
+        if (other.flashMode != null) flashMode = other.flashMode;
+        if (other.focusMode != null) focusMode = other.focusMode;
+        if (other.focusAreasSet) {
+            focusAreas = other.focusAreas;
+            focusAreasSet = true;
+        }
+        if (other.meteringAreasSet) {
+            meteringAreas = other.meteringAreas;
+            meteringAreasSet = true;
+        }
+        if (other.zoom != null) zoom = other.zoom;
+        if (other.exposureCompensation != null) exposureCompensation = other.exposureCompensation;
+    }
+
+    /**
+     * 尚未提交的闪光灯模式，没有修改时为null
+     */
+    String getFlashMode() {
+        return flashMode;
+    }
+
+    /**
+     * 把与已提交的参数不同（且相机支持）的修改写入parameters
+     *
+     * @param parameters 将要提交的参数，为null时只判断是否有参数需要修改
+     * @param committed  最近一次提交的参数快照
+     * @return 是否有参数需要修改，为false时不需要调用setParameters
+     */
+    boolean applyTo(Camera.Parameters parameters, CameraParameters committed) {
+        boolean changed = false;
+        if (previewWidth != -1 && (previewWidth != committed.previewWidth || previewHeight != committed.previewHeight)) {
+            if (parameters == null) return true;
+            parameters.setPreviewSize(previewWidth, previewHeight);
+            changed = true;
+        }
+        if (flashMode != null && !flashMode.equals(committed.flashMode)
+                && committed.supportedFlashModes != null && committed.supportedFlashModes.contains(flashMode)) {
+            if (parameters == null) return true;
+            parameters.setFlashMode(flashMode);
+            changed = true;
+        }
+        if (focusMode != null && !focusMode.equals(committed.focusMode) && committed.isFocusModeSupported(focusMode)) {
+            if (parameters == null) return true;
+            parameters.setFocusMode(focusMode);
+            changed = true;
+        }
+        if (focusAreasSet && committed.maxNumFocusAreas > 0) {
+            List<Camera.Area> areas = limit(focusAreas, committed.maxNumFocusAreas);
+            if (!areasEqual(areas, committed.focusAreas)) {
+                if (parameters == null) return true;
+                parameters.setFocusAreas(areas);
+                changed = true;
+            }
+        }
+        if (meteringAreasSet && committed.maxNumMeteringAreas > 0) {
+            List<Camera.Area> areas = limit(meteringAreas, committed.maxNumMeteringAreas);
+            if (!areasEqual(areas, committed.meteringAreas)) {
+                if (parameters == null) return true;
+                parameters.setMeteringAreas(areas);
+                changed = true;
+            }
+        }
+        if (zoom != null && committed.zoomSupported) {
+            int value = Math.max(0, Math.min(zoom, committed.maxZoom));
+            if (value != committed.zoom) {
+                if (parameters == null) return true;
+                parameters.setZoom(value);
+                changed = true;
+            }
+        }
+        if (exposureCompensation != null && committed.minExposureCompensation < committed.maxExposureCompensation) {
+            int value = Math.max(committed.minExposureCompensation,
+                    Math.min(exposureCompensation, committed.maxExposureCompensation));
+            if (value != committed.exposureCompensation) {
+                if (parameters == null) return true;
+                parameters.setExposureCompensation(value);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 比较两组区域。相机未设置区域时，getFocusAreas等返回null或一个全为0的默认区域，都视为null
+     */
+    private static boolean areasEqual(List<Camera.Area> areas, List<Camera.Area> committed) {
+        if (isDefault(areas) || isDefault(committed)) {
+            return isDefault(areas) && isDefault(committed);
+        }
+        return areas.equals(committed);
+    }
+
+    private static boolean isDefault(List<Camera.Area> areas) {
+        if (areas == null || areas.isEmpty()) return true;
+        if (areas.size() != 1) return false;
+        Camera.Area area = areas.get(0);
+        return area.weight == 0 && area.rect.left == 0 && area.rect.top == 0
+                && area.rect.right == 0 && area.rect.bottom == 0;
+    }
+
+    private static List<Camera.Area> limit(List<Camera.Area> areas, int max) {
+        if (areas == null || areas.size() <= max) return areas;
+        return new ArrayList<>(areas.subList(0, max));
+    }
+}
@@ -0,0 +1,100 @@
+package cn.szx.simplescanner.base;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+
+import java.util.ArrayDeque;
+
+/**
+ * 预览帧缓冲池
+ * <p>
+ * 配合Camera.setPreviewCallbackWithBuffer使用：预先分配若干个与预览帧等大的byte[]，
+ * 相机把预览数据写入这些缓冲区，避免每一帧都重新分配内存。只有当预览尺寸或格式发生变化时才会重新分配<br/>
+ * 使用Camera2时，由调用者通过obtain取出空闲的缓冲区，自己写入亮度数据
+ */
+public class PreviewBufferPool {
+    private static final int DEFAULT_BUFFER_COUNT = 3;
+
+    private final int bufferCount;
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();//空闲（未交给相机）的缓冲区
+    private byte[][] buffers;//所有缓冲区
+    private int bufferSize = 0;
+
+    public PreviewBufferPool() {
+        this(DEFAULT_BUFFER_COUNT);
+    }
+
+    public PreviewBufferPool(int bufferCount) {
+        if (bufferCount <= 0) {
+            throw new IllegalArgumentException("bufferCount必须大于0");
+        }
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * 根据协商好的预览尺寸和格式准备缓冲区，并将所有缓冲区标记为空闲
+     * <p>
+     * 应在每次开始预览前调用（停止预览后，已交给相机的缓冲区会被相机丢弃）
+     */
+    public synchronized void prepare(int previewWidth, int previewHeight, int previewFormat) {
+        int bitsPerPixel = ImageFormat.getBitsPerPixel(previewFormat);
+        if (bitsPerPixel <= 0) {
+            bitsPerPixel = ImageFormat.getBitsPerPixel(ImageFormat.NV21);//预览格式默认为NV21
+        }
+        prepare(previewWidth * previewHeight * bitsPerPixel / 8);
+    }
+
+    /**
+     * 准备大小为size的缓冲区，并将所有缓冲区标记为空闲
+     */
+    public synchronized void prepare(int size) {
+        if (buffers == null || size != bufferSize) {//预览尺寸发生了变化，重新分配
+            bufferSize = size;
+            buffers = new byte[bufferCount][];
+            for (int i = 0; i < bufferCount; i++) {
+                buffers[i] = new byte[size];
+            }
+        }
+
+        freeBuffers.clear();
+        for (byte[] buffer : buffers) {
+            freeBuffers.add(buffer);
+        }
+    }
+
+    /**
+     * 把所有空闲的缓冲区交给相机，相机会依次向其中写入预览数据
+     */
+    public synchronized void queueFreeBuffers(Camera camera) {
+        while (!freeBuffers.isEmpty()) {
+            camera.addCallbackBuffer(freeBuffers.poll());
+        }
+    }
+
+    /**
+     * 取出一个空闲的缓冲区，没有空闲的缓冲区时返回null
+     */
+    public synchronized byte[] obtain() {
+        return freeBuffers.poll();
+    }
+
+    /**
+     * 归还一个缓冲区（不会立即交给相机）
+     */
+    public synchronized void recycle(byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) return;//不属于当前缓冲池（如预览尺寸已变化）
+
+        for (byte[] freeBuffer : freeBuffers) {
+            if (freeBuffer == buffer) return;
+        }
+        freeBuffers.add(buffer);
+    }
+
+    public int getBufferCount() {
+        return bufferCount;
+    }
+
+    public synchronized int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,92 @@
+package cn.szx.simplescanner.base;
+
+import android.content.res.Configuration;
+import android.hardware.Camera;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import cn.szx.simplescanner.core.CameraCapabilities;
+
+/**
+ * 冷启动时的预览设置：有相机能力缓存时，在相机线程中打开相机之前就根据缓存选好预览尺寸、对焦模式和预览图像的旋转角度，
+ * 相机打开后立即提交，与主线程中创建预览视图并行
+ * <p>
+ * 开始预览时（CameraPreview.startCameraPreview）按相同的规则再计算一次，与已提交的参数相同的部分不会再次提交。<br/>
+ * 控件尺寸和窗口方向在主线程中读取（startCamera时），控件尚未布局时不使用
+ */
+class PreviewPlan {
+    private final int width, height;//控件的宽高（横屏方向）
+    private final int displayRotation;//窗口的旋转角度
+    private final boolean continuousFocusEnabled;
+
+    //以下字段由prepare计算，只在相机线程访问
+    private final ParameterTransaction transaction = new ParameterTransaction();
+    private int displayOrientation;
+
+    private PreviewPlan(int width, int height, int displayRotation, boolean continuousFocusEnabled) {
+        this.width = width;
+        this.height = height;
+        this.displayRotation = displayRotation;
+        this.continuousFocusEnabled = continuousFocusEnabled;
+    }
+
+    /**
+     * 读取控件尺寸和窗口方向（在主线程调用）
+     *
+     * @return 控件尚未布局时为null
+     */
+    @Nullable
+    static PreviewPlan create(View view, boolean continuousFocusEnabled) {
+        int width, height;//与CameraPreview.startCameraPreview相同，相机图像默认都是横屏（即宽>高）
+        if (DisplayUtils.getScreenOrientation(view.getContext()) == Configuration.ORIENTATION_LANDSCAPE) {
+            width = view.getWidth();
+            height = view.getHeight();
+        } else {
+            width = view.getHeight();
+            height = view.getWidth();
+        }
+        if (width <= 0 || height <= 0) return null;
+        return new PreviewPlan(width, height, DisplayUtils.getDisplayRotation(view.getContext()), continuousFocusEnabled);
+    }
+
+    /**
+     * 根据缓存的相机能力计算预览设置（运行于相机线程，在打开相机之前调用）
+     */
+    void prepare(CameraCapabilities capabilities) {
+        int count = capabilities.getPreviewSizeCount();
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            widths[i] = capabilities.getPreviewWidth(i);
+            heights[i] = capabilities.getPreviewHeight(i);
+        }
+        int optimalIndex = CameraUtils.getOptimalPreviewSize(widths, heights, width, height,
+                CameraPreview.DEFAULT_ASPECT_TOLERANCE);
+        if (optimalIndex != -1) {
+            transaction.setPreviewSize(widths[optimalIndex], heights[optimalIndex]);
+        }
+
+        //与CameraPreview.setupCameraParameters相同：优先使用连续对焦，不支持时使用自动对焦
+        if (continuousFocusEnabled && capabilities.isFocusModeSupported(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
+            transaction.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+        } else if (capabilities.isFocusModeSupported(Camera.Parameters.FOCUS_MODE_AUTO)) {
+            transaction.setFocusMode(Camera.Parameters.FOCUS_MODE_AUTO);
+        }
+
+        displayOrientation = CameraUtils.getDisplayOrientation(
+                capabilities.facing == Camera.CameraInfo.CAMERA_FACING_FRONT, capabilities.orientation, displayRotation);
+    }
+
+    /**
+     * 相机打开后立即提交（运行于相机线程）：一次setParameters，并设置预览图像的旋转角度
+     */
+    void apply(CameraWrapper cameraWrapper) {
+        cameraWrapper.enqueueParameters(transaction);
+        cameraWrapper.commitPendingParameters();
+        try {
+            cameraWrapper.setDisplayOrientation(displayOrientation);
+        } catch (RuntimeException e) {//开始预览时会再次设置
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package cn.szx.simplescanner.base;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+
+import cn.szx.simplescanner.core.FrameTracer;
+
+/**
+ * 在系统跟踪（systrace/Perfetto）中输出扫码相关的片段，名称都以"SimpleScanner:"开头
+ * <p>
+ * 包括打开相机、初始化预览、开始预览、释放相机、每一次自动对焦、每一帧从放入队列到识别完成、识别（截取和zbar识别）、结果回调，
+ * 帧相关的片段都带有帧序号，便于与相机HAL、渲染线程对照。<br/>
+ * 默认关闭，通过setEnabled开启（需在startCamera之前调用）；关闭时每个跟踪点只判断一次，不会拼接字符串。
+ * 同步片段需要Android 4.3及以上，异步片段（帧、自动对焦）需要Android 10及以上
+ */
+public final class ScanTrace {
+    private static final String PREFIX = "SimpleScanner:";
+    private static final int MAX_SECTION_NAME_LENGTH = 127;//Trace对片段名称长度的限制
+
+    private static volatile boolean enabled = false;
+    private static Method beginAsyncSection;//compileSdkVersion低于29，通过反射调用
+    private static Method endAsyncSection;
+    private static boolean asyncMethodsLoaded = false;
+
+    /**
+     * 交给FramePipeline的跟踪点实现
+     */
+    public static final FrameTracer FRAME_TRACER = new FrameTracer() {
+        @Override
+        public void beginSection(String name) {
+            ScanTrace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            ScanTrace.endSection();
+        }
+
+        @Override
+        public void beginAsyncSection(String name, int cookie) {
+            ScanTrace.beginAsyncSection(name, cookie);
+        }
+
+        @Override
+        public void endAsyncSection(String name, int cookie) {
+            ScanTrace.endAsyncSection(name, cookie);
+        }
+    };
+
+    private ScanTrace() {
+    }
+
+    /**
+     * 设置是否输出跟踪片段（对所有扫码视图生效，需在startCamera之前调用）<br/>
+     * 默认值为false。开启后，在Perfetto或systrace中抓取应用的跟踪（如atrace的-a参数指定包名）即可看到
+     */
+    public static void setEnabled(boolean enabled) {
+        ScanTrace.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 在当前线程开始一个同步片段，必须在同一线程中调用endSection结束
+     */
+    public static void beginSection(String name) {
+        if (enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(sectionName(name));
+        }
+    }
+
+    public static void endSection() {
+        if (enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * 开始一个异步片段，可以在其他线程中结束
+     */
+    public static void beginAsyncSection(String name, int cookie) {
+        if (enabled && loadAsyncMethods()) {
+            invoke(beginAsyncSection, sectionName(name), cookie);
+        }
+    }
+
+    public static void endAsyncSection(String name, int cookie) {
+        if (enabled && loadAsyncMethods()) {
+            invoke(endAsyncSection, sectionName(name), cookie);
+        }
+    }
+
+    private static String sectionName(String name) {
+        String sectionName = PREFIX + name;
+        return sectionName.length() > MAX_SECTION_NAME_LENGTH
+                ? sectionName.substring(0, MAX_SECTION_NAME_LENGTH) : sectionName;
+    }
+
+    /**
+     * 获取Trace.beginAsyncSection和Trace.endAsyncSection（Android 10新增），不可用时返回false
+     */
+    private static synchronized boolean loadAsyncMethods() {
+        if (!asyncMethodsLoaded) {
+            asyncMethodsLoaded = true;
+            if (Build.VERSION.SDK_INT >= 29) {
+                try {
+                    beginAsyncSection = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                    endAsyncSection = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+                } catch (NoSuchMethodException e) {
+                    beginAsyncSection = endAsyncSection = null;
+                }
+            }
+        }
+        return beginAsyncSection != null;
+    }
+
+    private static void invoke(Method method, String name, int cookie) {
+        try {
+            method.invoke(null, name, cookie);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,8 +1,83 @@
 package cn.szx.simplescanner.zbar;
 
+import android.graphics.Rect;
+import android.text.TextUtils;
+
+import net.sourceforge.zbar.Orientation;
+import net.sourceforge.zbar.Symbol;
+
+import java.nio.charset.StandardCharsets;
+
 public class Result {
+    private static final int MAX_POOL_SIZE = 8;
+    private static final Object sPoolLock = new Object();
+    private static Result sPool;//可复用的Result组成的链表
+    private static int sPoolSize = 0;
+
+    private Result mNext;
     private String mContents;
     private BarcodeFormat mBarcodeFormat;
+    private Rect mBounds;
+    private int mQuality;
+    private int mOrientation = Orientation.UNKNOWN;
+
+    /**
+     * 根据zbar的识别结果创建Result（只包含内容、码格式和识别质量），码的内容为空时返回null
+     */
+    static Result fromSymbol(Symbol sym) {
+        // In order to retreive QR codes containing null bytes we need to
+        // use getDataBytes() rather than getData() which uses C strings.
+        // Weirdly ZBar transforms all data to UTF-8, even the data returned
+        // by getDataBytes() so we have to decode it as UTF-8.
+        String symData;
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.KITKAT) {
+            symData = new String(sym.getDataBytes(), StandardCharsets.UTF_8);
+        } else {
+            symData = sym.getData();
+        }
+        if (TextUtils.isEmpty(symData)) return null;
+
+        Result rawResult = obtain();
+        rawResult.setContents(symData);
+        rawResult.setBarcodeFormat(BarcodeFormat.getFormatById(sym.getType()));
+        rawResult.setQuality(sym.getQuality());
+        return rawResult;
+    }
+
+    /**
+     * 从对象池中获取一个Result，没有可复用的时新建
+     */
+    public static Result obtain() {
+        synchronized (sPoolLock) {
+            if (sPool != null) {
+                Result result = sPool;
+                sPool = result.mNext;
+                result.mNext = null;
+                sPoolSize--;
+                return result;
+            }
+        }
+        return new Result();
+    }
+
+    /**
+     * 回收到对象池中，之后不能再使用<br/>
+     * ZBarScannerView开启setResultRecyclingEnabled后，在结果回调返回时自动回收
+     */
+    public void recycle() {
+        mContents = null;
+        mBarcodeFormat = null;
+        mBounds = null;
+        mQuality = 0;
+        mOrientation = Orientation.UNKNOWN;
+        synchronized (sPoolLock) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                mNext = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
 
     public void setContents(String contents) {
         mContents = contents;
@@ -12,6 +87,18 @@ public class Result {
         mBarcodeFormat = format;
     }
 
+    public void setBounds(Rect bounds) {
+        mBounds = bounds;
+    }
+
+    public void setQuality(int quality) {
+        mQuality = quality;
+    }
+
+    public void setOrientation(int orientation) {
+        mOrientation = orientation;
+    }
+
     public BarcodeFormat getBarcodeFormat() {
         return mBarcodeFormat;
     }
@@ -19,4 +106,25 @@ public class Result {
     public String getContents() {
         return mContents;
     }
-}
\ No newline at end of file
+
+    /**
+     * 码在ViewFinderView坐标系中的位置（ZBarImageDecoder识别的结果为在原图中的位置），zbar没有给出位置时为null
+     */
+    public Rect getBounds() {
+        return mBounds;
+    }
+
+    /**
+     * zbar给出的识别质量，值越大越可靠（对于一维码，通常是被扫描线成功识别的次数）
+     */
+    public int getQuality() {
+        return mQuality;
+    }
+
+    /**
+     * 码相对于屏幕的方向：Orientation.UP/RIGHT/DOWN/LEFT，未知时为Orientation.UNKNOWN
+     */
+    public int getOrientation() {
+        return mOrientation;
+    }
+}
@@ -0,0 +1,401 @@
+package cn.szx.simplescanner.zbar;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.sourceforge.zbar.Config;
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.ImageScanner;
+import net.sourceforge.zbar.Symbol;
+import net.sourceforge.zbar.SymbolSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.szx.simplescanner.core.LuminanceUtils;
+
+/**
+ * 基于zbar的图片识别器，不需要相机和View，用于批量识别照片、文件中的码
+ * <p>
+ * 图片在工作线程中解码并转换为亮度数据（Y800）后识别，每张图片识别完成后立即通过Callback返回结果。<br/>
+ * 内存占用是有限的：等待识别的图片数量不超过queueCapacity，超出时decode方法会阻塞；
+ * 较大的图片会先缩小（边长不超过maxDimension）再识别；每个工作线程的亮度数据、像素数组和zbar的Image都会被复用。<br/>
+ * 一张图片识别失败（包括内存不足、回调抛出异常）只会通过onError通知，不影响后面的图片
+ */
+public class ZBarImageDecoder {
+    public static final int DEFAULT_MAX_DIMENSION = 2048;
+    private static final int DENSITY = 1;//图片识别不追求速度，逐行逐列扫描
+    private static final long OFFER_TIMEOUT_MILLIS = 100;//队列已满时，每隔这么久检查一次是否还有工作线程
+
+    private final Callback callback;
+    private final BlockingQueue<Task> tasks;
+    private final Worker[] workers;
+    private final AtomicInteger aliveWorkers;//未退出的工作线程的数量
+    private volatile int scannerConfigVersion = 0;//ImageScanner设置的版本，每次更新设置时加1
+    private volatile List<BarcodeFormat> formats;
+    private volatile int maxDimension = DEFAULT_MAX_DIMENSION;
+    private volatile boolean shutdown = false;
+
+    /**
+     * 识别结果的回调，运行于工作线程（多个工作线程时可能被同时调用）
+     */
+    public interface Callback {
+        /**
+         * 一张图片识别完成，没有识别到码时results为空
+         *
+         * @param tag 调用decode时传入的标记，用于区分图片
+         */
+        void onDecoded(Object tag, List<Result> results);
+
+        /**
+         * 一张图片无法读取、无法解码或解码时内存不足（OutOfMemoryError）<br/>
+         * onDecoded抛出的异常也会通过此方法通知（同一张图片此前已调用过onDecoded）
+         */
+        void onError(Object tag, Throwable e);
+    }
+
+    /*
+     * 加载zbar动态库
+     * zbar.jar中的类会用到
+     */
+    static {
+        System.loadLibrary("iconv");
+    }
+
+    /**
+     * @param workerCount   工作线程的数量
+     * @param queueCapacity 等待识别的图片的最大数量
+     * @param callback      识别结果的回调
+     */
+    public ZBarImageDecoder(int workerCount, int queueCapacity, @NonNull Callback callback) {
+        if (workerCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("workerCount和queueCapacity必须大于0");
+        }
+        this.callback = callback;
+        tasks = new ArrayBlockingQueue<>(queueCapacity);
+        workers = new Worker[workerCount];
+        aliveWorkers = new AtomicInteger(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker("ZBarImageDecoder-" + i);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * 识别图片文件（如jpg、png），队列已满时阻塞，不要在主线程调用
+     */
+    public void decode(@NonNull File file, @Nullable Object tag) throws InterruptedException {
+        submit(new Task(file, null, null, tag));
+    }
+
+    /**
+     * 识别编码后的图片数据（如jpg、png文件的内容），队列已满时阻塞，不要在主线程调用
+     */
+    public void decode(@NonNull byte[] encodedImage, @Nullable Object tag) throws InterruptedException {
+        submit(new Task(null, encodedImage, null, tag));
+    }
+
+    /**
+     * 识别Bitmap，队列已满时阻塞，不要在主线程调用（识别完成前不能回收bitmap）
+     */
+    public void decode(@NonNull Bitmap bitmap, @Nullable Object tag) throws InterruptedException {
+        submit(new Task(null, null, bitmap, tag));
+    }
+
+    private void submit(Task task) throws InterruptedException {
+        if (shutdown) {
+            throw new IllegalStateException("ZBarImageDecoder已关闭");
+        }
+        while (!tasks.offer(task, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (aliveWorkers.get() == 0) {//工作线程被中断而退出，不会再有人取走任务
+                throw new IllegalStateException("ZBarImageDecoder的工作线程已全部退出");
+            }
+        }
+    }
+
+    /**
+     * 关闭：已提交的图片识别完成后，工作线程退出并释放ImageScanner，之后不能再调用decode
+     */
+    public void shutdown() throws InterruptedException {
+        if (shutdown) return;
+        shutdown = true;
+        for (int i = 0; i < workers.length; i++) {
+            while (!tasks.offer(Task.STOP, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {//每个工作线程取到一个STOP后退出
+                if (aliveWorkers.get() == 0) return;//工作线程已全部退出，不需要再通知
+            }
+        }
+    }
+
+    /**
+     * 等待所有工作线程退出（需先调用shutdown）
+     *
+     * @return 是否在超时前全部退出
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Worker worker : workers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            if (worker.isAlive()) return false;
+        }
+        return true;
+    }
+
+//--------------------------------------------------------------------------------------------------
+
+    /**
+     * 一张等待识别的图片，file、encodedImage、bitmap三者有且只有一个不为null
+     */
+    private static class Task {
+        static final Task STOP = new Task(null, null, null, null);
+
+        final File file;
+        final byte[] encodedImage;
+        final Bitmap bitmap;
+        final Object tag;
+
+        Task(File file, byte[] encodedImage, Bitmap bitmap, Object tag) {
+            this.file = file;
+            this.encodedImage = encodedImage;
+            this.bitmap = bitmap;
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * 工作线程，各自持有一个ImageScanner（ImageScanner不是线程安全的）以及可复用的缓冲区
+     * <p>
+     * 只有被中断或取到STOP时才退出，每张图片的异常和错误都在decodeTask中捕获
+     */
+    private class Worker extends Thread {
+        private ImageScanner imageScanner;
+        private int configVersion;//imageScanner创建时的设置版本
+        private byte[] luminance = new byte[0];//亮度数据，不够大时重新分配
+        private int[] rowPixels = new int[0];//一行ARGB像素，不够大时重新分配
+        private Image image;//交给zbar识别的图像，复用
+        private int imageWidth, imageHeight;//image当前的尺寸
+
+        Worker(String name) {
+            super(name);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Task task = tasks.take();
+                    if (task == Task.STOP) break;
+                    decodeTask(task);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                aliveWorkers.decrementAndGet();
+                if (imageScanner != null) {
+                    imageScanner.destroy();//释放native资源
+                    imageScanner = null;
+                }
+                if (image != null) {
+                    image.destroy();
+                    image = null;
+                }
+            }
+        }
+
+        private void decodeTask(Task task) {
+            List<Result> results;
+            try {
+                results = decodeImage(task);
+            } catch (Throwable e) {//图片无法读取、无法解码、内存不足等
+                reportError(task, e);
+                return;
+            }
+            try {
+                callback.onDecoded(task.tag, results);
+            } catch (Throwable e) {
+                reportError(task, e);
+            }
+        }
+
+        /**
+         * 通过onError通知，onError本身抛出的异常只打印，工作线程继续识别后面的图片
+         */
+        private void reportError(Task task, Throwable e) {
+            try {
+                callback.onError(task.tag, e);
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+
+        private List<Result> decodeImage(Task task) throws IOException {
+            int maxDimension = ZBarImageDecoder.this.maxDimension;
+
+            //1.解码图片，较大的图片在解码时缩小（inSampleSize为2的幂）
+            Bitmap bitmap;
+            int sampleSize = 1;
+            if (task.bitmap != null) {
+                bitmap = task.bitmap;
+            } else {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                decodeBitmap(task, options);
+                if (options.outWidth <= 0 || options.outHeight <= 0) {
+                    throw new IOException("无法解码图片");
+                }
+
+                sampleSize = LuminanceUtils.getSampleSize(options.outWidth, options.outHeight, maxDimension);
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = sampleSize;
+                options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+                bitmap = decodeBitmap(task, options);
+                if (bitmap == null) {
+                    throw new IOException("无法解码图片");
+                }
+            }
+
+            try {
+                //2.转换为亮度数据，Bitmap仍然过大时（如调用者传入的Bitmap）隔点取样
+                int bitmapWidth = bitmap.getWidth();
+                int bitmapHeight = bitmap.getHeight();
+                int step = LuminanceUtils.getSampleStep(bitmapWidth, bitmapHeight, maxDimension);
+                int width = bitmapWidth / step;
+                int height = bitmapHeight / step;
+                if (width == 0 || height == 0) {
+                    return new ArrayList<>();
+                }
+                if (luminance.length < width * height) {
+                    luminance = new byte[width * height];
+                }
+                if (rowPixels.length < bitmapWidth) {
+                    rowPixels = new int[bitmapWidth];
+                }
+                for (int y = 0; y < height; y++) {
+                    bitmap.getPixels(rowPixels, 0, bitmapWidth, 0, y * step, bitmapWidth, 1);
+                    LuminanceUtils.argbToLuminance(rowPixels, width, step, luminance, y * width);
+                }
+
+                //3.识别，结果中的位置换算为原图中的坐标
+                return scan(luminance, width, height, sampleSize * step);
+            } finally {
+                if (bitmap != task.bitmap) {
+                    bitmap.recycle();//尽快释放，不等待GC
+                }
+            }
+        }
+
+        private Bitmap decodeBitmap(Task task, BitmapFactory.Options options) {
+            if (task.file != null) {
+                return BitmapFactory.decodeFile(task.file.getPath(), options);
+            } else {
+                return BitmapFactory.decodeByteArray(task.encodedImage, 0, task.encodedImage.length, options);
+            }
+        }
+
+        /**
+         * 识别亮度数据
+         *
+         * @param scale 亮度数据相对于原图缩小的倍数
+         */
+        private List<Result> scan(byte[] data, int width, int height, int scale) {
+            Image barcode = obtainImage(width, height);
+            barcode.setCrop(0, 0, width, height);
+            barcode.setData(data);//data可能比width*height长，zbar只读取前width*height个字节
+
+            List<Result> results = new ArrayList<>();
+            ImageScanner imageScanner = getImageScanner();
+            if (imageScanner.scanImage(barcode) != 0) {
+                SymbolSet syms = imageScanner.getResults();
+                for (Symbol sym : syms) {
+                    if (sym.getType() == Symbol.PARTIAL) continue;
+
+                    Result result = Result.fromSymbol(sym);
+                    if (result == null) continue;
+                    result.setOrientation(sym.getOrientation());
+                    int[] bounds = sym.getBounds();//{x, y, width, height}
+                    if (bounds != null) {
+                        result.setBounds(new Rect(bounds[0] * scale, bounds[1] * scale,
+                                (bounds[0] + bounds[2]) * scale, (bounds[1] + bounds[3]) * scale));
+                    }
+                    results.add(result);
+                }
+            }
+            return results;
+        }
+
+        /**
+         * 获取复用的Image，并设置为width * height
+         */
+        private Image obtainImage(int width, int height) {
+            if (image == null) {
+                image = new Image(width, height, "Y800");
+            } else if (imageWidth != width || imageHeight != height) {
+                image.setSize(width, height);
+            }
+            imageWidth = width;
+            imageHeight = height;
+            return image;
+        }
+
+        /**
+         * 获取当前线程的ImageScanner，若设置已更新（如setFormats），则销毁旧的并重新创建
+         */
+        private ImageScanner getImageScanner() {
+            int version = scannerConfigVersion;
+            if (imageScanner == null || configVersion != version) {
+                if (imageScanner != null) {
+                    imageScanner.destroy();
+                }
+                imageScanner = new ImageScanner();
+                imageScanner.setConfig(0, Config.X_DENSITY, DENSITY);
+                imageScanner.setConfig(0, Config.Y_DENSITY, DENSITY);
+                imageScanner.setConfig(Symbol.NONE, Config.ENABLE, 0);
+                for (BarcodeFormat format : getFormats()) {//设置支持的码格式
+                    imageScanner.setConfig(format.getId(), Config.ENABLE, 1);
+                }
+                configVersion = version;
+            }
+            return imageScanner;
+        }
+    }
+
+//--------------------------------------------------------------------------------------------------
+
+    /**
+     * 设置支持的码格式，之后识别的图片生效
+     */
+    public void setFormats(@NonNull List<BarcodeFormat> formats) {
+        this.formats = formats;
+        scannerConfigVersion++;
+    }
+
+    public Collection<BarcodeFormat> getFormats() {
+        if (formats == null) {
+            return BarcodeFormat.ALL_FORMATS;
+        }
+        return formats;
+    }
+
+    /**
+     * 设置识别时图片的最大边长（像素）<br/>
+     * 默认值为DEFAULT_MAX_DIMENSION，边长超过此值的图片会先缩小再识别，以限制内存占用。
+     * 值越大，越容易识别出图片中较小的码，但内存占用和耗时也越多
+     */
+    public void setMaxDimension(int maxDimension) {
+        if (maxDimension <= 0) {
+            throw new IllegalArgumentException("maxDimension必须大于0");
+        }
+        this.maxDimension = maxDimension;
+    }
+}
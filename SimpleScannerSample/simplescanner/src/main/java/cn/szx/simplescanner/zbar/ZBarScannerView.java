@@ -2,25 +2,33 @@ package cn.szx.simplescanner.zbar;
 
 import android.content.Context;
 import android.graphics.Rect;
-import android.hardware.Camera;
 import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
 
-import net.sourceforge.zbar.Config;
-import net.sourceforge.zbar.Image;
-import net.sourceforge.zbar.ImageScanner;
+import net.sourceforge.zbar.Orientation;
 import net.sourceforge.zbar.Symbol;
 import net.sourceforge.zbar.SymbolSet;
 
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import cn.szx.simplescanner.base.BarcodeScannerView;
 import cn.szx.simplescanner.base.IViewFinder;
+import cn.szx.simplescanner.base.ScanTrace;
+import cn.szx.simplescanner.core.DuplicateFilter;
+import cn.szx.simplescanner.core.FrameDecoder;
+import cn.szx.simplescanner.core.FrameQualityGate;
+import cn.szx.simplescanner.core.FrameTracer;
+import cn.szx.simplescanner.core.PreviewFrame;
+import cn.szx.simplescanner.core.ResultBatcher;
+import cn.szx.simplescanner.core.ResultSequencer;
+import cn.szx.simplescanner.core.Roi;
+import cn.szx.simplescanner.core.RoiMapper;
+import cn.szx.simplescanner.core.SceneChangeDetector;
 
 /**
  * zbar扫码视图，继承自基本扫码视图BarcodeScannerView
@@ -29,14 +37,29 @@ import cn.szx.simplescanner.base.IViewFinder;
  */
 public class ZBarScannerView extends BarcodeScannerView {
     private static final String TAG = "ZBarScannerView";
-    private ImageScanner imageScanner;
-    private List<BarcodeFormat> formats;
-    private ResultHandler resultHandler;
+    private volatile int scannerConfigVersion = 0;//ImageScanner设置的版本，每次更新设置时加1
+    private volatile List<BarcodeFormat> formats;
+    private volatile boolean rotateDataEnabled = false;//是否先旋转图像数据再识别（方案一）
+    private volatile AdaptiveDensity adaptiveDensity;//为null时使用固定的扫描密度
+    private volatile FrameQualityGate frameQualityGate;//为null时不检查帧质量
+    private volatile SceneChangeDetector sceneChangeDetector;//为null时不检测静止画面
+    private volatile DuplicateFilter duplicateFilter;//为null时不过滤重复结果
+    private volatile boolean resultRecyclingEnabled = false;//是否在结果回调返回后回收Result
+    private volatile ResultBatcher<Result> resultBatcher;//为null时不批量回调
+    private volatile ResultHandler resultHandler;
+    private volatile MultiResultHandler multiResultHandler;
 
     public interface ResultHandler {
         void handleResult(Result rawResult);
     }
 
+    /**
+     * 一帧中识别到的所有码（如一张标签上的多个条码），在一次回调中返回
+     */
+    public interface MultiResultHandler {
+        void handleResults(List<Result> rawResults);
+    }
+
     /*
      * 加载zbar动态库
      * zbar.jar中的类会用到
@@ -48,101 +71,239 @@ public class ZBarScannerView extends BarcodeScannerView {
     public ZBarScannerView(@NonNull Context context, @NonNull IViewFinder viewFinderView, @Nullable ResultHandler resultHandler) {
         super(context, viewFinderView);
         this.resultHandler = resultHandler;
-        setupScanner();//创建ImageScanner（zbar扫码器）并进行基本设置（如支持的码格式）
     }
 
     /**
-     * 创建ImageScanner并进行基本设置（如支持的码格式）
+     * 更新ImageScanner的基本设置（如支持的码格式）
+     * <p>
+     * 每个解码线程各自持有一个ImageScanner（ImageScanner不是线程安全的），
+     * 设置更新后，各解码线程会在下一次识别前销毁旧的ImageScanner并重新创建
      */
     public void setupScanner() {
-        imageScanner = new ImageScanner();
-
-        imageScanner.setConfig(0, Config.X_DENSITY, 3);
-        imageScanner.setConfig(0, Config.Y_DENSITY, 3);
-
-        imageScanner.setConfig(Symbol.NONE, Config.ENABLE, 0);
+        scannerConfigVersion++;
+    }
 
-        for (BarcodeFormat format : getFormats()) {//设置支持的码格式
-            imageScanner.setConfig(format.getId(), Config.ENABLE, 1);
-        }
+    @Override
+    protected FrameDecoder createFrameDecoder() {
+        return new ScannerViewDecoder();
     }
 
     /**
-     * Called as preview frames are displayed.<br/>
-     * This callback is invoked on the event thread open(int) was called from.<br/>
-     * (此方法与Camera.open运行于同一线程，在本项目中，就是CameraHandlerThread线程)
+     * 本视图的帧解码器，每个解码线程一个（识别过程见ZBarFrameDecoder）
      */
-    @Override
-    public void onPreviewFrame(byte[] data, Camera camera) {
-        if (resultHandler == null) return;
-
-        try {
-            Camera.Parameters parameters = camera.getParameters();
-            int previewWidth = parameters.getPreviewSize().width;
-            int previewHeight = parameters.getPreviewSize().height;
-
-            //根据ViewFinderView和preview的尺寸之比，缩放扫码区域
-            Rect rect = getScaledRect(previewWidth, previewHeight);
-
-            /*
-             * 方案一：旋转图像数据
-             */
-            //int rotationCount = getRotationCount();//相机图像需要被顺时针旋转几次（每次90度）
-            //if (rotationCount == 1 || rotationCount == 3) {//相机图像需要顺时针旋转90度或270度
-            //    //交换宽高
-            //    int tmp = previewWidth;
-            //    previewWidth = previewHeight;
-            //    previewHeight = tmp;
-            //}
-            ////旋转数据
-            //data = rotateData(data, camera);
-
-            /*
-             * 方案二：旋转截取区域
-             */
-            rect = getRotatedRect(previewWidth, previewHeight, rect);
-
-            //从preView的图像中截取扫码区域
-            Image barcode = new Image(previewWidth, previewHeight, "Y800");
-            barcode.setData(data);
-            barcode.setCrop(rect.left, rect.top, rect.width(), rect.height());
-
-            //使用zbar库识别扫码区域
-            int result = imageScanner.scanImage(barcode);
-            if (result != 0) {//识别成功
-                SymbolSet syms = imageScanner.getResults();
-                final Result rawResult = new Result();
-                for (Symbol sym : syms) {
-                    // In order to retreive QR codes containing null bytes we need to
-                    // use getDataBytes() rather than getData() which uses C strings.
-                    // Weirdly ZBar transforms all data to UTF-8, even the data returned
-                    // by getDataBytes() so we have to decode it as UTF-8.
-                    String symData;
-                    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.KITKAT) {
-                        symData = new String(sym.getDataBytes(), StandardCharsets.UTF_8);
-                    } else {
-                        symData = sym.getData();
-                    }
-                    if (!TextUtils.isEmpty(symData)) {
-                        rawResult.setContents(symData);
-                        rawResult.setBarcodeFormat(BarcodeFormat.getFormatById(sym.getType()));
-                        break;//识别成功一个就跳出循环
-                    }
+    private class ScannerViewDecoder extends ZBarFrameDecoder {
+        private Rect lastRotatedRect;//getRotatedRect的缓存对象，变化时才重新转换为Roi
+        private Roi cropRect;
+
+        @Override
+        public Runnable decode(PreviewFrame frame) {
+            Runnable delivery = super.decode(frame);
+            ResultBatcher<Result> resultBatcher = ZBarScannerView.this.resultBatcher;
+            if (resultBatcher != null) {
+                resultBatcher.flushIfDue();//在解码线程中回调时，批量回调的时间窗口由解码线程结束（见batchTimer）
+            }
+            return delivery;
+        }
+
+        @Override
+        public void release() {
+            super.release();
+            ResultBatcher<Result> resultBatcher = ZBarScannerView.this.resultBatcher;
+            if (resultBatcher != null && getResultExecutor() == DECODE_THREAD_EXECUTOR) {
+                resultBatcher.flush();//停止相机时，在解码线程退出前发送尚未发送的结果（见stopCamera）
+            }
+        }
+
+        @Override
+        protected boolean isResultWanted() {
+            return resultHandler != null || multiResultHandler != null;
+        }
+
+        @Override
+        protected Roi getCropRect(int previewWidth, int previewHeight) {
+            //根据ViewFinderView和preview的尺寸之比，缩放扫码区域，再旋转截取区域，得到扫码区域在相机图像中的位置
+            Rect rect = getRotatedRect(previewWidth, previewHeight, getScaledRect(previewWidth, previewHeight));
+            if (rect != lastRotatedRect) {
+                cropRect = new Roi(rect.left, rect.top, rect.right, rect.bottom);
+                lastRotatedRect = rect;
+            }
+            return cropRect;
+        }
+
+        @Override
+        protected int getRotationCount() {
+            return ZBarScannerView.this.getRotationCount();
+        }
+
+        @Override
+        protected boolean isRotateDataEnabled() {
+            return rotateDataEnabled;
+        }
+
+        @Override
+        protected boolean isMultiResult() {
+            return multiResultHandler != null;
+        }
+
+        @Override
+        protected AdaptiveDensity getAdaptiveDensity() {
+            return adaptiveDensity;
+        }
+
+        @Override
+        protected FrameQualityGate getFrameQualityGate() {
+            return frameQualityGate;
+        }
+
+        @Override
+        protected SceneChangeDetector getSceneChangeDetector() {
+            return sceneChangeDetector;
+        }
+
+        @Override
+        protected int getScannerConfigVersion() {
+            return scannerConfigVersion;
+        }
+
+        @Override
+        protected FrameScanner createFrameScanner() {
+            return new ZBarFrameScanner(getFormats());
+        }
+
+        @Override
+        protected FrameTracer getTracer() {
+            return ScanTrace.FRAME_TRACER;//未开启跟踪时什么也不做
+        }
+
+        @Override
+        protected void onFrameMissed() {
+            ZBarScannerView.this.onFrameMissed();
+        }
+
+        @Override
+        protected void onFrameDecoded() {
+            ZBarScannerView.this.onFrameDecoded();
+        }
+
+        @Override
+        protected Runnable onSymbolsFound(SymbolSet syms, boolean acceptPartial,
+                                          int previewWidth, int previewHeight, Roi cropRect,
+                                          int rotationCount, boolean rotateData) {
+            final ResultHandler resultHandler = ZBarScannerView.this.resultHandler;
+            final MultiResultHandler multiResultHandler = ZBarScannerView.this.multiResultHandler;
+            if (resultHandler == null && multiResultHandler == null) return null;
+            DuplicateFilter duplicateFilter = ZBarScannerView.this.duplicateFilter;
+
+            List<Result> rawResults = null;
+            for (Symbol sym : syms) {
+                if (!acceptPartial && sym.getType() == Symbol.PARTIAL) continue;
+
+                Result rawResult = Result.fromSymbol(sym);
+                if (rawResult == null) continue;
+                if (duplicateFilter != null
+                        && duplicateFilter.isDuplicate(rawResult.getBarcodeFormat().getName(), rawResult.getContents())) {
+                    rawResult.recycle();
+                    continue;//过滤掉最近已经返回过的结果（只判断，确定发送时才记录，见ResultDelivery）
                 }
+                setLocation(rawResult, sym, previewWidth, previewHeight, rotateData, rotationCount, cropRect);
+                if (rawResults == null) {
+                    rawResults = new ArrayList<>(multiResultHandler != null ? 4 : 1);
+                }
+                rawResults.add(rawResult);
 
-                new Handler(Looper.getMainLooper()).post(new Runnable() {//切换到主线程
+                if (multiResultHandler == null) break;//识别成功一个就跳出循环
+            }
+            if (rawResults == null) {//只识别到重复结果
+                return null;
+            }
+
+            final List<Result> results = rawResults;
+            final ResultBatcher<Result> resultBatcher = ZBarScannerView.this.resultBatcher;
+            if (resultBatcher != null) {
+                return new ResultDelivery(results, duplicateFilter) {//识别成功，在解码线程中按帧的顺序加入这一批（见getDeliveryExecutor）
                     @Override
                     public void run() {
-                        if (resultHandler != null) {
-                            resultHandler.handleResult(rawResult);
+                        resultBatcher.addAll(results);
+                        if (!isContinuousScanEnabled()) {
+                            resultBatcher.flush();//识别成功后已暂停，不会再有结果，立即发送
                         }
                     }
-                });
-            } else {//识别失败
-                getOneMoreFrame();//再获取一帧图像数据进行识别（会再次触发onPreviewFrame方法）
+                };
+            }
+            final boolean recycleResults = resultRecyclingEnabled;
+            return new ResultDelivery(results, duplicateFilter) {//识别成功，在getResultExecutor（默认为主线程）中执行
+                @Override
+                public void run() {
+                    if (multiResultHandler != null) {
+                        multiResultHandler.handleResults(results);
+                    } else {
+                        resultHandler.handleResult(results.get(0));
+                    }
+                    if (recycleResults) {
+                        for (Result result : results) {
+                            result.recycle();
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * 设置码在ViewFinderView坐标系中的位置和相对于屏幕的方向
+         *
+         * @param rotateData 是否使用了方案一（此时zbar给出的是旋转后的扫码区域中的坐标）
+         * @param cropRect   截取区域在相机图像（未旋转）中的位置
+         */
+        private void setLocation(Result rawResult, Symbol sym, int previewWidth, int previewHeight,
+                                 boolean rotateData, int rotationCount, Roi cropRect) {
+            int orientation = sym.getOrientation();
+            int[] bounds = sym.getBounds();//{x, y, width, height}
+
+            if (rotateData) {
+                rawResult.setOrientation(orientation);//图像已经与屏幕方向一致
+            } else if (orientation != Orientation.UNKNOWN) {
+                rawResult.setOrientation((orientation + rotationCount) % 4);
+            }
+
+            if (bounds == null) return;
+            int x0 = bounds[0], y0 = bounds[1], x1 = bounds[0] + bounds[2], y1 = bounds[1] + bounds[3];
+            Roi roi = new Roi(x0, y0, x1, y1);//在相机图像（未旋转）中的位置
+            if (rotateData) {//把旋转后的扫码区域中的坐标还原为相机图像中的坐标
+                roi = RoiMapper.unrotate(roi, cropRect.width(), cropRect.height(), rotationCount)
+                        .offset(cropRect.left, cropRect.top);
             }
-        } catch (RuntimeException e) {
-            e.printStackTrace();
+            Rect rect = new Rect(roi.left, roi.top, roi.right, roi.bottom);
+            rawResult.setBounds(mapPreviewRectToView(previewWidth, previewHeight, rect));
+        }
+    }
+
+    /**
+     * 识别成功时的结果回调
+     * <p>
+     * 识别时只用DuplicateFilter.isDuplicate预先过滤，结果确定发送时（之前的帧都已完成、未被暂停丢弃）才记录。
+     * 连续扫码时多个解码线程可能同时识别到同一个码，此时再次过滤，只有最先发送的一个会返回
+     */
+    private static abstract class ResultDelivery implements ResultSequencer.Delivery {
+        private final List<Result> results;
+        private final DuplicateFilter duplicateFilter;//为null时不过滤
+
+        ResultDelivery(List<Result> results, DuplicateFilter duplicateFilter) {
+            this.results = results;
+            this.duplicateFilter = duplicateFilter;
+        }
+
+        @Override
+        public boolean onDeliver() {
+            if (duplicateFilter == null) return true;
+            for (int i = 0; i < results.size(); ) {
+                Result result = results.get(i);
+                if (duplicateFilter.accept(result.getBarcodeFormat().getName(), result.getContents())) {
+                    i++;
+                } else {
+                    results.remove(i).recycle();
+                }
+            }
+            return !results.isEmpty();
         }
     }
 
@@ -156,19 +317,224 @@ public class ZBarScannerView extends BarcodeScannerView {
         setupScanner();
     }
 
-    public Collection<BarcodeFormat> getFormats() {
-        if (formats == null) {
-            return BarcodeFormat.ALL_FORMATS;
+    /**
+     * 设置是否先截取并旋转图像数据再识别（方案一）<br/>
+     * 默认值为false，即旋转截取区域后直接在相机图像中截取识别（方案二），不需要复制图像数据<br/>
+     * 设置为true后，只截取扫码区域并旋转为与屏幕一致的方向，一次完成，结果数组会被复用
+     */
+    public void setRotateDataEnabled(boolean rotateDataEnabled) {
+        this.rotateDataEnabled = rotateDataEnabled;
+    }
+
+    /**
+     * 设置自适应扫描密度，为null时使用固定的扫描密度（默认）<br/>
+     * 启用后，每帧先用稀疏的扫描线识别，识别失败（或只识别到PARTIAL结果）时才逐级提高密度，
+     * 可通过AdaptiveDensity查看每一级密度的识别成功率
+     */
+    public void setAdaptiveDensity(@Nullable AdaptiveDensity adaptiveDensity) {
+        this.adaptiveDensity = adaptiveDensity;
+    }
+
+    @Nullable
+    public AdaptiveDensity getAdaptiveDensity() {
+        return adaptiveDensity;
+    }
+
+    /**
+     * 设置帧质量门限，为null时不检查帧质量（默认）<br/>
+     * 启用后，识别前先计算扫码区域的清晰度和对比度，跳过模糊（如正在对焦）或几乎没有内容的帧，
+     * 门限值通过FrameQualityGate的构造方法配置
+     */
+    public void setFrameQualityGate(@Nullable FrameQualityGate frameQualityGate) {
+        this.frameQualityGate = frameQualityGate;
+    }
+
+    @Nullable
+    public FrameQualityGate getFrameQualityGate() {
+        return frameQualityGate;
+    }
+
+    /**
+     * 设置静止画面检测，为null时不检测（默认）<br/>
+     * 启用后，画面与最近一次识别失败时相比没有变化时跳过识别，画面移动或亮度变化时立即恢复，
+     * 适用于长时间开着、大部分时间对着空白画面的场景
+     */
+    public void setSceneChangeDetector(@Nullable SceneChangeDetector sceneChangeDetector) {
+        this.sceneChangeDetector = sceneChangeDetector;
+    }
+
+    @Nullable
+    public SceneChangeDetector getSceneChangeDetector() {
+        return sceneChangeDetector;
+    }
+
+    /**
+     * 设置结果回调（构造方法中传入的回调会被替换）
+     */
+    public void setResultHandler(@Nullable ResultHandler resultHandler) {
+        this.resultHandler = resultHandler;
+    }
+
+    /**
+     * 设置结果回调，以及执行回调的Executor（见setResultExecutor，为null时在主线程回调）
+     */
+    public void setResultHandler(@Nullable ResultHandler resultHandler, @Nullable Executor executor) {
+        setResultExecutor(executor);
+        this.resultHandler = resultHandler;
+    }
+
+    /**
+     * 设置多结果回调，为null时每帧只返回第一个码（默认）<br/>
+     * 设置后，一帧中识别到的所有码（不包括PARTIAL结果）会在一次回调中返回，此时不再回调ResultHandler
+     */
+    public void setMultiResultHandler(@Nullable MultiResultHandler multiResultHandler) {
+        this.multiResultHandler = multiResultHandler;
+    }
+
+    /**
+     * 设置多结果回调，以及执行回调的Executor（见setResultExecutor，为null时在主线程回调）
+     */
+    public void setMultiResultHandler(@Nullable MultiResultHandler multiResultHandler, @Nullable Executor executor) {
+        setResultExecutor(executor);
+        this.multiResultHandler = multiResultHandler;
+    }
+
+    /**
+     * 设置批量回调，windowMillis为0时不批量回调
+     *
+     * @see #setResultBatching(long, int)
+     */
+    public void setResultBatching(long windowMillis) {
+        setResultBatching(windowMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 设置批量回调：windowMillis内识别到的结果（或达到maxBatchSize个时）合并为一次回调<br/>
+     * 默认值为0，即每次识别成功都回调一次。连续扫码时可以避免频繁回调主线程：
+     * 设置了MultiResultHandler时一次回调整批结果，否则在同一次调度中依次回调ResultHandler。
+     * 结果在解码线程中按帧的顺序收集，窗口结束时交给getResultExecutor（默认为主线程）；停止相机时立即发送尚未发送的结果。
+     * 非连续扫码模式下识别成功后即暂停，结果不等待窗口结束，立即发送。<br/>
+     * getResultExecutor为DECODE_THREAD_EXECUTOR时，批量回调同样在解码线程中执行：窗口由解码线程在识别每一帧时结束，
+     * 停止相机时由退出的解码线程发送。只有重新设置批量回调时，旧的一批在调用此方法的线程中发送
+     */
+    public void setResultBatching(long windowMillis, int maxBatchSize) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis不能小于0");
+        }
+        ResultBatcher<Result> oldBatcher = resultBatcher;
+        resultBatcher = windowMillis == 0 ? null : new ResultBatcher<>(windowMillis, maxBatchSize,
+                batchTimer, batchExecutor, new ResultBatcher.Callback<Result>() {
+            @Override
+            public void onBatch(List<Result> batch) {
+                handleBatch(batch);
+            }
+        });
+        if (oldBatcher != null) {
+            oldBatcher.flush();
         }
-        return formats;
     }
 
     /**
-     * 再获取一帧图像数据进行识别（会再次触发onPreviewFrame方法）
+     * 批量回调的时间窗口在主线程中计时<br/>
+     * 在解码线程中回调（DECODE_THREAD_EXECUTOR）时不计时，否则回调会在主线程中执行，
+     * 由解码线程在识别每一帧后检查（ResultBatcher.flushIfDue）
      */
-    public void getOneMoreFrame() {
-        if (cameraWrapper != null) {
-            cameraWrapper.camera.setOneShotPreviewCallback(this);
+    private final ResultBatcher.Timer batchTimer = new ResultBatcher.Timer() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            if (getResultExecutor() == DECODE_THREAD_EXECUTOR) return;
+            handler.postDelayed(task, delayMillis);
         }
+    };
+
+    /**
+     * 批量回调在getResultExecutor中执行（每次都重新获取，setResultExecutor随时生效）
+     */
+    private final Executor batchExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            getResultExecutor().execute(command);
+        }
+    };
+
+    private void handleBatch(List<Result> batch) {
+        MultiResultHandler multiResultHandler = this.multiResultHandler;
+        ResultHandler resultHandler = this.resultHandler;
+        if (multiResultHandler != null) {
+            multiResultHandler.handleResults(batch);
+        } else if (resultHandler != null) {
+            for (Result result : batch) {
+                resultHandler.handleResult(result);
+            }
+        }
+        if (resultRecyclingEnabled) {
+            for (Result result : batch) {
+                result.recycle();
+            }
+        }
+    }
+
+    /**
+     * 对焦成功后画面只是变清晰，签名几乎不变，重置静止画面检测，保证对焦后的帧会被识别
+     */
+    @Override
+    protected void onFocusSucceeded() {
+        super.onFocusSucceeded();
+        SceneChangeDetector sceneChangeDetector = this.sceneChangeDetector;
+        if (sceneChangeDetector != null) {
+            sceneChangeDetector.reset();
+        }
+    }
+
+    /**
+     * 批量回调时，结果直接在解码线程中收集，窗口结束时才交给getResultExecutor
+     */
+    @Override
+    protected Executor getDeliveryExecutor() {
+        return resultBatcher != null ? DECODE_THREAD_EXECUTOR : super.getDeliveryExecutor();
+    }
+
+    @Override
+    public void stopCamera(@Nullable CameraCallback callback) {
+        super.stopCamera(callback);
+        ResultBatcher<Result> resultBatcher = this.resultBatcher;
+        if (resultBatcher != null && getResultExecutor() != DECODE_THREAD_EXECUTOR) {
+            resultBatcher.flush();//在解码线程中回调时，由退出的解码线程发送（见ScannerViewDecoder.release）
+        }
+    }
+
+    /**
+     * 设置重复结果过滤，为null时不过滤（默认）<br/>
+     * 设置后，同一个码（码格式和内容都相同）在一定时间内只会返回一次，通常与连续扫码模式（setContinuousScanEnabled）一起使用。
+     * 只有实际返回的结果才会被记录，暂停期间被丢弃的结果不影响之后的识别
+     */
+    public void setDuplicateFilter(@Nullable DuplicateFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
+    }
+
+    @Nullable
+    public DuplicateFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
+
+    /**
+     * 设置是否在结果回调返回后回收Result（之后的识别结果复用这些对象）<br/>
+     * 默认值为false。开启后不能在回调之外持有Result，需要时应复制其中的内容，适合连续扫码等频繁回调的场景
+     */
+    public void setResultRecyclingEnabled(boolean resultRecyclingEnabled) {
+        this.resultRecyclingEnabled = resultRecyclingEnabled;
+    }
+
+    public boolean isResultRecyclingEnabled() {
+        return resultRecyclingEnabled;
+    }
+
+    public Collection<BarcodeFormat> getFormats() {
+        if (formats == null) {
+            return BarcodeFormat.ALL_FORMATS;
+        }
+        return formats;
     }
 }
\ No newline at end of file